@@ -28,5 +28,20 @@ public interface CacheStatistics extends AdminObject, DomainAware {
 	int getTotalEntries();
 	
 	int getRequestCount();
+	
+	/**
+	 * @return the number of requests answered by stale entries while they were refreshed
+	 */
+	int getStaleHitCount();
+	
+	/**
+	 * @return the number of completed background refreshes of stale entries
+	 */
+	int getRefreshCount();
+	
+	/**
+	 * @return the average time in milliseconds of background refreshes
+	 */
+	long getAverageRefreshTime();
 
 }
@@ -65,6 +65,19 @@ public interface EngineStatistics extends AdminObject, DomainAware {
 	 */
 	long getCacheWriteCount();
 	
+	/**
+	 * Number of batch reads satisfied from heap memory
+	 * @return
+	 */
+	long getHeapReadCount();
+	
+	/**
+	 * Number of batch reads satisfied from the serialized memory buffer, which may be off heap, 
+	 * rather than from disk
+	 * @return
+	 */
+	long getMemoryBufferReadCount();
+	
 	/**
 	 * Disk space used by buffer manager to save overflowed memory contents
 	 * @return
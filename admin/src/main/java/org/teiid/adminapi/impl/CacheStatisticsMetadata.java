@@ -30,6 +30,9 @@ public class CacheStatisticsMetadata extends AdminObjectImpl implements CacheSta
 	private double hitRatio;
 	private int totalEntries;
 	private int requestCount;
+	private int staleHitCount;
+	private int refreshCount;
+	private long averageRefreshTime;
 	
 	@Override
 	public int getRequestCount() {
@@ -58,11 +61,41 @@ public class CacheStatisticsMetadata extends AdminObjectImpl implements CacheSta
 		this.totalEntries = value;
 	}	
 	
+	@Override
+	public int getStaleHitCount() {
+		return staleHitCount;
+	}
+	
+	public void setStaleHitCount(int staleHitCount) {
+		this.staleHitCount = staleHitCount;
+	}
+	
+	@Override
+	public int getRefreshCount() {
+		return refreshCount;
+	}
+	
+	public void setRefreshCount(int refreshCount) {
+		this.refreshCount = refreshCount;
+	}
+	
+	@Override
+	public long getAverageRefreshTime() {
+		return averageRefreshTime;
+	}
+	
+	public void setAverageRefreshTime(long averageRefreshTime) {
+		this.averageRefreshTime = averageRefreshTime;
+	}
+	
 	public String toString() {
 		StringBuilder sb = new StringBuilder();
 		sb.append("hitRatio=").append(hitRatio);//$NON-NLS-1$
 		sb.append("; totalEntries=").append(totalEntries); //$NON-NLS-1$
 		sb.append("; requestCount=").append(requestCount); //$NON-NLS-1$
+		sb.append("; staleHitCount=").append(staleHitCount); //$NON-NLS-1$
+		sb.append("; refreshCount=").append(refreshCount); //$NON-NLS-1$
+		sb.append("; averageRefreshTime=").append(averageRefreshTime); //$NON-NLS-1$
 		return sb.toString();
 	}
 }
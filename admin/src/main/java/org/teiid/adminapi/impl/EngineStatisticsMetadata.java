@@ -33,6 +33,8 @@ public class EngineStatisticsMetadata extends AdminObjectImpl implements EngineS
 	private long diskReadCount;
 	private long cacheWriteCount;
 	private long cacheReadCount;	
+	private long heapReadCount;
+	private long memoryBufferReadCount;
 	private long diskSpaceUsedInMB;
 	private int activePlanCount;
 	private int waitPlanCount;
@@ -73,6 +75,16 @@ public class EngineStatisticsMetadata extends AdminObjectImpl implements EngineS
 		return cacheWriteCount;
 	}
 
+	@Override
+	public long getHeapReadCount() {
+		return heapReadCount;
+	}
+	
+	@Override
+	public long getMemoryBufferReadCount() {
+		return memoryBufferReadCount;
+	}
+
 	@Override
 	public long getDiskSpaceUsedInMB() {
 		return diskSpaceUsedInMB;
@@ -121,6 +133,14 @@ public class EngineStatisticsMetadata extends AdminObjectImpl implements EngineS
 		this.cacheReadCount = cacheReadCount;
 	}
 
+	public void setHeapReadCount(long heapReadCount) {
+		this.heapReadCount = heapReadCount;
+	}
+	
+	public void setMemoryBufferReadCount(long memoryBufferReadCount) {
+		this.memoryBufferReadCount = memoryBufferReadCount;
+	}
+
 	public void setDiskSpaceUsedInMB(long diskSpaceUsedInMB) {
 		this.diskSpaceUsedInMB = diskSpaceUsedInMB;
 	}
@@ -147,6 +167,8 @@ public class EngineStatisticsMetadata extends AdminObjectImpl implements EngineS
 		sb.append("; diskReadCount").append(diskReadCount); //$NON-NLS-1$
 		sb.append("; cacheWriteCount").append(cacheWriteCount); //$NON-NLS-1$
 		sb.append("; cacheReadCount").append(cacheReadCount); //$NON-NLS-1$	
+		sb.append("; heapReadCount").append(heapReadCount); //$NON-NLS-1$
+		sb.append("; memoryBufferReadCount").append(memoryBufferReadCount); //$NON-NLS-1$
 		sb.append("; diskSpaceUsedInMB").append(diskSpaceUsedInMB); //$NON-NLS-1$
 		sb.append("; activePlanCount").append(activePlanCount); //$NON-NLS-1$
 		sb.append("; waitPlanCount").append(waitPlanCount); //$NON-NLS-1$
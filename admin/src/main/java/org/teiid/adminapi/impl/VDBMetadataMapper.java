@@ -1142,6 +1142,8 @@ public class VDBMetadataMapper implements MetadataMapper<VDBMetaData> {
 		private static final String DISK_READ_COUNT = "buffermgr-disk-read-count"; //$NON-NLS-1$
 		private static final String CACHE_WRITE_COUNT = "buffermgr-cache-write-count"; //$NON-NLS-1$
 		private static final String CACHE_READ_COUNT = "buffermgr-cache-read-count"; //$NON-NLS-1$
+		private static final String HEAP_READ_COUNT = "buffermgr-heap-read-count"; //$NON-NLS-1$
+		private static final String MEMORY_BUFFER_READ_COUNT = "buffermgr-memory-buffer-read-count"; //$NON-NLS-1$
 		private static final String DISK_SPACE_USED = "buffermgr-diskspace-used-mb"; //$NON-NLS-1$
 		private static final String ACTIVE_PLAN_COUNT = "active-plans-count"; //$NON-NLS-1$
 		private static final String WAITING_PLAN_COUNT = "waiting-plans-count"; //$NON-NLS-1$
@@ -1160,6 +1162,8 @@ public class VDBMetadataMapper implements MetadataMapper<VDBMetaData> {
 			node.get(DISK_READ_COUNT).set(object.getDiskReadCount());
 			node.get(CACHE_WRITE_COUNT).set(object.getCacheWriteCount());	
 			node.get(CACHE_READ_COUNT).set(object.getCacheReadCount());
+			node.get(HEAP_READ_COUNT).set(object.getHeapReadCount());
+			node.get(MEMORY_BUFFER_READ_COUNT).set(object.getMemoryBufferReadCount());
 			node.get(DISK_SPACE_USED).set(object.getDiskSpaceUsedInMB());
 			node.get(ACTIVE_PLAN_COUNT).set(object.getActivePlanCount());
 			node.get(WAITING_PLAN_COUNT).set(object.getWaitPlanCount());
@@ -1181,6 +1185,8 @@ public class VDBMetadataMapper implements MetadataMapper<VDBMetaData> {
 			stats.setDiskReadCount(node.get(DISK_READ_COUNT).asLong());
 			stats.setCacheReadCount(node.get(CACHE_READ_COUNT).asLong());
 			stats.setCacheWriteCount(node.get(CACHE_WRITE_COUNT).asLong());
+			stats.setHeapReadCount(node.get(HEAP_READ_COUNT).asLong());
+			stats.setMemoryBufferReadCount(node.get(MEMORY_BUFFER_READ_COUNT).asLong());
 			stats.setDiskSpaceUsedInMB(node.get(DISK_SPACE_USED).asLong());
 			stats.setActivePlanCount(node.get(ACTIVE_PLAN_COUNT).asInt());
 			stats.setWaitPlanCount(node.get(WAITING_PLAN_COUNT).asInt());
@@ -1198,6 +1204,8 @@ public class VDBMetadataMapper implements MetadataMapper<VDBMetaData> {
 			addAttribute(node, DISK_READ_COUNT, ModelType.LONG, true);
 			addAttribute(node, CACHE_READ_COUNT, ModelType.LONG, true);
 			addAttribute(node, CACHE_WRITE_COUNT, ModelType.LONG, true);
+			addAttribute(node, HEAP_READ_COUNT, ModelType.LONG, true);
+			addAttribute(node, MEMORY_BUFFER_READ_COUNT, ModelType.LONG, true);
 			addAttribute(node, DISK_SPACE_USED, ModelType.LONG, true);
 			addAttribute(node, ACTIVE_PLAN_COUNT, ModelType.INT, true);
 			addAttribute(node, WAITING_PLAN_COUNT, ModelType.INT, true);
@@ -1214,6 +1222,8 @@ public class VDBMetadataMapper implements MetadataMapper<VDBMetaData> {
 					new SimpleAttributeDefinition(DISK_READ_COUNT, ModelType.LONG, false),
 					new SimpleAttributeDefinition(CACHE_READ_COUNT, ModelType.LONG, false),
 					new SimpleAttributeDefinition(CACHE_WRITE_COUNT, ModelType.LONG, false),
+					new SimpleAttributeDefinition(HEAP_READ_COUNT, ModelType.LONG, false),
+					new SimpleAttributeDefinition(MEMORY_BUFFER_READ_COUNT, ModelType.LONG, false),
 					new SimpleAttributeDefinition(DISK_SPACE_USED, ModelType.LONG, false),
 					new SimpleAttributeDefinition(ACTIVE_PLAN_COUNT, ModelType.INT, false),
 					new SimpleAttributeDefinition(WAITING_PLAN_COUNT, ModelType.INT, false),
@@ -1226,6 +1236,9 @@ public class VDBMetadataMapper implements MetadataMapper<VDBMetaData> {
 		private static final String HITRATIO = "hit-ratio"; //$NON-NLS-1$
 		private static final String TOTAL_ENTRIES = "total-entries"; //$NON-NLS-1$
 		private static final String REQUEST_COUNT = "request-count"; //$NON-NLS-1$
+		private static final String STALE_HIT_COUNT = "stale-hit-count"; //$NON-NLS-1$
+		private static final String REFRESH_COUNT = "refresh-count"; //$NON-NLS-1$
+		private static final String AVERAGE_REFRESH_TIME = "average-refresh-time"; //$NON-NLS-1$
 		
 		public static CacheStatisticsMetadataMapper INSTANCE = new CacheStatisticsMetadataMapper();
 		
@@ -1236,6 +1249,9 @@ public class VDBMetadataMapper implements MetadataMapper<VDBMetaData> {
 			node.get(TOTAL_ENTRIES).set(object.getTotalEntries());
 			node.get(HITRATIO).set(object.getHitRatio());
 			node.get(REQUEST_COUNT).set(object.getRequestCount());
+			node.get(STALE_HIT_COUNT).set(object.getStaleHitCount());
+			node.get(REFRESH_COUNT).set(object.getRefreshCount());
+			node.get(AVERAGE_REFRESH_TIME).set(object.getAverageRefreshTime());
 			
 			wrapDomain(object, node);
 			return node;
@@ -1249,6 +1265,11 @@ public class VDBMetadataMapper implements MetadataMapper<VDBMetaData> {
 			cache.setTotalEntries(node.get(TOTAL_ENTRIES).asInt());
 			cache.setHitRatio(node.get(HITRATIO).asDouble());
 			cache.setRequestCount(node.get(REQUEST_COUNT).asInt());
+			if (node.has(STALE_HIT_COUNT)) {
+				cache.setStaleHitCount(node.get(STALE_HIT_COUNT).asInt());
+				cache.setRefreshCount(node.get(REFRESH_COUNT).asInt());
+				cache.setAverageRefreshTime(node.get(AVERAGE_REFRESH_TIME).asLong());
+			}
 			
 			unwrapDomain(cache, node);
 			return cache;
@@ -1258,6 +1279,9 @@ public class VDBMetadataMapper implements MetadataMapper<VDBMetaData> {
 			addAttribute(node, TOTAL_ENTRIES, ModelType.STRING, true);
 			addAttribute(node, HITRATIO, ModelType.STRING, true);
 			addAttribute(node, REQUEST_COUNT, ModelType.STRING, true);
+			addAttribute(node, STALE_HIT_COUNT, ModelType.STRING, true);
+			addAttribute(node, REFRESH_COUNT, ModelType.STRING, true);
+			addAttribute(node, AVERAGE_REFRESH_TIME, ModelType.STRING, true);
 			return node; 		
 		}
 		
@@ -1265,7 +1289,10 @@ public class VDBMetadataMapper implements MetadataMapper<VDBMetaData> {
 			return new AttributeDefinition[] {
 					new SimpleAttributeDefinition(TOTAL_ENTRIES, ModelType.STRING, false),
 					new SimpleAttributeDefinition(HITRATIO, ModelType.STRING, false),
-					new SimpleAttributeDefinition(REQUEST_COUNT, ModelType.STRING, false)
+					new SimpleAttributeDefinition(REQUEST_COUNT, ModelType.STRING, false),
+					new SimpleAttributeDefinition(STALE_HIT_COUNT, ModelType.STRING, false),
+					new SimpleAttributeDefinition(REFRESH_COUNT, ModelType.STRING, false),
+					new SimpleAttributeDefinition(AVERAGE_REFRESH_TIME, ModelType.STRING, false)
 			};
 		}
 	}	
@@ -101,12 +101,20 @@ public class ResultSetImpl extends WrapperImpl implements TeiidResultSet, BatchF
     
     private ResultsFuture<ResultsMessage> prefetch;
     private boolean usePrefetch;
+    //adaptive read-ahead state - the number of fetch size batches to request with the prefetch
+    private int readAheadBatches = 1;
+    private int rowSizeEstimate;
+    private long prefetchStart;
+    private volatile long prefetchEnd;
 
 	private int skipTo;
 	
 	private static boolean DISABLE_FETCH_SIZE_DEFAULT = PropertiesUtils.getBooleanProperty(System.getProperties(), "org.teiid." + DISABLE_FETCH_SIZE, false); //$NON-NLS-1$
 	
 	private Boolean disableFetchSize;
+	
+	private static int READ_AHEAD_BATCHES = PropertiesUtils.getIntProperty(System.getProperties(), "org.teiid.resultSetReadAheadBatches", 4); //$NON-NLS-1$
+	private static long READ_AHEAD_BYTES = PropertiesUtils.getLongProperty(System.getProperties(), "org.teiid.resultSetReadAheadBytes", 1 << 23); //$NON-NLS-1$
 
 	/**
 	 * Constructor.
@@ -235,7 +243,7 @@ public class ResultSetImpl extends WrapperImpl implements TeiidResultSet, BatchF
     	if (hasNext != null) {
     		return StatementImpl.booleanFuture(next());
     	}
-    	ResultsFuture<ResultsMessage> pendingResult = submitRequestBatch(batchResults.getCurrentRowNumber() + 1);
+    	ResultsFuture<ResultsMessage> pendingResult = submitRequestBatch(batchResults.getCurrentRowNumber() + 1, fetchSize);
     	final ResultsFuture<Boolean> result = new ResultsFuture<Boolean>();
     	pendingResult.addCompletionListener(new ResultsFuture.CompletionListener<ResultsMessage>() {
     		@Override
@@ -372,12 +380,14 @@ public class ResultSetImpl extends WrapperImpl implements TeiidResultSet, BatchF
     			//TODO: this is not efficient if the user is skipping around the results
     			//but the server logic at this point basically requires us
     			//to read what we have requested before requesting more (no queuing)
+    			boolean waited = !prefetch.isDone();
     			ResultsMessage result = getResults(prefetch);
     			prefetch = null;
+    			adjustReadAhead(waited);
     			Batch nextBatch = processBatch(result);
 				return nextBatch;
         	}
-        	ResultsFuture<ResultsMessage> results = submitRequestBatch(beginRow);
+        	ResultsFuture<ResultsMessage> results = submitRequestBatch(beginRow, fetchSize);
         	if (asynch && !results.isDone()) {
         		synchronized (this) {
             		asynchResults = results;
@@ -395,7 +405,53 @@ public class ResultSetImpl extends WrapperImpl implements TeiidResultSet, BatchF
 		}
     }
 
-	private ResultsFuture<ResultsMessage> submitRequestBatch(int beginRow)
+	/**
+	 * Grow the read-ahead when the application had to wait on the prefetch, 
+	 * shrink it when the prefetched results sat unused for longer than the
+	 * round trip that produced them.
+	 */
+	private void adjustReadAhead(boolean waited) {
+		if (waited) {
+			readAheadBatches = Math.min(readAheadBatches << 1, Math.max(1, READ_AHEAD_BATCHES));
+			return;
+		}
+		long end = prefetchEnd;
+		if (readAheadBatches > 1 && end != 0 && System.nanoTime() - end > 2 * (end - prefetchStart)) {
+			readAheadBatches--;
+		}
+	}
+	
+	/**
+	 * The server only allows a single outstanding request per cursor, so 
+	 * read-ahead is performed by requesting several fetch size batches at once
+	 * bounded by the read-ahead byte budget. 
+	 */
+	private int getReadAheadSize() {
+		long rows = (long)fetchSize * readAheadBatches;
+		if (rowSizeEstimate > 0) {
+			rows = Math.min(rows, Math.max(fetchSize, READ_AHEAD_BYTES / rowSizeEstimate));
+		}
+		return (int)Math.min(rows, Integer.MAX_VALUE);
+	}
+	
+	/**
+	 * A rough estimate of the client memory used by the given row
+	 */
+	static int estimateRowSize(List<?> row) {
+		int size = 16;
+		for (Object value : row) {
+			if (value instanceof String) {
+				size += 40 + 2*((String)value).length();
+			} else if (value instanceof byte[]) {
+				size += 16 + ((byte[])value).length;
+			} else {
+				size += 16;
+			}
+		}
+		return size;
+	}
+
+	private ResultsFuture<ResultsMessage> submitRequestBatch(int beginRow, int rows)
 			throws TeiidSQLException {
 		if (beginRow > maxRows && skipTo > 0) {
 			beginRow = skipTo;
@@ -414,7 +470,7 @@ public class ResultSetImpl extends WrapperImpl implements TeiidResultSet, BatchF
 			logger.finer("requestBatch requestID: " + requestID + " beginRow: " + beginRow ); //$NON-NLS-1$ //$NON-NLS-2$
 		}
 		try {
-			results = statement.getDQP().processCursorRequest(requestID, beginRow, fetchSize);
+			results = statement.getDQP().processCursorRequest(requestID, beginRow, rows);
 		} catch (TeiidProcessingException e) {
 			throw TeiidSQLException.create(e);
 		}
@@ -447,11 +503,22 @@ public class ResultSetImpl extends WrapperImpl implements TeiidResultSet, BatchF
 		if (usePrefetch && !asynch 
 				&& prefetch == null && currentResultMsg.getLastRow() != currentResultMsg.getFinalRow()) {
 			//fetch before processing the results
-			prefetch = submitRequestBatch(currentResultMsg.getLastRow() + 1);
+			prefetchStart = System.nanoTime();
+			prefetchEnd = 0;
+			prefetch = submitRequestBatch(currentResultMsg.getLastRow() + 1, getReadAheadSize());
+			prefetch.addCompletionListener(new ResultsFuture.CompletionListener<ResultsMessage>() {
+				@Override
+				public void onCompletion(ResultsFuture<ResultsMessage> future) {
+					prefetchEnd = System.nanoTime();
+				}
+			});
 		}
 		currentResultMsg.processResults();
 		List<?> lastTuple = null;
 		List<List<?>> resultsList = (List<List<?>>) currentResultMsg.getResultsList();
+		if (usePrefetch && !resultsList.isEmpty()) {
+			rowSizeEstimate = estimateRowSize(resultsList.get(0));
+		}
 		//similar logic to BatchCollector on the server side
 		//this is a catch all in case the server doesn't enforce the max
 		//such as currently the case with cached subset results
@@ -0,0 +1,528 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * See the COPYRIGHT.txt file distributed with this work for information
+ * regarding copyright ownership.  Some portions may be licensed
+ * to Red Hat, Inc. under one or more contributor license agreements.
+ * 
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ * 
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA
+ * 02110-1301 USA.
+ */
+
+package org.teiid.net.socket;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.ObjectOutputStream;
+import java.io.OutputStream;
+import java.io.StreamCorruptedException;
+import java.net.InetAddress;
+import java.net.Socket;
+import java.net.SocketAddress;
+import java.net.SocketTimeoutException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.SocketChannel;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import org.teiid.client.util.ResultsFuture;
+import org.teiid.core.types.InputStreamFactory.StreamFactoryReference;
+import org.teiid.core.util.ExternalizeUtil;
+import org.teiid.core.util.NamedThreadFactory;
+import org.teiid.jdbc.JDBCPlugin;
+import org.teiid.net.CommunicationException;
+import org.teiid.netty.handler.codec.serialization.CompactObjectInputStream;
+import org.teiid.netty.handler.codec.serialization.ObjectDecoderInputStream;
+import org.teiid.netty.handler.codec.serialization.ObjectEncoderOutputStream;
+
+/**
+ * A non-blocking {@link ObjectChannelFactory}.  All channels share a single selector thread
+ * that reads and decodes messages, so a connection waiting on results does not hold a thread.
+ * <br>
+ * Decoded messages are handed to the {@link AsynchObjectChannel.MessageListener} on a separate
+ * pool of threads.  Completing a result may run user callbacks, which must not be able to stall
+ * the selector for every other connection or wait on a reply that only the selector can decode.
+ * A failure is delivered only after all prior messages of the channel have been delivered.
+ * <br>
+ * Writes block the calling thread and fail with a {@link SocketTimeoutException} if the
+ * channel does not accept any bytes within the socket timeout.
+ * <br>
+ * The configuration is the same as the {@link OioOjbectChannelFactory}, which is also 
+ * used for ssl connections.
+ */
+public final class NioObjectChannelFactory implements ObjectChannelFactory {
+	
+	private final static int STREAM_BUFFER_SIZE = 1<<15;
+	
+	private static Logger log = Logger.getLogger("org.teiid.client.sockets"); //$NON-NLS-1$
+	
+	private static class Failure {
+		Throwable cause;
+		
+		Failure(Throwable cause) {
+			this.cause = cause;
+		}
+	}
+	
+	final class NioObjectChannel implements AsynchObjectChannel {
+		private final SocketChannel channel;
+		private final ObjectOutputStream outputStream;
+		private final LinkedBlockingQueue<Object> pending = new LinkedBlockingQueue<Object>();
+		private volatile MessageListener listener;
+		//delivery state once there is a listener
+		private final AtomicInteger inFlight = new AtomicInteger();
+		private volatile Failure failure;
+		private final AtomicBoolean failureDelivered = new AtomicBoolean();
+		private Selector writeSelector;
+		private volatile boolean closed;
+		
+		//decoding state - only used by the selector thread
+		private ByteBuffer readBuffer = ByteBuffer.allocate(STREAM_BUFFER_SIZE);
+		private ByteBuffer length = ByteBuffer.allocate(4);
+		private ByteBuffer chunkLength = ByteBuffer.allocate(2);
+		private byte[] body;
+		private int bodyIndex;
+		private Object result;
+		private List<StreamFactoryReference> streams;
+		private int streamIndex;
+		private int remaining = -1;
+		private OutputStream stream;
+
+		private NioObjectChannel(SocketChannel channel) throws IOException {
+			log.fine("creating new NioObjectChannel"); //$NON-NLS-1$
+			this.channel = channel;
+			this.outputStream = new ObjectEncoderOutputStream(new DataOutputStream(new BufferedOutputStream(new ChannelOutputStream(), STREAM_BUFFER_SIZE)), STREAM_BUFFER_SIZE);
+		}
+		
+		/**
+		 * Blocking writes to the non-blocking channel
+		 */
+		private final class ChannelOutputStream extends OutputStream {
+			@Override
+			public void write(int b) throws IOException {
+				write(new byte[] {(byte)b}, 0, 1);
+			}
+			
+			@Override
+			public void write(byte[] b, int off, int len) throws IOException {
+				ByteBuffer buffer = ByteBuffer.wrap(b, off, len);
+				while (buffer.hasRemaining()) {
+					if (channel.write(buffer) == 0) {
+						awaitWritable();
+					}
+				}
+			}
+		}
+		
+		/**
+		 * Wait for the channel to become writable.
+		 * @throws SocketTimeoutException if it is not writable within the socket timeout
+		 */
+		private void awaitWritable() throws IOException {
+			if (writeSelector == null) {
+				writeSelector = Selector.open();
+				channel.register(writeSelector, SelectionKey.OP_WRITE);
+			}
+			int timeout = getSoTimeout();
+			long start = System.currentTimeMillis();
+			while (true) {
+				int selected = writeSelector.select(timeout);
+				writeSelector.selectedKeys().clear();
+				if (closed) {
+					throw new ClosedChannelException();
+				}
+				if (selected > 0 || timeout == 0) {
+					return;
+				}
+				//select may return early if woken
+				if (System.currentTimeMillis() - start >= timeout) {
+					throw new SocketTimeoutException();
+				}
+			}
+		}
+
+		@Override
+		public void close() {
+			if (closed) {
+				return;
+			}
+			log.finer("closing channel"); //$NON-NLS-1$
+			closed = true;
+			try {
+				channel.close();
+			} catch (IOException e) {
+				// ignore
+			}
+			if (writeSelector != null) {
+				try {
+					writeSelector.close();
+				} catch (IOException e) {
+					// ignore
+				}
+			}
+			if (stream != null) {
+				try {
+					stream.close();
+				} catch (IOException e) {
+					// ignore
+				}
+			}
+			if (listener == null) {
+				//wake any reader
+				pending.add(new Failure(new EOFException()));
+			}
+		}
+
+		@Override
+		public SocketAddress getRemoteAddress() {
+			return channel.socket().getRemoteSocketAddress();
+		}
+		
+		@Override
+		public InetAddress getLocalAddress() {
+			return channel.socket().getLocalAddress();
+		}
+
+		@Override
+		public boolean isOpen() {
+			return channel.isOpen();
+		}
+		
+		@Override
+		public void setMessageListener(MessageListener messageListener) {
+			synchronized (pending) {
+				this.listener = messageListener;
+				Object msg = null;
+				while ((msg = pending.poll()) != null) {
+					dispatch(msg);
+				}
+			}
+		}
+
+		/**
+		 * Only valid prior to setting a {@link MessageListener}
+		 */
+		@Override
+		public Object read() throws IOException, ClassNotFoundException {
+			log.finer("reading message from channel"); //$NON-NLS-1$
+			Object msg = null;
+			try {
+				msg = pending.poll(getSoTimeout(), TimeUnit.MILLISECONDS);
+			} catch (InterruptedException e) {
+				throw new InterruptedIOException();
+			}
+			if (msg == null) {
+				Long timeout = OioOjbectChannelFactory.TIMEOUTS.get();
+				if (timeout != null && timeout < System.currentTimeMillis()) {
+					OioOjbectChannelFactory.TIMEOUTS.set(null);
+					throw new InterruptedIOException(JDBCPlugin.Util.gs(JDBCPlugin.Event.TEIID20035));
+				}
+				throw new SocketTimeoutException();
+			}
+			if (msg instanceof Failure) {
+				Throwable t = ((Failure)msg).cause;
+				if (t instanceof ClassNotFoundException) {
+					throw (ClassNotFoundException)t;
+				}
+				if (t instanceof IOException) {
+					throw (IOException)t;
+				}
+				throw new IOException(t);
+			}
+			return msg;
+		}
+
+		@Override
+		public synchronized Future<?> write(Object msg) {
+			log.finer("writing message to channel"); //$NON-NLS-1$
+		    ResultsFuture<Void> result = new ResultsFuture<Void>();
+		    try {
+		        outputStream.writeObject(msg);
+		        outputStream.flush();     
+		    	result.getResultsReceiver().receiveResults(null);
+		    } catch (IOException e) {
+		        close();
+		    	result.getResultsReceiver().exceptionOccurred(e);
+		    }
+		    return result;
+		}
+		
+		private void deliver(Object msg) {
+			synchronized (pending) {
+				if (listener == null) {
+					pending.add(msg);
+					return;
+				}
+			}
+			dispatch(msg);
+		}
+		
+		/**
+		 * Hand the message to the listener on the executor.  The listener 
+		 * is never called by the selector thread or while holding the pending lock. 
+		 */
+		private void dispatch(Object msg) {
+			if (msg instanceof Failure) {
+				failure = (Failure)msg;
+				if (inFlight.get() == 0) {
+					dispatchFailure();
+				}
+				return;
+			}
+			final Object toDeliver = msg;
+			inFlight.incrementAndGet();
+			executor.execute(new Runnable() {
+				@Override
+				public void run() {
+					try {
+						listener.receivedMessage(toDeliver);
+					} finally {
+						if (inFlight.decrementAndGet() == 0 && failure != null) {
+							dispatchFailure();
+						}
+					}
+				}
+			});
+		}
+		
+		private void dispatchFailure() {
+			if (!failureDelivered.compareAndSet(false, true)) {
+				return;
+			}
+			executor.execute(new Runnable() {
+				@Override
+				public void run() {
+					listener.exceptionOccurred(failure.cause);
+				}
+			});
+		}
+		
+		void failed(Throwable t) {
+			if (!closed) {
+				deliver(new Failure(t));
+			}
+			close();
+		}
+		
+		void readAvailable() throws IOException, ClassNotFoundException {
+			int read = channel.read(readBuffer);
+			if (read < 0) {
+				throw new EOFException();
+			}
+			readBuffer.flip();
+			try {
+				while (decode()) {
+					//continue with the next message
+				}
+			} finally {
+				readBuffer.compact();
+			}
+		}
+		
+		/**
+		 * Decode using the same format as the {@link ObjectDecoderInputStream}, but
+		 * without blocking for more bytes.
+		 * @return true if a message was delivered 
+		 */
+		private boolean decode() throws IOException, ClassNotFoundException {
+			if (result == null) {
+				if (body == null) {
+					if (!fill(length)) {
+						return false;
+					}
+					length.flip();
+					int size = length.getInt();
+					length.clear();
+					if (size <= 0) {
+						throw new StreamCorruptedException("invalid data length: " + size); //$NON-NLS-1$
+					}
+					if (size > getMaxObjectSize()) {
+						throw new StreamCorruptedException(JDBCPlugin.Util.gs(JDBCPlugin.Event.TEIID20028, size, getMaxObjectSize()));
+					}
+					body = new byte[size];
+					bodyIndex = 0;
+				}
+				int toRead = Math.min(body.length - bodyIndex, readBuffer.remaining());
+				readBuffer.get(body, bodyIndex, toRead);
+				bodyIndex += toRead;
+				if (bodyIndex < body.length) {
+					return false;
+				}
+				CompactObjectInputStream cois = new CompactObjectInputStream(new ByteArrayInputStream(body), classLoader);
+				body = null;
+				result = cois.readObject();
+				streams = ExternalizeUtil.readList(cois, StreamFactoryReference.class);
+				streamIndex = 0;
+			}
+			while (streamIndex < streams.size()) {
+				if (remaining < 0) {
+					if (!fill(chunkLength)) {
+						return false;
+					}
+					chunkLength.flip();
+					//the server sends chunks of up to 2^16 - 1 bytes
+					remaining = chunkLength.getShort() & 0xffff;
+					chunkLength.clear();
+					if (stream == null) {
+						stream = ObjectDecoderInputStream.createTempStream(streams.get(streamIndex));
+					}
+					if (remaining == 0) {
+						stream.close();
+						stream = null;
+						streamIndex++;
+						remaining = -1;
+						continue;
+					}
+				}
+				int toWrite = Math.min(remaining, readBuffer.remaining());
+				if (toWrite == 0) {
+					return false;
+				}
+				stream.write(readBuffer.array(), readBuffer.arrayOffset() + readBuffer.position(), toWrite);
+				readBuffer.position(readBuffer.position() + toWrite);
+				remaining -= toWrite;
+				if (remaining == 0) {
+					remaining = -1;
+				}
+			}
+			Object toReturn = result;
+			result = null;
+			streams = null;
+			deliver(toReturn);
+			return true;
+		}
+		
+		private boolean fill(ByteBuffer target) {
+			while (target.hasRemaining() && readBuffer.hasRemaining()) {
+				target.put(readBuffer.get());
+			}
+			return !target.hasRemaining();
+		}
+	}
+	
+	private OioOjbectChannelFactory oioFactory;
+	private ClassLoader classLoader = this.getClass().getClassLoader();
+	private Selector selector;
+	private ConcurrentLinkedQueue<NioObjectChannel> registrations = new ConcurrentLinkedQueue<NioObjectChannel>();
+	//unbounded so that a blocked callback cannot hold up delivery to other callbacks
+	private ThreadPoolExecutor executor = new ThreadPoolExecutor(0, Integer.MAX_VALUE, 60L, TimeUnit.SECONDS, new SynchronousQueue<Runnable>(), new NamedThreadFactory("Teiid Client Listener")); //$NON-NLS-1$
+	
+	public NioObjectChannelFactory(Properties props) {
+		this.oioFactory = new OioOjbectChannelFactory(props);
+	}
+
+	@Override
+	public ObjectChannel createObjectChannel(SocketAddress address, boolean ssl) throws IOException,
+			CommunicationException {
+		if (ssl) {
+			return oioFactory.createObjectChannel(address, ssl);
+		}
+		SocketChannel channel = SocketChannel.open();
+		Socket socket = channel.socket();
+		if (oioFactory.getReceiveBufferSize() > 0) {
+			socket.setReceiveBufferSize(oioFactory.getReceiveBufferSize());
+		}
+		if (oioFactory.getSendBufferSize() > 0) {
+			socket.setSendBufferSize(oioFactory.getSendBufferSize());
+		}
+		socket.setTcpNoDelay(!oioFactory.isConserveBandwidth()); // enable Nagle's algorithm to conserve bandwidth
+		try {
+			channel.connect(address);
+			channel.configureBlocking(false);
+		} catch (IOException e) {
+			channel.close();
+			throw e;
+		}
+		NioObjectChannel result = new NioObjectChannel(channel);
+		registrations.add(result);
+		getSelector().wakeup();
+		return result;
+	}
+	
+	private synchronized Selector getSelector() throws IOException {
+		if (selector == null) {
+			selector = Selector.open();
+			Thread selectorThread = new Thread(new Runnable() {
+				@Override
+				public void run() {
+					select();
+				}
+			}, "Teiid Client Selector"); //$NON-NLS-1$
+			selectorThread.setDaemon(true);
+			selectorThread.start();
+		}
+		return selector;
+	}
+	
+	private void select() {
+		while (selector.isOpen()) {
+			try {
+				selector.select();
+				NioObjectChannel toRegister = null;
+				while ((toRegister = registrations.poll()) != null) {
+					try {
+						toRegister.channel.register(selector, SelectionKey.OP_READ, toRegister);
+					} catch (ClosedChannelException e) {
+						toRegister.failed(e);
+					}
+				}
+				Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+				while (keys.hasNext()) {
+					SelectionKey key = keys.next();
+					keys.remove();
+					NioObjectChannel channel = (NioObjectChannel)key.attachment();
+					if (!key.isValid() || !key.isReadable()) {
+						continue;
+					}
+					try {
+						channel.readAvailable();
+					} catch (Throwable e) {
+						key.cancel();
+						channel.failed(e);
+					}
+				}
+			} catch (IOException e) {
+				log.log(Level.WARNING, "Unexpected selector exception", e); //$NON-NLS-1$
+			}
+		}
+	}
+	
+	@Override
+	public int getSoTimeout() {
+		return oioFactory.getSoTimeout();
+	}
+	
+	int getMaxObjectSize() {
+		return oioFactory.getMaxObjectSize();
+	}
+
+}
@@ -150,6 +150,7 @@ public class SocketServerConnectionFactory implements ServerConnectionFactory, S
 	private int maxCachedInstances=16;
 
 	private boolean disablePing;
+	private boolean nonBlockingIO;
 
 	public static synchronized SocketServerConnectionFactory getInstance() {
 		if (INSTANCE == null) {
@@ -182,9 +183,24 @@ public class SocketServerConnectionFactory implements ServerConnectionFactory, S
 		this.disablePing = disable;
 	}
 	
+	/**
+	 * Use a shared selector rather than a blocked thread per connection to read results
+	 */
+	public void setNonBlockingIO(boolean nonBlockingIO) {
+		this.nonBlockingIO = nonBlockingIO;
+	}
+	
+	public boolean isNonBlockingIO() {
+		return nonBlockingIO;
+	}
+	
 	public void initialize(Properties info) {
 		PropertiesUtils.setBeanProperties(this, info, "org.teiid.sockets"); //$NON-NLS-1$
-		this.channelFactory = new OioOjbectChannelFactory(info);
+		if (nonBlockingIO) {
+			this.channelFactory = new NioObjectChannelFactory(info);
+		} else {
+			this.channelFactory = new OioOjbectChannelFactory(info);
+		}
 
 		if (disablePing) {
 			return;
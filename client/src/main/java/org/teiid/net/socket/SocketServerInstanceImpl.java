@@ -24,6 +24,7 @@ package org.teiid.net.socket;
 
 import java.io.EOFException;
 import java.io.IOException;
+import java.io.InterruptedIOException;
 import java.io.InvalidClassException;
 import java.io.Serializable;
 import java.lang.reflect.InvocationHandler;
@@ -95,6 +96,21 @@ public class SocketServerInstanceImpl implements SocketServerInstance {
         this.socketChannel = channelFactory.createObjectChannel(new InetSocketAddress(info.getInetAddress(), info.getPortNumber()), info.isSsl());
         try {
         	doHandshake();
+        	if (this.socketChannel instanceof AsynchObjectChannel) {
+        		//results are delivered by the channel, no reader thread is needed
+        		((AsynchObjectChannel)this.socketChannel).setMessageListener(new AsynchObjectChannel.MessageListener() {
+					
+					@Override
+					public void receivedMessage(Object msg) {
+						SocketServerInstanceImpl.this.receivedMessage(msg);
+					}
+					
+					@Override
+					public void exceptionOccurred(Throwable t) {
+						SocketServerInstanceImpl.this.exceptionOccurred(t);
+					}
+				});
+        	}
         } catch (CommunicationException e) {
         	this.socketChannel.close();
         	throw e;
@@ -289,6 +305,11 @@ public class SocketServerInstanceImpl implements SocketServerInstance {
     }
     
     public void read(long timeout, TimeUnit unit, ResultsFuture<?> future) throws TimeoutException, InterruptedException {
+    	if (this.socketChannel instanceof AsynchObjectChannel) {
+    		//the caller will wait on the future, but the login timeout is checked by the channel read in oio mode
+    		awaitLoginTimeout(unit.toMillis(timeout), future);
+    		return;
+    	}
     	long timeoutMillis = (int)Math.min(unit.toMillis(timeout), Integer.MAX_VALUE);
 		long start = System.currentTimeMillis();
 		while (!future.isDone()) {
@@ -327,6 +348,28 @@ public class SocketServerInstanceImpl implements SocketServerInstance {
 		}
     }
     
+    /**
+     * If a login timeout is set and would expire before the given timeout, wait for the future 
+     * until the login timeout and then fail the pending requests as the blocking read would.
+     */
+    private void awaitLoginTimeout(long timeoutMillis, ResultsFuture<?> future) throws InterruptedException {
+    	Long loginTimeout = OioOjbectChannelFactory.TIMEOUTS.get();
+    	if (loginTimeout == null || loginTimeout - System.currentTimeMillis() >= timeoutMillis) {
+    		return;
+    	}
+    	synchronized (future) {
+    		long wait = loginTimeout - System.currentTimeMillis();
+    		while (!future.isDone() && wait > 0) {
+    			future.wait(wait);
+    			wait = loginTimeout - System.currentTimeMillis();
+    		}
+    	}
+    	if (!future.isDone()) {
+    		OioOjbectChannelFactory.TIMEOUTS.set(null);
+    		exceptionOccurred(new InterruptedIOException(JDBCPlugin.Util.gs(JDBCPlugin.Event.TEIID20035)));
+    	}
+    }
+    
 	@Override
 	public synchronized <T> T getService(Class<T> iface) {
 		Object service = this.serviceMap.get(iface);
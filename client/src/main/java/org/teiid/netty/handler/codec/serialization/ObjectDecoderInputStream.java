@@ -119,23 +119,7 @@ public class ObjectDecoderInputStream extends ObjectInputStream {
 		        }
     		}
 	        if (stream == null) {
-	        	final File f = File.createTempFile("teiid", null); //$NON-NLS-1$
-		        StreamFactoryReference sfr = streams.get(streamIndex);
-		        sfr.setStreamFactory(new InputStreamFactory() {
-					
-					@Override
-					public InputStream getInputStream() throws IOException {
-						return new BufferedInputStream(new FileInputStream(f)) {
-							@Override
-							protected void finalize() throws Throwable {
-								super.finalize();
-								f.delete();
-							}
-						};
-					}
-					
-				});
-		        this.stream = new FileOutputStream(f);
+		        this.stream = createTempStream(streams.get(streamIndex));
 	        }
         	foundLength = false;
 	        if (remaining != 0) {
@@ -161,6 +145,28 @@ public class ObjectDecoderInputStream extends ObjectInputStream {
         return toReturn;
     }
     
+    /**
+     * Create a temporary file backed stream for the chunked contents of the given reference
+     */
+    public static OutputStream createTempStream(StreamFactoryReference sfr) throws IOException {
+    	final File f = File.createTempFile("teiid", null); //$NON-NLS-1$
+        sfr.setStreamFactory(new InputStreamFactory() {
+			
+			@Override
+			public InputStream getInputStream() throws IOException {
+				return new BufferedInputStream(new FileInputStream(f)) {
+					@Override
+					protected void finalize() throws Throwable {
+						super.finalize();
+						f.delete();
+					}
+				};
+			}
+			
+		});
+        return new FileOutputStream(f);
+    }
+    
     void clearRemaining() throws IOException {
     	while (remaining > 0) {
     		remaining -= in.skip(remaining);
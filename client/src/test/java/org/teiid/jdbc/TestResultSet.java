@@ -34,7 +34,10 @@ import java.sql.Types;
 import java.util.*;
 
 import org.junit.Test;
+import org.mockito.Matchers;
 import org.mockito.Mockito;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
 import org.teiid.client.DQP;
 import org.teiid.client.ResultsMessage;
 import org.teiid.client.lob.LobChunk;
@@ -702,6 +705,39 @@ public class TestResultSet {
         assertTrue(cs.isAfterLast());
         cs.close();      
     }
+
+    @Test public void testForwardOnlyAdaptiveReadAhead() throws Exception {
+    	StatementImpl statement = createMockStatement(ResultSet.TYPE_FORWARD_ONLY);
+    	stub(statement.getFetchSize()).toReturn(10);
+    	stub(statement.getDQP().processCursorRequest(Matchers.eq(TestAllResultsImpl.REQUEST_ID), Matchers.anyInt(), Matchers.anyInt())).toAnswer(new Answer<ResultsFuture<ResultsMessage>>() {
+			@Override
+			public ResultsFuture<ResultsMessage> answer(
+					InvocationOnMock invocation) throws Throwable {
+				//simulate a slow network - the client always has to wait for the prefetch
+				ResultsFuture<ResultsMessage> nextBatch = new ResultsFuture<ResultsMessage>() {
+					@Override
+					public synchronized boolean isDone() {
+						return false;
+					}
+				};
+				int begin = (Integer)invocation.getArguments()[1];
+				int length = Math.min((Integer)invocation.getArguments()[2], 100 - begin + 1);
+				nextBatch.getResultsReceiver().receiveResults(TestAllResultsImpl.exampleResultsMsg4(begin, length, begin + length - 1 >= 100));
+				return nextBatch;
+			}
+		});
+    	ResultSetImpl cs = new ResultSetImpl(TestAllResultsImpl.exampleResultsMsg4(1, 10, false), statement);
+    	int count = 0;
+    	while (cs.next()) {
+    		assertEquals(++count, cs.getObject(1));
+    	}
+    	assertEquals(100, count);
+    	Mockito.verify(statement.getDQP()).processCursorRequest(TestAllResultsImpl.REQUEST_ID, 11, 10);
+    	Mockito.verify(statement.getDQP()).processCursorRequest(TestAllResultsImpl.REQUEST_ID, 21, 20);
+    	Mockito.verify(statement.getDQP()).processCursorRequest(TestAllResultsImpl.REQUEST_ID, 41, 40);
+    	Mockito.verify(statement.getDQP()).processCursorRequest(TestAllResultsImpl.REQUEST_ID, 81, 40);
+    	cs.close();
+    }
     
     @Test public void testOutputParameter() throws Exception {
         StatementImpl statement = createMockStatement(ResultSet.TYPE_FORWARD_ONLY);
@@ -0,0 +1,253 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * See the COPYRIGHT.txt file distributed with this work for information
+ * regarding copyright ownership.  Some portions may be licensed
+ * to Red Hat, Inc. under one or more contributor license agreements.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA
+ * 02110-1301 USA.
+ */
+
+package org.teiid.net.socket;
+
+import static org.junit.Assert.*;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.StreamCorruptedException;
+import java.io.StringReader;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.Charset;
+import java.util.Arrays;
+import java.util.Properties;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.teiid.core.types.ClobImpl;
+import org.teiid.core.types.InputStreamFactory;
+import org.teiid.core.types.Streamable;
+import org.teiid.core.util.ReaderInputStream;
+import org.teiid.net.socket.AsynchObjectChannel.MessageListener;
+import org.teiid.netty.handler.codec.serialization.ObjectEncoderOutputStream;
+
+@SuppressWarnings("nls")
+public class TestNioObjectChannelFactory {
+
+	private static final class QueueListener implements MessageListener {
+		LinkedBlockingQueue<Object> received = new LinkedBlockingQueue<Object>();
+		volatile String threadName;
+
+		@Override
+		public void receivedMessage(Object msg) {
+			threadName = Thread.currentThread().getName();
+			received.add(msg);
+		}
+
+		@Override
+		public void exceptionOccurred(Throwable t) {
+			received.add(t);
+		}
+
+		Object next() throws InterruptedException {
+			Object result = received.poll(5, TimeUnit.SECONDS);
+			assertNotNull("no message received", result);
+			return result;
+		}
+	}
+
+	private ServerSocket serverSocket;
+	private NioObjectChannelFactory factory;
+
+	@Before public void setUp() throws Exception {
+		serverSocket = new ServerSocket(0, 50, InetAddress.getByName("localhost"));
+		factory = new NioObjectChannelFactory(new Properties());
+	}
+
+	@After public void tearDown() throws Exception {
+		serverSocket.close();
+	}
+
+	private AsynchObjectChannel connect() throws Exception {
+		return (AsynchObjectChannel)factory.createObjectChannel(new InetSocketAddress(serverSocket.getInetAddress(), serverSocket.getLocalPort()), false);
+	}
+
+	static byte[] encode(Object... objects) throws IOException {
+		ByteArrayOutputStream baos = new ByteArrayOutputStream();
+		ObjectEncoderOutputStream out = new ObjectEncoderOutputStream(new DataOutputStream(baos), 512);
+		for (Object object : objects) {
+			out.writeObject(object);
+		}
+		out.flush();
+		return baos.toByteArray();
+	}
+
+	@Test public void testFrameSplitAcrossReads() throws Exception {
+		AsynchObjectChannel channel = connect();
+		Socket socket = serverSocket.accept();
+		QueueListener listener = new QueueListener();
+		channel.setMessageListener(listener);
+
+		byte[] bytes = encode(Arrays.asList(1, 2, 3));
+		OutputStream os = socket.getOutputStream();
+		//split both the length prefix and the body
+		for (int i = 0; i < bytes.length; i+=3) {
+			os.write(bytes, i, Math.min(3, bytes.length - i));
+			os.flush();
+			Thread.sleep(5);
+		}
+		assertEquals(Arrays.asList(1, 2, 3), listener.next());
+		assertFalse(listener.threadName.startsWith("Teiid Client Selector"));
+		channel.close();
+		socket.close();
+	}
+
+	@Test public void testMultipleMessagesInOneRead() throws Exception {
+		AsynchObjectChannel channel = connect();
+		Socket socket = serverSocket.accept();
+		QueueListener listener = new QueueListener();
+		channel.setMessageListener(listener);
+
+		socket.getOutputStream().write(encode("a", "b", "c"));
+
+		//delivery is not ordered, so just check the set of messages
+		String[] results = new String[] {(String)listener.next(), (String)listener.next(), (String)listener.next()};
+		Arrays.sort(results);
+		assertArrayEquals(new String[] {"a", "b", "c"}, results);
+		channel.close();
+		socket.close();
+	}
+
+	@Test public void testReadBeforeListener() throws Exception {
+		AsynchObjectChannel channel = connect();
+		Socket socket = serverSocket.accept();
+		socket.getOutputStream().write(encode("handshake", "next"));
+		assertEquals("handshake", channel.read());
+
+		QueueListener listener = new QueueListener();
+		channel.setMessageListener(listener);
+		assertEquals("next", listener.next());
+		channel.close();
+		socket.close();
+	}
+
+	@Test public void testLobStream() throws Exception {
+		AsynchObjectChannel channel = connect();
+		Socket socket = serverSocket.accept();
+		QueueListener listener = new QueueListener();
+		channel.setMessageListener(listener);
+
+		char[] chars = new char[100000];
+		Arrays.fill(chars, 'x');
+		final String value = new String(chars);
+		ClobImpl clob = new ClobImpl(new InputStreamFactory() {
+			@Override
+			public InputStream getInputStream() throws IOException {
+				return new ReaderInputStream(new StringReader(value), Charset.forName(Streamable.ENCODING));
+			}
+		}, -1);
+
+		byte[] bytes = encode(clob, "after");
+		OutputStream os = socket.getOutputStream();
+		//write in uneven pieces so that chunk boundaries land in different reads
+		for (int i = 0; i < bytes.length; i+=7001) {
+			os.write(bytes, i, Math.min(7001, bytes.length - i));
+			os.flush();
+		}
+		Object first = listener.next();
+		Object second = listener.next();
+		ClobImpl result = (ClobImpl)(first instanceof ClobImpl?first:second);
+		assertEquals("after", first instanceof ClobImpl?second:first);
+		assertEquals(value, result.getSubString(1, chars.length));
+		channel.close();
+		socket.close();
+	}
+
+	@Test public void testEOFAfterMessages() throws Exception {
+		AsynchObjectChannel channel = connect();
+		Socket socket = serverSocket.accept();
+		QueueListener listener = new QueueListener();
+		channel.setMessageListener(listener);
+
+		socket.getOutputStream().write(encode("a", "b"));
+		socket.close();
+
+		//the failure is delivered after the messages
+		assertTrue(listener.next() instanceof String);
+		assertTrue(listener.next() instanceof String);
+		assertTrue(listener.next() instanceof EOFException);
+		assertNull(listener.received.poll(100, TimeUnit.MILLISECONDS));
+		assertFalse(channel.isOpen());
+	}
+
+	@Test public void testCorruptLength() throws Exception {
+		AsynchObjectChannel channel = connect();
+		Socket socket = serverSocket.accept();
+		QueueListener listener = new QueueListener();
+		channel.setMessageListener(listener);
+
+		new DataOutputStream(socket.getOutputStream()).writeInt(-1);
+		assertTrue(listener.next() instanceof StreamCorruptedException);
+		socket.close();
+	}
+
+	@Test public void testBlockedListener() throws Exception {
+		AsynchObjectChannel channel = connect();
+		Socket socket = serverSocket.accept();
+		AsynchObjectChannel channel1 = connect();
+		Socket socket1 = serverSocket.accept();
+
+		final CountDownLatch blocked = new CountDownLatch(1);
+		final CountDownLatch release = new CountDownLatch(1);
+		channel.setMessageListener(new MessageListener() {
+			@Override
+			public void receivedMessage(Object msg) {
+				blocked.countDown();
+				try {
+					release.await();
+				} catch (InterruptedException e) {
+				}
+			}
+
+			@Override
+			public void exceptionOccurred(Throwable t) {
+			}
+		});
+		QueueListener listener = new QueueListener();
+		channel1.setMessageListener(listener);
+
+		socket.getOutputStream().write(encode("a"));
+		assertTrue(blocked.await(5, TimeUnit.SECONDS));
+		//a callback that blocks must not prevent delivery on this or any other channel
+		socket1.getOutputStream().write(encode("b"));
+		assertEquals("b", listener.next());
+		release.countDown();
+		channel.close();
+		channel1.close();
+		socket.close();
+		socket1.close();
+	}
+
+}
@@ -32,7 +32,9 @@ import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
 import java.util.Properties;
+import java.util.concurrent.ExecutionException;
 import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
 
 import org.junit.Test;
@@ -115,6 +117,19 @@ public class TestSocketServerInstanceImpl {
 		
 	}
 
+	private static class FakeAsynchObjectChannel extends FakeObjectChannel implements AsynchObjectChannel {
+		MessageListener listener;
+		
+		public FakeAsynchObjectChannel(List<? extends Object> readMsgs) {
+			super(readMsgs);
+		}
+		
+		@Override
+		public void setMessageListener(MessageListener messageListener) {
+			this.listener = messageListener;
+		}
+	}
+
 	@Test public void testHandshakeTimeout() throws Exception {
 		SocketTimeoutException[] exs = new SocketTimeoutException[1];
 		Arrays.fill(exs, new SocketTimeoutException());
@@ -151,4 +166,43 @@ public class TestSocketServerInstanceImpl {
 		}
 	}
 	
+	@Test public void testAsynchChannel() throws Exception {
+		final FakeAsynchObjectChannel channel = new FakeAsynchObjectChannel(Arrays.asList(new Handshake()));
+		
+		SocketServerInstanceImpl instance = createInstance(channel);
+		assertNotNull(channel.listener);
+		
+		ILogon logon = instance.getService(ILogon.class);
+		ResultsFuture<?> result = logon.ping();
+		assertFalse(result.isDone());
+		
+		//the result is delivered by the channel without a read
+		Message message = (Message)channel.msgs.get(1);
+		Message reply = new Message();
+		reply.setMessageKey(message.getMessageKey());
+		reply.setContents("pong");
+		channel.listener.receivedMessage(reply);
+		assertEquals("pong", result.get(1, TimeUnit.SECONDS));
+		assertEquals(1, channel.readCount);
+	}
+	
+	@Test public void testAsynchChannelLoginTimeout() throws Exception {
+		final FakeAsynchObjectChannel channel = new FakeAsynchObjectChannel(Arrays.asList(new Handshake()));
+		
+		SocketServerInstanceImpl instance = createInstance(channel);
+		
+		ILogon logon = instance.getService(ILogon.class);
+		ResultsFuture<?> result = logon.ping();
+		OioOjbectChannelFactory.TIMEOUTS.set(System.currentTimeMillis() + 50);
+		try {
+			//the login timeout must be enforced even though no read is performed
+			result.get(10, TimeUnit.SECONDS);
+			fail("expected exception");
+		} catch (ExecutionException e) {
+			assertNull(OioOjbectChannelFactory.TIMEOUTS.get());
+		} finally {
+			OioOjbectChannelFactory.TIMEOUTS.set(null);
+		}
+	}
+	
 }
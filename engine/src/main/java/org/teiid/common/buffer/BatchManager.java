@@ -36,6 +36,11 @@ public interface BatchManager {
 	
 	void remove(Long batch);
 	
+	/**
+	 * Release the batch from memory, writing it to storage if needed
+	 */
+	void evict(Long batch);
+	
 	void setPrefersMemory(boolean prefers);
 	
 	boolean prefersMemory();
@@ -49,4 +54,10 @@ public interface BatchManager {
 	String[] getTypes();
 	
 	int getRowSizeEstimate();
+	
+	/**
+	 * Get the batch size appropriate for the row size estimate of the batches 
+	 * added so far, or the nominal batch size if there is no estimate yet.
+	 */
+	int getProcessorBatchSize();
 }
@@ -72,6 +72,13 @@ public interface BufferManager extends StorageManager, TupleBufferCache {
      */
     int getProcessorBatchSize(List<? extends Expression> schema);
     
+    /**
+     * Get the batch size to use during query processing adjusted by the actual size
+     * of the sample rows if adaptive batch sizing is enabled.  
+     * @return Batch size (# of rows)
+     */
+    int getProcessorBatchSize(List<? extends Expression> schema, List<? extends List<?>> sample);
+    
     /**
      * Get the nominal batch size target
      * @return
@@ -0,0 +1,383 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * See the COPYRIGHT.txt file distributed with this work for information
+ * regarding copyright ownership.  Some portions may be licensed
+ * to Red Hat, Inc. under one or more contributor license agreements.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA
+ * 02110-1301 USA.
+ */
+
+package org.teiid.common.buffer;
+
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.RandomAccess;
+
+import org.teiid.core.types.DataTypeManager;
+
+/**
+ * An immutable column oriented batch of rows.
+ * <br>
+ * Fixed width types are held in primitive arrays with a null bitmap, all other
+ * types are held in Object arrays.  The batch is itself a list of rows so that
+ * it may be used anywhere a row based batch is expected.  Each row obtained
+ * from the list is an unmodifiable view that boxes fixed width values on access, so
+ * a consumer that retains rows, such as a {@link TupleBuffer}, should {@link #copy(List)}
+ * them so that the whole batch is not held in memory.
+ */
+public final class ColumnarBatch extends AbstractList<List<?>> implements RandomAccess {
+
+	private final Class<?>[] types;
+	private final Object[] columns;
+	private final long[][] nulls;
+	private final int rowCount;
+
+	private ColumnarBatch(Class<?>[] types, int rowCount) {
+		this.types = types;
+		this.rowCount = rowCount;
+		this.columns = new Object[types.length];
+		this.nulls = new long[types.length][];
+	}
+
+	/**
+	 * Return true if the type may be held in a primitive array
+	 */
+	public static boolean isFixedWidth(Class<?> type) {
+		return type == DataTypeManager.DefaultDataClasses.INTEGER
+			|| type == DataTypeManager.DefaultDataClasses.LONG
+			|| type == DataTypeManager.DefaultDataClasses.DOUBLE
+			|| type == DataTypeManager.DefaultDataClasses.FLOAT
+			|| type == DataTypeManager.DefaultDataClasses.SHORT
+			|| type == DataTypeManager.DefaultDataClasses.BYTE
+			|| type == DataTypeManager.DefaultDataClasses.CHAR
+			|| type == DataTypeManager.DefaultDataClasses.BOOLEAN;
+	}
+
+	/**
+	 * Create a columnar copy of the given rows.
+	 * @return the batch or null if none of the types are fixed width
+	 */
+	public static ColumnarBatch create(Class<?>[] types, List<? extends List<?>> rows) {
+		boolean fixedWidth = false;
+		for (Class<?> type : types) {
+			if (isFixedWidth(type)) {
+				fixedWidth = true;
+				break;
+			}
+		}
+		if (!fixedWidth) {
+			return null;
+		}
+		int rowCount = rows.size();
+		ColumnarBatch result = new ColumnarBatch(types, rowCount);
+		for (int col = 0; col < types.length; col++) {
+			result.columns[col] = newColumn(types[col], rowCount);
+			if (isFixedWidth(types[col])) {
+				result.nulls[col] = new long[(rowCount + 63) >> 6];
+			}
+		}
+		for (int row = 0; row < rowCount; row++) {
+			List<?> tuple = rows.get(row);
+			for (int col = 0; col < types.length; col++) {
+				result.setValue(row, col, tuple.get(col));
+			}
+		}
+		return result;
+	}
+
+	private static Object newColumn(Class<?> type, int rowCount) {
+		if (type == DataTypeManager.DefaultDataClasses.INTEGER) {
+			return new int[rowCount];
+		}
+		if (type == DataTypeManager.DefaultDataClasses.LONG) {
+			return new long[rowCount];
+		}
+		if (type == DataTypeManager.DefaultDataClasses.DOUBLE) {
+			return new double[rowCount];
+		}
+		if (type == DataTypeManager.DefaultDataClasses.FLOAT) {
+			return new float[rowCount];
+		}
+		if (type == DataTypeManager.DefaultDataClasses.SHORT) {
+			return new short[rowCount];
+		}
+		if (type == DataTypeManager.DefaultDataClasses.BYTE) {
+			return new byte[rowCount];
+		}
+		if (type == DataTypeManager.DefaultDataClasses.CHAR) {
+			return new char[rowCount];
+		}
+		if (type == DataTypeManager.DefaultDataClasses.BOOLEAN) {
+			return new boolean[rowCount];
+		}
+		return new Object[rowCount];
+	}
+
+	private void setValue(int row, int col, Object value) {
+		Object column = columns[col];
+		if (column instanceof Object[]) {
+			((Object[])column)[row] = value;
+			return;
+		}
+		if (value == null) {
+			nulls[col][row >> 6] |= 1L << row;
+			return;
+		}
+		Class<?> type = types[col];
+		if (type == DataTypeManager.DefaultDataClasses.INTEGER) {
+			((int[])column)[row] = (Integer)value;
+		} else if (type == DataTypeManager.DefaultDataClasses.LONG) {
+			((long[])column)[row] = (Long)value;
+		} else if (type == DataTypeManager.DefaultDataClasses.DOUBLE) {
+			((double[])column)[row] = (Double)value;
+		} else if (type == DataTypeManager.DefaultDataClasses.FLOAT) {
+			((float[])column)[row] = (Float)value;
+		} else if (type == DataTypeManager.DefaultDataClasses.SHORT) {
+			((short[])column)[row] = (Short)value;
+		} else if (type == DataTypeManager.DefaultDataClasses.BYTE) {
+			((byte[])column)[row] = (Byte)value;
+		} else if (type == DataTypeManager.DefaultDataClasses.CHAR) {
+			((char[])column)[row] = (Character)value;
+		} else {
+			((boolean[])column)[row] = (Boolean)value;
+		}
+	}
+
+	/**
+	 * Create a batch of the given columns, which shares the column storage with this batch
+	 * @param columnIndexes
+	 */
+	public ColumnarBatch project(int[] columnIndexes) {
+		Class<?>[] projectedTypes = new Class<?>[columnIndexes.length];
+		for (int i = 0; i < columnIndexes.length; i++) {
+			projectedTypes[i] = types[columnIndexes[i]];
+		}
+		ColumnarBatch result = new ColumnarBatch(projectedTypes, rowCount);
+		for (int i = 0; i < columnIndexes.length; i++) {
+			result.columns[i] = columns[columnIndexes[i]];
+			result.nulls[i] = nulls[columnIndexes[i]];
+		}
+		return result;
+	}
+
+	/**
+	 * Create a batch of the given rows and columns.
+	 * @param rowIndexes the ascending selected rows
+	 * @param count the number of valid entries in rowIndexes
+	 * @param columnIndexes
+	 */
+	public ColumnarBatch select(int[] rowIndexes, int count, int[] columnIndexes) {
+		Class<?>[] projectedTypes = new Class<?>[columnIndexes.length];
+		for (int i = 0; i < columnIndexes.length; i++) {
+			projectedTypes[i] = types[columnIndexes[i]];
+		}
+		ColumnarBatch result = new ColumnarBatch(projectedTypes, count);
+		for (int i = 0; i < columnIndexes.length; i++) {
+			int col = columnIndexes[i];
+			Object column = columns[col];
+			Object selected = newColumn(projectedTypes[i], count);
+			if (column instanceof Object[]) {
+				Object[] source = (Object[])column;
+				Object[] target = (Object[])selected;
+				for (int j = 0; j < count; j++) {
+					target[j] = source[rowIndexes[j]];
+				}
+			} else {
+				long[] sourceNulls = nulls[col];
+				long[] targetNulls = new long[(count + 63) >> 6];
+				for (int j = 0; j < count; j++) {
+					int row = rowIndexes[j];
+					if ((sourceNulls[row >> 6] & (1L << row)) != 0) {
+						targetNulls[j >> 6] |= 1L << j;
+					}
+				}
+				result.nulls[i] = targetNulls;
+				copyFixedWidth(column, selected, rowIndexes, count);
+			}
+			result.columns[i] = selected;
+		}
+		return result;
+	}
+
+	private static void copyFixedWidth(Object column, Object selected, int[] rowIndexes, int count) {
+		if (column instanceof int[]) {
+			int[] source = (int[])column;
+			int[] target = (int[])selected;
+			for (int j = 0; j < count; j++) {
+				target[j] = source[rowIndexes[j]];
+			}
+		} else if (column instanceof long[]) {
+			long[] source = (long[])column;
+			long[] target = (long[])selected;
+			for (int j = 0; j < count; j++) {
+				target[j] = source[rowIndexes[j]];
+			}
+		} else if (column instanceof double[]) {
+			double[] source = (double[])column;
+			double[] target = (double[])selected;
+			for (int j = 0; j < count; j++) {
+				target[j] = source[rowIndexes[j]];
+			}
+		} else if (column instanceof float[]) {
+			float[] source = (float[])column;
+			float[] target = (float[])selected;
+			for (int j = 0; j < count; j++) {
+				target[j] = source[rowIndexes[j]];
+			}
+		} else if (column instanceof short[]) {
+			short[] source = (short[])column;
+			short[] target = (short[])selected;
+			for (int j = 0; j < count; j++) {
+				target[j] = source[rowIndexes[j]];
+			}
+		} else if (column instanceof byte[]) {
+			byte[] source = (byte[])column;
+			byte[] target = (byte[])selected;
+			for (int j = 0; j < count; j++) {
+				target[j] = source[rowIndexes[j]];
+			}
+		} else if (column instanceof char[]) {
+			char[] source = (char[])column;
+			char[] target = (char[])selected;
+			for (int j = 0; j < count; j++) {
+				target[j] = source[rowIndexes[j]];
+			}
+		} else {
+			boolean[] source = (boolean[])column;
+			boolean[] target = (boolean[])selected;
+			for (int j = 0; j < count; j++) {
+				target[j] = source[rowIndexes[j]];
+			}
+		}
+	}
+
+	public int getColumnCount() {
+		return columns.length;
+	}
+
+	public Class<?> getType(int col) {
+		return types[col];
+	}
+
+	/**
+	 * Get the backing array for the column, which will be a primitive array
+	 * for {@link #isFixedWidth(Class) fixed width} types and an Object[] otherwise.
+	 * The array must not be modified.
+	 */
+	public Object getColumn(int col) {
+		return columns[col];
+	}
+
+	public boolean isNull(int row, int col) {
+		long[] nullBits = nulls[col];
+		if (nullBits == null) {
+			return ((Object[])columns[col])[row] == null;
+		}
+		return (nullBits[row >> 6] & (1L << row)) != 0;
+	}
+
+	public int getInt(int row, int col) {
+		return ((int[])columns[col])[row];
+	}
+
+	public long getLong(int row, int col) {
+		return ((long[])columns[col])[row];
+	}
+
+	public double getDouble(int row, int col) {
+		return ((double[])columns[col])[row];
+	}
+
+	/**
+	 * Get the value, which will be boxed for fixed width types
+	 */
+	public Object getValue(int row, int col) {
+		Object column = columns[col];
+		if (column instanceof Object[]) {
+			return ((Object[])column)[row];
+		}
+		if ((nulls[col][row >> 6] & (1L << row)) != 0) {
+			return null;
+		}
+		if (column instanceof int[]) {
+			return ((int[])column)[row];
+		}
+		if (column instanceof long[]) {
+			return ((long[])column)[row];
+		}
+		if (column instanceof double[]) {
+			return ((double[])column)[row];
+		}
+		if (column instanceof float[]) {
+			return ((float[])column)[row];
+		}
+		if (column instanceof short[]) {
+			return ((short[])column)[row];
+		}
+		if (column instanceof byte[]) {
+			return ((byte[])column)[row];
+		}
+		if (column instanceof char[]) {
+			return ((char[])column)[row];
+		}
+		return ((boolean[])column)[row];
+	}
+
+	@Override
+	public List<?> get(int index) {
+		if (index < 0 || index >= rowCount) {
+			throw new IndexOutOfBoundsException(String.valueOf(index));
+		}
+		return new Row(index);
+	}
+	
+	/**
+	 * Return a detached copy of the row if it is a view of a batch, otherwise the row itself
+	 */
+	public static List<?> copy(List<?> row) {
+		if (!(row instanceof Row)) {
+			return row;
+		}
+		return Arrays.asList(row.toArray());
+	}
+
+	@Override
+	public int size() {
+		return rowCount;
+	}
+	
+	private final class Row extends AbstractList<Object> implements RandomAccess {
+		
+		private final int row;
+		
+		Row(int row) {
+			this.row = row;
+		}
+
+		@Override
+		public Object get(int index) {
+			return getValue(row, index);
+		}
+
+		@Override
+		public int size() {
+			return columns.length;
+		}
+		
+	}
+
+}
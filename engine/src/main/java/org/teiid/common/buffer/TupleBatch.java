@@ -43,6 +43,7 @@ public class TupleBatch {
 	
 	private int rowOffset;    
     protected List<List<?>> tuples;
+    private ColumnarBatch columns;
     
     // Optional state
     private byte terminationFlag = NOT_TERMINATED;
@@ -75,6 +76,18 @@ public class TupleBatch {
         this.tuples = new ArrayList<List<?>>(listOfTupleLists);
     }
 
+    /**
+     * Constructor
+     * @param beginRow indicates the row of the tuple source which is the
+     * first row contained in this batch
+     * @param columns the columnar rows, which are not modifiable 
+     */
+    public TupleBatch(int beginRow, ColumnarBatch columns) {
+        this.rowOffset = beginRow;
+        this.columns = columns;
+        this.tuples = columns;
+    }
+
     /**
      * Return the number of the first row of the tuple source that is
      * contained in this batch (one-based).
@@ -113,6 +126,14 @@ public class TupleBatch {
 		return tuples;
 	}
     
+    /**
+     * Get the columnar form of this batch.
+     * @return the columns or null if this batch is row based
+     */
+    public ColumnarBatch getColumns() {
+		return columns;
+	}
+    
     /**
      * Get all tuples 
      * @return All tuples
@@ -133,6 +133,8 @@ public class TupleBuffer {
 
 	private LobManager lobManager;
 	private String uuid;
+	private Class<?>[] columnarTypes;
+	private boolean adaptiveBatchSize;
 	
 	public TupleBuffer(BatchManager manager, String id, List<? extends Expression> schema, LobManager lobManager, int batchSize) {
 		this.manager = manager;
@@ -148,6 +150,30 @@ public class TupleBuffer {
 		}
 	}
 	
+	/**
+	 * Set whether batches will be held in a {@link ColumnarBatch} form once saved.
+	 * Buffers with lobs are always row based. 
+	 */
+	public void setColumnar(boolean columnar) {
+		if (!columnar || this.lobManager != null) {
+			this.columnarTypes = null;
+			return;
+		}
+		Class<?>[] types = new Class<?>[schema.size()];
+		for (int i = 0; i < types.length; i++) {
+			types[i] = schema.get(i).getType();
+		}
+		this.columnarTypes = types;
+	}
+	
+	/**
+	 * Set whether the batch size will be adjusted after the first full batch 
+	 * based upon its actual size.
+	 */
+	public void setAdaptiveBatchSize(boolean adaptiveBatchSize) {
+		this.adaptiveBatchSize = adaptiveBatchSize;
+	}
+	
 	public void removeLobTracking() {
 		if (this.lobManager != null) {
 			this.lobManager.remove();
@@ -178,7 +204,7 @@ public class TupleBuffer {
 		if (batchBuffer == null) {
 			batchBuffer = new ResizingArrayList<List<?>>(batchSize/4);
 		}
-		batchBuffer.add(tuple);
+		batchBuffer.add(ColumnarBatch.copy(tuple));
 		if (batchBuffer.size() == batchSize) {
 			saveBatch(false);
 		}
@@ -228,6 +254,16 @@ public class TupleBuffer {
 		this.batches.clear();
 	}
 	
+	/**
+	 * Move the saved batches from memory to storage so that they do not 
+	 * compete with active processing for memory.  
+	 */
+	public void evictBatches() {
+		for (Long batch : this.batches.values()) {
+			this.manager.evict(batch);
+		}
+	}
+	
 	public void persistLobs() throws TeiidComponentException {
 		if (this.lobManager != null) {
 			this.lobManager.persist();
@@ -247,8 +283,19 @@ public class TupleBuffer {
 		if (batchBuffer == null || batchBuffer.isEmpty() || (!force && batchBuffer.size() < Math.max(1, batchSize / 32))) {
 			return;
 		}
-		Long mbatch = manager.createManagedBatch(batchBuffer, null, false);
+		List<? extends List<?>> toSave = batchBuffer;
+		if (columnarTypes != null) {
+			ColumnarBatch columns = ColumnarBatch.create(columnarTypes, batchBuffer);
+			if (columns != null) {
+				toSave = columns;
+			}
+		}
+		Long mbatch = manager.createManagedBatch(toSave, null, false);
 		this.batches.put(rowCount - batchBuffer.size() + 1, mbatch);
+		if (adaptiveBatchSize && batchBuffer.size() >= batchSize) {
+			adaptiveBatchSize = false;
+			this.batchSize = manager.getProcessorBatchSize();
+		}
         batchBuffer = null;
 	}
 	
@@ -286,7 +333,11 @@ public class TupleBuffer {
 			Assertion.isNotNull(entry);
 			Long batch = entry.getValue();
 	    	List<List<?>> rows = manager.getBatch(batch, !forwardOnly);
-	    	result = new TupleBatch(entry.getKey(), rows);
+	    	if (rows instanceof ColumnarBatch) {
+	    		result = new TupleBatch(entry.getKey(), (ColumnarBatch)rows);
+	    	} else {
+	    		result = new TupleBatch(entry.getKey(), rows);
+	    	}
 	    	if (isFinal && result.getEndRow() == rowCount) {
 	    		result.setTerminationFlag(true);
 	    	}
@@ -351,6 +402,7 @@ public class TupleBuffer {
 	}
 	
 	public void setBatchSize(int batchSize) {
+		this.adaptiveBatchSize = false;
 		this.batchSize = batchSize;
 	}
 	    
@@ -22,12 +22,15 @@
 
 package org.teiid.common.buffer.impl;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.ObjectInput;
 import java.io.ObjectInputStream;
 import java.io.ObjectOutput;
 import java.io.ObjectOutputStream;
+import java.io.OutputStream;
 import java.lang.ref.WeakReference;
 import java.nio.ByteBuffer;
 import java.util.ArrayList;
@@ -554,6 +557,10 @@ public class BufferFrontedFileStoreCache implements Cache<PhysicalInfo> {
 	
 	private AtomicLong storageWrites = new AtomicLong();
 	private AtomicLong storageReads = new AtomicLong();
+	private AtomicLong memoryBufferReads = new AtomicLong();
+	private AtomicLong uncompressedBytes = new AtomicLong();
+	private AtomicLong compressedBytes = new AtomicLong();
+	private volatile CompressionCodec compressionCodec = CompressionCodec.NONE;
 	
 	private long minDefrag = DEFAULT_MIN_DEFRAG;
 	private BufferManagerImpl bufferManager;
@@ -658,6 +665,8 @@ public class BufferFrontedFileStoreCache implements Cache<PhysicalInfo> {
 			BlockOutputStream bos = new BlockOutputStream(blockManager, memoryBlocks);
 			bos.writeLong(s.getId());
 			bos.writeLong(entry.getId());
+			//entries are only compressed when moved to storage
+			bos.write(CompressionCodec.NONE.getCode());
 			ObjectOutput dos = new ObjectOutputStream(bos);
 			dos.writeInt(entry.getSizeEstimate());
             s.serialize(entry.getObject(), dos);
@@ -760,6 +769,7 @@ public class BufferFrontedFileStoreCache implements Cache<PhysicalInfo> {
 				if (info.inode != EMPTY_ADDRESS) {
 					info.pinned = true;
 					memoryBufferEntries.touch(info); 
+					memoryBufferReads.incrementAndGet();
 					if (LogManager.isMessageToBeRecorded(LogConstants.CTX_BUFFER_MGR, MessageLevel.DETAIL)) {
 						LogManager.logDetail(LogConstants.CTX_BUFFER_MGR, "Getting object at inode", info.inode, serializer.getId(), oid); //$NON-NLS-1$
 					}
@@ -776,7 +786,7 @@ public class BufferFrontedFileStoreCache implements Cache<PhysicalInfo> {
 					int segment = info.block/blockStore.blocksInUse.getBitsPerSegment();
 					FileStore fs = blockStore.stores[segment];
 					long blockOffset = (info.block%blockStore.blocksInUse.getBitsPerSegment())*blockStore.blockSize;
-					eis = fs.createInputStream(blockOffset, info.memoryBlockCount<<LOG_BLOCK_SIZE);
+					eis = fs.createInputStream(blockOffset, info.storageBlockCount<<LOG_BLOCK_SIZE);
 					lock = blockStore.locks[segment].writeLock();
 					memoryBlocks = info.memoryBlockCount;
 				} else {
@@ -789,6 +799,7 @@ public class BufferFrontedFileStoreCache implements Cache<PhysicalInfo> {
 			for (int i = 0; i < HEADER_BYTES; i++) {
 				is.read();
 			}
+			is.read(); //the codec, the memory buffer form is not compressed
 			ObjectInput dis = new ObjectInputStream(is);
 			int sizeEstimate = dis.readInt();
 			CacheEntry ce = new CacheEntry(new CacheKey(oid, 1, 1), sizeEstimate, serializer.deserialize(dis), ref, true);
@@ -829,16 +840,40 @@ public class BufferFrontedFileStoreCache implements Cache<PhysicalInfo> {
 			fileLock.lock();
 			locked = true;
 			ExtensibleBufferedOutputStream os = new BlockOutputStream(manager, -1);
-			//TODO: there is still an extra buffer being created here, we could FileChannels to do better
-			ByteBuffer bb = null;
-			while ((bb = is.getBuffer()) != null) {
-				byte[] array = bb.array();
-				os.write(array, bb.position() + bb.arrayOffset(), bb.remaining());
-				bb.position(bb.position()+bb.remaining());
+			for (int i = 0; i < HEADER_BYTES; i++) {
+				os.write(is.read());
+			}
+			CompressionCodec codec = getCodec((byte)is.read());
+			os.write(CompressionCodec.NONE.getCode());
+			ByteArrayOutputStream compressed = null;
+			if (codec == CompressionCodec.NONE) {
+				//mapped storage will return direct buffers, which are copied without an intermediate array
+				ByteBuffer bb = null;
+				while ((bb = is.getBuffer()) != null) {
+					if (bb.hasArray()) {
+						byte[] array = bb.array();
+						os.write(array, bb.position() + bb.arrayOffset(), bb.remaining());
+						bb.position(bb.position()+bb.remaining());
+					} else {
+						os.write(bb);
+					}
+				}
+			} else {
+				//decompress after releasing the file lock
+				compressed = new ByteArrayOutputStream(memoryBlocks<<(LOG_BLOCK_SIZE-1));
+				copy(is, compressed);
 			}
 			fileLock.unlock();
-			os.close();
 			locked = false;
+			if (compressed != null) {
+				InputStream dis = codec.decompress(new ByteArrayInputStream(compressed.toByteArray()));
+				try {
+					copy(dis, os);
+				} finally {
+					dis.close();
+				}
+			}
+			os.close();
 		    synchronized (info) {
 		        info.inode = manager.getInode();
 				memoryBufferEntries.add(info);
@@ -860,6 +895,46 @@ public class BufferFrontedFileStoreCache implements Cache<PhysicalInfo> {
 		return is;
 	}
 
+	/**
+	 * Get the storage form of a memory buffer entry, which has the same header
+	 * followed by the codec and the compressed body.
+	 */
+	private static byte[] compress(InputStream is, CompressionCodec codec, int size) throws IOException {
+		ByteArrayOutputStream baos = new ByteArrayOutputStream(size>>1);
+		for (int i = 0; i < HEADER_BYTES; i++) {
+			baos.write(is.read());
+		}
+		is.read(); //the memory buffer form is not compressed
+		baos.write(codec.getCode());
+		OutputStream os = codec.compress(baos);
+		try {
+			copy(is, os);
+		} finally {
+			os.close();
+		}
+		return baos.toByteArray();
+	}
+	
+	private static void copy(InputStream is, OutputStream os) throws IOException {
+		byte[] b = new byte[BLOCK_SIZE];
+		int read = 0;
+		while ((read = is.read(b, 0, b.length)) != -1) {
+			os.write(b, 0, read);
+		}
+	}
+	
+	private CompressionCodec getCodec(byte code) throws IOException {
+		CompressionCodec codec = compressionCodec;
+		if (codec.getCode() == code) {
+			return codec;
+		}
+		codec = CompressionCodec.forCode(code);
+		if (codec == null) {
+			throw new IOException("Unknown compression codec " + code); //$NON-NLS-1$
+		}
+		return codec;
+	}
+
 	/**
 	 * Determine if an object should be in the memory buffer.
 	 * Adds are indicated by a current time of 0.
@@ -945,6 +1020,7 @@ public class BufferFrontedFileStoreCache implements Cache<PhysicalInfo> {
 		BlockManager bm = null;
 		int block = EMPTY_ADDRESS;
 		int memoryBlockCount;
+		int storageBlockCount;
 		int sizeIndex;
 		synchronized (info) {
 			//if we're a demotion then the free flag was already checked and set 
@@ -959,6 +1035,7 @@ public class BufferFrontedFileStoreCache implements Cache<PhysicalInfo> {
 			}
 			block = info.block;
 			memoryBlockCount = info.memoryBlockCount;
+			storageBlockCount = info.storageBlockCount;
 			sizeIndex = info.sizeIndex;
 			if (info.inode != EMPTY_ADDRESS) {
 				bm = getBlockManager(info.gid, oid, info.inode);
@@ -971,7 +1048,24 @@ public class BufferFrontedFileStoreCache implements Cache<PhysicalInfo> {
 		try {
 			if (demote && block == EMPTY_ADDRESS) {
 				storageWrites.getAndIncrement();
-				BlockInputStream is = new BlockInputStream(bm, memoryBlockCount); 
+				InputStream is = new BlockInputStream(bm, memoryBlockCount); 
+				CompressionCodec codec = compressionCodec;
+				if (codec != CompressionCodec.NONE) {
+					int size = memoryBlockCount<<LOG_BLOCK_SIZE;
+					byte[] storageForm = compress(is, codec, size);
+					int blockCount = PhysicalInfo.getBlockCount(storageForm.length);
+					uncompressedBytes.addAndGet(size);
+					if (blockCount < memoryBlockCount) {
+						compressedBytes.addAndGet(storageForm.length);
+						storageBlockCount = blockCount;
+						sizeIndex = PhysicalInfo.getSizeIndex(blockCount);
+						is = new ByteArrayInputStream(storageForm);
+					} else {
+						//not worth compressing
+						compressedBytes.addAndGet(size);
+						is = new BlockInputStream(bm, memoryBlockCount);
+					}
+				}
 				BlockStore blockStore = sizeBasedStores[sizeIndex];
 				for (int i = 0; i < 3; i++) {
 					try {
@@ -1021,6 +1115,8 @@ public class BufferFrontedFileStoreCache implements Cache<PhysicalInfo> {
 				}
 				if (block != EMPTY_ADDRESS) {
 					if (demote) {
+						info.sizeIndex = (byte)sizeIndex;
+						info.storageBlockCount = storageBlockCount;
 						if (LogManager.isMessageToBeRecorded(LogConstants.CTX_BUFFER_MGR, MessageLevel.DETAIL)) {
 							LogManager.logDetail(LogConstants.CTX_BUFFER_MGR, "Assigning storage data block", block, "of size", sizeBasedStores[info.sizeIndex].blockSize); //$NON-NLS-1$ //$NON-NLS-2$
 						}
@@ -1176,10 +1272,39 @@ public class BufferFrontedFileStoreCache implements Cache<PhysicalInfo> {
 		return storageReads.get();
 	}
 	
+	/**
+	 * @return the number of reads satisfied by the memory buffer without going to storage
+	 */
+	public long getMemoryBufferReads() {
+		return memoryBufferReads.get();
+	}
+	
 	public long getStorageWrites() {
 		return storageWrites.get();
 	}
 	
+	/**
+	 * @return the total bytes of entries moved to storage prior to compression
+	 */
+	public long getUncompressedBytes() {
+		return uncompressedBytes.get();
+	}
+	
+	/**
+	 * @return the total bytes of entries moved to storage after compression
+	 */
+	public long getCompressedBytes() {
+		return compressedBytes.get();
+	}
+	
+	public void setCompressionCodec(CompressionCodec compressionCodec) {
+		this.compressionCodec = compressionCodec;
+	}
+	
+	public CompressionCodec getCompressionCodec() {
+		return compressionCodec;
+	}
+	
 	public long getMemoryBufferSpace() {
 		return memoryBufferSpace;
 	}
@@ -337,6 +337,11 @@ public class BufferManagerImpl implements BufferManager, ReplicatedObject<String
 			BufferManagerImpl.this.remove(id, batch, prefersMemory.get());
 		}
 
+		@Override
+		public void evict(Long batch) {
+			BufferManagerImpl.this.evict(batch);
+		}
+
 		@Override
 		public void remove() {
 			if (cleanup != null) {
@@ -358,6 +363,15 @@ public class BufferManagerImpl implements BufferManager, ReplicatedObject<String
 			}
 			return (int)(totalSize/rowsSampled);
 		}
+		
+		@Override
+		public int getProcessorBatchSize() {
+			int estimate = getRowSizeEstimate();
+			if (estimate == 0) {
+				return processorBatchSize;
+			}
+			return getSizeEstimates(estimate)[0];
+		}
 	}
 	
 	private static class BatchSoftReference extends SoftReference<CacheEntry> {
@@ -388,6 +402,8 @@ public class BufferManagerImpl implements BufferManager, ReplicatedObject<String
     private int maxActivePlans = DQPConfiguration.DEFAULT_MAX_ACTIVE_PLANS; //used as a hint to set the reserveBatchKB
     private boolean useWeakReferences = true;
     private boolean inlineLobs = true;
+    private boolean columnarBatches;
+    private boolean adaptiveBatchSizing;
     private int targetBytesPerRow = TARGET_BYTES_PER_ROW;
     private int maxSoftReferences;
     private int nominalProcessingMemoryMax = maxProcessingBytes;
@@ -514,6 +530,8 @@ public class BufferManagerImpl implements BufferManager, ReplicatedObject<String
         	LogManager.logDetail(LogConstants.CTX_BUFFER_MGR, "Creating TupleBuffer:", newID, elements, Arrays.toString(types), "batch size", tupleBuffer.getBatchSize(), "of type", tupleSourceType); //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
         }
     	tupleBuffer.setInlineLobs(inlineLobs);
+    	tupleBuffer.setColumnar(columnarBatches);
+    	tupleBuffer.setAdaptiveBatchSize(adaptiveBatchSizing);
         return tupleBuffer;
     }
     
@@ -898,6 +916,44 @@ public class BufferManagerImpl implements BufferManager, ReplicatedObject<String
 		return freed;
 	}
 
+	/**
+	 * Proactively move a batch from memory to storage
+	 */
+	void evict(Long batch) {
+		CacheEntry ce = memoryEntries.get(batch);
+		if (ce == null) {
+			return;
+		}
+		synchronized (ce) {
+			//removing from the queue claims the eviction
+			if (!memoryEntries.containsKey(batch) || !(ce.isPersistent()?evictionQueue.remove(ce):initialEvictionQueue.remove(ce))) {
+				return;
+			}
+		}
+		boolean evicted = false;
+		try {
+			evicted = evict(ce);
+		} catch (Throwable e) {
+			LogManager.logError(LogConstants.CTX_BUFFER_MGR, e, QueryPlugin.Util.gs(QueryPlugin.Event.TEIID30017, ce.getId() ));
+		} finally {
+			synchronized (ce) {
+				if (evicted) {
+					if (memoryEntries.remove(ce.getId()) != null) {
+						activeBatchBytes.addAndGet(-ce.getSizeEstimate());
+						evictionQueue.remove(ce);
+					}
+				} else if (memoryEntries.containsKey(ce.getId())) {
+					//leave it to normal eviction
+					if (ce.isPersistent()) {
+						evictionQueue.touch(ce);
+					} else {
+						initialEvictionQueue.add(ce);
+					}
+				}
+			}
+		}
+	}
+
 	boolean evict(CacheEntry ce) throws Exception {
 		Serializer<?> s = ce.getSerializer();
 		if (s == null) {
@@ -1069,6 +1125,17 @@ public class BufferManagerImpl implements BufferManager, ReplicatedObject<String
 		return getSizeEstimates(schema)[0];
 	}
 	
+	@Override
+	public int getProcessorBatchSize(List<? extends Expression> schema,
+			List<? extends List<?>> sample) {
+		if (!adaptiveBatchSizing || sample.isEmpty()) {
+			return getProcessorBatchSize(schema);
+		}
+		//use the actual sizes rather than the static type estimates
+		long size = new SizeUtility(getTypeClasses(schema)).getBatchSize(DataTypeManager.isValueCacheEnabled(), sample);
+		return getSizeEstimates((int)Math.min(Integer.MAX_VALUE, Math.max(1, size/sample.size())))[0];
+	}
+	
 	private int[] getSizeEstimates(List<? extends Expression> elements) {
 		int total = 0;
 		boolean isValueCacheEnabled = DataTypeManager.isValueCacheEnabled();
@@ -1078,7 +1145,14 @@ public class BufferManagerImpl implements BufferManager, ReplicatedObject<String
 		}
 		//assume 64-bit
 		total += 8*elements.size() + 36;  // column list / row overhead
-		
+		return getSizeEstimates(total);
+	}
+	
+	/**
+	 * @param total the estimated bytes per row
+	 * @return the row count and total bytes of a batch 
+	 */
+	private int[] getSizeEstimates(int total) {
 		//nominal targetBytesPerRow but can scale up or down
 		
 		int totalCopy = total;
@@ -1255,6 +1329,30 @@ public class BufferManagerImpl implements BufferManager, ReplicatedObject<String
 	public void setInlineLobs(boolean inlineLobs) {
 		this.inlineLobs = inlineLobs;
 	}
+	
+	/**
+	 * Set whether {@link TupleBuffer} batches will be held in memory in a columnar form
+	 */
+	public void setColumnarBatches(boolean columnarBatches) {
+		this.columnarBatches = columnarBatches;
+	}
+	
+	public boolean isColumnarBatches() {
+		return columnarBatches;
+	}
+	
+	/**
+	 * Set whether batch sizes will be adjusted by the actual size of the first 
+	 * batches of processor nodes and {@link TupleBuffer}s, rather than only 
+	 * using the static type estimates
+	 */
+	public void setAdaptiveBatchSizing(boolean adaptiveBatchSizing) {
+		this.adaptiveBatchSizing = adaptiveBatchSizing;
+	}
+	
+	public boolean isAdaptiveBatchSizing() {
+		return adaptiveBatchSizing;
+	}
 
 	public int getMaxReserveKB() {
 		return (int)maxReserveBytes>>10;
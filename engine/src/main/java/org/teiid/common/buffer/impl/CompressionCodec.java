@@ -0,0 +1,125 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * See the COPYRIGHT.txt file distributed with this work for information
+ * regarding copyright ownership.  Some portions may be licensed
+ * to Red Hat, Inc. under one or more contributor license agreements.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA
+ * 02110-1301 USA.
+ */
+
+package org.teiid.common.buffer.impl;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.InflaterInputStream;
+
+/**
+ * A codec applied to serialized cache entries as they are moved from the memory buffer
+ * to storage.  The memory buffer always holds the uncompressed form.
+ * <br>
+ * The code of the codec is written with each entry, so that entries may be read
+ * regardless of the codec currently in use.  Custom codecs should use codes
+ * greater than those defined here.
+ */
+public abstract class CompressionCodec {
+	
+	private static final int BUFFER_SIZE = 1 << 13;
+	
+	public static final CompressionCodec NONE = new CompressionCodec((byte)0) {
+		@Override
+		public OutputStream compress(OutputStream out) {
+			return out;
+		}
+		
+		@Override
+		public InputStream decompress(InputStream in) {
+			return in;
+		}
+	};
+	
+	/**
+	 * A deflate codec favoring speed over ratio
+	 */
+	public static final CompressionCodec DEFLATE = new DeflateCodec((byte)1, Deflater.BEST_SPEED);
+	
+	private static final class DeflateCodec extends CompressionCodec {
+		private int level;
+		
+		DeflateCodec(byte code, int level) {
+			super(code);
+			this.level = level;
+		}
+		
+		@Override
+		public OutputStream compress(OutputStream out) {
+			final Deflater deflater = new Deflater(level);
+			return new DeflaterOutputStream(out, deflater, BUFFER_SIZE) {
+				@Override
+				public void close() throws IOException {
+					try {
+						super.close();
+					} finally {
+						deflater.end();
+					}
+				}
+			};
+		}
+		
+		@Override
+		public InputStream decompress(InputStream in) {
+			return new InflaterInputStream(in);
+		}
+	}
+	
+	private byte code;
+	
+	protected CompressionCodec(byte code) {
+		this.code = code;
+	}
+	
+	public byte getCode() {
+		return code;
+	}
+	
+	/**
+	 * Wrap the stream so that written bytes are compressed.  Closing the returned stream
+	 * must close the underlying stream.
+	 */
+	public abstract OutputStream compress(OutputStream out) throws IOException;
+	
+	/**
+	 * Wrap the stream so that read bytes are decompressed.
+	 */
+	public abstract InputStream decompress(InputStream in) throws IOException;
+	
+	/**
+	 * Get a built-in codec by code
+	 * @return the codec or null if the code is not known
+	 */
+	public static CompressionCodec forCode(byte code) {
+		if (code == NONE.code) {
+			return NONE;
+		}
+		if (code == DEFLATE.code) {
+			return DEFLATE;
+		}
+		return null;
+	}
+	
+}
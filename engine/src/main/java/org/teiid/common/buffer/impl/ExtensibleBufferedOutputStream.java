@@ -69,6 +69,20 @@ public abstract class ExtensibleBufferedOutputStream extends OutputStream {
     	}
     }
 
+    /**
+     * Write the remaining bytes of the buffer, which need not be array backed
+     */
+    public void write(ByteBuffer b) throws IOException {
+    	while (b.hasRemaining()) {
+    		ensureBuffer();
+    		int toCopy = Math.min(buf.remaining(), b.remaining());
+    		ByteBuffer slice = b.duplicate();
+    		slice.limit(slice.position() + toCopy);
+    		buf.put(slice);
+    		b.position(b.position() + toCopy);
+    	}
+    }
+
 	public void flush() throws IOException {
 		if (buf != null) {
 			int bytes = buf.position() - startPosition;
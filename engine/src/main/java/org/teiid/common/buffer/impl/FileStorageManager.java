@@ -266,6 +266,22 @@ public class FileStorageManager implements StorageManager {
     public FileStore createFileStore(String name) {
     	return new DiskStore(name);
     }
+
+    /**
+     * Account for bytes allocated by a {@link FileStore} not managed through {@link DiskStore}
+     * @throws OutOfDiskException if the allocation would exceed the max buffer space
+     */
+    void allocateBufferSpace(long bytesUsed) throws OutOfDiskException {
+    	long used = usedBufferSpace.addAndGet(bytesUsed);
+    	if (used > maxBufferSpace) {
+    		usedBufferSpace.addAndGet(-bytesUsed);
+    		throw new OutOfDiskException(QueryPlugin.Util.getString("FileStoreageManager.space_exhausted", bytesUsed, used, maxBufferSpace)); //$NON-NLS-1$
+    	}
+    }
+
+    void releaseBufferSpace(long bytesReleased) {
+    	usedBufferSpace.addAndGet(-bytesReleased);
+    }
     
     public String getDirectory() {
 		return directory;
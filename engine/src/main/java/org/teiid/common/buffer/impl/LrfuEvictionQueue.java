@@ -19,12 +19,13 @@
  * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA
  * 02110-1301 USA.
  */
-
 package org.teiid.common.buffer.impl;
 
+import java.util.AbstractCollection;
 import java.util.Collection;
+import java.util.Iterator;
 import java.util.Map;
-import java.util.NavigableMap;
+import java.util.NoSuchElementException;
 import java.util.concurrent.ConcurrentSkipListMap;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicLong;
@@ -35,38 +36,158 @@ import org.teiid.common.buffer.CacheKey;
 /**
  * A Concurrent LRFU eviction queue.  Has assumptions that match buffermanager usage.
  * Null values are not allowed.
+ * <br>
+ * Entries are striped by id across several ordered maps, so that concurrent adds and touches,
+ * which always insert near the tail of the ordering, do not contend on a single structure.
+ * The lowest entry is found by inspecting the head of each stripe.  Under concurrent modification
+ * a poll may return an entry that is not strictly the lowest, which is acceptable for eviction.
  * @param <V>
  */
 public class LrfuEvictionQueue<V extends BaseCacheEntry> {
 	
 	private static final long DEFAULT_HALF_LIFE = 1<<16;
 	private static final long MIN_INTERVAL = 1<<9;
-	//TODO: until Java 7 ConcurrentSkipListMap has a scaling bug in that
-	//the level function limits the effective map size to ~ 2^16
-	//above which it performs comparably under multi-threaded load to a synchronized LinkedHashMap
-	//just with more CPU overhead vs. wait time.
-	protected NavigableMap<CacheKey, V> evictionQueue = new ConcurrentSkipListMap<CacheKey, V>();
+	private static final int MAX_STRIPES = 1<<5;
+	
+	private static final class Stripe<V> {
+		//TODO: until Java 7 ConcurrentSkipListMap has a scaling bug in that
+		//the level function limits the effective map size to ~ 2^16
+		//above which it performs comparably under multi-threaded load to a synchronized LinkedHashMap
+		//just with more CPU overhead vs. wait time.  Striping keeps each map smaller.
+		ConcurrentSkipListMap<CacheKey, V> entries = new ConcurrentSkipListMap<CacheKey, V>();
+		AtomicInteger size = new AtomicInteger();
+	}
+	
+	/**
+	 * A view of all stripes iterating in eviction order
+	 */
+	private final class OrderedView extends AbstractCollection<V> {
+		@Override
+		public Iterator<V> iterator() {
+			return new OrderedIterator();
+		}
+		
+		@Override
+		public int size() {
+			return getSize();
+		}
+		
+		@Override
+		public void clear() {
+			for (Stripe<V> stripe : stripes) {
+				stripe.size.addAndGet(-stripe.entries.size());
+				stripe.entries.clear();
+			}
+		}
+	}
+	
+	/**
+	 * Merges the weakly consistent iterators of each stripe
+	 */
+	private final class OrderedIterator implements Iterator<V> {
+		private Iterator<Map.Entry<CacheKey, V>>[] iters;
+		private Map.Entry<CacheKey, V>[] heads;
+		private Map.Entry<CacheKey, V> next;
+		
+		@SuppressWarnings("unchecked")
+		OrderedIterator() {
+			iters = new Iterator[stripes.length];
+			heads = new Map.Entry[stripes.length];
+			for (int i = 0; i < stripes.length; i++) {
+				iters[i] = stripes[i].entries.entrySet().iterator();
+				if (iters[i].hasNext()) {
+					heads[i] = iters[i].next();
+				}
+			}
+		}
+		
+		@Override
+		public boolean hasNext() {
+			if (next != null) {
+				return true;
+			}
+			int lowest = -1;
+			for (int i = 0; i < heads.length; i++) {
+				if (heads[i] != null && (lowest == -1 || heads[i].getKey().compareTo(heads[lowest].getKey()) < 0)) {
+					lowest = i;
+				}
+			}
+			if (lowest == -1) {
+				return false;
+			}
+			next = heads[lowest];
+			heads[lowest] = iters[lowest].hasNext()?iters[lowest].next():null;
+			return true;
+		}
+		
+		@Override
+		public V next() {
+			if (!hasNext()) {
+				throw new NoSuchElementException();
+			}
+			V result = next.getValue();
+			next = null;
+			return result;
+		}
+		
+		@Override
+		public void remove() {
+			throw new UnsupportedOperationException();
+		}
+	}
+	
+	private Stripe<V>[] stripes;
+	private int stripeMask;
+	private Collection<V> orderedView = new OrderedView();
 	protected AtomicLong clock;
 	protected long maxInterval;
 	protected long halfLife;
-	private AtomicInteger size = new AtomicInteger();
 	
 	public LrfuEvictionQueue(AtomicLong clock) {
+		this(clock, Runtime.getRuntime().availableProcessors());
+	}
+	
+	/**
+	 * @param clock
+	 * @param concurrency the expected number of concurrent accessors, which will be
+	 * rounded to a power of 2 number of stripes
+	 */
+	@SuppressWarnings("unchecked")
+	public LrfuEvictionQueue(AtomicLong clock, int concurrency) {
 		this.clock = clock;
 		setHalfLife(DEFAULT_HALF_LIFE);
+		int stripeCount = 1;
+		while (stripeCount < concurrency && stripeCount < MAX_STRIPES) {
+			stripeCount <<= 1;
+		}
+		this.stripes = new Stripe[stripeCount];
+		for (int i = 0; i < stripeCount; i++) {
+			this.stripes[i] = new Stripe<V>();
+		}
+		this.stripeMask = stripeCount - 1;
+	}
+	
+	private Stripe<V> getStripe(CacheKey key) {
+		long id = key.getId();
+		int hash = (int)(id ^ (id >>> 32));
+		//spread sequential ids
+		hash *= 0x9E3779B9;
+		return stripes[(hash >>> 16) & stripeMask];
 	}
 
 	public boolean remove(V value) {
-		if (evictionQueue.remove(value.getKey()) != null) {
-			size.addAndGet(-1);
+		Stripe<V> stripe = getStripe(value.getKey());
+		if (stripe.entries.remove(value.getKey()) != null) {
+			stripe.size.addAndGet(-1);
 			return true;
 		}
 		return false;
 	}
 	
 	public boolean add(V value) {
-		if (evictionQueue.put(value.getKey(), value) == null) {
-			size.addAndGet(1);
+		Stripe<V> stripe = getStripe(value.getKey());
+		if (stripe.entries.put(value.getKey(), value) == null) {
+			stripe.size.addAndGet(1);
 			return true;
 		}
 		return false;
@@ -77,29 +198,43 @@ public class LrfuEvictionQueue<V extends BaseCacheEntry> {
 		if (tick - MIN_INTERVAL < value.getKey().getLastAccess()) {
 			return;
 		}
-		evictionQueue.remove(value.getKey());
+		Stripe<V> stripe = getStripe(value.getKey());
+		stripe.entries.remove(value.getKey());
 		recordAccess(value);
-		evictionQueue.put(value.getKey(), value);
+		stripe.entries.put(value.getKey(), value);
 	}
 		
+	/**
+	 * Get a weakly consistent view of the entries in eviction order.  
+	 * The view does not support removal through the iterator.
+	 */
 	public Collection<V> getEvictionQueue() {
-		return evictionQueue.values();
+		return orderedView;
 	}
 	
 	public V firstEntry(boolean poll) {
-		Map.Entry<CacheKey, V> entry = null;
-		if (poll) {
-			entry = evictionQueue.pollFirstEntry();
-			if (entry != null) {
-				size.addAndGet(-1);
+		while (true) {
+			Map.Entry<CacheKey, V> lowest = null;
+			Stripe<V> lowestStripe = null;
+			for (Stripe<V> stripe : stripes) {
+				Map.Entry<CacheKey, V> entry = stripe.entries.firstEntry();
+				if (entry != null && (lowest == null || entry.getKey().compareTo(lowest.getKey()) < 0)) {
+					lowest = entry;
+					lowestStripe = stripe;
+				}
 			}
-		} else {
-			entry = evictionQueue.firstEntry();
-		}
-		if (entry != null) {
-			return entry.getValue();
+			if (lowest == null) {
+				return null;
+			}
+			if (!poll) {
+				return lowest.getValue();
+			}
+			if (lowestStripe.entries.remove(lowest.getKey(), lowest.getValue())) {
+				lowestStripe.size.addAndGet(-1);
+				return lowest.getValue();
+			}
+			//concurrently removed or touched, try again
 		}
-		return null;
 	}
 	
 	/**
@@ -112,7 +247,7 @@ public class LrfuEvictionQueue<V extends BaseCacheEntry> {
 		long orderingValue = key.getOrderingValue();
 		orderingValue = computeNextOrderingValue(currentClock, lastAccess,
 				orderingValue);
-		assert !this.evictionQueue.containsKey(value.getKey());
+		assert !getStripe(key).entries.containsKey(key);
 		value.setKey(new CacheKey(key.getId(), currentClock, orderingValue));
 	}
 	
@@ -139,7 +274,11 @@ public class LrfuEvictionQueue<V extends BaseCacheEntry> {
 	}
 	
 	public int getSize() {
-		return size.get();
+		int result = 0;
+		for (Stripe<V> stripe : stripes) {
+			result += stripe.size.get();
+		}
+		return result;
 	}
 	
 	@Override
@@ -147,12 +286,14 @@ public class LrfuEvictionQueue<V extends BaseCacheEntry> {
 		StringBuilder result = new StringBuilder();
 		result.append("Size:").append(getSize()).append(" "); //$NON-NLS-1$ //$NON-NLS-2$
 		int max = 2000;
-		for (CacheKey e : evictionQueue.keySet()) {
+		for (V v : orderedView) {
+			CacheKey e = v.getKey();
 			result.append("(").append(e.getOrderingValue()).append(", ") //$NON-NLS-1$ //$NON-NLS-2$
 					.append(e.getLastAccess()).append(", ").append(e.getId()) //$NON-NLS-1$
 					.append(") "); //$NON-NLS-1$
 			if (--max == 0) {
 				result.append("..."); //$NON-NLS-1$
+				break;
 			}
 		}
 		return result.toString();
@@ -0,0 +1,244 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * See the COPYRIGHT.txt file distributed with this work for information
+ * regarding copyright ownership.  Some portions may be licensed
+ * to Red Hat, Inc. under one or more contributor license agreements.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA
+ * 02110-1301 USA.
+ */
+
+package org.teiid.common.buffer.impl;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.teiid.common.buffer.AutoCleanupUtil;
+import org.teiid.common.buffer.AutoCleanupUtil.Removable;
+import org.teiid.common.buffer.ExtensibleBufferedInputStream;
+import org.teiid.common.buffer.FileStore;
+
+/**
+ * A {@link FileStorageManager} that accesses the files through memory mappings rather
+ * than positional reads and writes.
+ * <br>
+ * Each file is mapped in segments of up to {@link #setSegmentSize(int)} bytes.  As a file grows
+ * the last partial segment is remapped and new segments are added.  Input streams return slices
+ * of the mappings directly, so reads do not require a system call or a copy into a heap buffer.
+ * <br>
+ * Since those slices may still be held by readers, mappings are never forcibly unmapped and
+ * the file is never shrunk underneath a mapping - either would fault the vm on the next access.
+ * A truncated store keeps its mappings for reuse and the mappings of a removed store are
+ * released by gc.  The space of a removed store is released and its file deleted only
+ * once each mapping has been collected, since until then the mappings remain resident.
+ * <br>
+ * The mappings are not counted against the open file limit, since the channel is closed
+ * once the mapping is established.
+ */
+public class MappedFileStorageManager extends FileStorageManager {
+
+	public static final int DEFAULT_SEGMENT_SIZE = 1 << 26;
+	private static final int MIN_GROWTH = 1 << 16;
+
+	private int segmentSize = DEFAULT_SEGMENT_SIZE;
+
+	public class MappedFileStore extends FileStore {
+		private String name;
+		private File file;
+		private long length;
+		private long mappedLength;
+		private List<MappedByteBuffer> segments = new ArrayList<MappedByteBuffer>();
+		private boolean removed;
+
+		public MappedFileStore(String name) {
+			this.name = name;
+		}
+
+		@Override
+		public synchronized long getLength() {
+			return length;
+		}
+
+		@Override
+		protected synchronized int readWrite(long fileOffset, byte[] b, int offSet,
+				int len, boolean write) throws IOException {
+			if (write) {
+				ensureCapacity(fileOffset + len);
+				length = Math.max(length, fileOffset + len);
+			} else if (fileOffset >= length) {
+				return -1;
+			}
+			ByteBuffer bb = slice(fileOffset, len, write?mappedLength:length);
+			len = bb.remaining();
+			if (write) {
+				bb.put(b, offSet, len);
+			} else {
+				bb.get(b, offSet, len);
+			}
+			return len;
+		}
+
+		/**
+		 * Get a view of the mapping starting at the given offset.  The view will not
+		 * extend past the limit or the end of the segment.
+		 */
+		private ByteBuffer slice(long fileOffset, long len, long limit) throws IOException {
+			if (removed) {
+				throw new IOException("already removed"); //$NON-NLS-1$
+			}
+			ByteBuffer bb = segments.get((int)(fileOffset / segmentSize)).duplicate();
+			int position = (int)(fileOffset % segmentSize);
+			long available = limit - fileOffset;
+			if (len >= 0) {
+				available = Math.min(available, len);
+			}
+			bb.position(position);
+			bb.limit((int)Math.min(bb.capacity(), position + available));
+			return bb.slice();
+		}
+
+		/**
+		 * Grow the file and its mappings to at least the required length.  The last
+		 * segment is remapped if it was only partially mapped.
+		 */
+		private void ensureCapacity(long required) throws IOException {
+			if (required <= mappedLength) {
+				return;
+			}
+			long newLength = Math.max(required, mappedLength + Math.min(Math.max(mappedLength, MIN_GROWTH), segmentSize));
+			newLength = Math.min(newLength, (required / segmentSize + 1) * segmentSize);
+			if (file == null) {
+				file = createFile(name);
+			}
+			long bytesUsed = newLength - mappedLength;
+			allocateBufferSpace(bytesUsed);
+			boolean success = false;
+			RandomAccessFile raf = new RandomAccessFile(file, "rw"); //$NON-NLS-1$
+			try {
+				raf.setLength(newLength);
+				FileChannel channel = raf.getChannel();
+				for (int i = (int)(mappedLength / segmentSize); (long)i * segmentSize < newLength; i++) {
+					long start = (long)i * segmentSize;
+					MappedByteBuffer segment = channel.map(FileChannel.MapMode.READ_WRITE, start, Math.min(segmentSize, newLength - start));
+					if (i < segments.size()) {
+						//the prior partial mapping may still be referenced by a reader, so it's left for gc
+						segments.set(i, segment);
+					} else {
+						segments.add(segment);
+					}
+				}
+				mappedLength = newLength;
+				success = true;
+			} finally {
+				raf.close();
+				if (!success) {
+					releaseBufferSpace(bytesUsed);
+				}
+			}
+		}
+
+		@Override
+		public synchronized void setLength(long newLength) throws IOException {
+			if (newLength > length) {
+				ensureCapacity(newLength);
+				length = newLength;
+				return;
+			}
+			//the mappings are retained, they may be referenced by readers
+			length = newLength;
+		}
+
+		@Override
+		public ExtensibleBufferedInputStream createInputStream(final long start, final long streamLength) {
+			return new ExtensibleBufferedInputStream() {
+				private long offset = start;
+				private long remaining = streamLength;
+
+				@Override
+				protected ByteBuffer nextBuffer() throws IOException {
+					if (remaining == 0) {
+						return null;
+					}
+					synchronized (MappedFileStore.this) {
+						if (offset >= length) {
+							return null;
+						}
+						ByteBuffer result = slice(offset, remaining, length);
+						offset += result.remaining();
+						if (remaining > 0) {
+							remaining -= result.remaining();
+						}
+						return result;
+					}
+				}
+			};
+		}
+
+		@Override
+		protected synchronized void removeDirect() {
+			removed = true;
+			length = 0;
+			if (segments.isEmpty()) {
+				if (file != null) {
+					file.delete();
+				}
+				return;
+			}
+			//outstanding slices keep their mapping valid until they are collected
+			final AtomicInteger mapped = new AtomicInteger(segments.size());
+			final File toDelete = file;
+			for (MappedByteBuffer segment : segments) {
+				final long capacity = segment.capacity();
+				AutoCleanupUtil.setCleanupReference(segment, new Removable() {
+					@Override
+					public void remove() {
+						releaseBufferSpace(capacity);
+						if (mapped.decrementAndGet() == 0) {
+							toDelete.delete();
+						}
+					}
+				});
+			}
+			segments.clear();
+			mappedLength = 0;
+		}
+
+	}
+
+	@Override
+	public FileStore createFileStore(String name) {
+		return new MappedFileStore(name);
+	}
+
+	/**
+	 * Set the max size of each mapped segment in bytes
+	 * @param segmentSize
+	 */
+	public void setSegmentSize(int segmentSize) {
+		this.segmentSize = segmentSize;
+	}
+
+	public int getSegmentSize() {
+		return segmentSize;
+	}
+
+}
@@ -40,9 +40,10 @@ final class PhysicalInfo extends BaseCacheEntry {
 	//the memory inode and block count
 	int inode = BufferFrontedFileStoreCache.EMPTY_ADDRESS;
 	int memoryBlockCount;
-	//the storage block and BlockStore index
+	//the storage block, BlockStore index, and block count - which is smaller than the memory block count if compressed
 	int block = BufferFrontedFileStoreCache.EMPTY_ADDRESS;
 	byte sizeIndex = 0;
+	int storageBlockCount;
 	//state flags
 	boolean pinned; //indicates that the entry is being read
 	boolean evicting; //indicates that the entry will be moved out of the memory buffer
@@ -56,7 +57,7 @@ final class PhysicalInfo extends BaseCacheEntry {
 	}
 	
 	void setSize(int size) throws Exception {
-		int newMemoryBlockCount = (size>>BufferFrontedFileStoreCache.LOG_BLOCK_SIZE) + ((size&BufferFrontedFileStoreCache.BLOCK_MASK)>0?1:0);
+		int newMemoryBlockCount = getBlockCount(size);
 		if (this.memoryBlockCount != 0) {
 			if (newMemoryBlockCount != memoryBlockCount) {
 				throw sizeChanged; 
@@ -64,10 +65,21 @@ final class PhysicalInfo extends BaseCacheEntry {
 			return; //no changes
 		}
 		this.memoryBlockCount = newMemoryBlockCount;
-		while (newMemoryBlockCount > 1) {
-			this.sizeIndex++;
-			newMemoryBlockCount = (newMemoryBlockCount>>1) + ((newMemoryBlockCount&0x01)==0?0:1);
+		this.storageBlockCount = newMemoryBlockCount;
+		this.sizeIndex = getSizeIndex(newMemoryBlockCount);
+	}
+	
+	static int getBlockCount(int size) {
+		return (size>>BufferFrontedFileStoreCache.LOG_BLOCK_SIZE) + ((size&BufferFrontedFileStoreCache.BLOCK_MASK)>0?1:0);
+	}
+	
+	static byte getSizeIndex(int blockCount) {
+		byte result = 0;
+		while (blockCount > 1) {
+			result++;
+			blockCount = (blockCount>>1) + ((blockCount&0x01)==0?0:1);
 		}
+		return result;
 	}
 	
 	void await(boolean donePinning, boolean doneEvicting) {
@@ -38,6 +38,7 @@ import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.atomic.AtomicInteger;
 
+import org.teiid.common.buffer.ColumnarBatch;
 import org.teiid.core.types.BaseLob;
 import org.teiid.core.types.BinaryType;
 import org.teiid.core.types.DataTypeManager;
@@ -106,6 +107,9 @@ public final class SizeUtility {
 	private long bigIntegerEstimate;
 	private long bigDecimalEstimate;
 	private Class<?>[] types;
+	//the schema costs are computed once so that batch estimates only need to sample the variable width columns
+	private long[] fixedSizes = new long[2];
+	private int[] variableColumns;
 	
 	private static class ClassStats {
 		AtomicInteger samples = new AtomicInteger();
@@ -119,6 +123,25 @@ public final class SizeUtility {
 		bigIntegerEstimate = getSize(isValueCacheEnabled, DataTypeManager.DefaultDataClasses.BIG_INTEGER);
 		bigDecimalEstimate = getSize(isValueCacheEnabled, DataTypeManager.DefaultDataClasses.BIG_DECIMAL);
 		this.types = types;
+		if (types == null) {
+			return;
+		}
+		int variable = 0;
+		for (Class<?> type : types) {
+			if (VARIABLE_SIZE_TYPES.contains(type)) {
+				variable++;
+			} else {
+				fixedSizes[0] += getSize(true, type);
+				fixedSizes[1] += getSize(false, type);
+			}
+		}
+		this.variableColumns = new int[variable];
+		variable = 0;
+		for (int col = 0; col < types.length; col++) {
+			if (VARIABLE_SIZE_TYPES.contains(types[col])) {
+				this.variableColumns[variable++] = col;
+			}
+		}
 	}
 	
     public long getBatchSize(boolean accountForValueCache, List<? extends List<?>> data) {
@@ -129,19 +152,26 @@ public final class SizeUtility {
         long size = 16 + alignMemory(rowLength * REFERENCE_SIZE); 
         // array overhead for all the columns ( 8 object overhead + 4 ref + 4 int)
         size += (rowLength * (48 + alignMemory(colLength * REFERENCE_SIZE))); 
-        for (int col = 0; col < colLength; col++) {
+        size += fixedSizes[accountForValueCache?0:1] * rowLength;
+        if (rowLength == 0) {
+        	return size;
+        }
+        //read columnar values directly rather than through row views
+        ColumnarBatch columns = null;
+        if (data instanceof ColumnarBatch) {
+        	columns = (ColumnarBatch)data;
+        }
+        for (int i = 0; i < variableColumns.length; i++) {
+        	int col = variableColumns[i];
             Class<?> type = types[col];
             int rowsSampled = 0;
             int estimatedSize = 0;
-			if (VARIABLE_SIZE_TYPES.contains(type)) {
-                for (int row = 0; row < rowLength; row=(row*2)+1) {
-                	rowsSampled++;
-                    estimatedSize += getSize(data.get(row).get(col), types[col], true, accountForValueCache);
-                }
-                size += estimatedSize/(float)rowsSampled * rowLength;
-            } else {
-            	size += getSize(accountForValueCache, type) * rowLength;
+            for (int row = 0; row < rowLength; row=(row*2)+1) {
+            	rowsSampled++;
+            	Object value = columns != null?columns.getValue(row, col):data.get(row).get(col);
+                estimatedSize += getSize(value, type, true, accountForValueCache);
             }
+            size += estimatedSize/(float)rowsSampled * rowLength;
         }
         return size;
     }
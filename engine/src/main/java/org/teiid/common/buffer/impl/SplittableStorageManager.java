@@ -26,6 +26,7 @@ import java.io.IOException;
 import java.util.ArrayList;
 import java.util.List;
 
+import org.teiid.common.buffer.ExtensibleBufferedInputStream;
 import org.teiid.common.buffer.FileStore;
 import org.teiid.common.buffer.StorageManager;
 import org.teiid.core.TeiidComponentException;
@@ -139,6 +140,25 @@ public class SplittableStorageManager implements StorageManager {
 			len = length;
 	    }
 	    
+	    @Override
+	    public ExtensibleBufferedInputStream createInputStream(long start,
+	    		long length) {
+	    	if (length > 0 && start/maxFileSize == (start + length - 1)/maxFileSize) {
+	    		//delegate so that the underlying store may provide its own buffers
+	    		FileStore store = null;
+	    		synchronized (this) {
+	    			int index = (int)(start/maxFileSize);
+	    			if (index < storageFiles.size()) {
+	    				store = storageFiles.get(index);
+	    			}
+				}
+	    		if (store != null) {
+	    			return store.createInputStream(start%maxFileSize, length);
+	    		}
+	    	}
+	    	return super.createInputStream(start, length);
+	    }
+
 		public synchronized void removeDirect() {
 			for (int i = storageFiles.size() - 1; i >= 0; i--) {
 				this.storageFiles.remove(i).remove();
@@ -52,6 +52,8 @@ public class CachedResults implements Serializable, Cachable {
 	private String uuid;
 	private boolean hasLobs;
 	private int rowLimit;
+	private long expiration = -1;
+	private transient boolean refreshing;
 	
 	private AccessInfo accessInfo = new AccessInfo();
 	
@@ -125,4 +127,36 @@ public class CachedResults implements Serializable, Cachable {
 		this.rowLimit = rowLimit;
 	}
 	
+	/**
+	 * Set the time after which the results are stale, but may still be 
+	 * used while they are refreshed.
+	 */
+	public void setExpiration(long expiration) {
+		this.expiration = expiration;
+	}
+	
+	public long getExpiration() {
+		return expiration;
+	}
+	
+	public boolean isStale(long time) {
+		return expiration >= 0 && time > expiration;
+	}
+	
+	/**
+	 * Claim the refresh of stale results 
+	 * @return true if the caller should perform the refresh
+	 */
+	public synchronized boolean beginRefresh() {
+		if (refreshing) {
+			return false;
+		}
+		refreshing = true;
+		return true;
+	}
+	
+	public synchronized void endRefresh() {
+		refreshing = false;
+	}
+	
 }
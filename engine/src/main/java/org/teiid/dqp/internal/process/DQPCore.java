@@ -64,6 +64,7 @@ import org.teiid.core.types.Streamable;
 import org.teiid.core.util.ApplicationInfo;
 import org.teiid.core.util.ExecutorUtils;
 import org.teiid.core.util.PropertiesUtils;
+import org.teiid.dqp.internal.process.SessionAwareCache.CacheID;
 import org.teiid.dqp.message.AtomicRequestMessage;
 import org.teiid.dqp.message.RequestID;
 import org.teiid.dqp.service.TransactionContext;
@@ -101,6 +102,8 @@ public class DQPCore implements DQP {
     private TempTableDataManager dataTierMgr;
     private SessionAwareCache<PreparedPlan> prepPlanCache;
     private SessionAwareCache<CachedResults> rsCache;
+    private SemanticCacheIndex semanticCacheIndex;
+    private ConcurrentHashMap<CacheID, RequestWorkItem> inFlightRequests;
     private TransactionService transactionService;
     private EventDistributor eventDistributor;
     
@@ -252,6 +255,7 @@ public class DQPCore implements DQP {
 	    request.setOptions(options);
 	    request.setExecutor(this.processWorkerPool);
 		request.setResultSetCacheEnabled(this.rsCache != null);
+		request.setSemanticCacheIndex(this.semanticCacheIndex);
 		request.setAuthorizationValidator(this.authorizationValidator);
 		request.setUserRequestConcurrency(this.getUserRequestSourceConcurrency());
         ResultsFuture<ResultsMessage> resultsFuture = new ResultsFuture<ResultsMessage>();
@@ -572,6 +576,57 @@ public class DQPCore implements DQP {
 		return rsCache;
 	}
 	
+	SemanticCacheIndex getSemanticCacheIndex() {
+		return semanticCacheIndex;
+	}
+	
+	Options getOptions() {
+		return options;
+	}
+	
+	/**
+	 * @return the cachable requests currently executing keyed by their unscoped {@link CacheID}, 
+	 * or null if request coalescing is not enabled
+	 */
+	ConcurrentHashMap<CacheID, RequestWorkItem> getInFlightRequests() {
+		return inFlightRequests;
+	}
+	
+	/**
+	 * Asynchly re-execute the request that produced the stale results under a temporary session.
+	 * The new results will replace the stale entry when processing completes.
+	 */
+	void refreshCachedResults(DQPWorkContext context, RequestMessage requestMsg, final CachedResults stale) {
+		SessionMetadata current = context.getSession();
+		SessionMetadata session = TempTableDataManager.createTemporarySession(current.getUserName(), "asynch-result-set-refresh", context.getVDB()); //$NON-NLS-1$
+		session.setSubject(current.getSubject());
+		session.setSecurityDomain(current.getSecurityDomain());
+		session.setSecurityContext(current.getSecurityContext());
+		session.addAttchment(CachedResults.class, stale);
+		DQPWorkContext workContext = new DQPWorkContext();
+		workContext.setSession(session);
+		workContext.setPolicies(context.getAllowedDataPolicies());
+		workContext.setSecurityHelper(context.getSecurityHelper());
+		final RequestMessage request = new RequestMessage(requestMsg.getCommandString());
+		request.setParameterValues(requestMsg.getParameterValues());
+		request.setStatementType(requestMsg.isCallableStatement()?StatementType.CALLABLE:requestMsg.isPreparedStatement()?StatementType.PREPARED:StatementType.STATEMENT);
+		request.setAnsiQuotedIdentifiers(requestMsg.isAnsiQuotedIdentifiers());
+		request.setUseResultSetCache(requestMsg.useResultSetCache());
+		request.setRowLimit(requestMsg.getRowLimit());
+		try {
+			workContext.runInContext(new Callable<Void>() {
+				@Override
+				public Void call() throws Exception {
+					executeRequest(0, request);
+					return null;
+				}
+			});
+		} catch (Throwable e) {
+			stale.endRefresh();
+			LogManager.logDetail(LogConstants.CTX_DQP, e, "Could not refresh the stale cached results"); //$NON-NLS-1$
+		}
+	}
+	
 	int getProcessorTimeSlice() {
 		return this.config.getTimeSliceInMilli();
 	}	
@@ -643,6 +698,12 @@ public class DQPCore implements DQP {
         options = new Options();
         options.setProperties(System.getProperties());
         PropertiesUtils.setBeanProperties(options, options.getProperties(), "org.teiid", true); //$NON-NLS-1$
+        if (options.isSemanticResultSetCache() && this.rsCache != null) {
+        	this.semanticCacheIndex = new SemanticCacheIndex(this.rsCache);
+        }
+        if (options.isRequestCoalescing() && this.rsCache != null) {
+        	this.inFlightRequests = new ConcurrentHashMap<CacheID, RequestWorkItem>();
+        }
         LogManager.logDetail(LogConstants.CTX_DQP, "DQPCore started maxThreads", this.config.getMaxThreads(), "maxActivePlans", this.maxActivePlans, "source concurrency", this.userRequestSourceConcurrency); //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
 	}
 	
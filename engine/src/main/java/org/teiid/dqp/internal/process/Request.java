@@ -130,6 +130,9 @@ public class Request {
 	private AuthorizationValidator authorizationValidator;
 	private Executor executor;
 	protected Options options;
+	private SemanticCacheIndex semanticCacheIndex;
+	SemanticCacheIndex.Signature cacheSignature;
+	boolean semanticCacheHit;
 
     void initialize(RequestMessage requestMsg,
                               BufferManager bufferManager,
@@ -156,6 +159,10 @@ public class Request {
 		this.options = options;
 	}
     
+    void setSemanticCacheIndex(SemanticCacheIndex semanticCacheIndex) {
+		this.semanticCacheIndex = semanticCacheIndex;
+	}
+    
 	void setMetadata(CapabilitiesFinder capabilitiesFinder, QueryMetadataInterface metadata) {
 		this.capabilitiesFinder = capabilitiesFinder;
 		this.metadata = metadata;
@@ -388,6 +395,11 @@ public class Request {
         
         command = QueryRewriter.rewrite(command, metadata, context);
         
+        if (this.semanticCacheIndex != null && this.resultSetCacheEnabled && !requestMsg.getRequestOptions().isContinuous() 
+        		&& (requestMsg.useResultSetCache() || command.getCacheHint() != null)) {
+        	this.cacheSignature = SemanticCacheIndex.getSignature(command, workContext);
+        }
+        
         /*
          * Adds a row limit to a query if Statement.setMaxRows has been called and the command
          * doesn't already have a limit clause.
@@ -405,6 +417,15 @@ public class Request {
 			analysisRecord.println("\n============================================================================"); //$NON-NLS-1$
             analysisRecord.println("USER COMMAND:\n" + command);		 //$NON-NLS-1$
         }
+        if (this.cacheSignature != null) {
+        	ProcessorPlan plan = this.semanticCacheIndex.getPlan(this.cacheSignature, workContext);
+        	if (plan != null) {
+        		this.processPlan = plan;
+        		this.semanticCacheHit = true;
+        		LogManager.logDetail(LogConstants.CTX_DQP, requestId, "Answering the request from broader cached results", processPlan); //$NON-NLS-1$
+        		return;
+        	}
+        }
         // Run the optimizer
         try {
             processPlan = QueryOptimizer.optimizePlan(command, metadata, idGenerator, capabilitiesFinder, analysisRecord, context);
@@ -146,7 +146,7 @@ public class RequestWorkItem extends AbstractWorkItem implements PrioritizedRunn
 		}
 	}
 
-	private enum ProcessingState {NEW, PROCESSING, CLOSE}
+	private enum ProcessingState {NEW, WAITING, PROCESSING, CLOSE}
 	private ProcessingState state = ProcessingState.NEW;
     
 	private enum TransactionState {NONE, ACTIVE, DONE}
@@ -165,6 +165,11 @@ public class RequestWorkItem extends AbstractWorkItem implements PrioritizedRunn
     private Options options;
     private final int processorTimeslice;
 	private CacheID cid;
+	private SemanticCacheIndex.Signature cacheSignature;
+	private CachedResults staleResults; //set if this is a background refresh of the stale results
+	private CacheID coalescingKey; //set if identical requests may wait on this one
+	private List<RequestWorkItem> followers;
+	private CacheID coalescedCacheId; //set while waiting on an identical request
 	private final TransactionService transactionService;
 	private final DQPWorkContext dqpWorkContext;
 	boolean active;
@@ -310,9 +315,14 @@ public class RequestWorkItem extends AbstractWorkItem implements PrioritizedRunn
 	protected void process() {
         LogManager.logDetail(LogConstants.CTX_DQP, "Request Thread", requestID, "with state", state); //$NON-NLS-1$ //$NON-NLS-2$
         try {
-            if (this.state == ProcessingState.NEW) {
+            if (this.state == ProcessingState.NEW || this.state == ProcessingState.WAITING) {
+            	boolean waiting = this.state == ProcessingState.WAITING;
                 state = ProcessingState.PROCESSING;
-        		processNew();
+                if (waiting) {
+                	processCoalesced();
+                } else {
+                	processNew();
+                }
                 if (isCanceled) {
                 	setCanceledException();
                     state = ProcessingState.CLOSE;
@@ -547,6 +557,16 @@ public class RequestWorkItem extends AbstractWorkItem implements PrioritizedRunn
 			isClosed = true;
 			
 			dqpCore.removeRequest(this);
+			
+			releaseFollowers();
+			
+			if (this.staleResults != null) {
+				if (this.processingException == null && this.doneProducingBatches) {
+					dqpCore.getRsCache().recordRefresh(System.currentTimeMillis() - this.processingTimestamp);
+				}
+				this.staleResults.endRefresh();
+				dqpCore.terminateSession(this.dqpWorkContext.getSessionId());
+			}
 		    
 			if (this.processingException != null) {
 				sendError();			
@@ -570,6 +590,9 @@ public class RequestWorkItem extends AbstractWorkItem implements PrioritizedRunn
 		CacheID cacheId = null;
 		boolean canUseCached = !requestMsg.getRequestOptions().isContinuous() && (requestMsg.useResultSetCache() || 
 				getCacheHint() != null);
+		if (this.dqpWorkContext.getSession() != null) {
+			this.staleResults = this.dqpWorkContext.getSession().getAttachment(CachedResults.class);
+		}
 		
 		if (rsCache != null) {
 			if (!canUseCached) {
@@ -587,32 +610,99 @@ public class RequestWorkItem extends AbstractWorkItem implements PrioritizedRunn
 							resume();
 						}
 					}
-					CachedResults cr = rsCache.get(cacheId);
-					//check that there are enough cached results
-					//TODO: possibly ignore max rows for caching
-					if (cr != null && (cr.getRowLimit() == 0 || (requestMsg.getRowLimit() != 0 && requestMsg.getRowLimit() <= cr.getRowLimit()))) {
-						this.resultsBuffer = cr.getResults();
-						request.initMetadata();
-						this.originalCommand = cr.getCommand(requestMsg.getCommandString(), request.metadata, pi);
-						if (!request.validateAccess(requestMsg.getCommands(), this.originalCommand, CommandType.CACHED)) {
-							doneProducingBatches();
-							return;
+					//a refresh must not be answered by the stale entry
+					CachedResults cr = this.staleResults != null ? null : rsCache.get(cacheId);
+					if (useCachedResults(cr, pi, cacheId)) {
+						return;
+					}
+					if (cr == null && this.staleResults == null && dqpCore.getInFlightRequests() != null) {
+						CacheID key = new CacheID(this.dqpWorkContext, cacheId);
+						RequestWorkItem leader = dqpCore.getInFlightRequests().putIfAbsent(key, this);
+						if (leader == null) {
+							this.coalescingKey = key;
+							this.followers = new ArrayList<RequestWorkItem>(2);
+							//an identical request may have completed since the lookup
+							if (useCachedResults(rsCache.get(cacheId, false), pi, cacheId)) {
+								return;
+							}
+						} else {
+							if (!leader.addFollower(this)) {
+								//the leader has already finished, just check the cache again
+								moreWork();
+							}
+							LogManager.logDetail(LogConstants.CTX_DQP, requestID, "Waiting on the results of identical request", leader.requestID); //$NON-NLS-1$
+							this.coalescedCacheId = cacheId;
+							this.state = ProcessingState.WAITING;
+							throw BlockedException.block(requestID, "Waiting on the results of identical request", leader.requestID); //$NON-NLS-1$
 						}
-						LogManager.logDetail(LogConstants.CTX_DQP, requestID, "Cached result command to be modified, will not use the cached results", cacheId); //$NON-NLS-1$
-					} 
+					}
 				} else {
 					LogManager.logDetail(LogConstants.CTX_DQP, requestID, "Parameters are not serializable - cache cannot be used for", cacheId); //$NON-NLS-1$
 				}
 			}
 		}
+		planRequest(cachable, cacheId);
+	}
+	
+	/**
+	 * Continue a request that waited on an identical request.  The transaction and the
+	 * initial lookup were already handled by {@link #processNew()}, so only the cache is checked again.
+	 */
+	private void processCoalesced() throws TeiidProcessingException, TeiidComponentException {
+		CacheID cacheId = this.coalescedCacheId;
+		this.coalescedCacheId = null;
+		resume();
+		//the request was already counted by the initial lookup
+		CachedResults cr = dqpCore.getRsCache().get(cacheId, false);
+		if (useCachedResults(cr, Request.createParseInfo(requestMsg), cacheId)) {
+			return;
+		}
+		planRequest(true, cacheId);
+	}
+
+	/**
+	 * @return true if the request will be answered by the cached results
+	 */
+	private boolean useCachedResults(CachedResults cr, ParseInfo pi, CacheID cacheId) throws TeiidProcessingException, TeiidComponentException {
+		//check that there are enough cached results
+		//TODO: possibly ignore max rows for caching
+		if (cr == null || (cr.getRowLimit() != 0 && (requestMsg.getRowLimit() == 0 || requestMsg.getRowLimit() > cr.getRowLimit()))) {
+			return false;
+		}
+		SessionAwareCache<CachedResults> rsCache = dqpCore.getRsCache();
+		boolean refresh = false;
+		if (cr.isStale(System.currentTimeMillis())) {
+			rsCache.recordStaleHit();
+			refresh = cr.beginRefresh();
+		}
+		this.resultsBuffer = cr.getResults();
+		request.initMetadata();
+		this.originalCommand = cr.getCommand(requestMsg.getCommandString(), request.metadata, pi);
+		if (!request.validateAccess(requestMsg.getCommands(), this.originalCommand, CommandType.CACHED)) {
+			if (refresh) {
+				dqpCore.refreshCachedResults(this.dqpWorkContext, requestMsg, cr);
+			}
+			doneProducingBatches();
+			return true;
+		}
+		if (refresh) {
+			cr.endRefresh();
+		}
+		LogManager.logDetail(LogConstants.CTX_DQP, requestID, "Cached result command to be modified, will not use the cached results", cacheId); //$NON-NLS-1$
+		return false;
+	}
+
+	private void planRequest(boolean cachable, CacheID cacheId) throws TeiidProcessingException, TeiidComponentException {
+		SessionAwareCache<CachedResults> rsCache = dqpCore.getRsCache();
 		try {
 			request.processRequest();
 		} finally {
 			analysisRecord = request.analysisRecord;
 		}
 		originalCommand = request.userCommand;
-        if (cachable && (requestMsg.useResultSetCache() || originalCommand.getCacheHint() != null) && rsCache != null && originalCommand.areResultsCachable()) {
+        if (cachable && !request.semanticCacheHit && (requestMsg.useResultSetCache() || originalCommand.getCacheHint() != null) && rsCache != null && originalCommand.areResultsCachable()) {
         	this.cid = cacheId;
+        	this.cacheSignature = request.cacheSignature;
         	//turn on the collection of data objects used
         	request.processor.getContext().setDataObjects(new HashSet<Object>(4));
         }
@@ -728,6 +818,10 @@ public class RequestWorkItem extends AbstractWorkItem implements PrioritizedRunn
             resultsBuffer.close();
             this.cid = null;
 		}
+	    if (this.cid == null) {
+	    	//the results won't be cached
+	    	releaseFollowers();
+	    }
 	    this.returnsUpdateCount = request.returnsUpdateCount;
 	    if (this.returnsUpdateCount && this.requestMsg.getRequestOptions().isContinuous()) {
 			throw new IllegalStateException("Continuous requests are not allowed to be updates."); //$NON-NLS-1$
@@ -780,7 +874,28 @@ public class RequestWorkItem extends AbstractWorkItem implements PrioritizedRunn
         if (determinismLevel.compareTo(Determinism.SESSION_DETERMINISTIC) <= 0) {
 			LogManager.logInfo(LogConstants.CTX_DQP, QueryPlugin.Util.gs(QueryPlugin.Event.TEIID30008, originalCommand));
 		}
-        dqpCore.getRsCache().put(cid, determinismLevel, cr, originalCommand.getCacheHint() != null?originalCommand.getCacheHint().getTtl():null);
+        //favor keeping results that were expensive to compute
+        long sizeEstimate = (long)resultsBuffer.getRowCount() * resultsBuffer.getRowSizeEstimate();
+        long cost = Math.max(1, System.currentTimeMillis() - this.processingTimestamp);
+        Long ttl = originalCommand.getCacheHint() != null?originalCommand.getCacheHint().getTtl():null;
+        int grace = dqpCore.getOptions() != null?dqpCore.getOptions().getStaleWhileRevalidateMillis():0;
+        if (ttl != null && grace > 0 && determinismLevel.compareTo(Determinism.SESSION_DETERMINISTIC) > 0) {
+        	//keep the entry past its ttl so that it may be served while being refreshed
+        	cr.setExpiration(System.currentTimeMillis() + ttl);
+        	ttl += grace;
+        }
+        if (!dqpCore.getRsCache().put(cid, determinismLevel, cr, ttl, sizeEstimate, cost)) {
+        	//not admitted, so the results should be removed on close
+        	this.cid = null;
+        	return;
+        }
+        if (sizeEstimate > processor.getBufferManager().getMaxProcessingSize() && (originalCommand.getCacheHint() == null || !originalCommand.getCacheHint().isPrefersMemory())) {
+        	//large cached results should not displace the batches of active plans
+        	resultsBuffer.evictBatches();
+        }
+        if (cacheSignature != null && cr.getRowLimit() == 0 && dqpCore.getSemanticCacheIndex() != null) {
+        	dqpCore.getSemanticCacheIndex().add(cacheSignature, cid);
+        }
 	}
 	
 	public SessionAwareCache<CachedResults> getRsCache() {
@@ -1194,6 +1309,42 @@ public class RequestWorkItem extends AbstractWorkItem implements PrioritizedRunn
 		    }
 		}
 		addToCache();
+		releaseFollowers();
+		if (this.staleResults != null) {
+			//there is no client for a refresh
+			try {
+				requestClose();
+			} catch (TeiidComponentException e) {
+				LogManager.logDetail(LogConstants.CTX_DQP, e, "Could not close the refresh request", requestID); //$NON-NLS-1$
+			}
+		}
+	}
+
+	private synchronized boolean addFollower(RequestWorkItem follower) {
+		if (this.followers == null) {
+			return false;
+		}
+		this.followers.add(follower);
+		return true;
+	}
+	
+	/**
+	 * Allow the requests waiting on this one to check the cache
+	 */
+	private void releaseFollowers() {
+		if (this.coalescingKey == null) {
+			return;
+		}
+		dqpCore.getInFlightRequests().remove(this.coalescingKey, this);
+		this.coalescingKey = null;
+		List<RequestWorkItem> toRelease = null;
+		synchronized (this) {
+			toRelease = this.followers;
+			this.followers = null;
+		}
+		for (RequestWorkItem follower : toRelease) {
+			follower.moreWork();
+		}
 	}
 
 	private void doneProducingBatches() {
@@ -0,0 +1,237 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * See the COPYRIGHT.txt file distributed with this work for information
+ * regarding copyright ownership.  Some portions may be licensed
+ * to Red Hat, Inc. under one or more contributor license agreements.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA
+ * 02110-1301 USA.
+ */
+
+
+package org.teiid.dqp.internal.process;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.teiid.dqp.internal.process.SessionAwareCache.CacheID;
+import org.teiid.logging.LogConstants;
+import org.teiid.logging.LogManager;
+import org.teiid.query.sql.lang.Command;
+import org.teiid.query.sql.lang.Criteria;
+import org.teiid.query.sql.lang.OrderByItem;
+import org.teiid.query.sql.lang.Query;
+import org.teiid.query.sql.symbol.AggregateSymbol;
+import org.teiid.query.sql.symbol.ElementSymbol;
+import org.teiid.query.sql.symbol.Expression;
+import org.teiid.query.sql.symbol.WindowFunction;
+import org.teiid.query.sql.util.SymbolMap;
+import org.teiid.query.sql.visitor.AggregateSymbolCollectorVisitor;
+import org.teiid.query.sql.visitor.ElementCollectorVisitor;
+import org.teiid.query.sql.visitor.ReferenceCollectorVisitor;
+import org.teiid.query.sql.visitor.ValueIteratorProviderCollectorVisitor;
+
+/**
+ * Tracks the cached results of simple queries so that a query with additional 
+ * criteria may be answered from the results of a broader cached query.
+ * <br>
+ * Only queries without grouping, distinct, subqueries or parameters are considered.
+ * Entries are matched on the rewritten FROM clause.  A cached entry can answer a query
+ * if its criteria conjuncts are a subset of the query's conjuncts, it has no limit, and it
+ * projects all of the columns needed to evaluate the remaining criteria and the query's
+ * select clause.  The remaining criteria, projection, ordering and limit are then applied to
+ * the cached results by a {@link SemanticCachePlan}.
+ */
+public class SemanticCacheIndex {
+	
+	static final int MAX_ENTRIES_PER_KEY = 16;
+	static final int MAX_KEYS = 1024;
+	
+	/**
+	 * The normalized form of an eligible query
+	 */
+	static class Signature {
+		String key;
+		Query query;
+		Set<Criteria> conjuncts;
+	}
+	
+	private static class Entry {
+		CacheID id;
+		Set<Criteria> conjuncts;
+		Map<ElementSymbol, Integer> columns;
+	}
+	
+	private SessionAwareCache<CachedResults> cache;
+	private LinkedHashMap<String, List<Entry>> entries = new LinkedHashMap<String, List<Entry>>(16, .75f, true) {
+		private static final long serialVersionUID = -6402374766434427578L;
+
+		@Override
+		protected boolean removeEldestEntry(java.util.Map.Entry<String, List<Entry>> eldest) {
+			return size() > MAX_KEYS;
+		}
+	};
+	
+	public SemanticCacheIndex(SessionAwareCache<CachedResults> cache) {
+		this.cache = cache;
+	}
+	
+	/**
+	 * Get the signature of the rewritten command
+	 * @return the signature or null if the command is not eligible
+	 */
+	static Signature getSignature(Command command, DQPWorkContext workContext) {
+		if (!(command instanceof Query)) {
+			return null;
+		}
+		Query query = (Query)command;
+		if (query.getFrom() == null 
+				|| query.getInto() != null 
+				|| query.getWith() != null
+				|| query.getGroupBy() != null 
+				|| query.getHaving() != null 
+				|| query.getSelect().isDistinct()
+				|| !ReferenceCollectorVisitor.getReferences(query).isEmpty()
+				|| !ValueIteratorProviderCollectorVisitor.getValueIteratorProviders(query).isEmpty()) {
+			return null;
+		}
+		List<AggregateSymbol> aggs = new ArrayList<AggregateSymbol>();
+		List<WindowFunction> windowFunctions = new ArrayList<WindowFunction>();
+		AggregateSymbolCollectorVisitor.getAggregates(query.getSelect(), aggs, null, null, windowFunctions, null);
+		if (!aggs.isEmpty() || !windowFunctions.isEmpty()) {
+			return null;
+		}
+		if (query.getOrderBy() != null) {
+			for (OrderByItem item : query.getOrderBy().getOrderByItems()) {
+				if (item.isUnrelated()) {
+					return null;
+				}
+			}
+		}
+		Signature result = new Signature();
+		result.key = workContext.getVdbName() + ' ' + workContext.getVdbVersion() + ' ' + query.getFrom();
+		result.query = query;
+		result.conjuncts = new HashSet<Criteria>(Criteria.separateCriteriaByAnd(query.getCriteria()));
+		return result;
+	}
+	
+	/**
+	 * Add an entry for results that have been cached under the given id 
+	 */
+	void add(Signature signature, CacheID id) {
+		if (signature.query.getLimit() != null) {
+			return;
+		}
+		Entry entry = new Entry();
+		entry.id = id;
+		entry.conjuncts = signature.conjuncts;
+		entry.columns = new HashMap<ElementSymbol, Integer>();
+		List<Expression> symbols = signature.query.getSelect().getProjectedSymbols();
+		for (int i = 0; i < symbols.size(); i++) {
+			Expression ex = SymbolMap.getExpression(symbols.get(i));
+			if (ex instanceof ElementSymbol && !entry.columns.containsKey(ex)) {
+				entry.columns.put((ElementSymbol)ex, i);
+			}
+		}
+		if (entry.columns.isEmpty()) {
+			return;
+		}
+		synchronized (this) {
+			List<Entry> list = entries.get(signature.key);
+			if (list == null) {
+				list = new ArrayList<Entry>(2);
+				entries.put(signature.key, list);
+			}
+			for (Iterator<Entry> iter = list.iterator(); iter.hasNext();) {
+				if (iter.next().id.equals(id)) {
+					iter.remove();
+				}
+			}
+			if (list.size() >= MAX_ENTRIES_PER_KEY) {
+				list.remove(0);
+			}
+			list.add(entry);
+		}
+	}
+	
+	/**
+	 * Find a plan that answers the query from broader cached results
+	 * @return the plan or null if there are no usable cached results
+	 */
+	SemanticCachePlan getPlan(Signature signature, DQPWorkContext workContext) {
+		List<Entry> candidates = null;
+		synchronized (this) {
+			List<Entry> list = entries.get(signature.key);
+			if (list == null) {
+				return null;
+			}
+			candidates = new ArrayList<Entry>(list);
+		}
+		List<Expression> select = new ArrayList<Expression>();
+		for (Expression symbol : signature.query.getSelect().getProjectedSymbols()) {
+			select.add(SymbolMap.getExpression(symbol));
+		}
+		Collection<ElementSymbol> selectElements = ElementCollectorVisitor.getElements(signature.query.getSelect(), true);
+		for (int i = candidates.size() - 1; i >= 0; i--) {
+			Entry entry = candidates.get(i);
+			if (!signature.conjuncts.containsAll(entry.conjuncts) || !entry.columns.keySet().containsAll(selectElements)) {
+				continue;
+			}
+			List<Criteria> residual = new ArrayList<Criteria>();
+			for (Criteria crit : signature.conjuncts) {
+				if (!entry.conjuncts.contains(crit)) {
+					residual.add(crit);
+				}
+			}
+			Criteria residualCriteria = Criteria.combineCriteria(residual);
+			if (residualCriteria != null && !entry.columns.keySet().containsAll(ElementCollectorVisitor.getElements(residualCriteria, true))) {
+				continue;
+			}
+			CachedResults cr = cache.get(new CacheID(workContext, entry.id), false);
+			if (cr == null) {
+				remove(signature.key, entry);
+				continue;
+			}
+			if (cr.getRowLimit() != 0) {
+				continue;
+			}
+			LogManager.logDetail(LogConstants.CTX_DQP, "Using the cached results of", entry.id, "with the additional criteria", residualCriteria); //$NON-NLS-1$ //$NON-NLS-2$
+			return new SemanticCachePlan(cr.getResults(), entry.columns, residualCriteria, select, signature.query);
+		}
+		return null;
+	}
+	
+	private synchronized void remove(String key, Entry entry) {
+		List<Entry> list = entries.get(key);
+		if (list != null) {
+			list.remove(entry);
+			if (list.isEmpty()) {
+				entries.remove(key);
+			}
+		}
+	}
+	
+	public synchronized void clear() {
+		entries.clear();
+	}
+	
+}
@@ -0,0 +1,229 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * See the COPYRIGHT.txt file distributed with this work for information
+ * regarding copyright ownership.  Some portions may be licensed
+ * to Red Hat, Inc. under one or more contributor license agreements.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA
+ * 02110-1301 USA.
+ */
+
+
+package org.teiid.dqp.internal.process;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+import org.teiid.common.buffer.BlockedException;
+import org.teiid.common.buffer.BufferManager;
+import org.teiid.common.buffer.TupleBatch;
+import org.teiid.common.buffer.TupleBuffer;
+import org.teiid.common.buffer.TupleSource;
+import org.teiid.core.TeiidComponentException;
+import org.teiid.core.TeiidProcessingException;
+import org.teiid.language.SortSpecification.NullOrdering;
+import org.teiid.query.eval.Evaluator;
+import org.teiid.query.processor.ProcessorDataManager;
+import org.teiid.query.processor.ProcessorPlan;
+import org.teiid.query.processor.relational.SortUtility;
+import org.teiid.query.processor.relational.SortUtility.Mode;
+import org.teiid.query.sql.lang.Criteria;
+import org.teiid.query.sql.lang.Limit;
+import org.teiid.query.sql.lang.OrderBy;
+import org.teiid.query.sql.lang.OrderByItem;
+import org.teiid.query.sql.lang.Query;
+import org.teiid.query.sql.symbol.ElementSymbol;
+import org.teiid.query.sql.symbol.Expression;
+import org.teiid.query.util.CommandContext;
+
+/**
+ * Produces the results of a query by filtering, projecting, sorting and limiting 
+ * the cached results of a broader query.
+ * @see SemanticCacheIndex
+ */
+public class SemanticCachePlan extends ProcessorPlan {
+	
+	private TupleBuffer results;
+	private Map<ElementSymbol, Integer> columns;
+	private Criteria criteria;
+	private List<Expression> select;
+	private Query query;
+	
+	private ProcessorDataManager dataMgr;
+	private BufferManager bufferMgr;
+	
+	private TupleSource source;
+	private SortUtility sortUtility;
+	private TupleBuffer sorted;
+	private int offset;
+	private int rowLimit;
+	private int rowCount;
+	
+	SemanticCachePlan(TupleBuffer results, Map<ElementSymbol, Integer> columns, Criteria criteria, List<Expression> select, Query query) {
+		this.results = results;
+		this.columns = columns;
+		this.criteria = criteria;
+		this.select = select;
+		this.query = query;
+	}
+	
+	@Override
+	public void initialize(CommandContext context, ProcessorDataManager dataMgr,
+			BufferManager bufferMgr) {
+		super.initialize(context, dataMgr, bufferMgr);
+		this.dataMgr = dataMgr;
+		this.bufferMgr = bufferMgr;
+	}
+
+	@Override
+	public List getOutputElements() {
+		return query.getProjectedSymbols();
+	}
+
+	@Override
+	public void open() throws TeiidComponentException, TeiidProcessingException {
+		final Evaluator eval = new Evaluator(columns, dataMgr, getContext());
+		offset = 0;
+		rowLimit = -1;
+		Limit limit = query.getLimit();
+		if (limit != null) {
+			Evaluator limitEval = new Evaluator(Collections.emptyMap(), dataMgr, getContext());
+			if (limit.getOffset() != null) {
+				offset = (Integer)limitEval.evaluate(limit.getOffset(), Collections.emptyList());
+			}
+			if (limit.getRowLimit() != null) {
+				rowLimit = (Integer)limitEval.evaluate(limit.getRowLimit(), Collections.emptyList());
+			}
+		}
+		final TupleSource ts = results.createIndexedTupleSource();
+		source = new TupleSource() {
+			
+			@Override
+			public List<?> nextTuple() throws TeiidComponentException,
+					TeiidProcessingException {
+				List<?> tuple = null;
+				while ((tuple = ts.nextTuple()) != null) {
+					if (criteria != null && !eval.evaluate(criteria, tuple)) {
+						continue;
+					}
+					List<Object> result = new ArrayList<Object>(select.size());
+					for (Expression ex : select) {
+						result.add(eval.evaluate(ex, tuple));
+					}
+					return result;
+				}
+				return null;
+			}
+			
+			@Override
+			public void closeSource() {
+				ts.closeSource();
+			}
+		};
+		OrderBy orderBy = query.getOrderBy();
+		if (orderBy != null) {
+			List<OrderByItem> items = orderBy.getOrderByItems();
+			int[] cols = new int[items.size()];
+			List<Boolean> sortTypes = new ArrayList<Boolean>(items.size());
+			List<NullOrdering> nullOrderings = new ArrayList<NullOrdering>(items.size());
+			for (int i = 0; i < cols.length; i++) {
+				OrderByItem item = items.get(i);
+				cols[i] = item.getExpressionPosition();
+				sortTypes.add(item.isAscending());
+				nullOrderings.add(item.getNullOrdering());
+			}
+			sortUtility = new SortUtility(source, Mode.SORT, bufferMgr, getContext().getConnectionId(), getOutputElements(), sortTypes, nullOrderings, cols);
+			sortUtility.setNonBlocking(true);
+		}
+	}
+
+	@Override
+	public TupleBatch nextBatch() throws BlockedException,
+			TeiidComponentException, TeiidProcessingException {
+		if (sortUtility != null) {
+			sorted = sortUtility.sort();
+			sortUtility = null;
+			source.closeSource();
+			source = sorted.createIndexedTupleSource(true);
+		}
+		for (; offset > 0; offset--) {
+			if (source.nextTuple() == null) {
+				break;
+			}
+		}
+		int batchSize = bufferMgr.getProcessorBatchSize(getOutputElements());
+		List<List<?>> rows = new ArrayList<List<?>>(batchSize);
+		boolean done = false;
+		while (rows.size() < batchSize) {
+			if (rowLimit != -1 && rowCount + rows.size() >= rowLimit) {
+				done = true;
+				break;
+			}
+			List<?> tuple = source.nextTuple();
+			if (tuple == null) {
+				done = true;
+				break;
+			}
+			rows.add(tuple);
+		}
+		TupleBatch result = new TupleBatch(rowCount + 1, rows);
+		rowCount += rows.size();
+		result.setTerminationFlag(done);
+		return result;
+	}
+
+	@Override
+	public void close() throws TeiidComponentException {
+		if (source != null) {
+			source.closeSource();
+			source = null;
+		}
+		if (sortUtility != null) {
+			sortUtility.remove();
+			sortUtility = null;
+		}
+		if (sorted != null) {
+			sorted.remove();
+			sorted = null;
+		}
+	}
+	
+	@Override
+	public void reset() {
+		super.reset();
+		source = null;
+		sortUtility = null;
+		sorted = null;
+		rowCount = 0;
+	}
+
+	@Override
+	public boolean requiresTransaction(boolean transactionalReads) {
+		return false;
+	}
+
+	@Override
+	public SemanticCachePlan clone() {
+		return new SemanticCachePlan(results, columns, criteria, select, query);
+	}
+	
+	@Override
+	public String toString() {
+		return "SemanticCachePlan " + criteria; //$NON-NLS-1$
+	}
+
+}
@@ -25,9 +25,14 @@ package org.teiid.dqp.internal.process;
 import java.io.Serializable;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 
 import org.teiid.adminapi.Admin;
 import org.teiid.cache.Cachable;
@@ -64,9 +69,31 @@ public class SessionAwareCache<T> {
 	private AtomicInteger cacheHit = new AtomicInteger();
 	private AtomicInteger totalRequests = new AtomicInteger();
 	private AtomicInteger cachePuts = new AtomicInteger();
+	private AtomicInteger staleHits = new AtomicInteger();
+	private AtomicInteger refreshCount = new AtomicInteger();
+	private AtomicLong refreshTime = new AtomicLong();
 	
 	private TupleBufferCache bufferManager;
 	
+	/**
+	 * Tracks the entries added subject to the byte budget 
+	 */
+	private class Admission implements Comparable<Admission> {
+		CacheID id;
+		Cache<CacheID, T> cache;
+		long size;
+		double density;
+		
+		@Override
+		public int compareTo(Admission o) {
+			return Double.compare(density, o.density);
+		}
+	}
+	
+	private long maxSizeInBytes = -1;
+	private long sizeInBytes;
+	private Map<CacheID, Admission> admitted = new HashMap<CacheID, Admission>();
+	
 	public SessionAwareCache (String cacheName, final CacheFactory cacheFactory, final Type type, int maxStaleness) {
 		assert (cacheFactory != null);
 		
@@ -89,8 +116,17 @@ public class SessionAwareCache<T> {
 	}	
 	
 	public T get(CacheID id){
+		return get(id, true);
+	}
+	
+	/**
+	 * @param newRequest false if the request was already counted by a prior lookup
+	 */
+	T get(CacheID id, boolean newRequest){
 
-		this.totalRequests.getAndIncrement();
+		if (newRequest) {
+			this.totalRequests.getAndIncrement();
+		}
 		
 		id.setSessionId(id.originalSessionId);
 		T result = localCache.get(id);
@@ -125,6 +161,7 @@ public class SessionAwareCache<T> {
 					} else {
 						this.localCache.remove(id);
 					}
+					untrack(id);
 					return null;
 				}
 			}
@@ -148,6 +185,40 @@ public class SessionAwareCache<T> {
 		return cachePuts.get();
 	}
 	
+	/**
+	 * Record that a stale entry was used while it is refreshed
+	 */
+	public void recordStaleHit() {
+		this.staleHits.getAndIncrement();
+	}
+	
+	public int getStaleHitCount() {
+		return staleHits.get();
+	}
+	
+	/**
+	 * Record the completion of a background refresh of a stale entry
+	 */
+	public void recordRefresh(long millis) {
+		this.refreshCount.getAndIncrement();
+		this.refreshTime.addAndGet(millis);
+	}
+	
+	public int getRefreshCount() {
+		return refreshCount.get();
+	}
+	
+	/**
+	 * @return the average time in milliseconds of background refreshes
+	 */
+	public long getAverageRefreshTime() {
+		int count = refreshCount.get();
+		if (count == 0) {
+			return 0;
+		}
+		return refreshTime.get()/count;
+	}
+	
 	public int getTotalCacheEntries() {
 		if (this.localCache == this.distributedCache) {
 			return this.localCache.size();
@@ -159,7 +230,9 @@ public class SessionAwareCache<T> {
 		if (determinismLevel.compareTo(Determinism.SESSION_DETERMINISTIC) <= 0) {
 			id.setSessionId(id.originalSessionId);
 			LogManager.logTrace(LogConstants.CTX_DQP, "Removing from session/local cache", id); //$NON-NLS-1$
-			return this.localCache.remove(id);
+			T result = this.localCache.remove(id);
+			untrack(id);
+			return result;
 		} 
 		id.setSessionId(null);
 		
@@ -171,15 +244,121 @@ public class SessionAwareCache<T> {
 		}
 		
 		LogManager.logTrace(LogConstants.CTX_DQP, "Removing from global/distributed cache", id); //$NON-NLS-1$
-		return this.distributedCache.remove(id);
+		T result = this.distributedCache.remove(id);
+		untrack(id);
+		return result;
 	}
 	
 	public void put(CacheID id, Determinism determinismLevel, T t, Long ttl){
+		doPut(id, determinismLevel, t, ttl);
+	}
+	
+	/**
+	 * Add an entry subject to the byte budget.  If the budget would be exceeded, entries 
+	 * with a lower cost per byte are removed to make room.  If that would not free enough space,
+	 * the entry is not added.
+	 * @param size the estimated size in bytes, or 0 if the entry should not be tracked
+	 * @param cost the cost of recomputing the entry, such as the processing time in milliseconds 
+	 * @return true if the entry was added
+	 */
+	public boolean put(CacheID id, Determinism determinismLevel, T t, Long ttl, long size, long cost) {
+		if (size <= 0 || maxSizeInBytes < 0) {
+			return doPut(id, determinismLevel, t, ttl) != null;
+		}
+		synchronized (admitted) {
+			if (!admit(size, cost)) {
+				LogManager.logDetail(LogConstants.CTX_DQP, "Not admitting cache entry with estimated size", size, "and cost", cost, id); //$NON-NLS-1$ //$NON-NLS-2$
+				return false;
+			}
+			Cache<CacheID, T> cache = doPut(id, determinismLevel, t, ttl);
+			if (cache == null) {
+				return false;
+			}
+			Admission admission = new Admission();
+			admission.id = new CacheID(id);
+			admission.cache = cache;
+			admission.size = size;
+			admission.density = (double)cost/size;
+			Admission old = admitted.put(admission.id, admission);
+			if (old != null) {
+				sizeInBytes -= old.size;
+			}
+			sizeInBytes += size;
+		}
+		return true;
+	}
+	
+	/**
+	 * Make room for an entry of the given size by removing entries with a 
+	 * lower cost per byte
+	 */
+	private boolean admit(long size, long cost) {
+		if (size > maxSizeInBytes) {
+			return false;
+		}
+		if (sizeInBytes + size <= maxSizeInBytes) {
+			return true;
+		}
+		//remove the tracking of entries that were evicted or expired by the underlying cache
+		for (Iterator<Admission> iter = admitted.values().iterator(); iter.hasNext();) {
+			Admission admission = iter.next();
+			if (admission.cache.get(admission.id) == null) {
+				iter.remove();
+				sizeInBytes -= admission.size;
+			}
+		}
+		long needed = sizeInBytes + size - maxSizeInBytes;
+		if (needed <= 0) {
+			return true;
+		}
+		double density = (double)cost/size;
+		List<Admission> candidates = new ArrayList<Admission>(admitted.values());
+		Collections.sort(candidates);
+		List<Admission> victims = new ArrayList<Admission>();
+		for (Admission admission : candidates) {
+			if (admission.density >= density) {
+				break;
+			}
+			victims.add(admission);
+			needed -= admission.size;
+			if (needed <= 0) {
+				break;
+			}
+		}
+		if (needed > 0) {
+			return false;
+		}
+		for (Admission admission : victims) {
+			LogManager.logDetail(LogConstants.CTX_DQP, "Removing lower cost cache entry", admission.id); //$NON-NLS-1$
+			admission.cache.remove(admission.id);
+			admitted.remove(admission.id);
+			sizeInBytes -= admission.size;
+		}
+		return true;
+	}
+	
+	private void untrack(CacheID id) {
+		if (maxSizeInBytes < 0) {
+			return;
+		}
+		synchronized (admitted) {
+			Admission admission = admitted.remove(id);
+			if (admission != null) {
+				sizeInBytes -= admission.size;
+			}
+		}
+	}
+	
+	/**
+	 * @return the cache the entry was added to, or null if it was not added
+	 */
+	private Cache<CacheID, T> doPut(CacheID id, Determinism determinismLevel, T t, Long ttl){
 		cachePuts.incrementAndGet();
 		if (determinismLevel.compareTo(Determinism.SESSION_DETERMINISTIC) <= 0) {
 			id.setSessionId(id.originalSessionId);
 			LogManager.logTrace(LogConstants.CTX_DQP, "Adding to session/local cache", id); //$NON-NLS-1$
 			this.localCache.put(id, t, ttl);
+			return this.localCache;
 		} 
 		else {
 			
@@ -202,8 +381,10 @@ public class SessionAwareCache<T> {
 			if (insert) {
 				LogManager.logTrace(LogConstants.CTX_DQP, "Adding to global/distributed cache", id); //$NON-NLS-1$
 				this.distributedCache.put(id, t, ttl);
+				return this.distributedCache;
 			}
 		}
+		return null;
 	}
 	
 	/**
@@ -216,11 +397,28 @@ public class SessionAwareCache<T> {
 		this.totalRequests.set(0);
 		this.cacheHit.set(0);
 		this.cachePuts.set(0);
+		this.staleHits.set(0);
+		this.refreshCount.set(0);
+		this.refreshTime.set(0);
+		synchronized (admitted) {
+			this.admitted.clear();
+			this.sizeInBytes = 0;
+		}
 	}	
 	
 	public void clearForVDB(String vdbName, int version) {
 		clearCache(this.localCache, vdbName, version);
 		clearCache(this.distributedCache, vdbName, version);
+		VDBKey vdbKey = new VDBKey(vdbName, version);
+		synchronized (admitted) {
+			for (Iterator<Admission> iter = admitted.values().iterator(); iter.hasNext();) {
+				Admission admission = iter.next();
+				if (admission.id.vdbInfo.equals(vdbKey)) {
+					iter.remove();
+					sizeInBytes -= admission.size;
+				}
+			}
+		}
 	}
 	
 	private void clearCache(Cache<CacheID, T> cache, String vdbName, int version) {
@@ -256,6 +454,29 @@ public class SessionAwareCache<T> {
 			this.originalSessionId = sessionId;
 			this.originalUserName = userName;
 		}
+		
+		private CacheID(CacheID id) {
+			this.sql = id.sql;
+			this.vdbInfo = id.vdbInfo;
+			this.ansiIdentifiers = id.ansiIdentifiers;
+			this.sessionId = id.sessionId;
+			this.originalSessionId = id.originalSessionId;
+			this.parameters = id.parameters;
+			this.userName = id.userName;
+			this.originalUserName = id.originalUserName;
+		}
+		
+		/**
+		 * Create a copy of the given id scoped to the given context
+		 */
+		CacheID(DQPWorkContext context, CacheID id) {
+			this.sql = id.sql;
+			this.vdbInfo = id.vdbInfo;
+			this.ansiIdentifiers = id.ansiIdentifiers;
+			this.parameters = id.parameters;
+			this.originalSessionId = context.getSessionId();
+			this.originalUserName = context.getUserName();
+		}
 
 		
 		public String getSessionId() {
@@ -333,6 +554,26 @@ public class SessionAwareCache<T> {
 		this.modTime = modTime;
 	}
     
+    /**
+     * Set the max estimated size in bytes of the entries added with a size.  -1 indicates no limit.
+     */
+    public void setMaxSizeInBytes(long maxSizeInBytes) {
+		this.maxSizeInBytes = maxSizeInBytes;
+	}
+    
+    public long getMaxSizeInBytes() {
+		return maxSizeInBytes;
+	}
+    
+    /**
+     * @return the estimated size in bytes of the tracked entries
+     */
+    public long getSizeInBytes() {
+    	synchronized (admitted) {
+    		return sizeInBytes;
+		}
+	}
+    
     public static Collection<String> getCacheTypes(){
     	ArrayList<String> caches = new ArrayList<String>();
     	caches.add(Admin.Cache.PREPARED_PLAN_CACHE.toString());
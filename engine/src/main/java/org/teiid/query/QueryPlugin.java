@@ -566,6 +566,11 @@ public class QueryPlugin { // extends Plugin {
     	TEIID31152, 
     	TEIID31153, 
     	TEIID31154,
-    	TEIID31155
+    	TEIID31155,
+    	TEIID31156,
+    	TEIID31157,
+    	TEIID31158,
+    	TEIID31159,
+    	TEIID31160
 	}
 }
@@ -0,0 +1,538 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * See the COPYRIGHT.txt file distributed with this work for information
+ * regarding copyright ownership.  Some portions may be licensed
+ * to Red Hat, Inc. under one or more contributor license agreements.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA
+ * 02110-1301 USA.
+ */
+
+package org.teiid.query.eval;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+import org.teiid.api.exception.query.ExpressionEvaluationException;
+import org.teiid.api.exception.query.FunctionExecutionException;
+import org.teiid.common.buffer.ColumnarBatch;
+import org.teiid.core.types.DataTypeManager;
+import org.teiid.core.types.TransformationException;
+import org.teiid.metadata.FunctionMethod.PushDown;
+import org.teiid.query.QueryPlugin;
+import org.teiid.query.function.FunctionDescriptor;
+import org.teiid.query.sql.lang.CompareCriteria;
+import org.teiid.query.sql.lang.CompoundCriteria;
+import org.teiid.query.sql.lang.Criteria;
+import org.teiid.query.sql.lang.IsNullCriteria;
+import org.teiid.query.sql.lang.SetCriteria;
+import org.teiid.query.sql.symbol.Constant;
+import org.teiid.query.sql.symbol.DerivedExpression;
+import org.teiid.query.sql.symbol.Expression;
+import org.teiid.query.sql.symbol.ExpressionSymbol;
+import org.teiid.query.sql.symbol.Function;
+import org.teiid.translator.SourceSystemFunctions;
+
+/**
+ * Evaluates simple criteria and expressions a batch at a time rather than a row at a time.
+ * <br>
+ * Only comparisons, constant IN lists, IS NULL, AND/OR and the arithmetic and simple string
+ * functions over columns and constants are supported - see {@link #canEvaluate(Criteria)}.
+ * None of these can block or require the {@link Evaluator} context, so a batch evaluation
+ * does not need to be resumable.
+ * <br>
+ * Criteria produce a selection vector - the ascending positions of the rows for which the
+ * criteria is true.  Comparisons of a fixed width {@link ColumnarBatch} column against a
+ * constant are performed directly against the primitive column values.
+ */
+public class BatchEvaluator {
+
+	private static final int PLUS = 0;
+	private static final int MINUS = 1;
+	private static final int MULTIPLY = 2;
+	private static final int DIVIDE = 3;
+	private static final int UCASE = 4;
+	private static final int LCASE = 5;
+	private static final int CONCAT = 6;
+
+	private Map<? extends Expression, Integer> elements;
+
+	public BatchEvaluator(Map<? extends Expression, Integer> elements) {
+		this.elements = elements;
+	}
+
+	/**
+	 * Return true if the criteria may be evaluated by this evaluator
+	 */
+	public boolean canEvaluate(Criteria criteria) {
+		if (criteria instanceof CompoundCriteria) {
+			for (Criteria crit : ((CompoundCriteria)criteria).getCriteria()) {
+				if (!canEvaluate(crit)) {
+					return false;
+				}
+			}
+			return true;
+		}
+		if (criteria instanceof CompareCriteria) {
+			CompareCriteria cc = (CompareCriteria)criteria;
+			return canEvaluate(cc.getLeftExpression()) && canEvaluate(cc.getRightExpression());
+		}
+		if (criteria instanceof IsNullCriteria) {
+			return canEvaluate(((IsNullCriteria)criteria).getExpression());
+		}
+		if (criteria instanceof SetCriteria) {
+			SetCriteria set = (SetCriteria)criteria;
+			if (!canEvaluate(set.getExpression())) {
+				return false;
+			}
+			if (set.isAllConstants()) {
+				return true;
+			}
+			//values not yet marked by the rewriter may still be matched by equality if they have the same type
+			for (Object value : set.getValues()) {
+				if (!(value instanceof Constant)) {
+					return false;
+				}
+				Constant constant = (Constant)value;
+				if (constant.isMultiValued() || (!constant.isNull() && constant.getType() != set.getExpression().getType())) {
+					return false;
+				}
+			}
+			return true;
+		}
+		return false;
+	}
+
+	/**
+	 * Return true if the expression may be evaluated by this evaluator
+	 */
+	public boolean canEvaluate(Expression expression) {
+		if (expression.getType() == null || expression.getType().isArray()) {
+			return false;
+		}
+		if (getIndex(expression) != null) {
+			return true;
+		}
+		if (expression instanceof ExpressionSymbol) {
+			return canEvaluate(((ExpressionSymbol)expression).getExpression());
+		}
+		if (expression instanceof Constant) {
+			return !((Constant)expression).isMultiValued();
+		}
+		if (expression instanceof Function) {
+			Function function = (Function)expression;
+			if (getOperation(function) == -1) {
+				return false;
+			}
+			for (Expression arg : function.getArgs()) {
+				if (!canEvaluate(arg)) {
+					return false;
+				}
+			}
+			return true;
+		}
+		return false;
+	}
+
+	private Integer getIndex(Expression expression) {
+		if (expression instanceof DerivedExpression && elements != null) {
+			return elements.get(expression);
+		}
+		return null;
+	}
+
+	static int getOperation(Function function) {
+		FunctionDescriptor fd = function.getFunctionDescriptor();
+		if (fd == null || fd.getPushdown() == PushDown.MUST_PUSHDOWN || fd.isNullDependent()) {
+			return -1;
+		}
+		Class<?> type = fd.getReturnType();
+		if (function.getArgs().length == 2
+				&& (type == DataTypeManager.DefaultDataClasses.INTEGER
+				|| type == DataTypeManager.DefaultDataClasses.LONG
+				|| type == DataTypeManager.DefaultDataClasses.DOUBLE)
+				&& fd.getTypes()[0] == type && fd.getTypes()[1] == type) {
+			if (fd.isSystemFunction(SourceSystemFunctions.ADD_OP)) {
+				return PLUS;
+			}
+			if (fd.isSystemFunction(SourceSystemFunctions.SUBTRACT_OP)) {
+				return MINUS;
+			}
+			if (fd.isSystemFunction(SourceSystemFunctions.MULTIPLY_OP)) {
+				return MULTIPLY;
+			}
+			if (fd.isSystemFunction(SourceSystemFunctions.DIVIDE_OP)) {
+				return DIVIDE;
+			}
+			return -1;
+		}
+		if (type != DataTypeManager.DefaultDataClasses.STRING) {
+			return -1;
+		}
+		for (Class<?> argType : fd.getTypes()) {
+			if (argType != DataTypeManager.DefaultDataClasses.STRING) {
+				return -1;
+			}
+		}
+		if (function.getArgs().length == 1) {
+			if (fd.isSystemFunction(SourceSystemFunctions.UCASE)) {
+				return UCASE;
+			}
+			if (fd.isSystemFunction(SourceSystemFunctions.LCASE)) {
+				return LCASE;
+			}
+		} else if (function.getArgs().length == 2 && fd.isSystemFunction(SourceSystemFunctions.CONCAT)) {
+			return CONCAT;
+		}
+		return -1;
+	}
+
+	/**
+	 * Filter the selected rows to only those for which the criteria is true.
+	 * @param rows
+	 * @param selection the ascending positions of the rows to consider, which is updated in place
+	 * @param count the number of valid entries in the selection
+	 * @return the number of selected rows
+	 */
+	public int select(Criteria criteria, List<? extends List<?>> rows, int[] selection, int count)
+			throws ExpressionEvaluationException {
+		if (count == 0) {
+			return 0;
+		}
+		if (criteria instanceof CompoundCriteria) {
+			CompoundCriteria compound = (CompoundCriteria)criteria;
+			if (compound.getOperator() == CompoundCriteria.AND) {
+				for (Criteria crit : compound.getCriteria()) {
+					count = select(crit, rows, selection, count);
+					if (count == 0) {
+						break;
+					}
+				}
+				return count;
+			}
+			return selectOr(compound, rows, selection, count);
+		}
+		if (criteria instanceof CompareCriteria) {
+			return selectCompare((CompareCriteria)criteria, rows, selection, count);
+		}
+		if (criteria instanceof IsNullCriteria) {
+			IsNullCriteria isNull = (IsNullCriteria)criteria;
+			Object[] values = null;
+			try {
+				values = evaluate(isNull.getExpression(), rows, selection, count);
+			} catch(ExpressionEvaluationException e) {
+				throw new ExpressionEvaluationException(QueryPlugin.Event.TEIID30323, e, QueryPlugin.Util.gs(QueryPlugin.Event.TEIID30323, criteria));
+			}
+			int result = 0;
+			for (int i = 0; i < count; i++) {
+				if (values[i] == null ^ isNull.isNegated()) {
+					selection[result++] = selection[i];
+				}
+			}
+			return result;
+		}
+		if (criteria instanceof SetCriteria) {
+			return selectIn((SetCriteria)criteria, rows, selection, count);
+		}
+		throw new AssertionError("unsupported criteria " + criteria); //$NON-NLS-1$
+	}
+
+	private int selectOr(CompoundCriteria compound,
+			List<? extends List<?>> rows, int[] selection, int count)
+			throws ExpressionEvaluationException {
+		//each disjunct is only evaluated against the rows not yet selected
+		boolean[] selected = new boolean[rows.size()];
+		int[] remaining = Arrays.copyOf(selection, count);
+		int remainingCount = count;
+		for (Criteria crit : compound.getCriteria()) {
+			int[] candidates = Arrays.copyOf(remaining, remainingCount);
+			int matched = select(crit, rows, candidates, remainingCount);
+			if (matched == 0) {
+				continue;
+			}
+			for (int i = 0; i < matched; i++) {
+				selected[candidates[i]] = true;
+			}
+			int j = 0;
+			for (int i = 0; i < remainingCount; i++) {
+				if (!selected[remaining[i]]) {
+					remaining[j++] = remaining[i];
+				}
+			}
+			remainingCount = j;
+			if (remainingCount == 0) {
+				break;
+			}
+		}
+		int result = 0;
+		for (int i = 0; i < count; i++) {
+			if (selected[selection[i]]) {
+				selection[result++] = selection[i];
+			}
+		}
+		return result;
+	}
+
+	private int selectIn(SetCriteria set, List<? extends List<?>> rows,
+			int[] selection, int count) throws ExpressionEvaluationException {
+		Object[] values = null;
+		try {
+			values = evaluate(set.getExpression(), rows, selection, count);
+		} catch(ExpressionEvaluationException e) {
+			throw new ExpressionEvaluationException(QueryPlugin.Event.TEIID30323, e, QueryPlugin.Util.gs(QueryPlugin.Event.TEIID30323, set));
+		}
+		boolean hasNull = set.getValues().contains(Constant.NULL_CONSTANT);
+		int result = 0;
+		for (int i = 0; i < count; i++) {
+			Object value = values[i];
+			boolean matches = false;
+			if (value == null) {
+				matches = set.getValues().isEmpty() && set.isNegated();
+			} else if (set.getValues().contains(new Constant(value, set.getExpression().getType()))) {
+				matches = !set.isNegated();
+			} else {
+				matches = !hasNull && set.isNegated();
+			}
+			if (matches) {
+				selection[result++] = selection[i];
+			}
+		}
+		return result;
+	}
+
+	private int selectCompare(CompareCriteria criteria, List<? extends List<?>> rows,
+			int[] selection, int count) throws ExpressionEvaluationException {
+		if (rows instanceof ColumnarBatch && criteria.getRightExpression() instanceof Constant) {
+			Integer index = getIndex(criteria.getLeftExpression());
+			Object value = ((Constant)criteria.getRightExpression()).getValue();
+			if (index != null && value != null) {
+				int result = selectColumn(criteria.getOperator(), (ColumnarBatch)rows, index, value, selection, count);
+				if (result >= 0) {
+					return result;
+				}
+			}
+		}
+		Object[] leftValues = null;
+		try {
+			leftValues = evaluate(criteria.getLeftExpression(), rows, selection, count);
+		} catch(ExpressionEvaluationException e) {
+			throw new ExpressionEvaluationException(QueryPlugin.Event.TEIID30312, e, QueryPlugin.Util.gs(QueryPlugin.Event.TEIID30312, "left", criteria)); //$NON-NLS-1$
+		}
+		//the right side is only evaluated for non-null left values
+		int nonNull = 0;
+		for (int i = 0; i < count; i++) {
+			if (leftValues[i] != null) {
+				leftValues[nonNull] = leftValues[i];
+				selection[nonNull++] = selection[i];
+			}
+		}
+		Object[] rightValues = null;
+		try {
+			rightValues = evaluate(criteria.getRightExpression(), rows, selection, nonNull);
+		} catch(ExpressionEvaluationException e) {
+			throw new ExpressionEvaluationException(QueryPlugin.Event.TEIID30312, e, QueryPlugin.Util.gs(QueryPlugin.Event.TEIID30312, "right", criteria)); //$NON-NLS-1$
+		}
+		int result = 0;
+		for (int i = 0; i < nonNull; i++) {
+			if (rightValues[i] != null && Boolean.TRUE.equals(Evaluator.compare(criteria, leftValues[i], rightValues[i]))) {
+				selection[result++] = selection[i];
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * Compare a fixed width column directly against a constant value.
+	 * @return the number of selected rows or -1 if the column is not of the expected type
+	 */
+	private int selectColumn(int operator, ColumnarBatch columns, int col, Object value, int[] selection, int count) {
+		Object column = columns.getColumn(col);
+		int result = 0;
+		if (column instanceof int[] && value instanceof Integer) {
+			int[] vals = (int[])column;
+			int constant = ((Integer)value).intValue();
+			for (int i = 0; i < count; i++) {
+				int row = selection[i];
+				if (!columns.isNull(row, col) && matches(operator, vals[row] < constant ? -1 : (vals[row] == constant ? 0 : 1))) {
+					selection[result++] = row;
+				}
+			}
+			return result;
+		}
+		if (column instanceof long[] && value instanceof Long) {
+			long[] vals = (long[])column;
+			long constant = ((Long)value).longValue();
+			for (int i = 0; i < count; i++) {
+				int row = selection[i];
+				if (!columns.isNull(row, col) && matches(operator, vals[row] < constant ? -1 : (vals[row] == constant ? 0 : 1))) {
+					selection[result++] = row;
+				}
+			}
+			return result;
+		}
+		if (column instanceof double[] && value instanceof Double) {
+			double[] vals = (double[])column;
+			double constant = ((Double)value).doubleValue();
+			for (int i = 0; i < count; i++) {
+				int row = selection[i];
+				if (!columns.isNull(row, col) && matches(operator, Double.compare(vals[row], constant))) {
+					selection[result++] = row;
+				}
+			}
+			return result;
+		}
+		return -1;
+	}
+
+	private static boolean matches(int operator, int compare) {
+		switch (operator) {
+		case CompareCriteria.EQ:
+			return compare == 0;
+		case CompareCriteria.NE:
+			return compare != 0;
+		case CompareCriteria.LT:
+			return compare < 0;
+		case CompareCriteria.LE:
+			return compare <= 0;
+		case CompareCriteria.GT:
+			return compare > 0;
+		case CompareCriteria.GE:
+			return compare >= 0;
+		default:
+			throw new AssertionError();
+		}
+	}
+
+	/**
+	 * Evaluate the expression against the selected rows.
+	 * @return the values for each of the selected rows
+	 */
+	public Object[] evaluate(Expression expression, List<? extends List<?>> rows, int[] selection, int count)
+			throws ExpressionEvaluationException {
+		try {
+			return internalEvaluate(expression, rows, selection, count);
+		} catch (ExpressionEvaluationException e) {
+			throw new ExpressionEvaluationException(QueryPlugin.Event.TEIID30328, e, QueryPlugin.Util.gs(QueryPlugin.Event.TEIID30328, new Object[] {expression, e.getMessage()}));
+		}
+	}
+
+	private Object[] internalEvaluate(Expression expression, List<? extends List<?>> rows, int[] selection, int count)
+			throws ExpressionEvaluationException {
+		Object[] result = new Object[count];
+		Integer index = getIndex(expression);
+		if (index != null) {
+			int col = index.intValue();
+			if (rows instanceof ColumnarBatch) {
+				ColumnarBatch columns = (ColumnarBatch)rows;
+				for (int i = 0; i < count; i++) {
+					result[i] = columns.getValue(selection[i], col);
+				}
+			} else {
+				for (int i = 0; i < count; i++) {
+					result[i] = rows.get(selection[i]).get(col);
+				}
+			}
+			return result;
+		}
+		if (expression instanceof ExpressionSymbol) {
+			return internalEvaluate(((ExpressionSymbol)expression).getExpression(), rows, selection, count);
+		}
+		if (expression instanceof Constant) {
+			Arrays.fill(result, ((Constant)expression).getValue());
+			return result;
+		}
+		Function function = (Function)expression;
+		Expression[] args = function.getArgs();
+		Object[] first = internalEvaluate(args[0], rows, selection, count);
+		Object[] second = args.length > 1 ? internalEvaluate(args[1], rows, selection, count) : null;
+		FunctionDescriptor fd = function.getFunctionDescriptor();
+		int operation = getOperation(function);
+		Class<?> type = fd.getReturnType();
+		try {
+			for (int i = 0; i < count; i++) {
+				Object x = first[i];
+				if (x == null || (second != null && second[i] == null)) {
+					continue;
+				}
+				Object y = second != null ? second[i] : null;
+				switch (operation) {
+				case UCASE:
+					result[i] = ((String)x).toUpperCase();
+					break;
+				case LCASE:
+					result[i] = ((String)x).toLowerCase();
+					break;
+				case CONCAT:
+					result[i] = FunctionDescriptor.importValue((String)x + (String)y, type);
+					break;
+				default:
+					if (type == DataTypeManager.DefaultDataClasses.INTEGER) {
+						result[i] = arithmetic(operation, ((Integer)x).intValue(), ((Integer)y).intValue());
+					} else if (type == DataTypeManager.DefaultDataClasses.LONG) {
+						result[i] = arithmetic(operation, ((Long)x).longValue(), ((Long)y).longValue());
+					} else {
+						result[i] = FunctionDescriptor.importValue(arithmetic(operation, ((Double)x).doubleValue(), ((Double)y).doubleValue()), type);
+					}
+				}
+			}
+		} catch (ArithmeticException e) {
+			throw new FunctionExecutionException(QueryPlugin.Event.TEIID30384, e, QueryPlugin.Util.gs(QueryPlugin.Event.TEIID30384, fd.getFullName()));
+		} catch (TransformationException e) {
+			throw new FunctionExecutionException(e);
+		}
+		return result;
+	}
+
+	private static int arithmetic(int operation, int x, int y) {
+		switch (operation) {
+		case PLUS:
+			return x + y;
+		case MINUS:
+			return x - y;
+		case MULTIPLY:
+			return x * y;
+		default:
+			return x / y;
+		}
+	}
+
+	private static long arithmetic(int operation, long x, long y) {
+		switch (operation) {
+		case PLUS:
+			return x + y;
+		case MINUS:
+			return x - y;
+		case MULTIPLY:
+			return x * y;
+		default:
+			return x / y;
+		}
+	}
+
+	private static double arithmetic(int operation, double x, double y) {
+		switch (operation) {
+		case PLUS:
+			return x + y;
+		case MINUS:
+			return x - y;
+		case MULTIPLY:
+			return x * y;
+		default:
+			return x / y;
+		}
+	}
+
+}
@@ -0,0 +1,631 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * See the COPYRIGHT.txt file distributed with this work for information
+ * regarding copyright ownership.  Some portions may be licensed
+ * to Red Hat, Inc. under one or more contributor license agreements.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA
+ * 02110-1301 USA.
+ */
+
+package org.teiid.query.eval;
+
+import java.util.List;
+import java.util.Map;
+
+import org.teiid.api.exception.query.ExpressionEvaluationException;
+import org.teiid.api.exception.query.FunctionExecutionException;
+import org.teiid.common.buffer.BlockedException;
+import org.teiid.core.TeiidComponentException;
+import org.teiid.core.types.DataTypeManager;
+import org.teiid.core.types.TransformationException;
+import org.teiid.metadata.FunctionMethod.PushDown;
+import org.teiid.query.QueryPlugin;
+import org.teiid.query.function.FunctionDescriptor;
+import org.teiid.query.function.FunctionLibrary;
+import org.teiid.query.sql.lang.CompareCriteria;
+import org.teiid.query.sql.lang.CompoundCriteria;
+import org.teiid.query.sql.lang.Criteria;
+import org.teiid.query.sql.lang.IsNullCriteria;
+import org.teiid.query.sql.lang.NotCriteria;
+import org.teiid.query.sql.lang.SetCriteria;
+import org.teiid.query.sql.symbol.Constant;
+import org.teiid.query.sql.symbol.DerivedExpression;
+import org.teiid.query.sql.symbol.Expression;
+import org.teiid.query.sql.symbol.ExpressionSymbol;
+import org.teiid.query.sql.symbol.Function;
+import org.teiid.query.sql.symbol.Reference;
+import org.teiid.query.sql.util.VariableContext;
+import org.teiid.query.util.CommandContext;
+import org.teiid.translator.SourceSystemFunctions;
+
+/**
+ * Compiles {@link Expression} and {@link Criteria} trees into trees of specialized evaluation
+ * objects, so that repeated evaluation does not need to walk the language objects with the
+ * {@link Evaluator}.
+ * <br>
+ * Each compiled node has a single concrete type for its operation and argument types, so the
+ * call sites are monomorphic.  Integral and double arithmetic is performed directly rather
+ * than through a reflective function invocation.
+ * <br>
+ * Anything that may need the data manager, a subquery or pushdown evaluation is not
+ * compiled - the compile methods return null and the {@link Evaluator} should be used.
+ * The compiled forms are immutable and may be shared by all copies of a plan.
+ */
+public class ExpressionCompiler {
+
+	/**
+	 * Holds the compiled form shared by all copies of a processor node, so
+	 * that a cached plan is compiled only once.
+	 */
+	public static final class Cache<T> {
+		private volatile boolean compiled;
+		private volatile T value;
+
+		public boolean isCompiled() {
+			return compiled;
+		}
+
+		public T get() {
+			return value;
+		}
+
+		public void set(T value) {
+			this.value = value;
+			this.compiled = true;
+		}
+	}
+
+	public static abstract class CompiledExpression {
+		public abstract Object evaluate(List<?> tuple, CommandContext context)
+				throws ExpressionEvaluationException, BlockedException, TeiidComponentException;
+	}
+
+	public static abstract class CompiledCriteria {
+		public abstract Boolean evaluateTVL(List<?> tuple, CommandContext context)
+				throws ExpressionEvaluationException, BlockedException, TeiidComponentException;
+
+		public boolean evaluate(List<?> tuple, CommandContext context)
+				throws ExpressionEvaluationException, BlockedException, TeiidComponentException {
+			return Boolean.TRUE.equals(evaluateTVL(tuple, context));
+		}
+	}
+
+	private static final class ColumnValue extends CompiledExpression {
+		private final int index;
+
+		ColumnValue(int index) {
+			this.index = index;
+		}
+
+		@Override
+		public Object evaluate(List<?> tuple, CommandContext context) {
+			return tuple.get(index);
+		}
+	}
+
+	private static final class ConstantValue extends CompiledExpression {
+		private final Object value;
+
+		ConstantValue(Object value) {
+			this.value = value;
+		}
+
+		@Override
+		public Object evaluate(List<?> tuple, CommandContext context) {
+			return value;
+		}
+	}
+
+	/**
+	 * A prepared statement parameter, which is looked up from the {@link VariableContext} of
+	 * the current context, since the compiled form is shared by executions with different values.
+	 */
+	private static final class ParameterValue extends CompiledExpression {
+		private final Reference ref;
+
+		ParameterValue(Reference ref) {
+			this.ref = ref;
+		}
+
+		@Override
+		public Object evaluate(List<?> tuple, CommandContext context) throws TeiidComponentException {
+			if (context == null) {
+				throw new TeiidComponentException(QueryPlugin.Event.TEIID30328, QueryPlugin.Util.gs(QueryPlugin.Event.TEIID30328, ref, QueryPlugin.Util.getString("Evaluator.no_value"))); //$NON-NLS-1$
+			}
+			return context.getVariableContext().getGlobalValue(ref.getContextSymbol());
+		}
+	}
+
+	/**
+	 * The top level of an expression, which wraps exceptions in the same way as {@link Evaluator#evaluate(Expression, List)}
+	 */
+	private static final class TopLevel extends CompiledExpression {
+		private final CompiledExpression expr;
+		private final Expression expression;
+
+		TopLevel(CompiledExpression expr, Expression expression) {
+			this.expr = expr;
+			this.expression = expression;
+		}
+
+		@Override
+		public Object evaluate(List<?> tuple, CommandContext context)
+				throws ExpressionEvaluationException, BlockedException, TeiidComponentException {
+			try {
+				return expr.evaluate(tuple, context);
+			} catch (ExpressionEvaluationException e) {
+				throw new ExpressionEvaluationException(QueryPlugin.Event.TEIID30328, e, QueryPlugin.Util.gs(QueryPlugin.Event.TEIID30328, new Object[] {expression, e.getMessage()}));
+			}
+		}
+	}
+
+	private static final class IntArithmetic extends CompiledExpression {
+		private final int operation;
+		private final CompiledExpression left;
+		private final CompiledExpression right;
+		private final String name;
+
+		IntArithmetic(int operation, CompiledExpression left, CompiledExpression right, String name) {
+			this.operation = operation;
+			this.left = left;
+			this.right = right;
+			this.name = name;
+		}
+
+		@Override
+		public Object evaluate(List<?> tuple, CommandContext context)
+				throws ExpressionEvaluationException, BlockedException, TeiidComponentException {
+			Object x = left.evaluate(tuple, context);
+			Object y = right.evaluate(tuple, context);
+			if (x == null || y == null) {
+				return null;
+			}
+			int a = ((Integer)x).intValue();
+			int b = ((Integer)y).intValue();
+			switch (operation) {
+			case PLUS:
+				return a + b;
+			case MINUS:
+				return a - b;
+			case MULTIPLY:
+				return a * b;
+			default:
+				if (b == 0) {
+					throw divideByZero(name);
+				}
+				return a / b;
+			}
+		}
+	}
+
+	private static final class LongArithmetic extends CompiledExpression {
+		private final int operation;
+		private final CompiledExpression left;
+		private final CompiledExpression right;
+		private final String name;
+
+		LongArithmetic(int operation, CompiledExpression left, CompiledExpression right, String name) {
+			this.operation = operation;
+			this.left = left;
+			this.right = right;
+			this.name = name;
+		}
+
+		@Override
+		public Object evaluate(List<?> tuple, CommandContext context)
+				throws ExpressionEvaluationException, BlockedException, TeiidComponentException {
+			Object x = left.evaluate(tuple, context);
+			Object y = right.evaluate(tuple, context);
+			if (x == null || y == null) {
+				return null;
+			}
+			long a = ((Long)x).longValue();
+			long b = ((Long)y).longValue();
+			switch (operation) {
+			case PLUS:
+				return a + b;
+			case MINUS:
+				return a - b;
+			case MULTIPLY:
+				return a * b;
+			default:
+				if (b == 0) {
+					throw divideByZero(name);
+				}
+				return a / b;
+			}
+		}
+	}
+
+	private static final class DoubleArithmetic extends CompiledExpression {
+		private final int operation;
+		private final CompiledExpression left;
+		private final CompiledExpression right;
+		private final String name;
+
+		DoubleArithmetic(int operation, CompiledExpression left, CompiledExpression right, String name) {
+			this.operation = operation;
+			this.left = left;
+			this.right = right;
+			this.name = name;
+		}
+
+		@Override
+		public Object evaluate(List<?> tuple, CommandContext context)
+				throws ExpressionEvaluationException, BlockedException, TeiidComponentException {
+			Object x = left.evaluate(tuple, context);
+			Object y = right.evaluate(tuple, context);
+			if (x == null || y == null) {
+				return null;
+			}
+			double a = ((Double)x).doubleValue();
+			double b = ((Double)y).doubleValue();
+			double result = 0;
+			switch (operation) {
+			case PLUS:
+				result = a + b;
+				break;
+			case MINUS:
+				result = a - b;
+				break;
+			case MULTIPLY:
+				result = a * b;
+				break;
+			default:
+				result = a / b;
+			}
+			try {
+				return FunctionDescriptor.importValue(result, DataTypeManager.DefaultDataClasses.DOUBLE);
+			} catch (ArithmeticException e) {
+				throw new FunctionExecutionException(QueryPlugin.Event.TEIID30384, e, QueryPlugin.Util.gs(QueryPlugin.Event.TEIID30384, name));
+			} catch (TransformationException e) {
+				throw new FunctionExecutionException(e);
+			}
+		}
+	}
+
+	/**
+	 * A function invoked through its {@link FunctionDescriptor}
+	 */
+	private static final class FunctionCall extends CompiledExpression {
+		private final FunctionDescriptor fd;
+		private final CompiledExpression[] args;
+		private final boolean requiresContext;
+
+		FunctionCall(FunctionDescriptor fd, CompiledExpression[] args) {
+			this.fd = fd;
+			this.args = args;
+			this.requiresContext = fd.requiresContext();
+		}
+
+		@Override
+		public Object evaluate(List<?> tuple, CommandContext context)
+				throws ExpressionEvaluationException, BlockedException, TeiidComponentException {
+			int start = requiresContext?1:0;
+			Object[] values = new Object[args.length + start];
+			if (requiresContext) {
+				values[0] = context;
+			}
+			for (int i = 0; i < args.length; i++) {
+				values[i + start] = args[i].evaluate(tuple, context);
+			}
+			return fd.invokeFunction(values, context, null);
+		}
+	}
+
+	private static final class Compare extends CompiledCriteria {
+		private final CompareCriteria criteria;
+		private final CompiledExpression left;
+		private final CompiledExpression right;
+
+		Compare(CompareCriteria criteria, CompiledExpression left, CompiledExpression right) {
+			this.criteria = criteria;
+			this.left = left;
+			this.right = right;
+		}
+
+		@Override
+		public Boolean evaluateTVL(List<?> tuple, CommandContext context)
+				throws ExpressionEvaluationException, BlockedException, TeiidComponentException {
+			Object leftValue = null;
+			try {
+				leftValue = left.evaluate(tuple, context);
+			} catch(ExpressionEvaluationException e) {
+	             throw new ExpressionEvaluationException(QueryPlugin.Event.TEIID30312, e, QueryPlugin.Util.gs(QueryPlugin.Event.TEIID30312, "left", criteria)); //$NON-NLS-1$
+			}
+			if (leftValue == null) {
+				return null;
+			}
+			Object rightValue = null;
+			try {
+				rightValue = right.evaluate(tuple, context);
+			} catch(ExpressionEvaluationException e) {
+	             throw new ExpressionEvaluationException(QueryPlugin.Event.TEIID30312, e, QueryPlugin.Util.gs(QueryPlugin.Event.TEIID30312, "right", criteria)); //$NON-NLS-1$
+			}
+			if (rightValue == null) {
+				return null;
+			}
+			return Evaluator.compare(criteria, leftValue, rightValue);
+		}
+	}
+
+	private static final class IsNull extends CompiledCriteria {
+		private final IsNullCriteria criteria;
+		private final CompiledExpression expr;
+
+		IsNull(IsNullCriteria criteria, CompiledExpression expr) {
+			this.criteria = criteria;
+			this.expr = expr;
+		}
+
+		@Override
+		public Boolean evaluateTVL(List<?> tuple, CommandContext context)
+				throws ExpressionEvaluationException, BlockedException, TeiidComponentException {
+			Object value = null;
+			try {
+				value = expr.evaluate(tuple, context);
+			} catch(ExpressionEvaluationException e) {
+	             throw new ExpressionEvaluationException(QueryPlugin.Event.TEIID30323, e, QueryPlugin.Util.gs(QueryPlugin.Event.TEIID30323, criteria));
+			}
+			return (value == null) ^ criteria.isNegated();
+		}
+	}
+
+	private static final class In extends CompiledCriteria {
+		private final SetCriteria criteria;
+		private final CompiledExpression expr;
+		private final boolean hasNull;
+
+		In(SetCriteria criteria, CompiledExpression expr) {
+			this.criteria = criteria;
+			this.expr = expr;
+			this.hasNull = criteria.getValues().contains(Constant.NULL_CONSTANT);
+		}
+
+		@Override
+		public Boolean evaluateTVL(List<?> tuple, CommandContext context)
+				throws ExpressionEvaluationException, BlockedException, TeiidComponentException {
+			Object value = null;
+			try {
+				value = expr.evaluate(tuple, context);
+			} catch(ExpressionEvaluationException e) {
+	             throw new ExpressionEvaluationException(QueryPlugin.Event.TEIID30323, e, QueryPlugin.Util.gs(QueryPlugin.Event.TEIID30323, criteria));
+			}
+			if (value == null) {
+				if (!criteria.getValues().isEmpty()) {
+					return null;
+				}
+				return criteria.isNegated();
+			}
+			if (criteria.getValues().contains(new Constant(value, criteria.getExpression().getType()))) {
+				return !criteria.isNegated();
+			}
+			if (hasNull) {
+				return null;
+			}
+			return criteria.isNegated();
+		}
+	}
+
+	private static final class Compound extends CompiledCriteria {
+		private final boolean and;
+		private final CompiledCriteria[] crits;
+
+		Compound(boolean and, CompiledCriteria[] crits) {
+			this.and = and;
+			this.crits = crits;
+		}
+
+		@Override
+		public Boolean evaluateTVL(List<?> tuple, CommandContext context)
+				throws ExpressionEvaluationException, BlockedException, TeiidComponentException {
+	        Boolean result = and?Boolean.TRUE:Boolean.FALSE;
+			for (int i = 0; i < crits.length; i++) {
+				Boolean value = crits[i].evaluateTVL(tuple, context);
+	            if (value == null) {
+					result = null;
+				} else if (!value.booleanValue()) {
+					if (and) {
+						return Boolean.FALSE;
+					}
+	            } else if (!and) {
+	            	return Boolean.TRUE;
+	            }
+			}
+			return result;
+		}
+	}
+
+	private static final class Not extends CompiledCriteria {
+		private final CompiledCriteria crit;
+
+		Not(CompiledCriteria crit) {
+			this.crit = crit;
+		}
+
+		@Override
+		public Boolean evaluateTVL(List<?> tuple, CommandContext context)
+				throws ExpressionEvaluationException, BlockedException, TeiidComponentException {
+			Boolean result = crit.evaluateTVL(tuple, context);
+			if (result == null) {
+				return null;
+			}
+			return !result.booleanValue();
+		}
+	}
+
+	private static final int PLUS = 0;
+	private static final int MINUS = 1;
+	private static final int MULTIPLY = 2;
+	private static final int DIVIDE = 3;
+
+	private Map<? extends Expression, Integer> elements;
+
+	public ExpressionCompiler(Map<? extends Expression, Integer> elements) {
+		this.elements = elements;
+	}
+
+	static FunctionExecutionException divideByZero(String name) {
+		ArithmeticException e = new ArithmeticException("/ by zero"); //$NON-NLS-1$
+		return new FunctionExecutionException(QueryPlugin.Event.TEIID30384, e, QueryPlugin.Util.gs(QueryPlugin.Event.TEIID30384, name));
+	}
+
+	/**
+	 * Compile the criteria
+	 * @return the compiled criteria or null if the criteria cannot be compiled
+	 */
+	public CompiledCriteria compile(Criteria criteria) {
+		if (criteria instanceof CompoundCriteria) {
+			CompoundCriteria compound = (CompoundCriteria)criteria;
+			CompiledCriteria[] crits = new CompiledCriteria[compound.getCriteria().size()];
+			for (int i = 0; i < crits.length; i++) {
+				crits[i] = compile(compound.getCriteria().get(i));
+				if (crits[i] == null) {
+					return null;
+				}
+			}
+			return new Compound(compound.getOperator() == CompoundCriteria.AND, crits);
+		}
+		if (criteria instanceof NotCriteria) {
+			CompiledCriteria crit = compile(((NotCriteria)criteria).getCriteria());
+			if (crit == null) {
+				return null;
+			}
+			return new Not(crit);
+		}
+		if (criteria instanceof CompareCriteria) {
+			CompareCriteria compare = (CompareCriteria)criteria;
+			CompiledExpression left = compile(compare.getLeftExpression());
+			CompiledExpression right = compile(compare.getRightExpression());
+			if (left == null || right == null) {
+				return null;
+			}
+			return new Compare(compare, left, right);
+		}
+		if (criteria instanceof IsNullCriteria) {
+			CompiledExpression expr = compile(((IsNullCriteria)criteria).getExpression());
+			if (expr == null) {
+				return null;
+			}
+			return new IsNull((IsNullCriteria)criteria, expr);
+		}
+		if (criteria instanceof SetCriteria) {
+			SetCriteria set = (SetCriteria)criteria;
+			if (!set.isAllConstants()) {
+				return null;
+			}
+			CompiledExpression expr = compile(set.getExpression());
+			if (expr == null) {
+				return null;
+			}
+			return new In(set, expr);
+		}
+		return null;
+	}
+
+	/**
+	 * Compile the expression
+	 * @return the compiled expression or null if the expression cannot be compiled
+	 */
+	public CompiledExpression compile(Expression expression) {
+		CompiledExpression expr = compileInternal(expression);
+		if (expr == null) {
+			return null;
+		}
+		return new TopLevel(expr, expression);
+	}
+
+	private CompiledExpression compileInternal(Expression expression) {
+		if (expression instanceof DerivedExpression) {
+			if (elements != null) {
+				Integer index = elements.get(expression);
+				if (index != null) {
+					return new ColumnValue(index.intValue());
+				}
+			}
+			if (expression instanceof ExpressionSymbol) {
+				return compileInternal(((ExpressionSymbol)expression).getExpression());
+			}
+			return null;
+		}
+		if (expression instanceof Constant) {
+			Constant constant = (Constant)expression;
+			if (constant.isMultiValued()) {
+				return null;
+			}
+			return new ConstantValue(constant.getValue());
+		}
+		if (expression instanceof Function) {
+			return compile((Function)expression);
+		}
+		if (expression instanceof Reference) {
+			Reference ref = (Reference)expression;
+			if (ref.isPositional() && ref.getExpression() == null) {
+				return new ParameterValue(ref);
+			}
+			return null;
+		}
+		return null;
+	}
+
+	private CompiledExpression compile(Function function) {
+		FunctionDescriptor fd = function.getFunctionDescriptor();
+		if (fd == null || fd.getPushdown() == PushDown.MUST_PUSHDOWN || function.getName().equalsIgnoreCase(FunctionLibrary.LOOKUP)) {
+			return null;
+		}
+		Expression[] args = function.getArgs();
+		CompiledExpression[] compiledArgs = new CompiledExpression[args.length];
+		for (int i = 0; i < args.length; i++) {
+			compiledArgs[i] = compileInternal(args[i]);
+			if (compiledArgs[i] == null) {
+				return null;
+			}
+		}
+		int operation = getArithmeticOperation(fd);
+		if (operation != -1 && args.length == 2 && !fd.isNullDependent()) {
+			Class<?> type = fd.getReturnType();
+			if (fd.getTypes()[0] == type && fd.getTypes()[1] == type) {
+				if (type == DataTypeManager.DefaultDataClasses.INTEGER) {
+					return new IntArithmetic(operation, compiledArgs[0], compiledArgs[1], fd.getFullName());
+				}
+				if (type == DataTypeManager.DefaultDataClasses.LONG) {
+					return new LongArithmetic(operation, compiledArgs[0], compiledArgs[1], fd.getFullName());
+				}
+				if (type == DataTypeManager.DefaultDataClasses.DOUBLE) {
+					return new DoubleArithmetic(operation, compiledArgs[0], compiledArgs[1], fd.getFullName());
+				}
+			}
+		}
+		return new FunctionCall(fd, compiledArgs);
+	}
+
+	private static int getArithmeticOperation(FunctionDescriptor fd) {
+		if (fd.isSystemFunction(SourceSystemFunctions.ADD_OP)) {
+			return PLUS;
+		}
+		if (fd.isSystemFunction(SourceSystemFunctions.SUBTRACT_OP)) {
+			return MINUS;
+		}
+		if (fd.isSystemFunction(SourceSystemFunctions.MULTIPLY_OP)) {
+			return MULTIPLY;
+		}
+		if (fd.isSystemFunction(SourceSystemFunctions.DIVIDE_OP)) {
+			return DIVIDE;
+		}
+		return -1;
+	}
+
+}
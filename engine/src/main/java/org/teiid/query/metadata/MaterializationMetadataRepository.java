@@ -47,6 +47,11 @@ public class MaterializationMetadataRepository extends MetadataRepository {
 	public static final String MATVIEW_STAGE_TABLE = "{http://www.teiid.org/ext/relational/2012}MATERIALIZED_STAGE_TABLE"; //$NON-NLS-1$
 	public static final String MATVIEW_SHARE_SCOPE = "{http://www.teiid.org/ext/relational/2012}MATVIEW_SHARE_SCOPE"; //$NON-NLS-1$
 	public static final String MATVIEW_ONERROR_ACTION = "{http://www.teiid.org/ext/relational/2012}MATVIEW_ONERROR_ACTION"; //$NON-NLS-1$
+	/**
+	 * For internal materialization, a column whose value increases whenever a row is inserted or updated.
+	 * When set, non-invalidating refreshes only apply the rows at or above the highest value already loaded.
+	 */
+	public static final String MATVIEW_DELTA_COLUMN = "{http://www.teiid.org/ext/relational/2012}MATVIEW_DELTA_COLUMN"; //$NON-NLS-1$
 	
 	public enum LoadStates {NEEDS_LOADING, LOADING, LOADED, FAILED_LOAD};
 	public enum Scope {NONE, VDB, SCHEMA};
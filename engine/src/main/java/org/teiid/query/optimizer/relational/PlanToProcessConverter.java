@@ -161,13 +161,52 @@ public class PlanToProcessConverter {
 					}
 				}
 			} else {
-				nextParent.addChild(child);
+				nextParent.addChild(exchange(nextParent, childNode, child));
 			}
 		}
 
         // Return root of tree for top node
 		return convertedNode;
 	}
+	
+	/**
+	 * Add an {@link ExchangeNode} above a branch of a union or join that may be processed in parallel.
+	 * Access nodes are not exchanged as they are already processed asynchronously.
+	 * Branches that depend upon the row state of their parents, such as nested table joins, 
+	 * are not exchanged as the worker would read the variable context concurrently.
+	 */
+	private RelationalNode exchange(RelationalNode parent, PlanNode childNode, RelationalNode child) {
+		if (context == null || context.getOptions().getQueryParallelism() <= 1 || child instanceof AccessNode || child instanceof ExchangeNode) {
+			return child;
+		}
+		if (!(parent instanceof UnionAllNode) && !(parent instanceof JoinNode && !((JoinNode)parent).isDependent())) {
+			return child;
+		}
+		for (PlanNode node = childNode.getParent(); node != null; node = node.getParent()) {
+			if (node.getProperty(Info.JOIN_STRATEGY) == JoinStrategyType.NESTED_TABLE) {
+				return child;
+			}
+		}
+		if (hasCorrelatedReferences(childNode)) {
+			return child;
+		}
+		ExchangeNode exchangeNode = new ExchangeNode(getID());
+		exchangeNode.setElements(child.getElements());
+		exchangeNode.addChild(child);
+		return exchangeNode;
+	}
+
+	private static boolean hasCorrelatedReferences(PlanNode node) {
+		if (node.hasProperty(Info.CORRELATED_REFERENCES)) {
+			return true;
+		}
+		for (PlanNode child : node.getChildren()) {
+			if (hasCorrelatedReferences(child)) {
+				return true;
+			}
+		}
+		return false;
+	}
 
     protected int getID() {
         return idGenerator.nextInt();
@@ -262,6 +301,12 @@ public class PlanToProcessConverter {
                     List rightExpressions = (List) node.getProperty(NodeConstants.Info.RIGHT_EXPRESSIONS);
                     jnode.setJoinExpressions(leftExpressions, rightExpressions);
                     joinCrits = (List) node.getProperty(NodeConstants.Info.NON_EQUI_JOIN_CRITERIA);
+                } else if (stype == JoinStrategyType.HASH) {
+                	jnode.setJoinStrategy(new HashJoinStrategy());
+                    List leftExpressions = (List) node.getProperty(NodeConstants.Info.LEFT_EXPRESSIONS);
+                    List rightExpressions = (List) node.getProperty(NodeConstants.Info.RIGHT_EXPRESSIONS);
+                    jnode.setJoinExpressions(leftExpressions, rightExpressions);
+                    joinCrits = (List) node.getProperty(NodeConstants.Info.NON_EQUI_JOIN_CRITERIA);
                 } else if (stype == JoinStrategyType.NESTED_TABLE) {
                 	NestedTableJoinStrategy ntjStrategy = new NestedTableJoinStrategy();
                 	jnode.setJoinStrategy(ntjStrategy);
@@ -461,6 +506,7 @@ public class PlanToProcessConverter {
 			case NodeConstants.Types.GROUP:
 				GroupingNode gnode = new GroupingNode(getID());
 				gnode.setRollup(node.hasBooleanProperty(Info.ROLLUP));
+				gnode.setHashAggregation(node.hasBooleanProperty(Info.HASH_AGGREGATION));
 				SymbolMap groupingMap = (SymbolMap)node.getProperty(NodeConstants.Info.SYMBOL_MAP);
 				gnode.setOutputMapping(groupingMap);
 				gnode.setRemoveDuplicates(node.hasBooleanProperty(NodeConstants.Info.IS_DUP_REMOVAL));
@@ -34,6 +34,7 @@ import java.util.Set;
 import org.teiid.api.exception.query.QueryMetadataException;
 import org.teiid.api.exception.query.QueryPlannerException;
 import org.teiid.core.TeiidComponentException;
+import org.teiid.core.types.DataTypeManager;
 import org.teiid.query.analysis.AnalysisRecord;
 import org.teiid.query.metadata.QueryMetadataInterface;
 import org.teiid.query.optimizer.capabilities.CapabilitiesFinder;
@@ -202,7 +203,9 @@ public class RuleImplementJoinStrategy implements OptimizerRule {
 			}
 
 			boolean pushedRight = insertSort(joinNode.getLastChild(), rightExpressions, joinNode, metadata, capabilitiesFinder, pushRight);
-        	if ((!pushedRight || !pushedLeft) && (joinType == JoinType.JOIN_INNER || (joinType == JoinType.JOIN_LEFT_OUTER && !pushedLeft))) {
+			if (!pushedRight && !pushedLeft && useHashJoin(joinNode, joinType, leftExpressions, metadata, context)) {
+				joinNode.setProperty(NodeConstants.Info.JOIN_STRATEGY, JoinStrategyType.HASH);
+			} else if ((!pushedRight || !pushedLeft) && (joinType == JoinType.JOIN_INNER || (joinType == JoinType.JOIN_LEFT_OUTER && !pushedLeft))) {
         		joinNode.setProperty(NodeConstants.Info.JOIN_STRATEGY, JoinStrategyType.ENHANCED_SORT);
         	}
         }
@@ -210,6 +213,35 @@ public class RuleImplementJoinStrategy implements OptimizerRule {
         return plan;
     }
 
+    /**
+     * Determine if a hash join should be used instead of sorting both sides.
+     * Small inputs are left to the enhanced sort join, which will use an in-memory index,
+     * so both sides must have a known cardinality larger than a batch.
+     */
+    static boolean useHashJoin(PlanNode joinNode, JoinType joinType, List<Expression> expressions, QueryMetadataInterface metadata, CommandContext context) throws QueryMetadataException, TeiidComponentException {
+    	if (context == null 
+    			|| !context.getOptions().isHashJoin()
+    			|| (joinType != JoinType.JOIN_INNER && joinType != JoinType.JOIN_LEFT_OUTER)
+    			|| joinNode.getProperty(NodeConstants.Info.DEPENDENT_VALUE_SOURCE) != null
+    			|| joinNode.hasBooleanProperty(Info.IS_SEMI_DEP)
+    			|| joinNode.getProperty(Info.SORT_LEFT) != SortOption.SORT
+    			|| joinNode.getProperty(Info.SORT_RIGHT) != SortOption.SORT) {
+    		return false;
+    	}
+    	for (Expression ex : expressions) {
+    		//the join expressions are of the same type on each side
+    		if (!DataTypeManager.isHashable(ex.getType()) && ex.getType() != DataTypeManager.DefaultDataClasses.BIG_DECIMAL) {
+    			return false;
+    		}
+    	}
+    	float leftCost = NewCalculateCostUtil.computeCostForTree(joinNode.getFirstChild(), metadata);
+    	float rightCost = NewCalculateCostUtil.computeCostForTree(joinNode.getLastChild(), metadata);
+    	if (leftCost == NewCalculateCostUtil.UNKNOWN_VALUE || rightCost == NewCalculateCostUtil.UNKNOWN_VALUE) {
+    		return false;
+    	}
+    	return Math.min(leftCost, rightCost) > context.getProcessorBatchSize();
+    }
+
     /**
      * Insert a sort node under the merge join node.  If necessary, also insert a project
      * node to handle function evaluation.  
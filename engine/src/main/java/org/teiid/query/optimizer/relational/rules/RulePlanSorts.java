@@ -29,6 +29,7 @@ import java.util.List;
 import org.teiid.api.exception.query.QueryMetadataException;
 import org.teiid.api.exception.query.QueryPlannerException;
 import org.teiid.core.TeiidComponentException;
+import org.teiid.core.types.DataTypeManager;
 import org.teiid.query.analysis.AnalysisRecord;
 import org.teiid.query.metadata.QueryMetadataInterface;
 import org.teiid.query.optimizer.capabilities.CapabilitiesFinder;
@@ -60,6 +61,11 @@ import org.teiid.query.util.CommandContext;
  */
 public class RulePlanSorts implements OptimizerRule {
 	
+	/**
+	 * The minimum estimated ratio of input rows to groups for hash aggregation 
+	 */
+	private static final int HASH_AGGREGATION_REDUCTION = 4;
+	
 	@Override
 	public PlanNode execute(PlanNode plan, QueryMetadataInterface metadata,
 			CapabilitiesFinder capabilitiesFinder, RuleStack rules,
@@ -165,12 +171,16 @@ public class RulePlanSorts implements OptimizerRule {
 					}
 				}
 			}
+			if (!node.hasBooleanProperty(NodeConstants.Info.IS_DUP_REMOVAL) && useHashAggregation(node, metadata, context)) {
+				node.setProperty(Info.HASH_AGGREGATION, true);
+			}
 			//TODO: check the join interesting order
 			parentBlocking = true;
 			break;
 		case NodeConstants.Types.JOIN:
 			if (node.getProperty(NodeConstants.Info.JOIN_STRATEGY) == JoinStrategyType.NESTED_LOOP 
-					|| node.getProperty(NodeConstants.Info.JOIN_STRATEGY) == JoinStrategyType.NESTED_TABLE) {
+					|| node.getProperty(NodeConstants.Info.JOIN_STRATEGY) == JoinStrategyType.NESTED_TABLE
+					|| node.getProperty(NodeConstants.Info.JOIN_STRATEGY) == JoinStrategyType.HASH) {
 				break;
 			}
 			/*
@@ -212,6 +222,32 @@ public class RulePlanSorts implements OptimizerRule {
 		return root;
 	}
 
+	/**
+	 * Determine if the grouping should be performed with a hash table rather than 
+	 * a sorted structure.  The output will not be ordered, so this is not possible if 
+	 * the grouping has taken on the sort order of the parent.  The estimated number of
+	 * groups must be known and be significantly smaller than the input.
+	 */
+	static boolean useHashAggregation(PlanNode node, QueryMetadataInterface metadata, CommandContext context) throws QueryMetadataException, TeiidComponentException {
+		if (context == null 
+				|| !context.getOptions().isHashAggregation()
+				|| node.hasBooleanProperty(Info.ROLLUP)
+				|| node.hasProperty(Info.SORT_ORDER)) {
+			return false;
+		}
+		for (Expression ex : (List<Expression>)node.getProperty(Info.GROUP_COLS)) {
+			if (!DataTypeManager.isHashable(ex.getType()) && ex.getType() != DataTypeManager.DefaultDataClasses.BIG_DECIMAL) {
+				return false;
+			}
+		}
+		float groups = NewCalculateCostUtil.computeCostForTree(node, metadata);
+		float rows = NewCalculateCostUtil.computeCostForTree(node.getFirstChild(), metadata);
+		if (groups == NewCalculateCostUtil.UNKNOWN_VALUE || rows == NewCalculateCostUtil.UNKNOWN_VALUE) {
+			return false;
+		}
+		return groups * HASH_AGGREGATION_REDUCTION <= rows;
+	}
+
 	private PlanNode checkForProjectOptimization(PlanNode node, PlanNode root, 
 			QueryMetadataInterface metadata, CapabilitiesFinder capFinder, AnalysisRecord record, CommandContext context) throws QueryMetadataException, TeiidComponentException, QueryPlannerException {
 		PlanNode projectNode = node.getFirstChild();
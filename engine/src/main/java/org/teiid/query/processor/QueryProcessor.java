@@ -154,6 +154,11 @@ public class QueryProcessor implements BatchProducer {
 	        		result.setRowOffset(rowOffset);
 	        		
 	        		if (result.getTerminationFlag()) {
+	        			if (result.getColumns() != null) {
+	        				//the columnar form cannot be modified
+	        				TupleBatch columnar = result;
+	        				result = new TupleBatch(columnar.getBeginRow(), columnar.getTuples());
+	        			}
 	        			result.setTermination(TupleBatch.ITERATION_TERMINATED);
 	        			List<Object> terminationTuple = Arrays.asList(new Object[this.getOutputElements().size()]);
 	        			result.getTuples().add(terminationTuple);
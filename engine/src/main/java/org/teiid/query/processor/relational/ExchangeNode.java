@@ -0,0 +1,318 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * See the COPYRIGHT.txt file distributed with this work for information
+ * regarding copyright ownership.  Some portions may be licensed
+ * to Red Hat, Inc. under one or more contributor license agreements.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA
+ * 02110-1301 USA.
+ */
+
+package org.teiid.query.processor.relational;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Executor;
+
+import org.teiid.common.buffer.BlockedException;
+import org.teiid.common.buffer.BufferManager;
+import org.teiid.common.buffer.BufferManager.BufferReserveMode;
+import org.teiid.common.buffer.TupleBatch;
+import org.teiid.core.TeiidComponentException;
+import org.teiid.core.TeiidProcessingException;
+import org.teiid.core.util.ExecutorUtils;
+import org.teiid.dqp.internal.process.RequestWorkItem;
+import org.teiid.query.processor.ProcessorDataManager;
+import org.teiid.query.processor.QueryProcessor;
+import org.teiid.query.sql.util.VariableContext;
+import org.teiid.query.util.CommandContext;
+
+/**
+ * Processes its child on a separate worker, exchanging batches through a bounded queue.
+ * <br>
+ * The worker is only started if the query has not reached its degree of parallelism, see
+ * {@link CommandContext#acquireParallelWorker()}, and buffer space can be reserved for the
+ * queued batches.  Otherwise the child is processed inline.
+ * <br>
+ * The child subtree is only ever accessed by a single thread at a time and is initialized with
+ * a clone of the {@link CommandContext} so that the worker does not modify the local state of the
+ * consumer.  The worker does not wait - it runs until the child blocks or the queue is full and is
+ * then rescheduled by the consumer, which itself is resumed via {@link RequestWorkItem#moreWork()}
+ * in the same way as for any other blocked processing.
+ */
+public class ExchangeNode extends RelationalNode {
+
+	private static final int QUEUE_BATCHES = 2;
+
+	private final class Worker implements Runnable {
+		@Override
+		public void run() {
+			CommandContext.pushThreadLocalContext(workerContext);
+			try {
+				process();
+			} finally {
+				CommandContext.popThreadLocalContext();
+			}
+		}
+	}
+
+	private int schemaSize;
+
+	//state for the worker
+	private ArrayBlockingQueue<TupleBatch> queue;
+	private CommandContext workerContext;
+	private Executor executor;
+	private final Object lock = new Object();
+	private boolean running;
+	private boolean resume;
+	private volatile boolean done;
+	private volatile boolean closed;
+	private volatile Throwable error;
+	private int reserved;
+	private boolean acquired;
+
+	public ExchangeNode(int nodeID) {
+		super(nodeID);
+	}
+
+	@Override
+	public void initialize(CommandContext context, BufferManager bufferManager,
+			ProcessorDataManager dataMgr) {
+		super.initialize(context, bufferManager, dataMgr);
+		this.schemaSize = getBufferManager().getSchemaSize(getOutputElements());
+	}
+
+	@Override
+	public void reset() {
+		stopWorker();
+		super.reset();
+		this.error = null;
+		this.done = false;
+	}
+
+	@Override
+	public void open() throws TeiidComponentException, TeiidProcessingException {
+		boolean useWorker = startParallelWorker();
+		if (useWorker || workerContext != null) {
+			//(re)connect the child to the context it will be processed with
+			if (useWorker) {
+				workerContext = getContext().clone();
+				workerContext.pushVariableContext(new VariableContext());
+			} else {
+				workerContext = null;
+			}
+			RelationalPlan.connectExternal(getChildren()[0], useWorker?workerContext:getContext(), getDataManager(), getBufferManager());
+		}
+		super.open();
+		if (useWorker) {
+			queue = new ArrayBlockingQueue<TupleBatch>(QUEUE_BATCHES);
+			closed = false;
+			scheduleWorker();
+		}
+	}
+
+	/**
+	 * @return true if the resources for a worker were obtained
+	 */
+	private boolean startParallelWorker() {
+		if (acquired) {
+			return true;
+		}
+		executor = getContext().getExecutor();
+		if (executor == null || executor == ExecutorUtils.getDirectExecutor() || !getContext().acquireParallelWorker()) {
+			return false;
+		}
+		acquired = true;
+		reserved = getBufferManager().reserveBuffers(QUEUE_BATCHES * schemaSize, BufferReserveMode.NO_WAIT);
+		if (reserved < QUEUE_BATCHES * schemaSize) {
+			//not enough memory to justify another worker
+			releaseResources();
+			return false;
+		}
+		return true;
+	}
+
+	/**
+	 * Start the worker if it is not running, otherwise have it check for more
+	 * work before it stops.
+	 */
+	private void scheduleWorker() {
+		synchronized (lock) {
+			if (done || closed) {
+				return;
+			}
+			if (running) {
+				resume = true;
+				return;
+			}
+			running = true;
+		}
+		try {
+			executor.execute(new Worker());
+		} catch (RuntimeException e) {
+			synchronized (lock) {
+				running = false;
+				lock.notifyAll();
+			}
+			throw e;
+		}
+	}
+
+	/**
+	 * @return true if the worker should stop
+	 */
+	private boolean stopRunning() {
+		synchronized (lock) {
+			if (resume && !closed && !done) {
+				resume = false;
+				return false;
+			}
+			resume = false;
+			running = false;
+			lock.notifyAll();
+			return true;
+		}
+	}
+
+	/**
+	 * Fill the queue until the child blocks, the queue is full, or the child is done.
+	 */
+	private void process() {
+		try {
+			while (true) {
+				if (closed || done || queue.remainingCapacity() == 0) {
+					if (stopRunning()) {
+						return;
+					}
+					continue;
+				}
+				TupleBatch batch = null;
+				try {
+					batch = getChildren()[0].nextBatch();
+				} catch (BlockedException e) {
+					if (e == BlockedException.BLOCKED_ON_MEMORY_EXCEPTION || e instanceof QueryProcessor.ExpiredTimeSliceException) {
+						//requeue the request, which will reschedule this worker
+						moreWork();
+					}
+					//otherwise the source will signal more work when it has results
+					if (stopRunning()) {
+						return;
+					}
+					continue;
+				}
+				if (batch.getTerminationFlag()) {
+					done = true;
+				}
+				queue.add(batch);
+				moreWork();
+			}
+		} catch (Throwable e) {
+			error = e;
+			done = true;
+			stopRunning();
+			moreWork();
+		}
+	}
+
+	@Override
+	protected TupleBatch nextBatchDirect() throws BlockedException,
+			TeiidComponentException, TeiidProcessingException {
+		if (queue == null) {
+			return getChildren()[0].nextBatch();
+		}
+		TupleBatch batch = queue.poll();
+		//there is now room in the queue or the worker previously blocked
+		scheduleWorker();
+		if (batch != null) {
+			return batch;
+		}
+		Throwable e = error;
+		if (e != null) {
+			if (e instanceof TeiidComponentException) {
+				throw (TeiidComponentException)e;
+			}
+			if (e instanceof TeiidProcessingException) {
+				throw (TeiidProcessingException)e;
+			}
+			if (e instanceof RuntimeException) {
+				throw (RuntimeException)e;
+			}
+			if (e instanceof Error) {
+				throw (Error)e;
+			}
+			throw new TeiidComponentException(e);
+		}
+		throw BlockedException.block(getContext().getRequestId(), "Blocking on exchange.", getID()); //$NON-NLS-1$
+	}
+
+	private void moreWork() {
+		CommandContext context = getContext();
+		if (context == null) {
+			return;
+		}
+		RequestWorkItem workItem = context.getWorkItem();
+		if (workItem != null) {
+			workItem.moreWork();
+		}
+	}
+
+	@Override
+	public void closeDirect() {
+		stopWorker();
+	}
+
+	/**
+	 * Stop the worker and wait for it to finish, so that the child
+	 * may be safely closed.
+	 */
+	private void stopWorker() {
+		if (queue != null) {
+			boolean interrupted = false;
+			synchronized (lock) {
+				closed = true;
+				while (running) {
+					try {
+						lock.wait();
+					} catch (InterruptedException e) {
+						interrupted = true;
+					}
+				}
+			}
+			if (interrupted) {
+				Thread.currentThread().interrupt();
+			}
+			queue = null;
+		}
+		releaseResources();
+	}
+
+	private void releaseResources() {
+		if (reserved > 0) {
+			getBufferManager().releaseBuffers(reserved);
+			reserved = 0;
+		}
+		if (acquired) {
+			getContext().releaseParallelWorker();
+			acquired = false;
+		}
+	}
+
+	@Override
+	public Object clone() {
+		ExchangeNode clonedNode = new ExchangeNode(super.getID());
+		super.copyTo(clonedNode);
+		return clonedNode;
+	}
+
+}
@@ -38,6 +38,7 @@ import org.teiid.api.exception.query.FunctionExecutionException;
 import org.teiid.client.plan.PlanNode;
 import org.teiid.common.buffer.BlockedException;
 import org.teiid.common.buffer.BufferManager;
+import org.teiid.common.buffer.BufferManager.BufferReserveMode;
 import org.teiid.common.buffer.STree;
 import org.teiid.common.buffer.STree.InsertMode;
 import org.teiid.common.buffer.TupleBatch;
@@ -47,11 +48,16 @@ import org.teiid.core.TeiidComponentException;
 import org.teiid.core.TeiidProcessingException;
 import org.teiid.core.types.DataTypeManager;
 import org.teiid.language.SortSpecification.NullOrdering;
+import org.teiid.logging.LogConstants;
+import org.teiid.logging.LogManager;
+import org.teiid.logging.MessageLevel;
 import org.teiid.query.eval.Evaluator;
 import org.teiid.query.function.aggregate.*;
 import org.teiid.query.processor.BatchCollector;
 import org.teiid.query.processor.BatchCollector.BatchProducer;
+import org.teiid.query.processor.CollectionTupleSource;
 import org.teiid.query.processor.ProcessorDataManager;
+import org.teiid.query.processor.relational.HashJoinStrategy.HashKey;
 import org.teiid.query.processor.relational.SortUtility.Mode;
 import org.teiid.query.sql.LanguageObject;
 import org.teiid.query.sql.lang.OrderBy;
@@ -120,12 +126,22 @@ public class GroupingNode extends SubqueryAwareRelationalNode {
     private int[] accumulatorStateCount;
     private TupleSource groupSortTupleSource;
     private int[] projection;
+    
+    // Hash aggregation
+    private boolean hashAggregation;
+    private Map<HashKey, List<Object>> groupTable;
+    private int[] keyIndexes;
+    private int tableSchemaSize;
+    private int reservedGroups;
+    private int tableReserved;
+    private boolean hashFallback;
 
     private static final int COLLECTION = 1;
     private static final int SORT = 2;
     private static final int GROUP = 3;
     private static final int GROUP_SORT = 4;
     private static final int GROUP_SORT_OUTPUT = 5;
+    private static final int GROUP_HASH = 6;
 	private int[] indexes;
 	private boolean rollup;
 	private HashMap<Integer, Integer> indexMap;
@@ -144,6 +160,8 @@ public class GroupingNode extends SubqueryAwareRelationalNode {
         
         lastRow = null;
         currentGroupTuple = null;
+        removeGroupTable();
+        hashFallback = false;
         
         if (this.functions != null) {
 	    	for (AggregateFunction[] functions : this.functions) {
@@ -347,6 +365,10 @@ public class GroupingNode extends SubqueryAwareRelationalNode {
             return groupPhase();
         }
         
+        if (this.phase == GROUP_HASH) {
+        	groupHashPhase();
+        }
+        
         if (this.phase == GROUP_SORT) {
         	groupSortPhase();
         }
@@ -454,6 +476,17 @@ public class GroupingNode extends SubqueryAwareRelationalNode {
 		    		tree.getComparator().setOrderTypes(sortTypes);
 		    				
 		    		this.groupSortTupleSource = this.getGroupSortTupleSource();
+		    		if (this.hashAggregation) {
+		    			this.groupTable = new HashMap<HashKey, List<Object>>();
+		    			this.keyIndexes = new int[orderBy.size()];
+		    			for (int i = 0; i < keyIndexes.length; i++) {
+		    				keyIndexes[i] = i;
+		    			}
+		    			this.tableSchemaSize = Math.max(1, this.getBufferManager().getSchemaSize(schema));
+		    			this.reservedGroups = getBatchSize();
+		    			this.phase = GROUP_HASH;
+		    			return;
+		    		}
 		    		this.phase = GROUP_SORT;
 		    		return;
         		}
@@ -461,6 +494,7 @@ public class GroupingNode extends SubqueryAwareRelationalNode {
         	
             this.sortUtility = new SortUtility(getGroupSortTupleSource(), removeDuplicates?Mode.DUP_REMOVE_SORT:Mode.SORT, getBufferManager(),
                     getConnectionID(), new ArrayList<Expression>(collectedExpressions.keySet()), sortTypes, nullOrdering, sortIndexes);
+            this.sortUtility.setCommandContext(getContext());
             this.phase = SORT;
         }
     }
@@ -474,34 +508,98 @@ public class GroupingNode extends SubqueryAwareRelationalNode {
 		List<?> tuple = null;
 		while ((tuple = groupSortTupleSource.nextTuple()) != null) {
 			List<?> current = tree.find(tuple);
-			
-			boolean update = false;
-			List<Object> accumulated = new ArrayList<Object>();
-			//not all collected expressions are needed for the key
-			for (int i = 0; i < orderBy.size(); i++) {
-				accumulated.add(tuple.get(i));
-			}
+			List<Object> accumulated = accumulate(tuple, current);
+			tree.insert(accumulated, current != null?InsertMode.UPDATE:InsertMode.NEW, -1);
+		}
+		this.groupSortTupleSource.closeSource();
+		this.groupSortTupleSource = tree.getTupleSource(true);
+		this.phase = GROUP_SORT_OUTPUT;
+	}
+	
+	/**
+	 * Process the input and store the partial accumulator values in a hash table.
+	 * If the table grows beyond what can be reserved, the groups are moved to 
+	 * the tree and processing continues in the group sort phase.
+	 * @throws TeiidComponentException
+	 * @throws TeiidProcessingException
+	 */
+	private void groupHashPhase() throws TeiidComponentException, TeiidProcessingException {
+		List<?> tuple = null;
+		while ((tuple = groupSortTupleSource.nextTuple()) != null) {
+			List<Object> current = groupTable.get(new HashKey(tuple, keyIndexes));
+			List<Object> accumulated = accumulate(tuple, current);
 			if (current != null) {
-				update = true;
+				for (int i = keyIndexes.length; i < accumulated.size(); i++) {
+					current.set(i, accumulated.get(i));
+				}
+				continue;
 			}
-			int index = orderBy.size();
-			for (int i = 0; i < this.groupSortfunctions.length; i++) {
-				AggregateFunction aggregateFunction = this.groupSortfunctions[i];
-				if (update) {
-					aggregateFunction.setState(current, index);
-				} else {
-					aggregateFunction.reset();
+			groupTable.put(new HashKey(accumulated, keyIndexes), accumulated);
+			if (groupTable.size() > reservedGroups && !reserveGroups()) {
+				if (LogManager.isMessageToBeRecorded(LogConstants.CTX_DQP, MessageLevel.DETAIL)) {
+					LogManager.logDetail(LogConstants.CTX_DQP, "Hash aggregation exceeded its reservation, continuing with sorted grouping", getID()); //$NON-NLS-1$
 				}
-				index+=this.accumulatorStateCount[i];
-				aggregateFunction.addInput(tuple, getContext());
-				aggregateFunction.getState(accumulated);
+				for (List<Object> group : groupTable.values()) {
+					tree.insert(group, InsertMode.NEW, -1);
+				}
+				removeGroupTable();
+				this.hashFallback = true;
+				this.phase = GROUP_SORT;
+				return;
 			}
-			tree.insert(accumulated, update?InsertMode.UPDATE:InsertMode.NEW, -1);
 		}
 		this.groupSortTupleSource.closeSource();
-		this.groupSortTupleSource = tree.getTupleSource(true);
+		this.groupSortTupleSource = new CollectionTupleSource(groupTable.values().iterator());
 		this.phase = GROUP_SORT_OUTPUT;
 	}
+	
+	/**
+	 * Attempt to reserve enough buffer space for another batch worth of groups
+	 */
+	private boolean reserveGroups() {
+		int result = getBufferManager().reserveBuffers(tableSchemaSize, BufferReserveMode.NO_WAIT);
+		if (result < tableSchemaSize) {
+			getBufferManager().releaseBuffers(result);
+			return false;
+		}
+		tableReserved += result;
+		reservedGroups += getBatchSize();
+		return true;
+	}
+	
+	private void removeGroupTable() {
+		this.groupTable = null;
+		if (this.tableReserved > 0) {
+			getBufferManager().releaseBuffers(this.tableReserved);
+			this.tableReserved = 0;
+		}
+	}
+
+	/**
+	 * Create the group key and accumulator values after adding the tuple 
+	 * @param current the existing group values or null if this is a new group
+	 */
+	private List<Object> accumulate(List<?> tuple, List<?> current)
+			throws TeiidComponentException, TeiidProcessingException {
+		List<Object> accumulated = new ArrayList<Object>();
+		//not all collected expressions are needed for the key
+		for (int i = 0; i < orderBy.size(); i++) {
+			accumulated.add(tuple.get(i));
+		}
+		int index = orderBy.size();
+		for (int i = 0; i < this.groupSortfunctions.length; i++) {
+			AggregateFunction aggregateFunction = this.groupSortfunctions[i];
+			if (current != null) {
+				aggregateFunction.setState(current, index);
+			} else {
+				aggregateFunction.reset();
+			}
+			index+=this.accumulatorStateCount[i];
+			aggregateFunction.addInput(tuple, getContext());
+			aggregateFunction.getState(accumulated);
+		}
+		return accumulated;
+	}
 
 	/**
 	 * Walk the tree to produce the results
@@ -519,9 +617,9 @@ public class GroupingNode extends SubqueryAwareRelationalNode {
 			for (int i = 0; i < size; i++) {
 				vals.set(i, tuple.get(i));
 			}
+			int index = size;
 			for (int i = 0; i < this.groupSortfunctions.length; i++) {
 				AggregateFunction aggregateFunction = this.groupSortfunctions[i];
-				int index = size;
 				aggregateFunction.setState(tuple, index);
 				index+=this.accumulatorStateCount[i];
 				vals.set(size + i, aggregateFunction.getResult(getContext()));
@@ -659,6 +757,7 @@ public class GroupingNode extends SubqueryAwareRelationalNode {
     		this.tree.remove();
     		this.tree = null;
     	}
+    	removeGroupTable();
     }
 
 	protected void getNodeString(StringBuffer str) {
@@ -676,6 +775,7 @@ public class GroupingNode extends SubqueryAwareRelationalNode {
 		clonedNode.outputMapping = outputMapping;
 		clonedNode.orderBy = orderBy;
 		clonedNode.rollup = rollup;
+		clonedNode.hashAggregation = hashAggregation;
 		return clonedNode;
 	}
 
@@ -701,5 +801,21 @@ public class GroupingNode extends SubqueryAwareRelationalNode {
 	public void setRollup(boolean rollup) {
 		this.rollup = rollup;
 	}
+	
+	/**
+	 * Set to true if the grouping may use a hash table, which does 
+	 * not produce ordered output. 
+	 */
+	public void setHashAggregation(boolean hashAggregation) {
+		this.hashAggregation = hashAggregation;
+	}
+	
+	/**
+	 * @return true if the hash table exceeded its reservation and the grouping
+	 * continued with the sorted tree
+	 */
+	boolean isHashFallback() {
+		return hashFallback;
+	}
 
 }
\ No newline at end of file
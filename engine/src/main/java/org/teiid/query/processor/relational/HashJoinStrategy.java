@@ -0,0 +1,576 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * See the COPYRIGHT.txt file distributed with this work for information
+ * regarding copyright ownership.  Some portions may be licensed
+ * to Red Hat, Inc. under one or more contributor license agreements.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA
+ * 02110-1301 USA.
+ */
+
+package org.teiid.query.processor.relational;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+import org.teiid.common.buffer.BufferManager;
+import org.teiid.common.buffer.BufferManager.BufferReserveMode;
+import org.teiid.common.buffer.BufferManager.TupleSourceType;
+import org.teiid.common.buffer.TupleBuffer;
+import org.teiid.common.buffer.TupleSource;
+import org.teiid.core.TeiidComponentException;
+import org.teiid.core.TeiidProcessingException;
+import org.teiid.logging.LogConstants;
+import org.teiid.logging.LogManager;
+import org.teiid.logging.MessageLevel;
+import org.teiid.query.processor.relational.SourceState.ImplicitBuffer;
+import org.teiid.query.sql.lang.JoinType;
+
+
+/**
+ * A hybrid hash join for Inner and Left Outer equi-joins over unsorted inputs.
+ * <br>
+ * The smaller side (always the right for left outer joins) is used to build an in-memory hash table
+ * on the join expressions.  If the buffer manager will not allow the table to grow, the build side is
+ * partitioned by hash.  The first partition remains in memory and the others are written to
+ * {@link TupleBuffer}s along with the matching probe side rows.  Each spilled partition is then
+ * joined in turn.
+ * <br>
+ * Like the other strategies the processing must be resumable, as either a blocked exception or a full
+ * batch may interrupt processing at any point.
+ */
+public class HashJoinStrategy extends JoinStrategy {
+
+	private enum State {
+		BUILD, PROBE, PARTITION_BUILD, PARTITION_PROBE, DONE
+	}
+
+	/**
+	 * Wraps the join expression values of a tuple so that hashing and equality
+	 * are consistent with the comparison used by the merge join.
+	 * Null values are equal to each other, which is only relevant to grouping.
+	 */
+	static final class HashKey {
+		private final List<?> tuple;
+		private final int[] indexes;
+		private final int hash;
+
+		HashKey(List<?> tuple, int[] indexes) {
+			this.tuple = tuple;
+			this.indexes = indexes;
+			int result = 1;
+			for (int i = 0; i < indexes.length; i++) {
+				result = 31 * result + hash(tuple.get(indexes[i]));
+			}
+			this.hash = result;
+		}
+
+		static int hash(Object value) {
+			if (value == null) {
+				return 0;
+			}
+			if (value instanceof BigDecimal) {
+				BigDecimal bd = (BigDecimal)value;
+				if (bd.signum() == 0) {
+					return 0;
+				}
+				return bd.stripTrailingZeros().hashCode();
+			}
+			return value.hashCode();
+		}
+
+		@Override
+		public int hashCode() {
+			return hash;
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			if (obj == this) {
+				return true;
+			}
+			if (!(obj instanceof HashKey)) {
+				return false;
+			}
+			HashKey other = (HashKey)obj;
+			if (other.hash != this.hash) {
+				return false;
+			}
+			for (int i = 0; i < indexes.length; i++) {
+				Object value = this.tuple.get(this.indexes[i]);
+				Object otherValue = other.tuple.get(other.indexes[i]);
+				if (value instanceof BigDecimal && otherValue instanceof BigDecimal) {
+					if (((BigDecimal)value).compareTo((BigDecimal)otherValue) != 0) {
+						return false;
+					}
+				} else if (value == null || otherValue == null) {
+					if (value != otherValue) {
+						return false;
+					}
+				} else if (!value.equals(otherValue)) {
+					return false;
+				}
+			}
+			return true;
+		}
+	}
+
+	static final int MAX_PARTITIONS = 64;
+
+	private State state = State.BUILD;
+	private boolean buildLeft;
+	private SourceState buildSource;
+	private SourceState probeSource;
+
+	//build state
+	private Map<HashKey, List<List<?>>> table = new HashMap<HashKey, List<List<?>>>();
+	private TupleSource buildTuples;
+	private int buildSchemaSize;
+	private int buildBatchSize;
+	private int tableRows;
+	private int reservedRows;
+	private int tableReserved;
+
+	//partitioning state
+	private int partitionCount;
+	private boolean firstPartitionInMemory;
+	private TupleBuffer[] buildPartitions;
+	private TupleBuffer[] probePartitions;
+	private int currentPartition;
+	//the number of partitions used by the last execution, retained after close
+	private int lastPartitionCount;
+
+	//probe state
+	private TupleSource probeTuples;
+	private List<?> probeTuple;
+	private List<List<?>> matches;
+	private int matchIndex;
+	private boolean matched;
+
+	@Override
+	public HashJoinStrategy clone() {
+		return new HashJoinStrategy();
+	}
+
+	@Override
+	public void initialize(JoinNode joinNode) {
+		super.initialize(joinNode);
+		this.state = State.BUILD;
+		this.lastPartitionCount = 0;
+	}
+
+	@Override
+	public void close() {
+		if (joinNode == null) {
+			return;
+		}
+		releaseTable();
+		table.clear();
+		removePartitions(this.buildPartitions);
+		removePartitions(this.probePartitions);
+		this.buildPartitions = null;
+		this.probePartitions = null;
+		this.partitionCount = 0;
+		this.firstPartitionInMemory = false;
+		closeTupleSources();
+		this.buildSource = null;
+		this.probeSource = null;
+		super.close();
+	}
+
+	private void closeTupleSources() {
+		if (this.buildTuples != null) {
+			this.buildTuples.closeSource();
+			this.buildTuples = null;
+		}
+		if (this.probeTuples != null) {
+			this.probeTuples.closeSource();
+			this.probeTuples = null;
+		}
+		this.probeTuple = null;
+		this.matches = null;
+	}
+
+	private void removePartitions(TupleBuffer[] partitions) {
+		if (partitions == null) {
+			return;
+		}
+		for (TupleBuffer tb : partitions) {
+			if (tb != null) {
+				tb.remove();
+			}
+		}
+	}
+
+	private void releaseTable() {
+		joinNode.getBufferManager().releaseBuffers(tableReserved);
+		tableReserved = 0;
+		tableRows = 0;
+		reservedRows = buildBatchSize;
+	}
+
+	@Override
+	protected void loadRight() throws TeiidComponentException,
+			TeiidProcessingException {
+		if (this.buildSource != null) {
+			return;
+		}
+		//the right side is preferred for the build
+		boolean left = false;
+		if (this.joinNode.getJoinType() != JoinType.JOIN_LEFT_OUTER) {
+			//determine the smaller side in an incremental fashion
+			long size = joinNode.getBatchSize();
+			while (true) {
+				if (this.rightSource.rowCountLE(size)) {
+					break;
+				}
+				if (this.leftSource.rowCountLE(size)) {
+					left = true;
+					break;
+				}
+				size *= 2;
+			}
+		}
+		this.buildLeft = left;
+		if (left) {
+			this.buildSource = this.leftSource;
+			this.probeSource = this.rightSource;
+		} else {
+			this.buildSource = this.rightSource;
+			this.probeSource = this.leftSource;
+		}
+		this.buildSource.setImplicitBuffer(ImplicitBuffer.NONE);
+		this.probeSource.setImplicitBuffer(ImplicitBuffer.NONE);
+		BufferManager bm = joinNode.getBufferManager();
+		this.buildSchemaSize = Math.max(1, bm.getSchemaSize(this.buildSource.getSource().getElements()));
+		this.buildBatchSize = this.buildSource.getSource().getBatchSize();
+		this.reservedRows = this.buildBatchSize;
+		if (LogManager.isMessageToBeRecorded(LogConstants.CTX_DQP, MessageLevel.DETAIL)) {
+			LogManager.logDetail(LogConstants.CTX_DQP, "hash join building on the", left?"left":"right", joinNode.getID()); //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
+		}
+	}
+
+	@Override
+	protected void process() throws TeiidComponentException,
+			TeiidProcessingException {
+		while (true) {
+			switch (state) {
+			case BUILD:
+				if (buildTuples == null) {
+					buildTuples = this.buildSource.getIterator();
+				}
+				build(buildTuples);
+				buildTuples = null;
+				if (partitionCount > 0) {
+					for (TupleBuffer tb : buildPartitions) {
+						if (tb != null) {
+							tb.close();
+						}
+					}
+				}
+				state = State.PROBE;
+				probeTuples = this.probeSource.getIterator();
+				break;
+			case PROBE:
+				probe();
+				probeTuples = null;
+				if (partitionCount == 0) {
+					state = State.DONE;
+					break;
+				}
+				for (TupleBuffer tb : probePartitions) {
+					if (tb != null) {
+						tb.close();
+					}
+				}
+				table.clear();
+				releaseTable();
+				currentPartition = firstPartitionInMemory?0:-1;
+				state = State.PARTITION_BUILD;
+				break;
+			case PARTITION_BUILD:
+				table.clear();
+				releaseTable();
+				if (!nextPartition()) {
+					state = State.DONE;
+					break;
+				}
+				TupleBuffer buildPartition = buildPartitions[currentPartition];
+				if (buildPartition != null) {
+					buildPartitions[currentPartition] = null;
+					//the whole partition must be held in memory
+					int toReserve = (int)Math.min(Integer.MAX_VALUE, (long)buildSchemaSize * buildPartition.getRowCount() / buildBatchSize);
+					tableReserved = joinNode.getBufferManager().reserveBuffers(toReserve, BufferReserveMode.FORCE);
+					TupleSource ts = buildPartition.createIndexedTupleSource(true);
+					List<?> tuple = null;
+					while ((tuple = ts.nextTuple()) != null) {
+						add(new HashKey(tuple, buildSource.getExpressionIndexes()), tuple);
+					}
+					ts.closeSource();
+					buildPartition.remove();
+				}
+				probeTuples = probePartitions[currentPartition].createIndexedTupleSource(true);
+				state = State.PARTITION_PROBE;
+				break;
+			case PARTITION_PROBE:
+				probe();
+				probeTuples.closeSource();
+				probeTuples = null;
+				removePartition(probePartitions, currentPartition);
+				state = State.PARTITION_BUILD;
+				break;
+			case DONE:
+				return;
+			}
+		}
+	}
+
+	/**
+	 * @return the number of partitions the build side was split into, 0 if the join was performed in memory
+	 */
+	int getLastPartitionCount() {
+		return lastPartitionCount;
+	}
+
+	/**
+	 * Advance to the next partition that may produce output
+	 */
+	private boolean nextPartition() {
+		while (++currentPartition < partitionCount) {
+			if (probePartitions[currentPartition] != null 
+					&& (buildPartitions[currentPartition] != null || this.joinNode.getJoinType() == JoinType.JOIN_LEFT_OUTER)) {
+				return true;
+			}
+			//no output is possible
+			removePartition(buildPartitions, currentPartition);
+			removePartition(probePartitions, currentPartition);
+		}
+		return false;
+	}
+	
+	private void removePartition(TupleBuffer[] partitions, int partition) {
+		if (partitions[partition] != null) {
+			partitions[partition].remove();
+			partitions[partition] = null;
+		}
+	}
+
+	private void build(TupleSource ts) throws TeiidComponentException,
+			TeiidProcessingException {
+		int[] indexes = this.buildSource.getExpressionIndexes();
+		outer: while (true) {
+			List<?> tuple = ts.nextTuple();
+			if (tuple == null) {
+				break;
+			}
+			for (int i : indexes) {
+				if (tuple.get(i) == null) {
+					//can never match
+					continue outer;
+				}
+			}
+			HashKey key = new HashKey(tuple, indexes);
+			if (partitionCount > 0) {
+				int partition = getPartition(key);
+				if (partition != 0 || !firstPartitionInMemory) {
+					getBuildPartition(partition).addTuple(tuple);
+					continue;
+				}
+			}
+			add(key, tuple);
+			if (++tableRows > reservedRows && !reserve()) {
+				if (partitionCount == 0) {
+					partition();
+				} else {
+					spillFirstPartition();
+				}
+			}
+		}
+	}
+
+	private void add(HashKey key, List<?> tuple) {
+		List<List<?>> values = table.get(key);
+		if (values == null) {
+			values = new ArrayList<List<?>>(2);
+			table.put(key, values);
+		}
+		values.add(tuple);
+	}
+
+	/**
+	 * Attempt to reserve enough buffer space for another batch worth of rows
+	 */
+	private boolean reserve() {
+		int result = joinNode.getBufferManager().reserveBuffers(buildSchemaSize, BufferReserveMode.NO_WAIT);
+		if (result < buildSchemaSize) {
+			joinNode.getBufferManager().releaseBuffers(result);
+			return false;
+		}
+		tableReserved += result;
+		reservedRows += buildBatchSize;
+		return true;
+	}
+
+	/**
+	 * Switch to the hybrid mode.  All but the first partition will be written out.
+	 */
+	private void partition() throws TeiidComponentException, TeiidProcessingException {
+		//estimate the number of partitions needed so that each will fit into the memory already used
+		long rows = Math.max(tableRows, this.buildSource.getIncrementalRowCount(true));
+		long ratio = Math.max(1, rows / Math.max(1, tableRows));
+		partitionCount = (int)Math.min(MAX_PARTITIONS, Math.max(4, Integer.highestOneBit((int)Math.min(Integer.MAX_VALUE, ratio)) * 4));
+		buildPartitions = new TupleBuffer[partitionCount];
+		probePartitions = new TupleBuffer[partitionCount];
+		firstPartitionInMemory = true;
+		lastPartitionCount = partitionCount;
+		if (LogManager.isMessageToBeRecorded(LogConstants.CTX_DQP, MessageLevel.DETAIL)) {
+			LogManager.logDetail(LogConstants.CTX_DQP, "hash join partitioning into", partitionCount, "partitions", joinNode.getID()); //$NON-NLS-1$ //$NON-NLS-2$
+		}
+		int remaining = 0;
+		for (Iterator<Map.Entry<HashKey, List<List<?>>>> iter = table.entrySet().iterator(); iter.hasNext();) {
+			Map.Entry<HashKey, List<List<?>>> entry = iter.next();
+			int partition = getPartition(entry.getKey());
+			if (partition == 0) {
+				remaining += entry.getValue().size();
+				continue;
+			}
+			TupleBuffer tb = getBuildPartition(partition);
+			for (List<?> tuple : entry.getValue()) {
+				tb.addTuple(tuple);
+			}
+			iter.remove();
+		}
+		releaseTable();
+		tableRows = remaining;
+		while (tableRows > reservedRows) {
+			if (!reserve()) {
+				spillFirstPartition();
+				break;
+			}
+		}
+	}
+
+	/**
+	 * The first partition also needs to be written out
+	 */
+	private void spillFirstPartition() throws TeiidComponentException {
+		TupleBuffer tb = getBuildPartition(0);
+		for (List<List<?>> values : table.values()) {
+			for (List<?> tuple : values) {
+				tb.addTuple(tuple);
+			}
+		}
+		table.clear();
+		releaseTable();
+		firstPartitionInMemory = false;
+	}
+
+	private int getPartition(HashKey key) {
+		//use the high order bits as the hash map will favor the low order bits
+		int hash = key.hashCode();
+		hash ^= (hash >>> 16);
+		return (hash & Integer.MAX_VALUE) % partitionCount;
+	}
+
+	private TupleBuffer getBuildPartition(int partition) throws TeiidComponentException {
+		if (buildPartitions[partition] == null) {
+			buildPartitions[partition] = createPartition(buildSource);
+		}
+		return buildPartitions[partition];
+	}
+
+	private TupleBuffer getProbePartition(int partition) throws TeiidComponentException {
+		if (probePartitions[partition] == null) {
+			probePartitions[partition] = createPartition(probeSource);
+		}
+		return probePartitions[partition];
+	}
+
+	private TupleBuffer createPartition(SourceState sourceState) throws TeiidComponentException {
+		TupleBuffer tb = joinNode.getBufferManager().createTupleBuffer(sourceState.getSource().getElements(), joinNode.getConnectionID(), TupleSourceType.PROCESSOR);
+		tb.setForwardOnly(true);
+		return tb;
+	}
+
+	private void probe() throws TeiidComponentException,
+			TeiidProcessingException {
+		int[] indexes = this.probeSource.getExpressionIndexes();
+		boolean outer = this.joinNode.getJoinType() == JoinType.JOIN_LEFT_OUTER;
+		while (true) {
+			if (this.probeTuple == null) {
+				List<?> tuple = this.probeTuples.nextTuple();
+				if (tuple == null) {
+					return;
+				}
+				HashKey key = null;
+				boolean hasNull = false;
+				for (int i : indexes) {
+					if (tuple.get(i) == null) {
+						hasNull = true;
+						break;
+					}
+				}
+				if (!hasNull) {
+					key = new HashKey(tuple, indexes);
+					if (state == State.PROBE && partitionCount > 0) {
+						int partition = getPartition(key);
+						if (partition != 0 || !firstPartitionInMemory) {
+							getProbePartition(partition).addTuple(tuple);
+							continue;
+						}
+					}
+				}
+				this.probeTuple = tuple;
+				this.matched = false;
+				this.matchIndex = 0;
+				this.matches = key != null?table.get(key):null;
+			}
+			if (this.matches == null || this.matchIndex >= this.matches.size()) {
+				List<?> tuple = this.probeTuple;
+				this.probeTuple = null;
+				this.matches = null;
+				if (!this.matched && outer) {
+					this.joinNode.addBatchRow(outputTuple(tuple, this.rightSource.getOuterVals()));
+				}
+				continue;
+			}
+			List<?> buildTuple = this.matches.get(this.matchIndex++);
+			List outputTuple = null;
+			if (buildLeft) {
+				outputTuple = outputTuple(buildTuple, this.probeTuple);
+			} else {
+				outputTuple = outputTuple(this.probeTuple, buildTuple);
+			}
+			if (this.joinNode.matchesCriteria(outputTuple)) {
+				this.matched = true;
+				this.joinNode.addBatchRow(outputTuple);
+			}
+		}
+	}
+
+	public String getName() {
+		return "HASH JOIN"; //$NON-NLS-1$
+	}
+
+	@Override
+	public String toString() {
+		return getName();
+	}
+
+}
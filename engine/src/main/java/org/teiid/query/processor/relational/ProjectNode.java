@@ -34,15 +34,22 @@ import java.util.Map;
 import org.teiid.api.exception.query.ExpressionEvaluationException;
 import org.teiid.client.plan.PlanNode;
 import org.teiid.common.buffer.BlockedException;
+import org.teiid.common.buffer.BufferManager;
+import org.teiid.common.buffer.ColumnarBatch;
 import org.teiid.common.buffer.TupleBatch;
 import org.teiid.common.buffer.TupleBuffer;
 import org.teiid.core.TeiidComponentException;
 import org.teiid.core.TeiidProcessingException;
 import org.teiid.query.analysis.AnalysisRecord;
+import org.teiid.query.eval.BatchEvaluator;
+import org.teiid.query.eval.ExpressionCompiler;
+import org.teiid.query.eval.ExpressionCompiler.CompiledExpression;
+import org.teiid.query.processor.ProcessorDataManager;
 import org.teiid.query.sql.LanguageObject;
 import org.teiid.query.sql.symbol.AliasSymbol;
 import org.teiid.query.sql.symbol.Expression;
 import org.teiid.query.sql.util.SymbolMap;
+import org.teiid.query.util.CommandContext;
 
 
 public class ProjectNode extends SubqueryAwareRelationalNode {
@@ -58,6 +65,13 @@ public class ProjectNode extends SubqueryAwareRelationalNode {
     // Saved state when blocked on evaluating a row - must be reset
     private TupleBatch currentBatch;
     private int currentRow = 1;
+    //the child column for each select symbol, or null if an expression must be evaluated
+    private int[] columnIndexes;
+    //set if the expressions can be evaluated a batch at a time
+    private BatchEvaluator batchEvaluator;
+    //the compiled expressions shared by all copies of this node
+    private ExpressionCompiler.Cache<CompiledExpression[]> compiledCache = new ExpressionCompiler.Cache<CompiledExpression[]>();
+    private CompiledExpression[] compiledExpressions;
     
     protected ProjectNode() {
     	super();
@@ -84,6 +98,7 @@ public class ProjectNode extends SubqueryAwareRelationalNode {
 
 	public void setSelectSymbols(List<? extends Expression> symbols) {
 		this.selectSymbols = symbols;
+		this.compiledCache = new ExpressionCompiler.Cache<CompiledExpression[]>();
 		elementMap = Collections.emptyMap();
 		this.projectionIndexes = new int[this.selectSymbols.size()];
     	Arrays.fill(this.projectionIndexes, -1);
@@ -100,6 +115,43 @@ public class ProjectNode extends SubqueryAwareRelationalNode {
 		init();
 	}
 	
+	@Override
+	public void initialize(CommandContext context, BufferManager bufferManager,
+			ProcessorDataManager dataMgr) {
+		super.initialize(context, bufferManager, dataMgr);
+		this.compiledExpressions = null;
+		if (needsProject && context.getOptions().isCompileExpressions()) {
+			if (!compiledCache.isCompiled()) {
+				compiledCache.set(compile());
+			}
+			this.compiledExpressions = compiledCache.get();
+		}
+		this.batchEvaluator = null;
+		if (!needsProject || columnIndexes != null || getChildren()[0] == null || !context.getOptions().isBatchEvaluation()) {
+			return;
+		}
+		BatchEvaluator eval = new BatchEvaluator(this.elementMap);
+		for (int i = 0; i < expressions.size(); i++) {
+			if (projectionIndexes[i] == -1 && !eval.canEvaluate(expressions.get(i))) {
+				return;
+			}
+		}
+		this.batchEvaluator = eval;
+	}
+	
+	private CompiledExpression[] compile() {
+		ExpressionCompiler compiler = new ExpressionCompiler(this.elementMap);
+		CompiledExpression[] result = new CompiledExpression[expressions.size()];
+		boolean compiled = false;
+		for (int i = 0; i < result.length; i++) {
+			if (projectionIndexes[i] == -1) {
+				result[i] = compiler.compile(expressions.get(i));
+				compiled |= result[i] != null;
+			}
+		}
+		return compiled?result:null;
+	}
+	
 	void init() {
 		List<? extends Expression> childElements = getChildren()[0].getElements();
         // Create element lookup map for evaluating project expressions
@@ -130,6 +182,16 @@ public class ProjectNode extends SubqueryAwareRelationalNode {
             	projectionIndexes[i] = index;
             }
         }
+        int[] indexes = new int[expressions.size()];
+        for (int i = 0; i < indexes.length; i++) {
+        	Integer index = elementMap.get(expressions.get(i));
+        	if (index == null) {
+        		indexes = null;
+        		break;
+        	}
+        	indexes[i] = index;
+		}
+        this.columnIndexes = indexes;
 	}
 	
 	public TupleBatch nextBatchDirect()
@@ -154,6 +216,22 @@ public class ProjectNode extends SubqueryAwareRelationalNode {
             }
         }
 
+        ColumnarBatch columns = currentBatch.getColumns();
+        if (columns != null && columnIndexes != null && currentRow == currentBatch.getBeginRow() && !hasPendingRows()) {
+        	//share the column storage rather than creating rows
+        	currentRow = currentBatch.getEndRow() + 1;
+        	if(currentBatch.getTerminationFlag()) {
+	            terminateBatches();
+	        }
+        	currentBatch = null;
+        	return pullBatch(columns.project(columnIndexes));
+        }
+        
+        if (batchEvaluator != null && currentRow == currentBatch.getBeginRow() && !hasPendingRows()) {
+        	projectBatch();
+        	return pullBatch();
+        }
+
         while (currentRow <= currentBatch.getEndRow() && !isBatchFull()) {
     		List<?> tuple = currentBatch.getTuple(currentRow);
 
@@ -180,13 +258,52 @@ public class ProjectNode extends SubqueryAwareRelationalNode {
     	return pullBatch();
 	}
 
+	/**
+	 * Evaluate each expression against the whole batch, then assemble the rows. 
+	 */
+	private void projectBatch() throws TeiidComponentException, TeiidProcessingException {
+		List<List<?>> tuples = currentBatch.getTuples();
+		int count = tuples.size();
+		int[] selection = new int[count];
+		for (int i = 0; i < count; i++) {
+			selection[i] = i;
+		}
+		Object[][] values = new Object[expressions.size()][];
+		for (int i = 0; i < values.length; i++) {
+			if (projectionIndexes[i] == -1) {
+				values[i] = batchEvaluator.evaluate(expressions.get(i), tuples, selection, count);
+			}
+		}
+		for (int row = 0; row < count; row++) {
+			List<?> tuple = tuples.get(row);
+			List<Object> projectedTuple = new ArrayList<Object>(values.length);
+			for (int i = 0; i < values.length; i++) {
+				if (values[i] != null) {
+					projectedTuple.add(values[i][row]);
+				} else {
+					projectedTuple.add(tuple.get(projectionIndexes[i]));
+				}
+			}
+			addBatchRow(projectedTuple);
+		}
+		currentRow = currentBatch.getEndRow() + 1;
+		if(currentBatch.getTerminationFlag()) {
+            terminateBatches();
+        }
+		currentBatch = null;
+	}
+
 	private void updateTuple(Expression symbol, int projectionIndex, List<?> values, List<Object> tuple)
 		throws BlockedException, TeiidComponentException, ExpressionEvaluationException {
 
         int index = this.projectionIndexes[projectionIndex];
         if(index != -1) {
 			tuple.add(values.get(index));
+        } else if (compiledExpressions != null && compiledExpressions[projectionIndex] != null) {
+        	countCompiledEvaluation();
+        	tuple.add(compiledExpressions[projectionIndex].evaluate(values, getContext()));
         } else { 
+        	countInterpretedEvaluation();
 			tuple.add(getEvaluator(this.elementMap).evaluate(symbol, values));
 		}
 	}
@@ -209,6 +326,8 @@ public class ProjectNode extends SubqueryAwareRelationalNode {
         target.elementMap = elementMap;
         target.expressions = expressions;
         target.projectionIndexes = projectionIndexes;
+        target.columnIndexes = columnIndexes;
+        target.compiledCache = compiledCache;
     }
 
     public PlanNode getDescriptionProperties() {
@@ -33,6 +33,7 @@ import java.util.Map;
 import org.teiid.client.plan.PlanNode;
 import org.teiid.common.buffer.BlockedException;
 import org.teiid.common.buffer.BufferManager;
+import org.teiid.common.buffer.ColumnarBatch;
 import org.teiid.common.buffer.TupleBatch;
 import org.teiid.common.buffer.TupleBuffer;
 import org.teiid.core.TeiidComponentException;
@@ -66,17 +67,22 @@ public abstract class RelationalNode implements Cloneable, BatchProducer {
 		BufferManager bufferManager;
 		ProcessorDataManager dataMgr;
 		int batchSize;
+		boolean batchSizeAdapted;
 		RelationalNodeStatistics nodeStatistics;
 		int beginBatch = 1;
 		List batchRows;
 		boolean lastBatch;
 		boolean closed;
+		int compiledEvaluations;
+		int interpretedEvaluations;
 		
 		void reset() {
 			this.beginBatch = 1;
 			this.batchRows = null;
 			this.lastBatch = false;
 			this.closed = false;
+			this.compiledEvaluations = 0;
+			this.interpretedEvaluations = 0;
 		}
 	}
 
@@ -124,6 +130,7 @@ public abstract class RelationalNode implements Cloneable, BatchProducer {
         } else {
         	this.getProcessingState().batchSize = bufferManager.getProcessorBatchSize();
         }
+        this.getProcessingState().batchSizeAdapted = false;
     }
 
     public CommandContext getContext() {
@@ -230,6 +237,7 @@ public abstract class RelationalNode implements Cloneable, BatchProducer {
     protected TupleBatch pullBatch() {
         TupleBatch batch = null;
         if(this.getProcessingState().batchRows != null) {
+        	adaptBatchSize();
             batch = new TupleBatch(this.getProcessingState().beginBatch, this.getProcessingState().batchRows);
             getProcessingState().beginBatch += this.getProcessingState().batchRows.size();
         } else {
@@ -246,6 +254,30 @@ public abstract class RelationalNode implements Cloneable, BatchProducer {
         return batch;
     }
 
+    /**
+     * Adjust the batch size once based upon the actual size of the first full batch
+     */
+	private void adaptBatchSize() {
+		ProcessingState state = this.getProcessingState();
+		if (state.batchSizeAdapted || state.batchRows.size() < state.batchSize || getOutputElements() == null || state.bufferManager == null) {
+			return;
+		}
+		state.batchSizeAdapted = true;
+		state.batchSize = state.bufferManager.getProcessorBatchSize(getOutputElements(), state.batchRows);
+	}
+
+    /**
+     * Return the columnar rows as the next batch.  There must not be any pending rows.
+     */
+    protected TupleBatch pullBatch(ColumnarBatch columns) {
+    	assert this.getProcessingState().batchRows == null;
+    	TupleBatch batch = new TupleBatch(this.getProcessingState().beginBatch, columns);
+    	getProcessingState().beginBatch += columns.size();
+    	batch.setTerminationFlag(this.getProcessingState().lastBatch);
+    	this.getProcessingState().lastBatch = false;
+    	return batch;
+    }
+
 	public void open()
 		throws TeiidComponentException, TeiidProcessingException {
 
@@ -311,8 +343,41 @@ public abstract class RelationalNode implements Cloneable, BatchProducer {
             if(recordStats &&  this.getProcessingState().context.getCollectNodeStatistics()) {
                 this.getProcessingState().nodeStatistics.stopBatchTimer();
             }
+            recordEvaluations();
         }
     }
+    
+    /**
+     * Count a row evaluation performed with a compiled expression or criteria
+     */
+    protected void countCompiledEvaluation() {
+    	this.getProcessingState().compiledEvaluations++;
+    }
+    
+    /**
+     * Count a row evaluation performed by walking the expression or criteria
+     */
+    protected void countInterpretedEvaluation() {
+    	this.getProcessingState().interpretedEvaluations++;
+    }
+    
+    /**
+     * Record the evaluations counted for the current batch against the node statistics and the request
+     */
+    private void recordEvaluations() {
+    	ProcessingState state = this.getProcessingState();
+    	if (state.compiledEvaluations == 0 && state.interpretedEvaluations == 0) {
+    		return;
+    	}
+    	if (state.nodeStatistics != null) {
+    		state.nodeStatistics.addEvaluations(state.compiledEvaluations, state.interpretedEvaluations);
+    	}
+    	if (state.context != null) {
+    		state.context.addEvaluations(state.compiledEvaluations, state.interpretedEvaluations);
+    	}
+    	state.compiledEvaluations = 0;
+    	state.interpretedEvaluations = 0;
+    }
 
     /**
      * Template method for subclasses to implement. 
@@ -66,6 +66,10 @@ public class RelationalNodeStatistics {
     // The amount of times a Block or Componenet Exception occurs for this node
     private int nodeBlocks;
     
+    // The row evaluations performed with compiled or interpreted expressions
+    private long nodeCompiledEvaluations;
+    private long nodeInterpretedEvaluations;
+    
     public RelationalNodeStatistics() {
         this.setNodeStartTime = false;
     }
@@ -103,6 +107,11 @@ public class RelationalNodeStatistics {
         }
     }
     
+    void addEvaluations(int compiled, int interpreted) {
+    	this.nodeCompiledEvaluations += compiled;
+    	this.nodeInterpretedEvaluations += interpreted;
+    }
+    
     public void collectNodeStats(RelationalNode[] relationalNodes) {
         // set nodeEndTime to the time gathered at the end of the last batch
         this.nodeEndTime = this.batchEndTime;
@@ -124,6 +133,10 @@ public class RelationalNodeStatistics {
         statisticsList.add("Node Cumulative Process Time: " + this.nodeCumulativeProcessingTime); //$NON-NLS-1$
         statisticsList.add("Node Next Batch Calls: " + this.nodeNextBatchCalls); //$NON-NLS-1$
         statisticsList.add("Node Blocks: " + this.nodeBlocks); //$NON-NLS-1$
+        if (this.nodeCompiledEvaluations > 0 || this.nodeInterpretedEvaluations > 0) {
+        	statisticsList.add("Node Compiled Evaluations: " + this.nodeCompiledEvaluations); //$NON-NLS-1$
+        	statisticsList.add("Node Interpreted Evaluations: " + this.nodeInterpretedEvaluations); //$NON-NLS-1$
+        }
         return statisticsList;
     }
     
@@ -134,6 +147,14 @@ public class RelationalNodeStatistics {
     public int getNodeBlocks() {
         return this.nodeBlocks;
     }
+    public long getNodeCompiledEvaluations() {
+		return nodeCompiledEvaluations;
+	}
+    
+    public long getNodeInterpretedEvaluations() {
+		return nodeInterpretedEvaluations;
+	}
+    
     /** 
      * @return Returns the nodeCumulativeNextBatchProcessingTime.
      * @since 4.2
@@ -32,10 +32,14 @@ import java.util.Map;
 import org.teiid.client.plan.PlanNode;
 import org.teiid.common.buffer.BlockedException;
 import org.teiid.common.buffer.BufferManager;
+import org.teiid.common.buffer.ColumnarBatch;
 import org.teiid.common.buffer.TupleBatch;
 import org.teiid.core.TeiidComponentException;
 import org.teiid.core.TeiidProcessingException;
 import org.teiid.query.analysis.AnalysisRecord;
+import org.teiid.query.eval.BatchEvaluator;
+import org.teiid.query.eval.ExpressionCompiler;
+import org.teiid.query.eval.ExpressionCompiler.CompiledCriteria;
 import org.teiid.query.processor.ProcessorDataManager;
 import org.teiid.query.sql.LanguageObject;
 import org.teiid.query.sql.lang.Criteria;
@@ -55,6 +59,14 @@ public class SelectNode extends SubqueryAwareRelationalNode {
     // State if blocked on evaluating a criteria
     private TupleBatch currentBatch;
     private int currentRow = 1;
+    //selected row positions if processing a columnar batch
+    private int[] selected;
+    private int selectedCount;
+    //set if the criteria can be evaluated a batch at a time
+    private BatchEvaluator batchEvaluator;
+    //the compiled criteria shared by all copies of this node
+    private ExpressionCompiler.Cache<CompiledCriteria> compiledCache = new ExpressionCompiler.Cache<CompiledCriteria>();
+    private CompiledCriteria compiledCriteria;
 
 	protected SelectNode() {
 		super();
@@ -69,10 +81,12 @@ public class SelectNode extends SubqueryAwareRelationalNode {
         
         currentBatch = null;
         currentRow = 1;
+        selected = null;
     }
 
 	public void setCriteria(Criteria criteria) { 
 		this.criteria = criteria;
+		this.compiledCache = new ExpressionCompiler.Cache<CompiledCriteria>();
 	}
 
 	public Criteria getCriteria() { // made public to support change in ProcedurePlanner
@@ -92,6 +106,20 @@ public class SelectNode extends SubqueryAwareRelationalNode {
             this.elementMap = createLookupMap(this.getChildren()[0].getElements());
             this.projectionIndexes = getProjectionIndexes(this.elementMap, projectedExpressions!=null?projectedExpressions:getElements());
         }
+        this.compiledCriteria = null;
+        if (context.getOptions().isCompileExpressions()) {
+        	if (!compiledCache.isCompiled()) {
+        		compiledCache.set(new ExpressionCompiler(this.elementMap).compile(this.criteria));
+        	}
+        	this.compiledCriteria = compiledCache.get();
+        }
+        this.batchEvaluator = null;
+        if (context.getOptions().isBatchEvaluation()) {
+        	BatchEvaluator eval = new BatchEvaluator(this.elementMap);
+        	if (eval.canEvaluate(this.criteria)) {
+        		this.batchEvaluator = eval;
+        	}
+        }
 	}
 	
     /**
@@ -104,10 +132,18 @@ public class SelectNode extends SubqueryAwareRelationalNode {
         	currentBatch = this.getChildren()[0].nextBatch();
         }
 
+        ColumnarBatch columns = currentBatch.getColumns();
+        if (batchEvaluator != null && currentRow == currentBatch.getBeginRow() && !hasPendingRows()) {
+        	return selectBatch(columns);
+        }
+        if (columns != null && (selected != null || (currentRow == currentBatch.getBeginRow() && !hasPendingRows()))) {
+        	return selectColumns(columns);
+        }
+
         while (currentRow <= currentBatch.getEndRow() && !isBatchFull()) {
     		List<?> tuple = currentBatch.getTuple(currentRow);
 
-            if(getEvaluator(this.elementMap).evaluate(this.criteria, tuple)) {
+            if(evaluate(tuple)) {
                 addBatchRow(projectTuple(this.projectionIndexes, tuple));
             }
             currentRow++;
@@ -123,6 +159,70 @@ public class SelectNode extends SubqueryAwareRelationalNode {
     	return pullBatch();
 	}
     
+	private boolean evaluate(List<?> tuple) 
+			throws BlockedException, TeiidComponentException, TeiidProcessingException {
+		if (compiledCriteria != null) {
+			countCompiledEvaluation();
+			return compiledCriteria.evaluate(tuple, getContext());
+		}
+		countInterpretedEvaluation();
+		return getEvaluator(this.elementMap).evaluate(this.criteria, tuple);
+	}
+    
+	/**
+	 * Filter the whole batch at once with the {@link BatchEvaluator}.  
+	 * The result will be at most the size of the input batch.
+	 */
+	private TupleBatch selectBatch(ColumnarBatch columns)
+			throws TeiidComponentException, TeiidProcessingException {
+		List<List<?>> tuples = currentBatch.getTuples();
+		int count = tuples.size();
+		int[] selection = new int[count];
+		for (int i = 0; i < count; i++) {
+			selection[i] = i;
+		}
+		count = batchEvaluator.select(this.criteria, tuples, selection, count);
+		if(currentBatch.getTerminationFlag()) {
+            terminateBatches();
+        }
+		currentRow = currentBatch.getEndRow() + 1;
+		currentBatch = null;
+		if (columns != null) {
+			return pullBatch(columns.select(selection, count, this.projectionIndexes));
+		}
+		for (int i = 0; i < count; i++) {
+			addBatchRow(projectTuple(this.projectionIndexes, tuples.get(selection[i])));
+		}
+		return pullBatch();
+	}
+    
+	/**
+	 * Filter the whole columnar batch by position, so that only the selected 
+	 * values are copied rather than creating rows.
+	 */
+	private TupleBatch selectColumns(ColumnarBatch columns)
+			throws BlockedException, TeiidComponentException, TeiidProcessingException {
+		if (selected == null) {
+			selected = new int[columns.size()];
+			selectedCount = 0;
+		}
+		int beginRow = currentBatch.getBeginRow();
+		while (currentRow <= currentBatch.getEndRow()) {
+			int index = currentRow - beginRow;
+			if (evaluate(columns.get(index))) {
+				selected[selectedCount++] = index;
+			}
+			currentRow++;
+		}
+		if(currentBatch.getTerminationFlag()) {
+            terminateBatches();
+        }
+		ColumnarBatch result = columns.select(selected, selectedCount, this.projectionIndexes);
+		currentBatch = null;
+		selected = null;
+		return pullBatch(result);
+	}
+    
 	protected void getNodeString(StringBuffer str) {
 		super.getNodeString(str);
 		str.append(criteria);
@@ -140,6 +240,7 @@ public class SelectNode extends SubqueryAwareRelationalNode {
 		target.elementMap = elementMap;
 		target.projectionIndexes = projectionIndexes;
 		target.projectedExpressions = projectedExpressions;
+		target.compiledCache = compiledCache;
 	}
     
     public PlanNode getDescriptionProperties() {   
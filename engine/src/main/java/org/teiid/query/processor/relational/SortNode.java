@@ -105,6 +105,7 @@ public class SortNode extends RelationalNode {
     		}
 	        this.sortUtility = new SortUtility(ts, items, this.mode, getBufferManager(),
                     getConnectionID(), getChildren()[0].getElements());
+	        this.sortUtility.setCommandContext(getContext());
 	        if (ts == null) {
 	        	this.sortUtility.setWorkingBuffer(working);
 	        }
@@ -23,11 +23,16 @@
 package org.teiid.query.processor.relational;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.List;
 import java.util.ListIterator;
 import java.util.TreeSet;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.FutureTask;
 
 import org.teiid.common.buffer.BlockedException;
 import org.teiid.common.buffer.BufferManager;
@@ -39,6 +44,7 @@ import org.teiid.common.buffer.TupleSource;
 import org.teiid.core.TeiidComponentException;
 import org.teiid.core.TeiidProcessingException;
 import org.teiid.core.util.Assertion;
+import org.teiid.core.util.ExecutorUtils;
 import org.teiid.core.util.PropertiesUtils;
 import org.teiid.language.SortSpecification.NullOrdering;
 import org.teiid.logging.LogConstants;
@@ -47,6 +53,7 @@ import org.teiid.logging.MessageLevel;
 import org.teiid.query.sql.lang.OrderBy;
 import org.teiid.query.sql.lang.OrderByItem;
 import org.teiid.query.sql.symbol.Expression;
+import org.teiid.query.util.CommandContext;
 
 
 /**
@@ -70,23 +77,89 @@ public class SortUtility {
 	/**
 	 * state holder for the merge algorithm
 	 */
-	private class SortedSublist implements Comparable<SortedSublist> {
+	private static class SortedSublist {
 		List<?> tuple;
 		int index;
 		TupleBufferTupleSource its;
-		int limit = Integer.MAX_VALUE;
-		
-		@Override
-		public int compareTo(SortedSublist o) {
-			//reverse the comparison, so that removal of the lowest is a low cost operation
-			return -comparator.compare(this.tuple, o.tuple);
-		}
 		
 		@Override
 		public String toString() {
 			return index + " " + tuple; //$NON-NLS-1$
 		}
 	}
+	
+	/**
+	 * A binary min heap of sublists ordered by their current tuple.  Ties are 
+	 * broken by the sublist index so that the merge is stable.
+	 */
+	private class SublistHeap {
+		private SortedSublist[] heap;
+		private int size;
+		
+		SublistHeap(int capacity) {
+			heap = new SortedSublist[capacity];
+		}
+		
+		void add(SortedSublist sublist) {
+			int i = size++;
+			heap[i] = sublist;
+			while (i > 0) {
+				int parent = (i - 1) >> 1;
+				if (compare(heap[parent], sublist) <= 0) {
+					break;
+				}
+				heap[i] = heap[parent];
+				i = parent;
+			}
+			heap[i] = sublist;
+		}
+		
+		SortedSublist peek() {
+			return heap[0];
+		}
+		
+		int size() {
+			return size;
+		}
+		
+		/**
+		 * Restore the heap after the top sublist has been advanced or exhausted 
+		 */
+		void replaceTop(boolean remove) {
+			SortedSublist sublist = heap[0];
+			if (remove) {
+				sublist = heap[--size];
+				heap[size] = null;
+				if (size == 0) {
+					return;
+				}
+			}
+			int i = 0;
+			while (true) {
+				int child = (i << 1) + 1;
+				if (child >= size) {
+					break;
+				}
+				if (child + 1 < size && compare(heap[child + 1], heap[child]) < 0) {
+					child++;
+				}
+				if (compare(sublist, heap[child]) <= 0) {
+					break;
+				}
+				heap[i] = heap[child];
+				i = child;
+			}
+			heap[i] = sublist;
+		}
+		
+		private int compare(SortedSublist o1, SortedSublist o2) {
+			int result = comparator.compare(o1.tuple, o2.tuple);
+			if (result != 0) {
+				return result;
+			}
+			return o1.index - o2.index;
+		}
+	}
 
 	//constructor state
     private TupleSource source;
@@ -116,6 +189,12 @@ public class SortUtility {
 	private static boolean STABLE_SORT = PropertiesUtils.getBooleanProperty(System.getProperties(), "org.teiid.requireStableSort", false); //$NON-NLS-1$
 	
 	private boolean stableSort = STABLE_SORT;
+	
+	/**
+	 * The minimum number of rows for each range of a parallel in memory sort 
+	 */
+	static int MIN_PARALLEL_SORT_ROWS = 1 << 14;
+	private CommandContext context;
     
     public SortUtility(TupleSource sourceID, List<OrderByItem> items, Mode mode, BufferManager bufferMgr,
                         String groupName, List<? extends Expression> schema) {
@@ -358,11 +437,12 @@ public class SortUtility {
 		        activeTupleBuffers.add(sublist);
 		        if (this.mode == Mode.SORT) {
 		        	//perform a stable sort
-		    		Collections.sort((List<List<?>>)workingTuples, comparator);
+		    		sort((List<List<?>>)workingTuples, sublist);
+		        } else {
+			        for (List<?> list : workingTuples) {
+						sublist.addTuple(list);
+					}
 		        }
-		        for (List<?> list : workingTuples) {
-					sublist.addTuple(list);
-				}
 		        workingTuples.clear();
 		        sublist.saveBatch();
             }
@@ -384,6 +464,76 @@ public class SortUtility {
         this.phase = MERGE;
     }
 
+    /**
+     * Sort the tuples into the sublist.  Large lists are split into ranges that are
+     * sorted by parallel workers, then merged.
+     */
+    private void sort(final List<List<?>> tuples, TupleBuffer sublist) throws TeiidComponentException, TeiidProcessingException {
+    	int pieces = 1;
+    	Executor executor = getExecutor();
+    	if (executor != null) {
+    		int maxPieces = tuples.size() / MIN_PARALLEL_SORT_ROWS;
+	    	while (pieces < maxPieces && context.acquireParallelWorker()) {
+	    		pieces++;
+	    	}
+    	}
+    	if (pieces == 1) {
+    		Collections.sort(tuples, comparator);
+    		for (List<?> list : tuples) {
+    			sublist.addTuple(list);
+    		}
+    		return;
+    	}
+    	final int[] bounds = new int[pieces + 1];
+    	for (int i = 1; i <= pieces; i++) {
+    		bounds[i] = (int)((long)tuples.size() * i / pieces);
+    	}
+    	List<FutureTask<Void>> tasks = new ArrayList<FutureTask<Void>>(pieces - 1);
+    	try {
+	    	for (int i = 1; i < pieces; i++) {
+	    		final List<List<?>> range = tuples.subList(bounds[i], bounds[i + 1]);
+	    		FutureTask<Void> task = new FutureTask<Void>(new Runnable() {
+	    			@Override
+	    			public void run() {
+	    				Collections.sort(range, comparator);
+	    			}
+	    		}, null);
+	    		tasks.add(task);
+	    		executor.execute(task);
+	    	}
+	    	Collections.sort(tuples.subList(0, bounds[1]), comparator);
+    	} finally {
+    		//wait for all of the ranges even if there is a failure
+    		TeiidComponentException failure = null;
+    		for (FutureTask<Void> task : tasks) {
+    			try {
+    				getResult(task);
+    			} catch (TeiidProcessingException e) {
+    				failure = new TeiidComponentException(e);
+    			} catch (TeiidComponentException e) {
+    				failure = e;
+    			}
+    		}
+    		for (int i = 1; i < pieces; i++) {
+    			context.releaseParallelWorker();
+    		}
+    		if (failure != null) {
+    			throw failure;
+    		}
+    	}
+    	//merge the sorted ranges, ties are taken from the earliest range so that the sort is stable
+    	int[] positions = Arrays.copyOf(bounds, pieces);
+    	for (int count = tuples.size(); count > 0; count--) {
+    		int min = -1;
+    		for (int i = 0; i < pieces; i++) {
+    			if (positions[i] < bounds[i + 1] && (min == -1 || comparator.compare(tuples.get(positions[i]), tuples.get(positions[min])) < 0)) {
+    				min = i;
+    			}
+    		}
+    		sublist.addTuple(tuples.get(positions[min]++));
+    	}
+    }
+
     public void setWorkingBuffer(TupleBuffer workingBuffer) {
 		this.workingBuffer = workingBuffer;
 	}
@@ -429,45 +579,85 @@ public class SortUtility {
         reserved += bufferManager.reserveBuffers(toForce, BufferReserveMode.FORCE);
         
         try {
+        	//merged sublists replace their inputs in place, so that each pass preserves the sublist order needed for a stable merge
+        	int start = 0;
         	while(this.activeTupleBuffers.size() > 1) {    		
-	    		ArrayList<SortedSublist> sublists = new ArrayList<SortedSublist>(activeTupleBuffers.size());
-	            
-	            TupleBuffer merged = createTupleBuffer();
-
+        		if (activeTupleBuffers.size() - start < 2) {
+        			start = 0;
+        		}
 	            desiredSpace = activeTupleBuffers.size() * (long)schemaSize;
 	            if (desiredSpace < reserved) {
 	            	bufferManager.releaseBuffers(reserved - (int)desiredSpace);
 	            	reserved = (int)desiredSpace;
 	            }
-	            int maxSortIndex = Math.max(2, reserved / schemaSize); //always allow progress
+	            int maxSortIndex = Math.min(activeTupleBuffers.size() - start, Math.max(2, reserved / schemaSize)); //always allow progress
 	            
             	if (LogManager.isMessageToBeRecorded(org.teiid.logging.LogConstants.CTX_DQP, MessageLevel.TRACE)) {
 	            	LogManager.logTrace(org.teiid.logging.LogConstants.CTX_DQP, "Merging", maxSortIndex, "sublists out of", activeTupleBuffers.size()); //$NON-NLS-1$ //$NON-NLS-2$
 	            }
-	        	// initialize the sublists with the min value
-	            for(int i = 0; i<maxSortIndex; i++) { 
-	             	TupleBuffer activeID = activeTupleBuffers.get(i);
-	             	SortedSublist sortedSublist = new SortedSublist();
-	            	sortedSublist.its = activeID.createIndexedTupleSource();
-	            	sortedSublist.its.setNoBlocking(true);
-	            	sortedSublist.index = i;
-	            	incrementWorkingTuple(sublists, sortedSublist);
-	            }
-	            
-	            // iteratively process the lowest tuple
-	            while (sublists.size() > 0) {
-	            	SortedSublist sortedSublist = sublists.remove(sublists.size() - 1);
-	        		merged.addTuple(sortedSublist.tuple);
-	            	incrementWorkingTuple(sublists, sortedSublist);
-	            }                
+            	
+            	//with multiple passes, groups of sublists may be merged concurrently if there are workers and memory available 
+            	int groups = 1;
+            	int groupsReserved = 0;
+            	Executor executor = getExecutor();
+            	if (executor != null) {
+	            	int groupSpace = maxSortIndex * schemaSize;
+	            	while (groups < (activeTupleBuffers.size() - start) / maxSortIndex && context.acquireParallelWorker()) {
+	            		int groupReserved = bufferManager.reserveBuffers(groupSpace, BufferReserveMode.NO_WAIT);
+	            		groupsReserved += groupReserved;
+	            		if (groupReserved < groupSpace) {
+	            			context.releaseParallelWorker();
+	            			break;
+	            		}
+	            		groups++;
+	            	}
+            	}
+            	List<TupleBuffer> merged = new ArrayList<TupleBuffer>(groups);
+            	List<FutureTask<TupleBuffer>> tasks = new ArrayList<FutureTask<TupleBuffer>>(groups - 1);
+            	boolean success = false;
+            	try {
+	            	for (int i = 1; i < groups; i++) {
+	            		final List<TupleBuffer> group = new ArrayList<TupleBuffer>(activeTupleBuffers.subList(start + i * maxSortIndex, start + (i + 1) * maxSortIndex));
+	            		FutureTask<TupleBuffer> task = new FutureTask<TupleBuffer>(new Callable<TupleBuffer>() {
+	            			@Override
+	            			public TupleBuffer call() throws Exception {
+	            				return merge(group);
+	            			}
+						});
+	            		tasks.add(task);
+	            		executor.execute(task);
+	            	}
+	            	merged.add(merge(activeTupleBuffers.subList(start, start + maxSortIndex)));
+	            	for (FutureTask<TupleBuffer> task : tasks) {
+	            		merged.add(getResult(task));
+	            	}
+	            	success = true;
+            	} finally {
+            		if (!success) {
+            			for (FutureTask<TupleBuffer> task : tasks) {
+            				try {
+            					merged.add(getResult(task));
+            				} catch (Exception e) {
+            					//already failing
+            				}
+            			}
+            			for (TupleBuffer tb : merged) {
+            				tb.remove();
+            			}
+            		}
+            		bufferManager.releaseBuffers(groupsReserved);
+            		for (int i = 1; i < groups; i++) {
+            			context.releaseParallelWorker();
+            		}
+            	}
 	
 	            // Remove merged sublists
-	            for(int i=0; i<maxSortIndex; i++) {
-	            	TupleBuffer id = activeTupleBuffers.remove(0);
+	            for(int i=0; i<groups*maxSortIndex; i++) {
+	            	TupleBuffer id = activeTupleBuffers.remove(start);
             		id.remove();
 	            }
-	            merged.saveBatch();
-	            this.activeTupleBuffers.add(merged);           
+	            this.activeTupleBuffers.addAll(start, merged);
+	            start += merged.size();
     		}
         } finally {
         	this.bufferManager.releaseBuffers(reserved);
@@ -480,28 +670,75 @@ public class SortUtility {
         this.phase = DONE;
         return;
     }
-
-	private void incrementWorkingTuple(ArrayList<SortedSublist> subLists, SortedSublist sortedSublist) throws TeiidComponentException, TeiidProcessingException {
-		while (true) {
-			sortedSublist.tuple = null;
-			if (sortedSublist.limit < sortedSublist.its.getCurrentIndex()) {
-				return; //special case for still reading the output tuplebuffer
+    
+    /**
+     * Merge the sorted sublists into a new sublist, removing duplicates if needed
+     */
+    private TupleBuffer merge(List<TupleBuffer> toMerge) throws TeiidComponentException, TeiidProcessingException {
+    	TupleBuffer merged = createTupleBuffer();
+    	SublistHeap heap = new SublistHeap(toMerge.size());
+    	for (int i = 0; i < toMerge.size(); i++) {
+    		SortedSublist sortedSublist = new SortedSublist();
+    		sortedSublist.its = toMerge.get(i).createIndexedTupleSource();
+    		sortedSublist.its.setNoBlocking(true);
+    		sortedSublist.index = i;
+    		sortedSublist.tuple = sortedSublist.its.nextTuple();
+    		if (sortedSublist.tuple != null) {
+    			heap.add(sortedSublist);
+    		}
+    	}
+    	List<?> last = null;
+    	while (heap.size() > 0) {
+    		SortedSublist sortedSublist = heap.peek();
+    		boolean duplicate = false;
+    		if (last != null && (mode != Mode.SORT || comparator.isDistinct())) {
+    			//the comparison is also needed to detect if the sort keys are distinct
+    			duplicate = comparator.compare(last, sortedSublist.tuple) == 0 && mode != Mode.SORT;
+    		}
+    		if (!duplicate) {
+    			merged.addTuple(sortedSublist.tuple);
+    			last = sortedSublist.tuple;
+    		}
+    		sortedSublist.tuple = sortedSublist.its.nextTuple();
+    		heap.replaceTop(sortedSublist.tuple == null);
+    	}
+    	merged.saveBatch();
+    	return merged;
+    }
+    
+    private Executor getExecutor() {
+    	if (context == null || context.getOptions().getQueryParallelism() <= 1) {
+    		return null;
+    	}
+    	Executor executor = context.getExecutor();
+    	if (executor == null || executor == ExecutorUtils.getDirectExecutor()) {
+    		return null;
+    	}
+    	return executor;
+    }
+    
+	static <T> T getResult(FutureTask<T> task) throws TeiidComponentException, TeiidProcessingException {
+		try {
+			return task.get();
+		} catch (InterruptedException e) {
+			throw new TeiidComponentException(e);
+		} catch (ExecutionException e) {
+			Throwable cause = e.getCause();
+			if (cause instanceof TeiidComponentException) {
+				throw (TeiidComponentException)cause;
 			}
-			sortedSublist.tuple = sortedSublist.its.nextTuple();
-	        if (sortedSublist.tuple == null) {
-	        	return; // done with this sublist
-	        }
-			int index = Collections.binarySearch(subLists, sortedSublist);
-			if (index < 0) {
-				subLists.add(-index - 1, sortedSublist);
-				return;
+			if (cause instanceof TeiidProcessingException) {
+				throw (TeiidProcessingException)cause;
+			}
+			if (cause instanceof RuntimeException) {
+				throw (RuntimeException)cause;
+			}
+			if (cause instanceof Error) {
+				throw (Error)cause;
 			}
-			if (mode == Mode.SORT) {
-				subLists.add(index, sortedSublist);
-				return;
-			} 
+			throw new TeiidComponentException(cause);
 		}
-	} 
+	}
 
     public boolean isDistinct() {
     	return this.comparator.isDistinct();
@@ -530,6 +767,14 @@ public class SortUtility {
 		this.nonBlocking = b;
 	}
 	
+	/**
+	 * Set the context used to obtain workers for parallel sorting and merging.
+	 * If not set, or the query parallelism is 1, all of the work is done by the calling thread. 
+	 */
+	public void setCommandContext(CommandContext context) {
+		this.context = context;
+	}
+	
 	public void setStableSort(boolean stableSort) {
 		this.stableSort = stableSort;
 	}
@@ -286,6 +286,7 @@ class SourceState {
     		}
 		    this.sortUtility = new SortUtility(ts, expressions, Collections.nCopies(expressions.size(), OrderBy.ASC), 
 		    		sortOption == SortOption.SORT_DISTINCT?Mode.DUP_REMOVE_SORT:Mode.SORT, this.source.getBufferManager(), this.source.getConnectionID(), source.getElements());
+		    this.sortUtility.setCommandContext(this.source.getContext());
 		    this.markExpressionsDistinct(sortOption == SortOption.SORT_DISTINCT && expressions.size() == this.getOuterVals().size());
 		    if (this.buffer != null) {
 		    	this.sortUtility.setWorkingBuffer(this.buffer);
@@ -52,6 +52,12 @@ public interface GlobalTableStore {
 	Serializable getAddress();
 	
 	List<?> updateMatViewRow(String matTableName, List<?> tuple, boolean delete) throws TeiidComponentException;
+	
+	/**
+	 * Upsert or delete the given rows as a single change to the materialized table
+	 * @return the number of rows affected
+	 */
+	int updateMatViewRows(String matTableName, List<? extends List<?>> tuples, boolean delete) throws TeiidComponentException;
 
 	TempTable createMatTable(String tableName, GroupSymbol group)
 	throws TeiidComponentException, QueryMetadataException, TeiidProcessingException;
@@ -22,13 +22,22 @@
 
 package org.teiid.query.tempdata;
 
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.ObjectInputStream;
 import java.io.ObjectOutputStream;
 import java.io.OutputStream;
+import java.io.RandomAccessFile;
 import java.io.Serializable;
+import java.io.UnsupportedEncodingException;
 import java.lang.ref.WeakReference;
+import java.net.URLEncoder;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
@@ -38,16 +47,20 @@ import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
 
 import org.teiid.adminapi.impl.VDBMetaData;
 import org.teiid.api.exception.query.QueryMetadataException;
 import org.teiid.api.exception.query.QueryResolverException;
 import org.teiid.api.exception.query.QueryValidatorException;
 import org.teiid.common.buffer.BufferManager;
+import org.teiid.common.buffer.ExtensibleBufferedInputStream;
 import org.teiid.core.TeiidComponentException;
 import org.teiid.core.TeiidProcessingException;
 import org.teiid.core.TeiidRuntimeException;
 import org.teiid.core.types.DataTypeManager;
+import org.teiid.core.util.ExecutorUtils;
 import org.teiid.dqp.internal.process.RequestWorkItem;
 import org.teiid.dqp.message.RequestID;
 import org.teiid.language.SQLConstants;
@@ -85,6 +98,9 @@ import org.teiid.query.tempdata.TempTableStore.TransactionMode;
 public class GlobalTableStoreImpl implements GlobalTableStore, ReplicatedObject<String> {
 	
 	private static final String TEIID_FBI = "teiid:fbi"; //$NON-NLS-1$
+	private static final String SNAPSHOT_SUFFIX = ".snapshot"; //$NON-NLS-1$
+	private static final int SNAPSHOT_VERSION = 1;
+	private static final int MAX_SNAPSHOT_MAPPING = 1 << 28;
 
 	public enum MatState {
 		NEEDS_LOADING,
@@ -100,6 +116,9 @@ public class GlobalTableStoreImpl implements GlobalTableStore, ReplicatedObject<
 		private long ttl = -1;
 		private boolean valid;
 		private boolean asynch; //sub state of loading
+		private Object deltaHighWaterMark; //the max delta column value applied since the last state change
+		private boolean snapshotChecked;
+		private int snapshotVersion; //incremented to prevent pending snapshot writes from completing
 		private Map<RequestID, WeakReference<RequestWorkItem>> waiters = new HashMap<RequestID, WeakReference<RequestWorkItem>>(2);
 		
 		protected MatTableInfo() {}
@@ -151,6 +170,7 @@ public class GlobalTableStoreImpl implements GlobalTableStore, ReplicatedObject<
 			}
 			this.state = state;
 			this.updateTime = System.currentTimeMillis();
+			this.deltaHighWaterMark = null;
 			for (WeakReference<RequestWorkItem> request : waiters.values()) {
 				RequestWorkItem workItem = request.get();
 				if (workItem != null) {
@@ -185,10 +205,50 @@ public class GlobalTableStoreImpl implements GlobalTableStore, ReplicatedObject<
 			return valid;
 		}
 		
+		/**
+		 * @return true if the table is loaded and its ttl has passed by no more than the given grace period
+		 */
+		public synchronized boolean isWithinGracePeriod(long gracePeriod) {
+			return valid && state == MatState.LOADED && ttl >= 0 && System.currentTimeMillis() - updateTime - ttl <= gracePeriod;
+		}
+		
 		public synchronized long getTtl() {
 			return ttl;
 		}
 		
+		/**
+		 * @return the highest delta column value known to be in the table, or null if it must be determined
+		 */
+		public synchronized Object getDeltaHighWaterMark() {
+			return deltaHighWaterMark;
+		}
+		
+		/**
+		 * Claim a delta refresh of a valid table that is loaded or is pending an asynch load.
+		 * @return true if the delta may be applied rather than a full load
+		 */
+		public synchronized boolean startDeltaLoad() {
+			if (!valid) {
+				return false;
+			}
+			if (state == MatState.LOADING && asynch) {
+				asynch = false;
+				return true;
+			}
+			return state == MatState.LOADED;
+		}
+		
+		/**
+		 * Mark the table as loaded with the given high water mark if there has been 
+		 * no state change since the given update time
+		 */
+		public synchronized void deltaLoaded(long expectedUpdateTime, Object deltaHighWaterMark) {
+			if (this.updateTime == expectedUpdateTime) {
+				setState(MatState.LOADED, true);
+				this.deltaHighWaterMark = deltaHighWaterMark;
+			}
+		}
+		
 		public VDBMetaData getVdbMetaData() {
 			return vdbMetaData;
 		}
@@ -205,6 +265,10 @@ public class GlobalTableStoreImpl implements GlobalTableStore, ReplicatedObject<
 	private QueryMetadataInterface metadata;
 	private Serializable localAddress;
 	private VDBMetaData vdbMetaData;
+	private volatile File snapshotDirectory;
+	private Executor snapshotExecutor;
+	private ExecutorService defaultSnapshotExecutor; //created on the first snapshot write if no executor was set
+	private boolean closed;
 	
 	public GlobalTableStoreImpl(BufferManager bufferManager, VDBMetaData vdbMetaData, QueryMetadataInterface metadata) {
 		this.bufferManager = bufferManager;
@@ -234,6 +298,19 @@ public class GlobalTableStoreImpl implements GlobalTableStore, ReplicatedObject<
 	@Override
 	public boolean needsLoading(String matTableName, Serializable loadingAddress, boolean firstPass, boolean refresh, boolean invalidate) {
 		MatTableInfo info = getMatTableInfo(matTableName);
+		if (snapshotDirectory != null && firstPass && !refresh) {
+			boolean restore = false;
+			synchronized (info) {
+				if (!info.snapshotChecked) {
+					info.snapshotChecked = true;
+					restore = info.state == MatState.NEEDS_LOADING;
+				}
+			}
+			if (restore && restoreSnapshot(matTableName) && info.isUpToDate()) {
+				//the caller checked the state prior to the restore, so don't invalidate the restored table
+				return false;
+			}
+		}
 		return info.shouldLoad(loadingAddress, firstPass, refresh, invalidate);
 	}
 			
@@ -387,9 +464,23 @@ public class GlobalTableStoreImpl implements GlobalTableStore, ReplicatedObject<
 	}
 
 	@Override
-	public void loaded(String matTableName, TempTable table) {
+	public void loaded(final String matTableName, TempTable table) {
 		swapTempTable(matTableName, table);
-		this.getMatTableInfo(matTableName).setState(MatState.LOADED, true);
+		MatTableInfo info = this.getMatTableInfo(matTableName);
+		info.setState(MatState.LOADED, true);
+		Executor executor = getSnapshotExecutor();
+		if (executor != null) {
+			final int version;
+			synchronized (info) {
+				version = ++info.snapshotVersion;
+			}
+			executor.execute(new Runnable() {
+				@Override
+				public void run() {
+					writeSnapshot(matTableName, version);
+				}
+			});
+		}
 	}
 	
 	private void swapTempTable(String tempTableName, TempTable tempTable) {
@@ -411,11 +502,41 @@ public class GlobalTableStoreImpl implements GlobalTableStore, ReplicatedObject<
 				if (clone) {
 					swapTempTable(matTableName, tempTable);
 				}
+				removeSnapshot(matTableName);
 				return result;
 			}
 		}
 		return null;
 	}
+	
+	@Override
+	public int updateMatViewRows(String matTableName,
+			List<? extends List<?>> tuples, boolean delete)
+			throws TeiidComponentException {
+		TempTable tempTable = tableStore.getTempTable(matTableName);
+		if (tempTable == null) {
+			return 0;
+		}
+		TempMetadataID id = tableStore.getMetadataStore().getTempGroupID(matTableName);
+		synchronized (id) {
+			//clone at most once for the whole set of changes
+			boolean clone = tempTable.getActive().get() != 0;
+			if (clone) {
+				tempTable = tempTable.clone();
+			}
+			int count = 0;
+			for (List<?> tuple : tuples) {
+				if (tempTable.updateTuple(tuple, delete) != null || !delete) {
+					count++;
+				}
+			}
+			if (clone) {
+				swapTempTable(matTableName, tempTable);
+			}
+			removeSnapshot(matTableName);
+			return count;
+		}
+	}
 
 	public TempTableStore getTempTableStore() {
 		return this.tableStore;
@@ -516,7 +637,7 @@ public class GlobalTableStoreImpl implements GlobalTableStore, ReplicatedObject<
 				if (tableName == null) {
 					break;
 				}
-				loadTable(tableName, ois);
+				loadTable(tableName, ois, null);
 			}
 			ois.close();
 		} catch (Exception e) {
@@ -560,7 +681,7 @@ public class GlobalTableStoreImpl implements GlobalTableStore, ReplicatedObject<
 	public void setState(String stateId, InputStream istream) {
 		try {
 			ObjectInputStream ois = new ObjectInputStream(istream);
-			loadTable(stateId, ois);
+			loadTable(stateId, ois, null);
 			ois.close();
 		} catch (Exception e) {
 			MatTableInfo info = this.getMatTableInfo(stateId);
@@ -569,7 +690,12 @@ public class GlobalTableStoreImpl implements GlobalTableStore, ReplicatedObject<
 		}
 	}
 
-	private void loadTable(String stateId, ObjectInputStream ois)
+	/**
+	 * Load the table from the stream
+	 * @param signature if not null, the table is only loaded if the signature matches the current definition
+	 * @return true if the table was loaded
+	 */
+	private boolean loadTable(String stateId, ObjectInputStream ois, List<String> signature)
 			throws TeiidComponentException, QueryMetadataException,
 			IOException,
 			ClassNotFoundException, TeiidProcessingException {
@@ -593,14 +719,203 @@ public class GlobalTableStoreImpl implements GlobalTableStore, ReplicatedObject<
 			group.setMetadataID(getCodeTableMetadataId(viewName, returnElementName, keyElementName, stateId));
 		}
 		TempTable tempTable = this.createMatTable(stateId, group);
+		if (signature != null && !signature.equals(getSignature(tempTable))) {
+			LogManager.logDetail(LogConstants.CTX_MATVIEWS, "not loading table", stateId, "since the definition has changed"); //$NON-NLS-1$ //$NON-NLS-2$
+			tempTable.remove();
+			return false;
+		}
 		tempTable.readFrom(ois);
 		MatTableInfo info = this.getMatTableInfo(stateId);
 		synchronized (info) {
+			if (signature != null && info.state != MatState.NEEDS_LOADING) {
+				LogManager.logDetail(LogConstants.CTX_MATVIEWS, "not restoring table", stateId, "since a load has started"); //$NON-NLS-1$ //$NON-NLS-2$
+				tempTable.remove();
+				return false;
+			}
 			swapTempTable(stateId, tempTable);
 			info.setState(state, true);
 			info.updateTime = updateTime;
 			info.loadingAddress = loadingAddress;
 		}
+		return true;
+	}
+	
+	/**
+	 * Set the directory used to persist snapshots of loaded tables.
+	 * <br>
+	 * Each successful load is written to the directory asynchronously.  A table that needs loading is 
+	 * first restored from its snapshot, if one exists, so that queries may be served 
+	 * immediately.  The restored table keeps its original update time, so the ttl
+	 * will still trigger a refresh that serves the restored rows while it runs.
+	 * <br>
+	 * Row level updates remove the snapshot, since it is no longer current.
+	 */
+	public void setSnapshotDirectory(File snapshotDirectory) {
+		this.snapshotDirectory = snapshotDirectory;
+	}
+	
+	public File getSnapshotDirectory() {
+		return snapshotDirectory;
+	}
+	
+	/**
+	 * Set the executor used to write snapshots, by default a single background thread.
+	 */
+	public synchronized void setSnapshotExecutor(Executor snapshotExecutor) {
+		this.snapshotExecutor = snapshotExecutor;
+	}
+	
+	/**
+	 * @return the executor for snapshot writes or null if snapshots are not enabled
+	 */
+	private synchronized Executor getSnapshotExecutor() {
+		if (snapshotDirectory == null || closed) {
+			return null;
+		}
+		if (snapshotExecutor == null) {
+			defaultSnapshotExecutor = ExecutorUtils.newFixedThreadPool(1, "Materialization Snapshot Writer"); //$NON-NLS-1$
+			snapshotExecutor = defaultSnapshotExecutor;
+		}
+		return snapshotExecutor;
+	}
+	
+	/**
+	 * Stop writing snapshots and shutdown the default snapshot writer.
+	 * Writes already submitted will still complete.
+	 */
+	public synchronized void close() {
+		this.closed = true;
+		if (defaultSnapshotExecutor != null) {
+			defaultSnapshotExecutor.shutdown();
+		}
+	}
+	
+	private File getSnapshotFile(String matTableName) {
+		try {
+			return new File(snapshotDirectory, URLEncoder.encode(matTableName, "UTF-8") + SNAPSHOT_SUFFIX); //$NON-NLS-1$
+		} catch (UnsupportedEncodingException e) {
+			throw new TeiidRuntimeException(e);
+		}
+	}
+	
+	/**
+	 * The column names and types as well as the key length, which must match
+	 * for a snapshot to be reused
+	 */
+	private static List<String> getSignature(TempTable tempTable) {
+		List<String> result = new ArrayList<String>();
+		result.add(String.valueOf(tempTable.getPkLength()));
+		for (ElementSymbol es : tempTable.getColumns()) {
+			result.add(es.getShortName() + ' ' + DataTypeManager.getDataTypeName(es.getType()));
+		}
+		return result;
+	}
+	
+	/**
+	 * Write the snapshot unless the table has been reloaded or updated since the given version
+	 */
+	private void writeSnapshot(String matTableName, int version) {
+		MatTableInfo info = getMatTableInfo(matTableName);
+		synchronized (info) {
+			if (info.snapshotVersion != version) {
+				return;
+			}
+		}
+		TempTable tempTable = this.tableStore.getTempTable(matTableName);
+		if (tempTable == null || !info.isValid()) {
+			return;
+		}
+		File file = getSnapshotFile(matTableName);
+		File tempFile = new File(file.getParentFile(), file.getName() + ".tmp"); //$NON-NLS-1$
+		boolean success = false;
+		try {
+			file.getParentFile().mkdirs();
+			ObjectOutputStream oos = new ObjectOutputStream(new BufferedOutputStream(new FileOutputStream(tempFile), 1 << 16));
+			try {
+				oos.writeInt(SNAPSHOT_VERSION);
+				oos.writeObject(getSignature(tempTable));
+				sendTable(matTableName, oos, false);
+			} finally {
+				oos.close();
+			}
+			synchronized (info) {
+				if (info.snapshotVersion != version) {
+					return;
+				}
+				file.delete();
+				success = tempFile.renameTo(file);
+			}
+			LogManager.logDetail(LogConstants.CTX_MATVIEWS, "wrote snapshot for", matTableName, file, success); //$NON-NLS-1$
+		} catch (Exception e) {
+			LogManager.logWarning(LogConstants.CTX_MATVIEWS, e, QueryPlugin.Util.gs(QueryPlugin.Event.TEIID31158, matTableName, file));
+		} finally {
+			if (!success) {
+				tempFile.delete();
+			}
+		}
+	}
+	
+	/**
+	 * Restore the table from a snapshot.  The file is read through memory mappings
+	 * to avoid copying through intermediate buffers.
+	 * @return true if the table was restored
+	 */
+	@SuppressWarnings("unchecked")
+	boolean restoreSnapshot(String matTableName) {
+		File file = getSnapshotFile(matTableName);
+		if (!file.exists()) {
+			return false;
+		}
+		boolean success = false;
+		try {
+			RandomAccessFile raf = new RandomAccessFile(file, "r"); //$NON-NLS-1$
+			try {
+				ObjectInputStream ois = new ObjectInputStream(createMappedInputStream(raf.getChannel()));
+				if (ois.readInt() == SNAPSHOT_VERSION) {
+					List<String> signature = (List<String>)ois.readObject();
+					success = loadTable(matTableName, ois, signature);
+				}
+			} finally {
+				raf.close();
+			}
+			if (success) {
+				LogManager.logInfo(LogConstants.CTX_MATVIEWS, QueryPlugin.Util.gs(QueryPlugin.Event.TEIID31159, matTableName, file));
+			}
+		} catch (Exception e) {
+			LogManager.logWarning(LogConstants.CTX_MATVIEWS, e, QueryPlugin.Util.gs(QueryPlugin.Event.TEIID31160, matTableName, file));
+		} finally {
+			if (!success) {
+				file.delete();
+			}
+		}
+		return success;
+	}
+	
+	private void removeSnapshot(String matTableName) {
+		if (snapshotDirectory != null) {
+			MatTableInfo info = getMatTableInfo(matTableName);
+			synchronized (info) {
+				info.snapshotVersion++;
+				getSnapshotFile(matTableName).delete();
+			}
+		}
+	}
+
+	private static ExtensibleBufferedInputStream createMappedInputStream(final FileChannel channel) {
+		return new ExtensibleBufferedInputStream() {
+			private long position;
+			
+			@Override
+			protected ByteBuffer nextBuffer() throws IOException {
+				long remaining = channel.size() - position;
+				if (remaining <= 0) {
+					return null;
+				}
+				ByteBuffer result = channel.map(MapMode.READ_ONLY, position, Math.min(remaining, MAX_SNAPSHOT_MAPPING));
+				position += result.capacity();
+				return result;
+			}
+		};
 	}
 
 	@Override
@@ -69,6 +69,7 @@ import org.teiid.query.sql.lang.OrderBy;
 import org.teiid.query.sql.lang.SetClauseList;
 import org.teiid.query.sql.symbol.AggregateSymbol;
 import org.teiid.query.sql.symbol.Array;
+import org.teiid.query.sql.symbol.Constant;
 import org.teiid.query.sql.symbol.ElementSymbol;
 import org.teiid.query.sql.symbol.Expression;
 import org.teiid.query.sql.symbol.ExpressionSymbol;
@@ -334,6 +335,8 @@ public class TempTable implements Cloneable, SearchableTable {
 	private int[] notNull;
 	private Map<Integer, AtomicInteger> sequences;
 	private int uniqueColIndex;
+	//the positions of the index columns in the parent table rows
+	private int[] indexProjection;
 	
 	private AtomicInteger activeReaders = new AtomicInteger();
 
@@ -413,10 +416,26 @@ public class TempTable implements Cloneable, SearchableTable {
 			return;
 		}
 		TempTable indexTable = createIndexTable(indexColumns, unique);
-		//TODO: ordered insert optimization
-		TupleSource ts = createTupleSource(indexTable.getColumns(), null, null);
-		indexTable.insert(ts, indexTable.getColumns(), false, null);
-		indexTable.getTree().compact();
+		//sort by the index key so that the index tree can be built with ordered inserts
+		OrderBy orderBy = new OrderBy();
+		for (ElementSymbol elementSymbol : indexTable.getColumns()) {
+			orderBy.addVariable(elementSymbol);
+		}
+		//read directly from the primary tree - index selection must not consider the new, still empty, index
+		TupleSource ts = createTupleSource(indexTable.getColumns(), null, orderBy, new IndexInfo(this, indexTable.getColumns(), null, orderBy, true), false);
+		STree indexTree = indexTable.getTree();
+		indexTree.setBatchInsert(true);
+		try {
+			List<?> tuple = null;
+			while ((tuple = ts.nextTuple()) != null) {
+				indexTree.insert(tuple, InsertMode.ORDERED, -1);
+			}
+		} finally {
+			ts.closeSource();
+			indexTree.setBatchInsert(false);
+		}
+		indexTree.compact();
+		addIndexTable(indexColumns, indexTable);
 	}
 
 	private TempTable createIndexTable(List<ElementSymbol> indexColumns,
@@ -430,15 +449,22 @@ public class TempTable implements Cloneable, SearchableTable {
 		TempTable indexTable = new TempTable(new TempMetadataID("idx", Collections.EMPTY_LIST), this.bm, allColumns, allColumns.size(), this.sessionID); //$NON-NLS-1$
 		indexTable.setPreferMemory(this.tree.isPreferMemory());
 		indexTable.lock = this.lock;
+		indexTable.indexProjection = RelationalNode.getProjectionIndexes(this.columnMap, allColumns);
 		if (unique) {
 			indexTable.uniqueColIndex = indexColumns.size();
 		}
+		indexTable.setUpdatable(this.updatable);
+		return indexTable;
+	}
+	
+	/**
+	 * Register a fully populated index so that it is maintained and considered by index selection
+	 */
+	private void addIndexTable(List<ElementSymbol> indexColumns, TempTable indexTable) {
 		if (indexTables == null) {
 			indexTables = new LinkedHashMap<List<ElementSymbol>, TempTable>();
-			indexTables.put(indexColumns, indexTable);
 		}
-		indexTable.setUpdatable(this.updatable);
-		return indexTable;
+		indexTables.put(indexColumns, indexTable);
 	}
 	
 	private int reserveBuffers() {
@@ -583,6 +609,53 @@ public class TempTable implements Cloneable, SearchableTable {
 		return rowCost + additionalCost;
 	}
 
+	/**
+	 * Get the greatest non-null value of the column.  If the primary key or an index is led 
+	 * by the column, then only the end of the index is read, otherwise the table is scanned.
+	 * @return the value or null if there are no non-null values
+	 */
+	public Object getMaxValue(ElementSymbol column) throws TeiidComponentException, TeiidProcessingException {
+		STree maxTree = this.tree;
+		int index = this.columns.indexOf(column);
+		boolean ordered = index == 0 && rowId == null;
+		if (!ordered && this.indexTables != null) {
+			for (TempTable indexTable : this.indexTables.values()) {
+				if (indexTable.columns.get(0).equals(column)) {
+					maxTree = indexTable.tree;
+					index = 0;
+					ordered = true;
+					break;
+				}
+			}
+		}
+		lock.readLock().lock();
+		TupleBrowser browser = null;
+		try {
+			//the first non-null value in descending order is the greatest
+			browser = new TupleBrowser(maxTree, null, null, ordered?OrderBy.DESC:OrderBy.ASC);
+			Object result = null;
+			List<?> tuple = null;
+			while ((tuple = browser.nextTuple()) != null) {
+				Object value = tuple.get(index);
+				if (value == null) {
+					continue;
+				}
+				if (ordered) {
+					return value;
+				}
+				if (result == null || Constant.COMPARATOR.compare(value, result) > 0) {
+					result = value;
+				}
+			}
+			return result;
+		} finally {
+			if (browser != null) {
+				browser.closeSource();
+			}
+			lock.readLock().unlock();
+		}
+	}
+
 	private TupleBrowser createTupleBrower(Criteria condition, boolean direction) throws TeiidComponentException {
 		IndexInfo ii = new IndexInfo(this, null, condition, null, true);
 		ii.ordering = direction;
@@ -595,6 +668,11 @@ public class TempTable implements Cloneable, SearchableTable {
 	
 	public int truncate(boolean force) {
 		this.tid.getTableData().dataModified(tree.getRowCount());
+		if (this.indexTables != null) {
+			for (TempTable indexTable : this.indexTables.values()) {
+				indexTable.truncate(force);
+			}
+		}
 		return tree.truncate(force);
 	}
 	
@@ -711,6 +789,7 @@ public class TempTable implements Cloneable, SearchableTable {
     				changeSet.addTuple(newTuple);
     			} else {
     				browser.update(newTuple);
+    				updateIndexes(tuple, newTuple);
     			}
 			}
 			
@@ -788,12 +867,44 @@ public class TempTable implements Cloneable, SearchableTable {
 		if (tree.insert(list, ordered?InsertMode.ORDERED:InsertMode.NEW, -1) != null) {
 			 throw new TeiidProcessingException(QueryPlugin.Event.TEIID30238, QueryPlugin.Util.gs(QueryPlugin.Event.TEIID30238, this.tid.getID()));
 		}
+		updateIndexes(null, list);
 	}
 	
 	private void deleteTuple(List<?> tuple) throws TeiidComponentException {
-		if (tree.remove(tuple) == null) {
+		List<?> result = tree.remove(tuple);
+		if (result == null) {
 			throw new AssertionError("Delete failed"); //$NON-NLS-1$
 		}
+		updateIndexes(result, null);
+	}
+	
+	/**
+	 * Maintain the secondary indexes for a row change.  Either tuple may be null
+	 * for an insert or delete.
+	 */
+	private void updateIndexes(List<?> oldTuple, List<?> newTuple) throws TeiidComponentException {
+		if (this.indexTables == null) {
+			return;
+		}
+		for (TempTable index : this.indexTables.values()) {
+			List<?> oldKey = null;
+			if (oldTuple != null) {
+				oldKey = RelationalNode.projectTuple(index.indexProjection, oldTuple);
+			}
+			List<?> newKey = null;
+			if (newTuple != null) {
+				newKey = RelationalNode.projectTuple(index.indexProjection, newTuple);
+				if (newKey.equals(oldKey)) {
+					continue;
+				}
+			}
+			if (oldKey != null) {
+				index.tree.remove(oldKey);
+			}
+			if (newKey != null) {
+				index.tree.insert(newKey, InsertMode.UPDATE, -1);
+			}
+		}
 	}
 	
 	void writeTo(ObjectOutputStream oos) throws TeiidComponentException, IOException {
@@ -831,6 +942,7 @@ public class TempTable implements Cloneable, SearchableTable {
 			}
 			TempTable tt = this.createIndexTable(indexColumns, unique);
 			tt.readFrom(ois);
+			addIndexTable(indexColumns, tt);
 		}
 	}
 	
@@ -842,22 +954,12 @@ public class TempTable implements Cloneable, SearchableTable {
 				if (result == null) {
 					return null;
 				}
-				if (indexTables != null) {
-					for (TempTable index : this.indexTables.values()) {
-						tuple = RelationalNode.projectTuple(RelationalNode.getProjectionIndexes(index.getColumnMap(), index.columns), result);
-						index.tree.remove(tuple);
-					}
-				}
+				updateIndexes(result, null);
 				tid.getTableData().dataModified(1);
 				return result;
 			} 
 			List<?> result = tree.insert(tuple, InsertMode.UPDATE, -1);
-			if (indexTables != null) {
-				for (TempTable index : this.indexTables.values()) {
-					tuple = RelationalNode.projectTuple(RelationalNode.getProjectionIndexes(index.getColumnMap(), index.columns), tuple);
-					index.tree.insert(tuple, InsertMode.UPDATE, -1);
-				}
-			}
+			updateIndexes(result, tuple);
 			tid.getTableData().dataModified(1);
 			return result;
 		} finally {
@@ -866,9 +968,11 @@ public class TempTable implements Cloneable, SearchableTable {
 	}
 	
 	private void updateTuple(List<?> tuple) throws TeiidComponentException {
-		if (tree.insert(tuple, InsertMode.UPDATE, -1) == null) {
+		List<?> result = tree.insert(tuple, InsertMode.UPDATE, -1);
+		if (result == null) {
 			throw new AssertionError("Update failed"); //$NON-NLS-1$
 		}
+		updateIndexes(result, tuple);
 	}
 	
 	void setPreferMemory(boolean preferMemory) {
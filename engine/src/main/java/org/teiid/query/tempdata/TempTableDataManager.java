@@ -66,6 +66,7 @@ import org.teiid.logging.LogManager;
 import org.teiid.metadata.FunctionMethod.Determinism;
 import org.teiid.query.QueryPlugin;
 import org.teiid.query.eval.Evaluator;
+import org.teiid.query.metadata.MaterializationMetadataRepository;
 import org.teiid.query.metadata.QueryMetadataInterface;
 import org.teiid.query.metadata.TempMetadataAdapter;
 import org.teiid.query.metadata.TempMetadataID;
@@ -126,6 +127,7 @@ public class TempTableDataManager implements ProcessorDataManager {
 	private static final String REFRESHMATVIEWROW = ".refreshmatviewrow"; //$NON-NLS-1$
 	private static final String REFRESHMATVIEWROWS = ".refreshmatviewrows"; //$NON-NLS-1$
 	private static final String REFRESHMATVIEW = ".refreshmatview"; //$NON-NLS-1$
+	private static final int DELTA_BATCH_SIZE = 1 << 14;
 	public static final String CODE_PREFIX = "#CODE_"; //$NON-NLS-1$
 	private static String REFRESH_SQL = SQLConstants.Reserved.CALL + ' ' + CoreConstants.SYSTEM_ADMIN_MODEL + REFRESHMATVIEW + "(?, ?)"; //$NON-NLS-1$
 
@@ -360,6 +362,15 @@ public class TempTableDataManager implements ProcessorDataManager {
 			String matTableName = metadata.getFullName(matTableId);
 			LogManager.logDetail(LogConstants.CTX_MATVIEWS, "processing refreshmatview for", matViewName); //$NON-NLS-1$
 			boolean invalidate = Boolean.TRUE.equals(((Constant)proc.getParameter(3).getExpression()).getValue());
+			if (!invalidate) {
+				String deltaColumn = metadata.getExtensionProperty(groupID, MaterializationMetadataRepository.MATVIEW_DELTA_COLUMN, false);
+				if (deltaColumn != null) {
+					TupleSource ts = refreshMatViewDelta(context, metadata, groupID, globalStore, matViewName, matTableName, deltaColumn);
+					if (ts != null) {
+						return ts;
+					}
+				}
+			}
 			boolean needsLoading = globalStore.needsLoading(matTableName, globalStore.getAddress(), true, true, invalidate);
 			if (!needsLoading) {
 				return CollectionTupleSource.createUpdateCountTupleSource(-1);
@@ -415,6 +426,116 @@ public class TempTableDataManager implements ProcessorDataManager {
 		return null;
 	}
 
+	/**
+	 * Refresh only the rows with a delta column value at or above the high water mark
+	 * of the loaded table.  Deleted rows are not detected.
+	 * @return the tuple source or null if a full load is needed
+	 */
+	private TupleSource refreshMatViewDelta(final CommandContext context,
+			final QueryMetadataInterface metadata, final Object groupID,
+			final GlobalTableStore globalStore, final String matViewName,
+			final String matTableName, String deltaColumn)
+			throws TeiidComponentException, TeiidProcessingException {
+		final MatTableInfo info = globalStore.getMatTableInfo(matTableName);
+		final TempTable tempTable = globalStore.getTempTable(matTableName);
+		if (tempTable == null || !tempTable.isUpdatable()) {
+			//only tables with a primary key can be upserted
+			return null;
+		}
+		List<?> elements = metadata.getElementIDsInGroupID(groupID);
+		Object deltaColumnId = null;
+		int index = 0;
+		for (; index < elements.size(); index++) {
+			if (metadata.getName(elements.get(index)).equalsIgnoreCase(deltaColumn)) {
+				deltaColumnId = elements.get(index);
+				break;
+			}
+		}
+		if (deltaColumnId == null) {
+			throw new QueryProcessingException(QueryPlugin.Event.TEIID31156, QueryPlugin.Util.gs(QueryPlugin.Event.TEIID31156, matViewName, deltaColumn));
+		}
+		final int deltaIndex = index;
+		final String queryString = Reserved.SELECT + " * " + Reserved.FROM + ' ' + matViewName; //$NON-NLS-1$
+		final String deltaCriteria = ' ' + Reserved.WHERE + ' ' + metadata.getFullName(deltaColumnId) + " >= ?"; //$NON-NLS-1$
+		final String option = ' ' + Reserved.OPTION + ' ' + Reserved.NOCACHE;
+		//the table may be loaded or pending an asynch refresh due to its ttl
+		if (!info.startDeltaLoad()) {
+			return null;
+		}
+		final long updateTime = info.getUpdateTime();
+		
+		return new ProxyTupleSource() {
+			private QueryProcessor qp;
+			private TupleSource ts;
+			private Object highWaterMark;
+			private List<List<?>> changes = new ArrayList<List<?>>();
+			private int count;
+			private boolean success;
+
+			@Override
+			protected TupleSource createTupleSource()
+					throws TeiidComponentException,
+					TeiidProcessingException {
+				if (qp == null) {
+					Object mark = info.getDeltaHighWaterMark();
+					if (mark == null) {
+						mark = tempTable.getMaxValue(tempTable.getColumns().get(deltaIndex));
+					}
+					highWaterMark = mark;
+					if (mark == null) {
+						qp = context.getQueryProcessorFactory().createQueryProcessor(queryString + option, matViewName.toUpperCase(), context);
+					} else {
+						qp = context.getQueryProcessorFactory().createQueryProcessor(queryString + deltaCriteria + option, matViewName.toUpperCase(), context, mark);
+					}
+					LogManager.logInfo(LogConstants.CTX_MATVIEWS, QueryPlugin.Util.gs(QueryPlugin.Event.TEIID31157, matViewName, mark));
+					ts = new BatchCollector.BatchProducerTupleSource(qp);
+				}
+				List<?> tuple = null;
+				while ((tuple = ts.nextTuple()) != null) {
+					tuple = new ArrayList<Object>(tuple); //ensure the list is serializable
+					Object value = tuple.get(deltaIndex);
+					if (value != null && (highWaterMark == null || Constant.COMPARATOR.compare(value, highWaterMark) > 0)) {
+						highWaterMark = value;
+					}
+					changes.add(tuple);
+					if (changes.size() >= DELTA_BATCH_SIZE) {
+						applyChanges();
+					}
+				}
+				applyChanges();
+				qp.closeProcessing();
+				info.deltaLoaded(updateTime, highWaterMark);
+				success = true;
+				return CollectionTupleSource.createUpdateCountTupleSource(count);
+			}
+			
+			private void applyChanges() throws TeiidComponentException {
+				if (changes.isEmpty()) {
+					return;
+				}
+				count += globalStore.updateMatViewRows(matTableName, changes, false);
+				if (eventDistributor != null) {
+					for (List<?> change : changes) {
+						eventDistributor.updateMatViewRow(context.getVdbName(), context.getVdbVersion(), metadata.getName(metadata.getModelID(groupID)), metadata.getName(groupID), change, false);
+					}
+				}
+				changes = new ArrayList<List<?>>();
+			}
+
+			@Override
+			public void closeSource() {
+				super.closeSource();
+				if (!success) {
+					//an interrupted asynch refresh will need a full load
+					globalStore.failedLoad(matTableName);
+				}
+				if (qp != null) {
+					qp.closeProcessing();
+				}
+			}
+		};
+	}
+
 	private TupleSource updateMatviewRows(final CommandContext context,
 			final QueryMetadataInterface metadata, final Object groupID,
 			final GlobalTableStore globalStore, final String matViewName,
@@ -565,6 +686,13 @@ public class TempTableDataManager implements ProcessorDataManager {
 									invalidate = !Boolean.valueOf(val);
 								}
 							}
+							if (invalidate && context.getOptions() != null) {
+								int grace = context.getOptions().getStaleWhileRevalidateMillis();
+								if (grace > 0 && info.isWithinGracePeriod(grace)) {
+									//serve the stale contents while refreshing
+									invalidate = false;
+								}
+							}
 							load = globalStore.needsLoading(tableName, globalStore.getAddress(), true, false, invalidate);
 							if (load) {
 								load = globalStore.needsLoading(tableName, globalStore.getAddress(), false, false, invalidate);
@@ -29,6 +29,7 @@ import java.text.DecimalFormat;
 import java.text.SimpleDateFormat;
 import java.util.*;
 import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicLong;
 
 import javax.security.auth.Subject;
@@ -172,12 +173,16 @@ public class CommandContext implements Cloneable, org.teiid.CommandContext {
 		private LRUCache<String, SimpleDateFormat> dateFormatCache;
 		private AtomicLong reuseCount = null;
 		
+		private AtomicLong compiledEvaluations = new AtomicLong();
+		private AtomicLong interpretedEvaluations = new AtomicLong();
+		private AtomicInteger parallelWorkers = new AtomicInteger();
+		
 	    private List<Exception> warnings = null;
 	    
 	    private Options options = null;
 	    private boolean returnAutoGeneratedKeys;
 	    private GeneratedKeysImpl generatedKeys;
-	    private long reservedBuffers;
+	    private AtomicLong reservedBuffers = new AtomicLong();
 
 		private AuthorizationValidator authorizationValidator;
 		
@@ -739,9 +744,8 @@ public class CommandContext implements Cloneable, org.teiid.CommandContext {
 
 	public void close() {
 		synchronized (this.globalState) {
-			if (this.globalState.reservedBuffers > 0) {
-				long toRelease = this.globalState.reservedBuffers;
-				this.globalState.reservedBuffers = 0;
+			long toRelease = this.globalState.reservedBuffers.getAndSet(0);
+			if (toRelease > 0) {
 				this.globalState.bufferManager.releaseOrphanedBuffers(toRelease);
 			}
 			if (this.globalState.reusableExecutions != null) {
@@ -855,6 +859,49 @@ public class CommandContext implements Cloneable, org.teiid.CommandContext {
 	public void setContinuous() {
 		this.globalState.reuseCount = new AtomicLong();
 	}
+	
+	/**
+	 * Record row evaluations performed with compiled expressions or criteria and by walking
+	 * the expression or criteria.  Called by the nodes once per batch.
+	 */
+	public void addEvaluations(int compiled, int interpreted) {
+		if (compiled > 0) {
+			this.globalState.compiledEvaluations.addAndGet(compiled);
+		}
+		if (interpreted > 0) {
+			this.globalState.interpretedEvaluations.addAndGet(interpreted);
+		}
+	}
+	
+	/**
+	 * Acquire a worker for intra-query parallelism.  The {@link Options#getQueryParallelism()}
+	 * includes the thread processing the request.
+	 * @return true if the worker may be used, which must then be released with {@link #releaseParallelWorker()}
+	 */
+	public boolean acquireParallelWorker() {
+		int max = getOptions().getQueryParallelism() - 1;
+		while (true) {
+			int current = this.globalState.parallelWorkers.get();
+			if (current >= max) {
+				return false;
+			}
+			if (this.globalState.parallelWorkers.compareAndSet(current, current + 1)) {
+				return true;
+			}
+		}
+	}
+	
+	public void releaseParallelWorker() {
+		this.globalState.parallelWorkers.decrementAndGet();
+	}
+	
+	public long getCompiledEvaluations() {
+		return this.globalState.compiledEvaluations.get();
+	}
+	
+	public long getInterpretedEvaluations() {
+		return this.globalState.interpretedEvaluations.get();
+	}
 
 	@Override
 	public ClassLoader getVDBClassLoader() {
@@ -954,7 +1001,7 @@ public class CommandContext implements Cloneable, org.teiid.CommandContext {
 	}
 
 	public long addAndGetReservedBuffers(int i) {
-		return globalState.reservedBuffers += i;
+		return globalState.reservedBuffers.addAndGet(i);
 	}
 
 	@Override
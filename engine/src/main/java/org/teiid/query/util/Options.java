@@ -34,6 +34,14 @@ public class Options {
 	public static final String IMPLICIT_MULTISOURCE_JOIN = "org.teiid.implicitMultiSourceJoin"; //$NON-NLS-1$
 	public static final String JOIN_PREFETCH_BATCHES = "org.teiid.joinPrefetchBatches"; //$NON-NLS-1$
 	public static final String SANITIZE_MESSAGES = "org.teiid.sanitizeMessages"; //$NON-NLS-1$
+	public static final String HASH_JOIN = "org.teiid.hashJoin"; //$NON-NLS-1$
+	public static final String BATCH_EVALUATION = "org.teiid.batchEvaluation"; //$NON-NLS-1$
+	public static final String COMPILE_EXPRESSIONS = "org.teiid.compileExpressions"; //$NON-NLS-1$
+	public static final String QUERY_PARALLELISM = "org.teiid.queryParallelism"; //$NON-NLS-1$
+	public static final String HASH_AGGREGATION = "org.teiid.hashAggregation"; //$NON-NLS-1$
+	public static final String SEMANTIC_RESULT_SET_CACHE = "org.teiid.semanticResultSetCache"; //$NON-NLS-1$
+	public static final String STALE_WHILE_REVALIDATE_MILLIS = "org.teiid.staleWhileRevalidateMillis"; //$NON-NLS-1$
+	public static final String REQUEST_COALESCING = "org.teiid.requestCoalescing"; //$NON-NLS-1$
 
 	private Properties properties;
 	private boolean subqueryUnnestDefault;
@@ -42,6 +50,14 @@ public class Options {
 	private int joinPrefetchBatches = 10;
 	private boolean sanitizeMessages;
 	private float dependentJoinPushdownThreshold = 0;
+	private boolean hashJoin;
+	private boolean batchEvaluation;
+	private boolean compileExpressions;
+	private int queryParallelism = 1;
+	private boolean hashAggregation;
+	private boolean semanticResultSetCache;
+	private int staleWhileRevalidateMillis;
+	private boolean requestCoalescing;
 	
 	public Properties getProperties() {
 		return properties;
@@ -131,4 +147,112 @@ public class Options {
 		return this;
 	}
 
+	public boolean isHashJoin() {
+		return hashJoin;
+	}
+	
+	public void setHashJoin(boolean hashJoin) {
+		this.hashJoin = hashJoin;
+	}
+	
+	public Options hashJoin(boolean b) {
+		this.hashJoin = b;
+		return this;
+	}
+
+	public boolean isBatchEvaluation() {
+		return batchEvaluation;
+	}
+	
+	public void setBatchEvaluation(boolean batchEvaluation) {
+		this.batchEvaluation = batchEvaluation;
+	}
+	
+	public Options batchEvaluation(boolean b) {
+		this.batchEvaluation = b;
+		return this;
+	}
+
+	public boolean isCompileExpressions() {
+		return compileExpressions;
+	}
+	
+	public void setCompileExpressions(boolean compileExpressions) {
+		this.compileExpressions = compileExpressions;
+	}
+	
+	public Options compileExpressions(boolean b) {
+		this.compileExpressions = b;
+		return this;
+	}
+
+	public int getQueryParallelism() {
+		return queryParallelism;
+	}
+	
+	public void setQueryParallelism(int queryParallelism) {
+		this.queryParallelism = queryParallelism;
+	}
+	
+	public Options queryParallelism(int i) {
+		this.queryParallelism = i;
+		return this;
+	}
+
+	public boolean isHashAggregation() {
+		return hashAggregation;
+	}
+	
+	public void setHashAggregation(boolean hashAggregation) {
+		this.hashAggregation = hashAggregation;
+	}
+	
+	public Options hashAggregation(boolean b) {
+		this.hashAggregation = b;
+		return this;
+	}
+	
+	public boolean isSemanticResultSetCache() {
+		return semanticResultSetCache;
+	}
+	
+	public void setSemanticResultSetCache(boolean semanticResultSetCache) {
+		this.semanticResultSetCache = semanticResultSetCache;
+	}
+	
+	public Options semanticResultSetCache(boolean b) {
+		this.semanticResultSetCache = b;
+		return this;
+	}
+	
+	/**
+	 * @return the time in milliseconds after the ttl of a cache entry or materialized view has passed 
+	 * that the stale contents may still be used while they are refreshed in the background. 
+	 */
+	public int getStaleWhileRevalidateMillis() {
+		return staleWhileRevalidateMillis;
+	}
+	
+	public void setStaleWhileRevalidateMillis(int staleWhileRevalidateMillis) {
+		this.staleWhileRevalidateMillis = staleWhileRevalidateMillis;
+	}
+	
+	public Options staleWhileRevalidateMillis(int millis) {
+		this.staleWhileRevalidateMillis = millis;
+		return this;
+	}
+	
+	public boolean isRequestCoalescing() {
+		return requestCoalescing;
+	}
+	
+	public void setRequestCoalescing(boolean requestCoalescing) {
+		this.requestCoalescing = requestCoalescing;
+	}
+	
+	public Options requestCoalescing(boolean b) {
+		this.requestCoalescing = b;
+		return this;
+	}
+
 }
@@ -61,6 +61,51 @@ public class TestTupleBuffer {
 		assertEquals(2, batch.getBeginRow());
 	}
 	
+	@SuppressWarnings("unchecked")
+	@Test public void testColumnar() throws Exception {
+		ElementSymbol x = new ElementSymbol("x"); //$NON-NLS-1$
+		x.setType(DataTypeManager.DefaultDataClasses.INTEGER);
+		ElementSymbol y = new ElementSymbol("y"); //$NON-NLS-1$
+		y.setType(DataTypeManager.DefaultDataClasses.STRING);
+		List<ElementSymbol> schema = Arrays.asList(x, y);
+		TupleBuffer tb = BufferManagerFactory.getStandaloneBufferManager().createTupleBuffer(schema, "x", TupleSourceType.PROCESSOR); //$NON-NLS-1$
+		tb.setColumnar(true);
+		tb.setBatchSize(4);
+		tb.addTuple(Arrays.asList(1, "a")); //$NON-NLS-1$
+		tb.addTuple(Arrays.asList(null, "b")); //$NON-NLS-1$
+		tb.addTuple(Arrays.asList(3, null));
+		tb.close();
+		TupleBatch batch = tb.getBatch(1);
+		ColumnarBatch columns = batch.getColumns();
+		assertNotNull(columns);
+		assertTrue(batch.getTerminationFlag());
+		assertEquals(Arrays.asList(Arrays.asList(1, "a"), Arrays.asList(null, "b"), Arrays.asList(3, null)), batch.getTuples()); //$NON-NLS-1$ //$NON-NLS-2$
+		assertEquals(3, columns.getInt(2, 0));
+		assertTrue(columns.isNull(1, 0));
+		assertTrue(columns.isNull(2, 1));
+		
+		//rows are views of the batch, which are detached when retained
+		List<Object> row = (List<Object>)batch.getTuple(1);
+		try {
+			row.set(0, 5);
+			fail();
+		} catch (UnsupportedOperationException e) {
+			
+		}
+		List<Object> copy = (List<Object>)ColumnarBatch.copy(row);
+		assertNotSame(row, copy);
+		copy.set(0, 5);
+		assertEquals(1, columns.getInt(0, 0));
+		assertEquals(Arrays.asList(1, "a"), columns.get(0)); //$NON-NLS-1$
+		TupleBuffer retained = BufferManagerFactory.getStandaloneBufferManager().createTupleBuffer(schema, "x", TupleSourceType.PROCESSOR); //$NON-NLS-1$
+		retained.addTuple(row);
+		assertNotSame(row, retained.getBatch(1).getTuple(1));
+		assertEquals(row, retained.getBatch(1).getTuple(1));
+		
+		assertEquals(Arrays.asList(Arrays.asList("a"), Arrays.asList("b"), Arrays.asList((Object)null)), columns.project(new int[] {1})); //$NON-NLS-1$ //$NON-NLS-2$
+		assertEquals(Arrays.asList(Arrays.asList("a", 1), Arrays.asList(null, 3)), columns.select(new int[] {0, 2}, 2, new int[] {1, 0})); //$NON-NLS-1$
+	}
+	
 	@Test public void testReverseIteration() throws Exception {
 		ElementSymbol x = new ElementSymbol("x"); //$NON-NLS-1$
 		x.setType(DataTypeManager.DefaultDataClasses.INTEGER);
@@ -189,6 +189,52 @@ public class TestBufferFrontedFileStoreCache {
 		assertEquals(Integer.valueOf(5001), ce.getObject());
 	}
 	
+	@Test public void testTierReadCounts() throws Exception {
+		cache = createLayeredCache(1<<15, 1<<15, true);
+		
+		Serializer<Integer> s = new SimpleSerializer();
+		WeakReference<? extends Serializer<?>> ref = new WeakReference<Serializer<?>>(s);
+		cache.createCacheGroup(s.getId());
+		CacheEntry ce = new CacheEntry(2l);
+		ce.setSerializer(ref);
+		ce.setObject(Integer.valueOf(10));
+		cache.addToCacheGroup(s.getId(), ce.getId());
+		cache.add(ce, s);
+		
+		ce = get(cache, 2l, s);
+		assertEquals(Integer.valueOf(10), ce.getObject());
+		assertEquals(1, cache.getMemoryBufferReads());
+		assertEquals(0, cache.getStorageReads());
+	}
+	
+	@Test public void testCompression() throws Exception {
+		cache = createLayeredCache(1<<15, 1<<15, true);
+		cache.setCompressionCodec(CompressionCodec.DEFLATE);
+
+		Serializer<Integer> s = new SimpleSerializer();
+		WeakReference<? extends Serializer<?>> ref = new WeakReference<Serializer<?>>(s);
+		cache.createCacheGroup(s.getId());
+		add(cache, s, ref, 0);
+		//the memory buffer is not compressed
+		assertEquals(0, cache.getUncompressedBytes());
+
+		//moves the first entry to storage
+		add(cache, s, ref, 1);
+		assertEquals(1, cache.getStorageWrites());
+		assertTrue(cache.getCompressedBytes() < cache.getUncompressedBytes());
+
+		//entries are readable regardless of the current codec
+		cache.setCompressionCodec(CompressionCodec.NONE);
+		CacheEntry ce = get(cache, 0l, s);
+		assertEquals(Integer.valueOf(5000), ce.getObject());
+		assertEquals(1, cache.getStorageReads());
+		ce = get(cache, 1l, s);
+		assertEquals(Integer.valueOf(5001), ce.getObject());
+		//read again after the entries have moved between tiers
+		ce = get(cache, 0l, s);
+		assertEquals(Integer.valueOf(5000), ce.getObject());
+	}
+
 	@Test public void testEvictionFails() throws Exception {
 		cache = createLayeredCache(1<<15, 1<<15, false);
 		BufferManagerImpl bmi = Mockito.mock(BufferManagerImpl.class);
@@ -24,8 +24,17 @@ package org.teiid.common.buffer.impl;
 
 import static org.junit.Assert.*;
 
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
 import org.junit.Test;
 import org.teiid.common.buffer.BufferManager.BufferReserveMode;
+import org.teiid.common.buffer.BufferManager.TupleSourceType;
+import org.teiid.common.buffer.BufferManagerFactory;
+import org.teiid.common.buffer.TupleBuffer;
+import org.teiid.core.types.DataTypeManager;
+import org.teiid.query.sql.symbol.ElementSymbol;
 
 public class TestBufferManagerImpl {
 	
@@ -50,4 +59,30 @@ public class TestBufferManagerImpl {
         assertEquals(24576, bufferManager.reserveBuffers(1024000, BufferReserveMode.NO_WAIT));
     }
 
+    @Test public void testAdaptiveBatchSizing() throws Exception {
+    	BufferManagerImpl bufferManager = BufferManagerFactory.createBufferManager();
+    	bufferManager.setAdaptiveBatchSizing(true);
+    	ElementSymbol x = new ElementSymbol("x"); //$NON-NLS-1$
+    	x.setType(DataTypeManager.DefaultDataClasses.STRING);
+    	List<ElementSymbol> schema = Arrays.asList(x);
+    	int nominal = bufferManager.getProcessorBatchSize(schema);
+    	
+    	//wide values should reduce the batch size
+    	List<? extends List<?>> sample = Collections.nCopies(nominal, Arrays.asList(new String(new char[4000])));
+    	assertTrue(bufferManager.getProcessorBatchSize(schema, sample) < nominal);
+    	
+    	//narrow values should increase it
+    	sample = Collections.nCopies(nominal, Arrays.asList("a")); //$NON-NLS-1$
+    	assertTrue(bufferManager.getProcessorBatchSize(schema, sample) > nominal);
+    	
+    	TupleBuffer tb = bufferManager.createTupleBuffer(schema, "x", TupleSourceType.PROCESSOR); //$NON-NLS-1$
+    	for (int i = 0; i < nominal; i++) {
+    		tb.addTuple(Arrays.asList("a")); //$NON-NLS-1$
+    	}
+    	assertTrue(tb.getBatchSize() > nominal);
+    	
+    	bufferManager.setAdaptiveBatchSizing(false);
+    	assertEquals(nominal, bufferManager.getProcessorBatchSize(schema, sample));
+    }
+
 }
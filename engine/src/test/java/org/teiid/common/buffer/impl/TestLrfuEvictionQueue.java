@@ -24,6 +24,7 @@ package org.teiid.common.buffer.impl;
 
 import static org.junit.Assert.*;
 
+import java.util.Random;
 import java.util.concurrent.atomic.AtomicLong;
 
 import org.junit.Test;
@@ -42,6 +43,30 @@ public class TestLrfuEvictionQueue {
 		}
 	}
 	
+	@Test public void testStripedOrder() {
+		LrfuEvictionQueue<BaseCacheEntry> q = new LrfuEvictionQueue<BaseCacheEntry>(new AtomicLong(), 8);
+		Random r = new Random(1);
+		for (long i = 0; i < 1000; i++) {
+			assertTrue(q.add(new BaseCacheEntry(new CacheKey(i, 0, r.nextInt(500)))));
+		}
+		assertEquals(1000, q.getSize());
+		long last = -1;
+		int count = 0;
+		for (BaseCacheEntry entry : q.getEvictionQueue()) {
+			assertTrue(entry.getKey().getOrderingValue() >= last);
+			last = entry.getKey().getOrderingValue();
+			count++;
+		}
+		assertEquals(1000, count);
+		last = -1;
+		BaseCacheEntry entry = null;
+		while ((entry = q.firstEntry(true)) != null) {
+			assertTrue(entry.getKey().getOrderingValue() >= last);
+			last = entry.getKey().getOrderingValue();
+		}
+		assertEquals(0, q.getSize());
+	}
+	
 	@Test public void testKeyCompare() {
 		CacheKey key = new CacheKey(-5600000000000000000l, 0l, 0l);
 		CacheKey key1 = new CacheKey(3831662765844904176l, 0l, 0l);
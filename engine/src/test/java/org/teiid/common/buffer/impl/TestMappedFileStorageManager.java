@@ -0,0 +1,183 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * See the COPYRIGHT.txt file distributed with this work for information
+ * regarding copyright ownership.  Some portions may be licensed
+ * to Red Hat, Inc. under one or more contributor license agreements.
+ * 
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ * 
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA
+ * 02110-1301 USA.
+ */
+
+package org.teiid.common.buffer.impl;
+
+import static org.junit.Assert.*;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+import org.junit.Test;
+import org.teiid.common.buffer.AutoCleanupUtil;
+import org.teiid.common.buffer.ExtensibleBufferedInputStream;
+import org.teiid.common.buffer.FileStore;
+import org.teiid.core.TeiidComponentException;
+import org.teiid.core.util.UnitTestUtil;
+
+@SuppressWarnings("nls")
+public class TestMappedFileStorageManager {
+	
+	static MappedFileStorageManager getStorageManager(int segmentSize) throws TeiidComponentException {
+		MappedFileStorageManager sm = new MappedFileStorageManager();
+		sm.setStorageDirectory(UnitTestUtil.getTestScratchPath());
+		sm.setSegmentSize(segmentSize);
+		sm.initialize();
+		return sm;
+	}
+	
+    /**
+     * The space of a removed store is released once its mappings are collected
+     */
+    static void assertReleased(FileStorageManager sm) throws InterruptedException {
+    	for (int i = 0; i < 500 && sm.getUsedBufferSpace() != 0; i++) {
+    		System.gc();
+    		Thread.sleep(10);
+    		AutoCleanupUtil.doCleanup();
+    	}
+    	assertEquals(0, sm.getUsedBufferSpace());
+    }
+    
+    @Test public void testInitialRead() throws Exception {
+    	FileStorageManager sm = getStorageManager(4096);
+        FileStore store = sm.createFileStore("0");
+        assertEquals(-1, store.read(0, new byte[1], 0, 1));
+    }
+    
+    @Test public void testWriteAcrossSegments() throws Exception {
+    	FileStorageManager sm = getStorageManager(4096);
+        FileStore store = sm.createFileStore("0");
+        byte[] expectedBytes = TestFileStorageManager.writeBytes(store, 0);
+        assertEquals(4096, sm.getUsedBufferSpace());
+        TestFileStorageManager.writeBytes(store, 2048);
+        assertEquals(4096, sm.getUsedBufferSpace());
+        byte[] spanning = TestFileStorageManager.writeBytes(store, 3072);
+        assertEquals(8192, sm.getUsedBufferSpace());
+        assertEquals(5120, store.getLength());
+        
+        byte[] bytesRead = new byte[2048];
+        store.readFully(3072, bytesRead, 0, bytesRead.length);
+        assertArrayEquals(spanning, bytesRead);
+        store.readFully(0, bytesRead, 0, bytesRead.length);
+        assertArrayEquals(expectedBytes, bytesRead);
+        assertEquals(-1, store.read(5120, bytesRead, 0, 1));
+        
+        store.remove();
+        assertReleased(sm);
+    }
+    
+    @Test public void testInputStreamSlices() throws Exception {
+    	FileStorageManager sm = getStorageManager(4096);
+        FileStore store = sm.createFileStore("0");
+        byte[] bytes = new byte[6000];
+        TestFileStorageManager.r.nextBytes(bytes);
+        store.write(0, bytes, 0, bytes.length);
+        
+        ExtensibleBufferedInputStream is = store.createInputStream(1000, 4000);
+        ByteBuffer bb = is.getBuffer();
+        assertTrue(bb.isDirect());
+        assertEquals(3096, bb.remaining());
+        byte[] bytesRead = new byte[4000];
+        int read = 0;
+        int c = 0;
+        while ((c = is.read(bytesRead, read, bytesRead.length - read)) > 0) {
+        	read += c;
+        }
+        assertEquals(4000, read);
+        assertTrue(Arrays.equals(Arrays.copyOfRange(bytes, 1000, 5000), bytesRead));
+        store.remove();
+    }
+    
+    @Test public void testSetLength() throws Exception {
+    	FileStorageManager sm = getStorageManager(4096);
+        FileStore store = sm.createFileStore("0");
+        store.setLength(10000);
+        assertEquals(10000, sm.getUsedBufferSpace());
+        
+        store.setLength(200);
+        assertEquals(200, store.getLength());
+        //the mappings are retained until the store is removed
+        assertEquals(10000, sm.getUsedBufferSpace());
+        assertEquals(-1, store.read(200, new byte[1], 0, 1));
+        
+        store.setLength(1000);
+        assertEquals(10000, sm.getUsedBufferSpace());
+        store.remove();
+        assertReleased(sm);
+    }
+    
+    @Test public void testSliceAfterTruncateAndRemove() throws Exception {
+    	FileStorageManager sm = getStorageManager(4096);
+        FileStore store = sm.createFileStore("0");
+        byte[] bytes = new byte[10000];
+        TestFileStorageManager.r.nextBytes(bytes);
+        store.write(0, bytes, 0, bytes.length);
+        
+        ByteBuffer bb = store.createInputStream(8192, 1000).getBuffer();
+        store.setLength(100);
+        store.remove();
+        //the slice must still be backed by a valid mapping
+        byte[] bytesRead = new byte[1000];
+        bb.get(bytesRead);
+        assertTrue(Arrays.equals(Arrays.copyOfRange(bytes, 8192, 9192), bytesRead));
+        //and its segment must still be accounted for
+        System.gc();
+        Thread.sleep(10);
+        AutoCleanupUtil.doCleanup();
+        assertTrue(sm.getUsedBufferSpace() > 0);
+        bb = null;
+        assertReleased(sm);
+    }
+    
+    @Test(expected=IOException.class) public void testMaxSpace() throws Exception {
+    	FileStorageManager sm = getStorageManager(4096);
+    	sm.setMaxBufferSpace(1);
+        FileStore store = sm.createFileStore("0");
+        try {
+        	TestFileStorageManager.writeBytes(store);
+        } finally {
+        	assertEquals(0, sm.getUsedBufferSpace());
+        }
+    }
+    
+    @Test public void testSplittableDelegation() throws Exception {
+    	FileStorageManager sm = getStorageManager(4096);
+    	SplittableStorageManager ssm = new SplittableStorageManager(sm);
+    	ssm.setMaxFileSizeDirect(8192);
+        FileStore store = ssm.createFileStore("0");
+        byte[] bytes = new byte[10000];
+        TestFileStorageManager.r.nextBytes(bytes);
+        store.write(0, bytes, 0, bytes.length);
+        
+        ByteBuffer bb = store.createInputStream(8192, 1000).getBuffer();
+        assertTrue(bb.isDirect());
+        assertEquals(1000, bb.remaining());
+        byte[] bytesRead = new byte[1000];
+        bb.get(bytesRead);
+        assertTrue(Arrays.equals(Arrays.copyOfRange(bytes, 8192, 9192), bytesRead));
+        bb = null;
+        store.remove();
+        assertReleased(sm);
+    }
+
+}
@@ -35,6 +35,7 @@ import java.util.Arrays;
 import java.util.List;
 
 import org.junit.Test;
+import org.teiid.common.buffer.ColumnarBatch;
 import org.teiid.core.types.BinaryType;
 import org.teiid.core.types.DataTypeManager;
 
@@ -190,4 +191,11 @@ public class TestSizeUtility {
         assertEquals("Got unexpected size: ", 2667, actualSize); //$NON-NLS-1$        
     }
     
-}
\ No newline at end of file
+    @Test public void testColumnarBatchSize() {
+    	Class<?>[] types = {DataTypeManager.DefaultDataClasses.STRING, DataTypeManager.DefaultDataClasses.INTEGER};
+    	List<? extends List<?>> rows = Arrays.asList(Arrays.asList("a", 1), Arrays.asList("bc", null), Arrays.asList(null, 3)); //$NON-NLS-1$ //$NON-NLS-2$
+    	SizeUtility sizeUtility = new SizeUtility(types);
+    	assertEquals(sizeUtility.getBatchSize(false, rows), sizeUtility.getBatchSize(false, ColumnarBatch.create(types, rows)));
+    }
+    
+}
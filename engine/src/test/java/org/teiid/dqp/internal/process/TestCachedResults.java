@@ -23,6 +23,7 @@ package org.teiid.dqp.internal.process;
 
 import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertTrue;
 
 import java.util.Arrays;
@@ -119,4 +120,23 @@ public class TestCachedResults {
 //		cachedResults = UnitTestUtil.helpSerialize(results);
 //		assertFalse(cachedResults.restore(cache, bm2));
 	}	
+	
+	@Test public void testStaleRefresh() throws Exception {
+		CachedResults results = new CachedResults();
+		assertFalse(results.isStale(System.currentTimeMillis()));
+		results.setExpiration(100);
+		assertFalse(results.isStale(100));
+		assertTrue(results.isStale(101));
+		
+		//only a single refresh may be in progress
+		assertTrue(results.beginRefresh());
+		assertFalse(results.beginRefresh());
+		results.endRefresh();
+		assertTrue(results.beginRefresh());
+		
+		results.getAccessInfo().populate(new CommandContext(), true);
+		CachedResults copy = UnitTestUtil.helpSerialize(results);
+		assertEquals(100, copy.getExpiration());
+		assertTrue(copy.beginRefresh());
+	}
 }
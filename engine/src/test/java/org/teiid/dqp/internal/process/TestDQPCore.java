@@ -25,7 +25,9 @@ package org.teiid.dqp.internal.process;
 import static org.junit.Assert.*;
 
 import java.sql.ResultSet;
+import java.util.Arrays;
 import java.util.HashMap;
+import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.Future;
 import java.util.concurrent.TimeUnit;
@@ -48,18 +50,22 @@ import org.teiid.client.ResultsMessage;
 import org.teiid.client.lob.LobChunk;
 import org.teiid.client.util.ResultsFuture;
 import org.teiid.common.buffer.BufferManagerFactory;
+import org.teiid.common.buffer.TupleBuffer;
 import org.teiid.common.buffer.impl.BufferManagerImpl;
 import org.teiid.core.TeiidProcessingException;
 import org.teiid.core.types.BlobType;
 import org.teiid.dqp.internal.datamgr.ConnectorManagerRepository;
 import org.teiid.dqp.internal.datamgr.FakeTransactionService;
 import org.teiid.dqp.internal.process.AbstractWorkItem.ThreadState;
+import org.teiid.dqp.internal.process.SessionAwareCache.CacheID;
 import org.teiid.dqp.service.AutoGenDataService;
 import org.teiid.dqp.service.FakeBufferService;
+import org.teiid.metadata.FunctionMethod.Determinism;
 import org.teiid.query.optimizer.TestOptimizer;
 import org.teiid.query.optimizer.capabilities.BasicSourceCapabilities;
 import org.teiid.query.optimizer.capabilities.SourceCapabilities.Capability;
 import org.teiid.query.unittest.RealMetadataFactory;
+import org.teiid.query.util.Options;
 import org.teiid.translator.SourceSystemFunctions;
 
 @SuppressWarnings("nls")
@@ -643,6 +649,149 @@ public class TestDQPCore {
         assertEquals(1, this.core.getRsCache().getCacheHitCount());
     }
     
+    @Test public void testSemanticRsCache() throws Exception {
+    	System.setProperty(Options.SEMANTIC_RESULT_SET_CACHE, "true"); //$NON-NLS-1$
+    	try {
+    		core.stop();
+    		core.start(config);
+    	} finally {
+    		System.clearProperty(Options.SEMANTIC_RESULT_SET_CACHE);
+    	}
+    	agds.setUseIntCounter(true);
+        RequestMessage reqMsg = exampleRequestMessage("select IntKey, StringKey FROM bqt1.SmallA"); //$NON-NLS-1$
+        reqMsg.setUseResultSetCache(true);
+        ResultsMessage rm = execute("1", 1, reqMsg); //$NON-NLS-1$
+        assertEquals(10, rm.getResultsList().size());
+        assertEquals(1, agds.getExecuteCount().get());
+        
+        reqMsg = exampleRequestMessage("select IntKey FROM bqt1.SmallA where IntKey > 6 order by IntKey desc"); //$NON-NLS-1$
+        reqMsg.setUseResultSetCache(true);
+        rm = execute("1", 1, reqMsg); //$NON-NLS-1$
+        assertEquals(Arrays.asList(Arrays.asList(9), Arrays.asList(8), Arrays.asList(7)), rm.getResultsList());
+        assertEquals(1, agds.getExecuteCount().get());
+        //the semantic lookup should not count as another request
+        assertEquals(2, core.getRsCache().getRequestCount());
+        
+        //not covered by the cached columns
+        reqMsg = exampleRequestMessage("select IntKey FROM bqt1.SmallA where IntNum > 6"); //$NON-NLS-1$
+        reqMsg.setUseResultSetCache(true);
+        rm = execute("1", 1, reqMsg); //$NON-NLS-1$
+        assertEquals(2, agds.getExecuteCount().get());
+    }
+    
+    @Test public void testRequestCoalescing() throws Exception {
+    	final CountDownLatch release = new CountDownLatch(1);
+    	SessionAwareCache<CachedResults> rsCache = new SessionAwareCache<CachedResults>("resultset", new DefaultCacheFactory(new CacheConfiguration()), SessionAwareCache.Type.RESULTSET, 0) {
+    		@Override
+    		public CachedResults get(CacheID id) {
+    			CachedResults result = super.get(id);
+    			if (getRequestCount() == 2) {
+    				//the second request has missed while the first is executing
+    				release.countDown();
+    			}
+    			return result;
+    		}
+    	};
+    	rsCache.setTupleBufferCache(core.getBufferManager());
+    	System.setProperty(Options.REQUEST_COALESCING, "true"); //$NON-NLS-1$
+    	try {
+    		core.stop();
+    		core.setResultsetCache(rsCache);
+    		config.setMaxActivePlans(2);
+    		core.start(config);
+    	} finally {
+    		System.clearProperty(Options.REQUEST_COALESCING);
+    	}
+    	agds.executeStarted = new CountDownLatch(1);
+    	agds.executeLatch = release;
+    	RequestMessage reqMsg = exampleRequestMessage("select IntKey FROM bqt1.SmallA"); //$NON-NLS-1$
+    	reqMsg.setUseResultSetCache(true);
+    	Future<ResultsMessage> first = core.executeRequest(reqMsg.getExecutionId(), reqMsg);
+    	assertTrue(agds.executeStarted.await(5, TimeUnit.SECONDS));
+    	RequestMessage reqMsg1 = exampleRequestMessage("select IntKey FROM bqt1.SmallA"); //$NON-NLS-1$
+    	reqMsg1.setUseResultSetCache(true);
+    	reqMsg1.setExecutionId(reqMsg.getExecutionId() + 1);
+    	Future<ResultsMessage> second = core.executeRequest(reqMsg1.getExecutionId(), reqMsg1);
+    	assertEquals(10, first.get(5000, TimeUnit.MILLISECONDS).getResultsList().size());
+    	assertEquals(10, second.get(5000, TimeUnit.MILLISECONDS).getResultsList().size());
+    	//the second request should have waited on the first
+    	assertEquals(1, agds.getExecuteCount().get());
+    	//and been counted once
+    	assertEquals(2, rsCache.getRequestCount());
+    	assertEquals(1, rsCache.getCacheHitCount());
+    }
+    
+    @Test public void testStaleRefresh() throws Exception {
+    	System.setProperty(Options.STALE_WHILE_REVALIDATE_MILLIS, "60000"); //$NON-NLS-1$
+    	try {
+    		core.stop();
+    		core.start(config);
+    	} finally {
+    		System.clearProperty(Options.STALE_WHILE_REVALIDATE_MILLIS);
+    	}
+    	String sql = "/*+ cache(ttl:100) */ select IntKey FROM bqt1.SmallA"; //$NON-NLS-1$
+    	RequestMessage reqMsg = exampleRequestMessage(sql);
+    	ResultsMessage rm = execute("1", 1, reqMsg); //$NON-NLS-1$
+    	assertEquals(10, rm.getResultsList().size());
+    	assertEquals(1, agds.getExecuteCount().get());
+    	
+    	Thread.sleep(150);
+    	
+    	//block the refresh so that the stale hits overlap it
+    	CountDownLatch release = new CountDownLatch(1);
+    	agds.executeStarted = new CountDownLatch(1);
+    	agds.executeLatch = release;
+    	for (int i = 0; i < 2; i++) {
+    		reqMsg = exampleRequestMessage(sql);
+    		rm = execute("1", 1, reqMsg); //$NON-NLS-1$
+    		assertEquals(10, rm.getResultsList().size());
+    	}
+    	assertTrue(agds.executeStarted.await(5, TimeUnit.SECONDS));
+    	assertEquals(2, core.getRsCache().getStaleHitCount());
+    	assertEquals(0, core.getRsCache().getRefreshCount());
+    	release.countDown();
+    	for (int i = 0; i < 1000 && core.getRsCache().getRefreshCount() == 0; i++) {
+    		Thread.sleep(5);
+    	}
+    	assertEquals(1, core.getRsCache().getRefreshCount());
+    	assertEquals(2, agds.getExecuteCount().get());
+    	
+    	//the refreshed entry has replaced the stale one
+    	int hits = core.getRsCache().getCacheHitCount();
+    	reqMsg = exampleRequestMessage(sql);
+    	rm = execute("1", 1, reqMsg); //$NON-NLS-1$
+    	assertEquals(10, rm.getResultsList().size());
+    	assertEquals(hits + 1, core.getRsCache().getCacheHitCount());
+    	assertEquals(2, core.getRsCache().getStaleHitCount());
+    	assertEquals(2, agds.getExecuteCount().get());
+    }
+    
+    @Test public void testRsCacheRejectedResultsRemoved() throws Exception {
+    	final TupleBuffer[] results = new TupleBuffer[1];
+    	SessionAwareCache<CachedResults> rsCache = new SessionAwareCache<CachedResults>("resultset", new DefaultCacheFactory(new CacheConfiguration()), SessionAwareCache.Type.RESULTSET, 0) {
+    		@Override
+    		public boolean put(CacheID id, Determinism determinismLevel, CachedResults t, Long ttl, long size, long cost) {
+    			//simulate the entry not being admitted
+    			results[0] = t.getResults();
+    			return false;
+    		}
+    	};
+    	core.stop();
+    	core.setResultsetCache(rsCache);
+    	core.start(config);
+    	RequestMessage reqMsg = exampleRequestMessage("select IntKey FROM bqt1.SmallA"); //$NON-NLS-1$
+    	reqMsg.setUseResultSetCache(true);
+    	ResultsMessage rm = execute("1", 1, reqMsg); //$NON-NLS-1$
+    	assertEquals(10, rm.getResultsList().size());
+    	assertNotNull(results[0]);
+    	assertFalse(results[0].isRemoved());
+    	core.closeRequest(reqMsg.getExecutionId());
+    	for (int i = 0; i < 1000 && !results[0].isRemoved(); i++) {
+    		Thread.sleep(5);
+    	}
+    	assertTrue(results[0].isRemoved());
+    }
+    
     @Test public void testLobConcurrency() throws Exception {
     	RequestMessage reqMsg = exampleRequestMessage("select to_bytes(stringkey, 'utf-8') FROM BQT1.SmallA"); 
         reqMsg.setTxnAutoWrapMode(RequestMessage.TXN_WRAP_OFF);
@@ -154,6 +154,35 @@ public class TestPreparedStatement {
 		helpTestProcessing(preparedSql, values, expected, dataManager, RealMetadataFactory.example1Cached(), false, RealMetadataFactory.example1VDB());
 	}
     
+    @Test public void testCompiledReference() throws Exception { 
+        String preparedSql = "SELECT e1, e2 + ? FROM pm1.g1 WHERE e2 + ? > 2"; //$NON-NLS-1$
+        
+        FakeCapabilitiesFinder capFinder = new FakeCapabilitiesFinder();
+        capFinder.addCapabilities("pm1", new BasicSourceCapabilities()); //$NON-NLS-1$
+        QueryMetadataInterface metadata = RealMetadataFactory.example1Cached();
+        SessionAwareCache<PreparedPlan> planCache = new SessionAwareCache<PreparedPlan>("preparedplan", DefaultCacheFactory.INSTANCE, SessionAwareCache.Type.PREPAREDPLAN, 0);
+		FakeDataManager dataManager = new FakeDataManager();
+        TestProcessor.sampleData1(dataManager);
+        
+        PreparedStatementRequest plan = helpGetProcessorPlan(preparedSql, Arrays.asList(1, 1), capFinder, metadata, planCache, SESSION_ID, false, false, RealMetadataFactory.example1VDB());
+        plan.context.getOptions().setCompileExpressions(true);
+        TestProcessor.doProcess(plan.processPlan, dataManager, new List<?>[] {
+            Arrays.asList("a", 4), //$NON-NLS-1$
+            Arrays.asList("b", 3), //$NON-NLS-1$
+        }, plan.context);
+        
+        //the cached plan must use the new values
+        plan = helpGetProcessorPlan(preparedSql, Arrays.asList(10, 2), capFinder, metadata, planCache, SESSION_ID, false, false, RealMetadataFactory.example1VDB());
+        assertEquals(1, planCache.getCacheHitCount());
+        plan.context.getOptions().setCompileExpressions(true);
+        TestProcessor.doProcess(plan.processPlan, dataManager, new List<?>[] {
+            Arrays.asList(null, 11),
+            Arrays.asList("a", 13), //$NON-NLS-1$
+            Arrays.asList("c", 11), //$NON-NLS-1$
+            Arrays.asList("b", 12), //$NON-NLS-1$
+        }, plan.context);
+	}
+    
     @Test public void testObjectCast() throws Exception { 
         // Create query 
         String preparedSql = "SELECT array_length(cast(? as object))"; //$NON-NLS-1$
@@ -164,6 +164,37 @@ public class TestSessionAwareCache {
 		assertNull(cache.get(id));
 	}
 
+	@Test public void testSizeAwareAdmission() {
+		
+		SessionAwareCache<Cachable> cache = new SessionAwareCache<Cachable>("resultset", DefaultCacheFactory.INSTANCE, SessionAwareCache.Type.RESULTSET, 0);
+		cache.setMaxSizeInBytes(100);
+		
+		Cachable result = Mockito.mock(Cachable.class);
+		Mockito.stub(result.prepare((BufferManager)anyObject())).toReturn(true);
+		Mockito.stub(result.restore((BufferManager)anyObject())).toReturn(true);
+		
+		CacheID cheap = new CacheID(buildWorkContext(), new ParseInfo(), "SELECT * FROM FOO");
+		assertTrue(cache.put(cheap, Determinism.VDB_DETERMINISTIC, result, null, 60, 6));
+		CacheID costly = new CacheID(buildWorkContext(), new ParseInfo(), "SELECT * FROM BAR");
+		assertTrue(cache.put(costly, Determinism.VDB_DETERMINISTIC, result, null, 30, 100));
+		assertEquals(90, cache.getSizeInBytes());
+		
+		//too large
+		assertFalse(cache.put(new CacheID(buildWorkContext(), new ParseInfo(), "SELECT 1"), Determinism.VDB_DETERMINISTIC, result, null, 101, 1000));
+		
+		//cheaper than what is cached
+		assertFalse(cache.put(new CacheID(buildWorkContext(), new ParseInfo(), "SELECT 2"), Determinism.VDB_DETERMINISTIC, result, null, 50, 1));
+		
+		//displaces the cheap entry
+		assertTrue(cache.put(new CacheID(buildWorkContext(), new ParseInfo(), "SELECT 3"), Determinism.VDB_DETERMINISTIC, result, null, 50, 50));
+		assertEquals(80, cache.getSizeInBytes());
+		assertNull(cache.get(new CacheID(buildWorkContext(), new ParseInfo(), "SELECT * FROM FOO")));
+		assertNotNull(cache.get(new CacheID(buildWorkContext(), new ParseInfo(), "SELECT * FROM BAR")));
+		
+		cache.remove(new CacheID(buildWorkContext(), new ParseInfo(), "SELECT * FROM BAR"), Determinism.VDB_DETERMINISTIC);
+		assertEquals(50, cache.getSizeInBytes());
+	}
+
 	public static DQPWorkContext buildWorkContext() {
 		DQPWorkContext workContext = new DQPWorkContext();
 		SessionMetadata session = new SessionMetadata();
@@ -32,6 +32,7 @@ import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Iterator;
 import java.util.List;
+import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.atomic.AtomicInteger;
 
 import org.teiid.core.TeiidComponentException;
@@ -67,6 +68,8 @@ public class AutoGenDataService extends ConnectorManager{
 	public Integer dataNotAvailable;
 	public boolean strict;
 	public int sleep;
+	public CountDownLatch executeStarted;
+	public CountDownLatch executeLatch;
     private final AtomicInteger executeCount = new AtomicInteger();
     private final AtomicInteger closeCount = new AtomicInteger();
     private boolean useIntCounter;
@@ -142,6 +145,16 @@ public class AutoGenDataService extends ConnectorManager{
 			@Override
 			public void execute() throws TranslatorException {
 				executeCount.incrementAndGet();
+				if (executeStarted != null) {
+					executeStarted.countDown();
+				}
+				if (executeLatch != null) {
+					try {
+						executeLatch.await();
+					} catch (InterruptedException e) {
+						throw new RuntimeException(e);
+					}
+				}
 				if (sleep > 0) {
 					try {
 						Thread.sleep(sleep);
@@ -47,12 +47,21 @@ import org.teiid.query.optimizer.capabilities.SourceCapabilities.Capability;
 import org.teiid.query.optimizer.relational.rules.JoinUtil;
 import org.teiid.query.parser.QueryParser;
 import org.teiid.query.processor.ProcessorPlan;
+import org.teiid.query.processor.relational.EnhancedSortMergeJoinStrategy;
+import org.teiid.query.processor.relational.HashJoinStrategy;
+import org.teiid.query.processor.relational.JoinNode;
+import org.teiid.query.processor.relational.JoinStrategy;
+import org.teiid.query.processor.relational.RelationalNode;
+import org.teiid.query.processor.relational.RelationalPlan;
 import org.teiid.query.resolver.QueryResolver;
 import org.teiid.query.resolver.util.ResolverVisitor;
+import org.teiid.query.sql.lang.Command;
 import org.teiid.query.sql.lang.Criteria;
 import org.teiid.query.sql.symbol.Expression;
 import org.teiid.query.sql.symbol.GroupSymbol;
 import org.teiid.query.unittest.RealMetadataFactory;
+import org.teiid.query.util.CommandContext;
+import org.teiid.query.util.Options;
 import org.teiid.translator.ExecutionFactory.SupportedJoinCriteria;
 import org.teiid.translator.SourceSystemFunctions;
 
@@ -1080,4 +1089,51 @@ public class TestJoinOptimization {
 
     }
     
+    @Test public void testHashJoinChoice() throws Exception {
+        String sql = "SELECT bqt1.smalla.intkey FROM bqt1.smalla, bqt2.smallb WHERE bqt1.smalla.intkey = bqt2.smallb.intkey"; //$NON-NLS-1$
+        QueryMetadataInterface metadata = RealMetadataFactory.exampleBQT();
+        RealMetadataFactory.setCardinality("bqt1.smalla", 1000, metadata); //$NON-NLS-1$
+        RealMetadataFactory.setCardinality("bqt2.smallb", 2000, metadata); //$NON-NLS-1$
+
+        //both sides larger than a batch and neither sort can be pushed
+        assertTrue(helpGetJoinStrategy(sql, metadata, true) instanceof HashJoinStrategy);
+        //not enabled
+        assertFalse(helpGetJoinStrategy(sql, metadata, false) instanceof HashJoinStrategy);
+
+        //a small side is left to the enhanced sort join
+        RealMetadataFactory.setCardinality("bqt1.smalla", 10, metadata); //$NON-NLS-1$
+        assertTrue(helpGetJoinStrategy(sql, metadata, true) instanceof EnhancedSortMergeJoinStrategy);
+
+        //an unknown cardinality is not costed
+        RealMetadataFactory.setCardinality("bqt1.smalla", -1, metadata); //$NON-NLS-1$
+        assertFalse(helpGetJoinStrategy(sql, metadata, true) instanceof HashJoinStrategy);
+    }
+
+    private JoinStrategy helpGetJoinStrategy(String sql, QueryMetadataInterface metadata, boolean hashJoin) throws Exception {
+        CommandContext cc = new CommandContext();
+        cc.setOptions(new Options().hashJoin(hashJoin));
+        Command command = TestOptimizer.helpGetCommand(sql, metadata, null);
+        //no pushdown of order by
+        ProcessorPlan plan = TestOptimizer.getPlan(command, metadata, new DefaultCapabilitiesFinder(new BasicSourceCapabilities()), null, true, cc);
+        JoinNode joinNode = findJoinNode(((RelationalPlan)plan).getRootNode());
+        assertNotNull(joinNode);
+        return joinNode.getJoinStrategy();
+    }
+
+    private JoinNode findJoinNode(RelationalNode node) {
+        if (node instanceof JoinNode) {
+            return (JoinNode)node;
+        }
+        for (RelationalNode child : node.getChildren()) {
+            if (child == null) {
+                break;
+            }
+            JoinNode result = findJoinNode(child);
+            if (result != null) {
+                return result;
+            }
+        }
+        return null;
+    }
+    
 }
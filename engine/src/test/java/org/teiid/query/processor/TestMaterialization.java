@@ -27,8 +27,11 @@ import static org.junit.Assert.*;
 
 import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
+import java.util.concurrent.Executor;
 
 import org.junit.Before;
 import org.junit.Test;
@@ -36,6 +39,8 @@ import org.teiid.cache.DefaultCacheFactory;
 import org.teiid.common.buffer.BufferManager;
 import org.teiid.common.buffer.BufferManagerFactory;
 import org.teiid.core.TeiidProcessingException;
+import org.teiid.core.util.ExecutorUtils;
+import org.teiid.core.util.UnitTestUtil;
 import org.teiid.dqp.internal.process.CachedResults;
 import org.teiid.dqp.internal.process.QueryProcessorFactoryImpl;
 import org.teiid.dqp.internal.process.SessionAwareCache;
@@ -128,6 +133,67 @@ public class TestMaterialization {
     	assertEquals(1, hdm.getCommandHistory().size());
     }
     
+	@Test public void testSnapshot() throws Exception {
+		File dir = getSnapshotDirectory();
+		this.globalStore.setSnapshotDirectory(dir);
+		this.globalStore.setSnapshotExecutor(ExecutorUtils.getDirectExecutor());
+		execute("SELECT * from vgroup3 where x = 'one'", Arrays.asList("one", "zne"));
+		assertEquals(1, hdm.getCommandHistory().size());
+		
+		//simulate a restart
+		TransformationMetadata actualMetadata = RealMetadataFactory.exampleMaterializedView();
+		this.globalStore = new GlobalTableStoreImpl(BufferManagerFactory.getStandaloneBufferManager(), actualMetadata.getVdbMetaData(), actualMetadata);
+		this.globalStore.setSnapshotDirectory(dir);
+		this.globalStore.setSnapshotExecutor(ExecutorUtils.getDirectExecutor());
+		execute("SELECT * from vgroup3 where x = 'two'", Arrays.asList("two", "zwo"));
+		assertEquals(1, hdm.getCommandHistory().size());
+		
+		//row updates make the snapshot obsolete
+		String matTableName = RelationalPlanner.MAT_PREFIX + "MATVIEW.VGROUP3";
+		this.globalStore.updateMatViewRow(matTableName, Arrays.asList("one", "zzz"), false);
+		assertEquals(0, dir.listFiles().length);
+	}
+	
+	@Test public void testSnapshotWriteAfterUpdate() throws Exception {
+		File dir = getSnapshotDirectory();
+		this.globalStore.setSnapshotDirectory(dir);
+		final List<Runnable> pending = new ArrayList<Runnable>();
+		this.globalStore.setSnapshotExecutor(new Executor() {
+			@Override
+			public void execute(Runnable command) {
+				pending.add(command);
+			}
+		});
+		execute("SELECT * from vgroup3 where x = 'one'", Arrays.asList("one", "zne"));
+		assertEquals(1, pending.size());
+		
+		//the pending write must not persist the table from before the update
+		String matTableName = RelationalPlanner.MAT_PREFIX + "MATVIEW.VGROUP3";
+		this.globalStore.updateMatViewRow(matTableName, Arrays.asList("one", "zzz"), false);
+		pending.get(0).run();
+		assertEquals(0, dir.listFiles().length);
+	}
+
+	@Test public void testSnapshotNotWrittenAfterClose() throws Exception {
+		File dir = getSnapshotDirectory();
+		this.globalStore.setSnapshotDirectory(dir);
+		this.globalStore.close();
+		execute("SELECT * from vgroup3 where x = 'one'", Arrays.asList("one", "zne"));
+		assertEquals(0, dir.listFiles().length);
+	}
+
+	private File getSnapshotDirectory() {
+		File dir = new File(UnitTestUtil.getTestScratchPath(), "matsnapshot");
+		File[] files = dir.listFiles();
+		if (files != null) {
+			for (File file : files) {
+				file.delete();
+			}
+		}
+		dir.mkdirs();
+		return dir;
+	}
+	
 	@Test public void testTtl() throws Exception {
 		execute("SELECT * from vgroup4 where x = 'one'", Arrays.asList("one"));
 		assertEquals(1, hdm.getCommandHistory().size());
@@ -156,6 +222,22 @@ public class TestMaterialization {
 		execute("SELECT * from vgroup3 where y is null", Arrays.asList((String)null, (String)null));
 	}
 	
+	@Test public void testSecondaryIndexMaintenance() throws Exception {
+		execute("SELECT * from vgroup3 where y = 'zne'", Arrays.asList("one", "zne"));
+		String matTableName = RelationalPlanner.MAT_PREFIX + "MATVIEW.VGROUP3";
+		this.globalStore.updateMatViewRow(matTableName, Arrays.asList("one", "zzz"), false);
+		execute("SELECT * from vgroup3 where y = 'zne'");
+		execute("SELECT * from vgroup3 where y = 'zzz'", Arrays.asList("one", "zzz"));
+		this.globalStore.updateMatViewRow(matTableName, Arrays.asList("two"), true);
+		execute("SELECT * from vgroup3 where y in ('zwo', 'zzz') order by y", Arrays.asList("one", "zzz"));
+	}
+
+	@Test public void testSecondaryIndexBuiltAfterLoad() throws Exception {
+		//the index is added after the rows are loaded and must be fully populated
+		execute("SELECT y from vgroup3 order by y", Arrays.asList((String)null), Arrays.asList("zhree"), Arrays.asList("zne"), Arrays.asList("zwo"));
+		execute("SELECT * from vgroup3 where y > 'zn' order by y", Arrays.asList("one", "zne"), Arrays.asList("two", "zwo"));
+	}
+	
 	@Test public void testNonCoveringSecondaryIndex() throws Exception {
 		execute("SELECT * from vgroup5 where y in ('zne', 'zwo') order by y desc", Arrays.asList("two", "zwo", 1), Arrays.asList("one", "zne", 1));
 		execute("SELECT * from vgroup5 where y is null", Arrays.asList((String)null, (String)null, 1));
@@ -45,11 +45,14 @@ import org.teiid.query.optimizer.capabilities.BasicSourceCapabilities;
 import org.teiid.query.optimizer.capabilities.DefaultCapabilitiesFinder;
 import org.teiid.query.optimizer.capabilities.FakeCapabilitiesFinder;
 import org.teiid.query.optimizer.capabilities.SourceCapabilities.Capability;
+import org.teiid.query.processor.relational.ExchangeNode;
 import org.teiid.query.processor.relational.JoinNode;
 import org.teiid.query.processor.relational.NestedTableJoinStrategy;
+import org.teiid.query.processor.relational.RelationalNode;
 import org.teiid.query.processor.relational.RelationalPlan;
 import org.teiid.query.unittest.RealMetadataFactory;
 import org.teiid.query.util.CommandContext;
+import org.teiid.query.util.Options;
 
 @SuppressWarnings({"unchecked", "nls"})
 public class TestTextTable {
@@ -68,6 +71,37 @@ public class TestTextTable {
         process(sql, expected);
     }
 	
+	@Test public void testCorrelatedTextTableNotExchanged() throws Exception {
+    	String sql = "select x.* from pm1.g1, texttable(e1 || ',' || e2 COLUMNS x string, y integer) x"; //$NON-NLS-1$
+    	
+        List<?>[] expected = new List<?>[] {
+        		Arrays.asList("a", 0),
+        		Arrays.asList("a", 3),
+        		Arrays.asList("c", 1),
+        		Arrays.asList("b", 2),
+        		Arrays.asList("a", 0),
+        };    
+
+        FakeDataManager dataManager = new FakeDataManager();
+        sampleData1(dataManager);
+        CommandContext cc = createCommandContext();
+        cc.setOptions(new Options().queryParallelism(4));
+        RelationalPlan plan = (RelationalPlan)helpGetPlan(helpParse(sql), RealMetadataFactory.example1Cached(), new DefaultCapabilitiesFinder(), cc);
+        JoinNode join = (JoinNode) plan.getRootNode().getChildren()[0];
+        assertTrue(join.getJoinStrategy() instanceof NestedTableJoinStrategy);
+        assertNoExchange(plan.getRootNode());
+        doProcess(plan, dataManager, expected, cc);
+    }
+	
+	private void assertNoExchange(RelationalNode node) {
+		assertFalse(node instanceof ExchangeNode);
+		for (RelationalNode child : node.getChildren()) {
+			if (child != null) {
+				assertNoExchange(child);
+			}
+		}
+	}
+	
 	@Test public void testTextTableFixed() throws Exception {
     	String sql = "select max(compkey), max(cdm_id), max(currency), max(\"start\"), max(maturity), max(amount), count(*) from texttable(? COLUMNS compkey string width 76, CDM_ID string width 14, CURRENCY string width 9, \"START\" string width 31, MATURITY string width 31, AMOUNT double width 21, RECORDSOURCE string width 13, SUMMIT_ID string width 15, RATE double width 20, SPREAD double width 20, DESK string width 14) x"; //$NON-NLS-1$
     	
@@ -488,7 +522,8 @@ public class TestTextTable {
         ArrayList<Object> list = new ArrayList<Object>();
         list.add("\"b\""+nl+"\"b\""+nl);
         ArrayList<Object> list1 = new ArrayList<Object>();
-        list1.add("\"a\""+nl+"\"z\""+nl+"\"c\""+nl+"\"z\""+nl);
+        //the unstable sort reads the rows in reverse, then the merge takes ties from the earliest sublist
+        list1.add("\"a\""+nl+"\"c\""+nl+"\"z\""+nl+"\"z\""+nl);
         List<?>[] expected = new List<?>[] {
         		list, list1
         };    
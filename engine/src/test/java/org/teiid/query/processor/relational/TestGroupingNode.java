@@ -28,8 +28,10 @@ import java.math.BigDecimal;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
 import org.junit.Test;
 import org.teiid.common.buffer.BlockedException;
@@ -420,6 +422,75 @@ public class TestGroupingNode {
         helpProcess(mgr, node, context, expected, null);
     }
 
+    @Test public void testHashAggregation() throws Exception {
+        Set<List<?>> expected = new HashSet<List<?>>(Arrays.asList(
+            Arrays.asList(null, 2, 3),
+            Arrays.asList(0, 1, 4),
+            Arrays.asList(1, 1, 2),
+            Arrays.asList(2, 4, 2),
+            Arrays.asList(3, 1, 0),
+            Arrays.asList(4, 3, 3),
+            Arrays.asList(5, 1, 3),
+            Arrays.asList(6, 2, 4)
+        ));
+    	GroupingNode node = helpTestHashAggregation(BufferManagerFactory.getStandaloneBufferManager(), createTupleSource1(), expected);
+    	assertFalse(node.isHashFallback());
+    }
+    
+    /**
+     * With no reserve available the hash table will be moved to the tree
+     * once there are more groups than a batch
+     */
+    @Test public void testHashAggregationFallback() throws Exception {
+    	BufferManager mgr = BufferManagerFactory.getTestBufferManager(0, 2);
+    	List[] tuples = new List[100];
+    	for (int i = 0; i < tuples.length; i++) {
+			tuples[i] = Arrays.asList(i % 40, i);
+		}
+    	Set<List<?>> expected = new HashSet<List<?>>();
+    	for (int i = 0; i < 40; i++) {
+    		int count = i < 20 ? 3 : 2;
+    		expected.add(Arrays.asList(i, count, i + 40 * (count - 1)));
+    	}
+    	GroupingNode node = helpTestHashAggregation(mgr, new FakeTupleSource(createTupleSource1().getSchema(), tuples), expected);
+    	assertTrue(node.isHashFallback());
+    }
+
+	private GroupingNode helpTestHashAggregation(BufferManager mgr, FakeTupleSource dataSource, Set<List<?>> expected) throws Exception {
+		GroupingNode node = new GroupingNode(1);
+        List outputElements = new ArrayList();
+        ElementSymbol col1 = new ElementSymbol("col1"); //$NON-NLS-1$
+        col1.setType(Integer.class);
+        ElementSymbol col2 = new ElementSymbol("col2"); //$NON-NLS-1$
+        col2.setType(Integer.class);
+        outputElements.add(col1);
+        outputElements.add(new AggregateSymbol("COUNT", false, null)); //$NON-NLS-1$
+        //sum does not support partial state, so max is used
+        outputElements.add(new AggregateSymbol("MAX", false, col2)); //$NON-NLS-1$
+        node.setElements(outputElements);
+        node.setOrderBy(new OrderBy(Arrays.asList(col1)).getOrderByItems());
+        node.setHashAggregation(true);
+        
+        RelationalNode dataNode = new FakeRelationalNode(0, dataSource, mgr.getProcessorBatchSize());
+        dataNode.setElements(dataSource.getSchema());            
+        node.addChild(dataNode);    
+        node.initialize(new CommandContext("pid", "test", null, null, 1), mgr, null); //$NON-NLS-1$ //$NON-NLS-2$
+        node.open();
+        
+        //the output order is not defined
+        Set<List<?>> actual = new HashSet<List<?>>();
+        while(true) {
+        	TupleBatch batch = node.nextBatch();
+        	actual.addAll(batch.getTuples());
+        	if(batch.getTerminationFlag()) {
+        		break;
+        	}
+        }
+        assertEquals(expected, actual);
+        node.close();
+        return node;
+	}
+
 	private GroupingNode getExampleGroupingNode() {
 		GroupingNode node = new GroupingNode(1);
         List outputElements = new ArrayList();
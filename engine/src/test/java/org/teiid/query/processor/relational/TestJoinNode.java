@@ -26,6 +26,7 @@ import static org.junit.Assert.*;
 
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -347,6 +348,80 @@ public class TestJoinNode {
         helpTestJoin();        
     }    
 
+    @Test public void testHashJoin() throws Exception {
+    	HashJoinStrategy hjs = helpTestHashJoin(JoinType.JOIN_INNER, 100000);
+    	assertEquals(0, hjs.getLastPartitionCount());
+    }
+    
+    @Test public void testHashJoinPartitioned() throws Exception {
+    	HashJoinStrategy hjs = helpTestHashJoin(JoinType.JOIN_INNER, 1);
+    	assertTrue(hjs.getLastPartitionCount() > 0);
+    }
+    
+    @Test public void testHashJoinLeftOuterPartitioned() throws Exception {
+    	HashJoinStrategy hjs = helpTestHashJoin(JoinType.JOIN_LEFT_OUTER, 1);
+    	assertTrue(hjs.getLastPartitionCount() > 0);
+    }
+
+	private HashJoinStrategy helpTestHashJoin(JoinType type, int processingBytes)
+			throws TeiidComponentException, TeiidProcessingException {
+		this.joinType = type;
+        int rows = 100;
+        List[] data = new List[rows];
+        for(int i=0; i<rows; i++) { 
+            data[i] = Arrays.asList((i*17) % 47);
+        }
+        this.leftTuples = data;
+        this.rightTuples = createTuples3();
+        List<String> expectedRows = new ArrayList<String>();
+        for (List left : leftTuples) {
+        	boolean matched = false;
+        	for (List right : rightTuples) {
+        		if (left.get(0).equals(right.get(0))) {
+        			expectedRows.add(Arrays.asList(left.get(0), right.get(0)).toString());
+        			matched = true;
+        		}
+        	}
+        	if (!matched && type == JoinType.JOIN_LEFT_OUTER) {
+        		expectedRows.add(Arrays.asList(left.get(0), null).toString());
+        	}
+        }
+        helpCreateJoin();
+        HashJoinStrategy hjs = new HashJoinStrategy();
+        this.joinStrategy = hjs;
+        this.join.setJoinStrategy(joinStrategy);
+        BufferManagerImpl mgr = BufferManagerFactory.getTestBufferManager(processingBytes, 4);
+        mgr.setTargetBytesPerRow(100);
+        CommandContext context = new CommandContext("pid", "test", null, null, 1);               //$NON-NLS-1$ //$NON-NLS-2$
+        join.addChild(leftNode);
+        join.addChild(rightNode);
+        leftNode.initialize(context, mgr, dataMgr);
+        rightNode.initialize(context, mgr, dataMgr);
+        join.initialize(context, mgr, dataMgr);
+        
+        //the output order is not guaranteed
+        join.open();
+        List<String> actualRows = new ArrayList<String>();
+        while(true) {
+            try {
+                TupleBatch batch = join.nextBatch();
+                for (List<?> tuple : batch.getTuples()) {
+                	actualRows.add(tuple.toString());
+                }
+                if(batch.getTerminationFlag()) {
+                    break;
+                }
+            } catch(BlockedException e) {
+                // ignore and retry
+            }
+        }
+        join.close();
+        Collections.sort(expectedRows);
+        Collections.sort(actualRows);
+        assertEquals(expectedRows, actualRows);
+        return hjs;
+	}
+
     @Test public void testLeftOuterJoinWithSwap() throws Exception {
         int outerSize = 11;
         leftTuples = createTuples(1,outerSize);
@@ -49,6 +49,7 @@ import org.teiid.query.sql.symbol.ExpressionSymbol;
 import org.teiid.query.sql.symbol.Function;
 import org.teiid.query.unittest.RealMetadataFactory;
 import org.teiid.query.util.CommandContext;
+import org.teiid.query.util.Options;
 
 /**
  */
@@ -56,8 +57,12 @@ import org.teiid.query.util.CommandContext;
 public class TestProjectNode {
 
 	public ProjectNode helpSetupProject(List elements, List[] data, List childElements, ProcessorDataManager dataMgr) {
-        BufferManager mgr = BufferManagerFactory.getStandaloneBufferManager();
         CommandContext context = new CommandContext("pid", "test", null, null, 1);               //$NON-NLS-1$ //$NON-NLS-2$
+        return helpSetupProject(elements, data, childElements, dataMgr, context);
+	}
+	
+	public ProjectNode helpSetupProject(List elements, List[] data, List childElements, ProcessorDataManager dataMgr, CommandContext context) {
+        BufferManager mgr = BufferManagerFactory.getStandaloneBufferManager();
         
         FakeRelationalNode dataNode = new FakeRelationalNode(2, data);
         dataNode.setElements(childElements);
@@ -276,4 +281,45 @@ public class TestProjectNode {
          
         helpTestProject(projectElements, data, elements, expected, dataMgr);        
     }    
+    @Test public void testProjectCompiledExpression() throws Exception {
+        ElementSymbol es1 = new ElementSymbol("e1"); //$NON-NLS-1$
+        es1.setType(DataTypeManager.DefaultDataClasses.INTEGER);       
+        ElementSymbol es2 = new ElementSymbol("e2"); //$NON-NLS-1$
+        es2.setType(DataTypeManager.DefaultDataClasses.STRING);       
+        List elements = new ArrayList();
+        elements.add(es1);
+        elements.add(es2);
+        
+        Function plus = new Function("+", new Expression[] { es1, new Constant(1)}); //$NON-NLS-1$
+        plus.setFunctionDescriptor(RealMetadataFactory.SFM.getSystemFunctionLibrary().findFunction("+", new Class[] { DataTypeManager.DefaultDataClasses.INTEGER, DataTypeManager.DefaultDataClasses.INTEGER })); //$NON-NLS-1$
+        plus.setType(DataTypeManager.DefaultDataClasses.INTEGER);
+        Function ucase = new Function("ucase", new Expression[] { es2 }); //$NON-NLS-1$
+        ucase.setFunctionDescriptor(RealMetadataFactory.SFM.getSystemFunctionLibrary().findFunction("ucase", new Class[] { DataTypeManager.DefaultDataClasses.STRING })); //$NON-NLS-1$
+        ucase.setType(DataTypeManager.DefaultDataClasses.STRING);
+        List projectElements = new ArrayList();
+        projectElements.add(new ExpressionSymbol("expr1", plus)); //$NON-NLS-1$
+        projectElements.add(new ExpressionSymbol("expr2", ucase)); //$NON-NLS-1$
+        
+        List[] data = new List[] { 
+            Arrays.asList(1, "a"),  //$NON-NLS-1$
+            Arrays.asList(null, "b"), //$NON-NLS-1$
+            Arrays.asList(3, null) }; 
+        List[] expected = new List[] { 
+            Arrays.asList(2, "A"),  //$NON-NLS-1$
+            Arrays.asList(null, "B"), //$NON-NLS-1$
+            Arrays.asList(4, null) }; 
+
+        CommandContext context = new CommandContext("pid", "test", null, null, 1);               //$NON-NLS-1$ //$NON-NLS-2$
+        context.setOptions(new Options().compileExpressions(true).batchEvaluation(false));
+        context.setCollectNodeStatistics(true);
+        ProjectNode projectNode = helpSetupProject(projectElements, data, elements, null, context);
+        projectNode.open();
+        TupleBatch batch = projectNode.nextBatch();
+        assertEquals(Arrays.asList(expected), batch.getTuples());
+        assertEquals(6, context.getCompiledEvaluations());
+        assertEquals(0, context.getInterpretedEvaluations());
+        assertEquals(6, projectNode.getNodeStatistics().getNodeCompiledEvaluations());
+        assertEquals(0, projectNode.getNodeStatistics().getNodeInterpretedEvaluations());
+    }
+    
 }
@@ -39,6 +39,7 @@ import org.teiid.common.buffer.TupleBatch;
 import org.teiid.core.TeiidComponentException;
 import org.teiid.core.TeiidProcessingException;
 import org.teiid.core.types.DataTypeManager;
+import org.teiid.query.eval.BatchEvaluator;
 import org.teiid.query.eval.Evaluator;
 import org.teiid.query.function.FunctionDescriptor;
 import org.teiid.query.processor.BatchIterator;
@@ -46,13 +47,17 @@ import org.teiid.query.processor.FakeDataManager;
 import org.teiid.query.processor.ProcessorDataManager;
 import org.teiid.query.processor.QueryProcessor;
 import org.teiid.query.sql.lang.CompareCriteria;
+import org.teiid.query.sql.lang.CompoundCriteria;
 import org.teiid.query.sql.lang.Criteria;
+import org.teiid.query.sql.lang.IsNullCriteria;
+import org.teiid.query.sql.lang.SetCriteria;
 import org.teiid.query.sql.symbol.Constant;
 import org.teiid.query.sql.symbol.ElementSymbol;
 import org.teiid.query.sql.symbol.Expression;
 import org.teiid.query.sql.symbol.Function;
 import org.teiid.query.unittest.RealMetadataFactory;
 import org.teiid.query.util.CommandContext;
+import org.teiid.query.util.Options;
 
 @SuppressWarnings("unchecked")
 public class TestSelectNode {
@@ -71,8 +76,16 @@ public class TestSelectNode {
 			RelationalNode child,
 			SelectNode selectNode) throws TeiidComponentException,
 			TeiidProcessingException {
-		BufferManager mgr = BufferManagerFactory.getStandaloneBufferManager();
         CommandContext context = new CommandContext("pid", "test", null, null, 1);               //$NON-NLS-1$ //$NON-NLS-2$
+        helpTestSelect(elements, criteria, childElements, dataMgr, expected, child, selectNode, context);
+	}
+
+	private void helpTestSelect(List elements, Criteria criteria, List childElements,
+			ProcessorDataManager dataMgr, List[] expected,
+			RelationalNode child,
+			SelectNode selectNode, CommandContext context) throws TeiidComponentException,
+			TeiidProcessingException {
+		BufferManager mgr = BufferManagerFactory.getStandaloneBufferManager();
         
         child.setElements(childElements);
         child.initialize(context, mgr, dataMgr);
@@ -278,4 +291,50 @@ public class TestSelectNode {
         helpTestSelect(elements, crit, data, childElements, dataMgr, expected);
 
     }    
+    @Test public void testBatchEvaluation() throws TeiidComponentException, TeiidProcessingException {
+        ElementSymbol es1 = new ElementSymbol("e1"); //$NON-NLS-1$
+        es1.setType(DataTypeManager.DefaultDataClasses.INTEGER);
+
+        ElementSymbol es2 = new ElementSymbol("e2"); //$NON-NLS-1$
+        es2.setType(DataTypeManager.DefaultDataClasses.STRING);
+        
+        List elements = new ArrayList();
+        elements.add(es2);
+
+        Function func = new Function("+", new Expression[] { es1, new Constant(1) }); //$NON-NLS-1$
+        func.setFunctionDescriptor(RealMetadataFactory.SFM.getSystemFunctionLibrary().findFunction("+", new Class[] { Integer.class, Integer.class } )); //$NON-NLS-1$
+        func.setType(DataTypeManager.DefaultDataClasses.INTEGER);
+        
+        // e1 + 1 > 3 or e2 is null and e1 in (1, null)
+        Criteria crit = new CompoundCriteria(CompoundCriteria.OR, 
+        		new CompareCriteria(func, CompareCriteria.GT, new Constant(3)), 
+        		new CompoundCriteria(CompoundCriteria.AND, 
+        				new IsNullCriteria(es2), 
+        				new SetCriteria(es1, Arrays.asList(new Constant(1), new Constant(null, DataTypeManager.DefaultDataClasses.INTEGER)))));
+        
+        List[] data = new List[] {
+        	Arrays.asList(1, null),
+        	Arrays.asList(1, "a"), //$NON-NLS-1$
+        	Arrays.asList(null, null),
+        	Arrays.asList(3, "b"), //$NON-NLS-1$
+        	Arrays.asList(2, null),
+        	Arrays.asList(5, "c"), //$NON-NLS-1$
+        };
+        
+        List childElements = new ArrayList();
+        childElements.add(es1);
+        childElements.add(es2);
+
+        List[] expected = new List[] {
+            Arrays.asList(new Object[] { null }),            
+            Arrays.asList("b"), //$NON-NLS-1$
+            Arrays.asList("c"), //$NON-NLS-1$
+        };
+        
+        assertTrue(new BatchEvaluator(RelationalNode.createLookupMap(childElements)).canEvaluate(crit));
+        CommandContext context = new CommandContext("pid", "test", null, null, 1);               //$NON-NLS-1$ //$NON-NLS-2$
+        context.setOptions(new Options().batchEvaluation(true));
+        helpTestSelect(elements, crit, childElements, null, expected, new FakeRelationalNode(2, data), new SelectNode(1), context);
+    }
+    
 }
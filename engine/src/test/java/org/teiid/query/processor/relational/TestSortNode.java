@@ -30,6 +30,8 @@ import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
 import java.util.TreeSet;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 import org.junit.Test;
 import org.teiid.common.buffer.BlockedException;
@@ -58,6 +60,7 @@ import org.teiid.query.sql.lang.OrderBy;
 import org.teiid.query.sql.symbol.ElementSymbol;
 import org.teiid.query.unittest.RealMetadataFactory;
 import org.teiid.query.util.CommandContext;
+import org.teiid.query.util.Options;
 
 @SuppressWarnings({"rawtypes", "nls"})
 public class TestSortNode {
@@ -337,4 +340,47 @@ public class TestSortNode {
     	assertNull(ts.nextTuple());
     }
 
+    @Test public void testParallelStableSort() throws Exception {
+    	ElementSymbol es1 = new ElementSymbol("e1"); //$NON-NLS-1$
+        es1.setType(DataTypeManager.DefaultDataClasses.INTEGER);
+        ElementSymbol es2 = new ElementSymbol("e2"); //$NON-NLS-1$
+        es2.setType(DataTypeManager.DefaultDataClasses.INTEGER);
+        BufferManager bm = BufferManagerFactory.getTestBufferManager(2000, 10);
+        TupleBuffer tsid = bm.createTupleBuffer(Arrays.asList(es1, es2), "test", TupleSourceType.PROCESSOR); //$NON-NLS-1$
+        int rows = 5000;
+        for (int i = 0; i < rows; i++) {
+        	tsid.addTuple(Arrays.asList((i*51) % 11, i));
+        }
+    	tsid.close();
+    	CommandContext context = new CommandContext("pid", "test", null, null, 1);               //$NON-NLS-1$ //$NON-NLS-2$
+        context.setOptions(new Options().queryParallelism(4));
+        ExecutorService executor = Executors.newCachedThreadPool();
+        context.setExecutor(executor);
+        int minRows = SortUtility.MIN_PARALLEL_SORT_ROWS;
+        SortUtility.MIN_PARALLEL_SORT_ROWS = 100;
+        try {
+	    	SortUtility su = new SortUtility(tsid.createIndexedTupleSource(), Arrays.asList(es1), Arrays.asList(Boolean.TRUE), Mode.SORT, bm, "test", tsid.getSchema()); //$NON-NLS-1$
+	    	su.setStableSort(true);
+	    	su.setCommandContext(context);
+	    	TupleBuffer out = su.sort();
+	    	assertEquals(rows, out.getRowCount());
+	    	TupleSource ts = out.createIndexedTupleSource();
+	    	List<?> last = ts.nextTuple();
+	    	for (int i = 1; i < rows; i++) {
+	    		List<?> tuple = ts.nextTuple();
+	    		int compare = ((Integer)last.get(0)).compareTo((Integer)tuple.get(0));
+	    		assertTrue(compare < 0 || (compare == 0 && (Integer)last.get(1) < (Integer)tuple.get(1)));
+	    		last = tuple;
+	    	}
+	    	assertNull(ts.nextTuple());
+	    	//all workers should have been released
+	    	for (int i = 0; i < 3; i++) {
+	    		assertTrue(context.acquireParallelWorker());
+	    	}
+        } finally {
+        	SortUtility.MIN_PARALLEL_SORT_ROWS = minRows;
+        	executor.shutdownNow();
+        }
+    }
+
 }
@@ -27,18 +27,27 @@ import static org.junit.Assert.*;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.junit.Test;
+import org.mockito.Mockito;
 import org.teiid.common.buffer.BlockedException;
 import org.teiid.common.buffer.BufferManager;
 import org.teiid.common.buffer.BufferManagerFactory;
 import org.teiid.common.buffer.TupleBatch;
+import org.teiid.common.buffer.TupleSource;
 import org.teiid.core.TeiidComponentException;
 import org.teiid.core.TeiidProcessingException;
 import org.teiid.core.types.DataTypeManager;
+import org.teiid.dqp.internal.process.RequestWorkItem;
 import org.teiid.query.processor.FakeDataManager;
+import org.teiid.query.processor.QueryProcessor;
 import org.teiid.query.sql.symbol.ElementSymbol;
 import org.teiid.query.util.CommandContext;
+import org.teiid.query.util.Options;
 
 
 /**
@@ -225,4 +234,198 @@ public class TestUnionAllNode {
         helpTestUnionConfigs(3, 1, 6, 1, expected);       
     }    
 
+    @Test public void testParallelBranches() throws Exception {
+        ElementSymbol es1 = new ElementSymbol("e1"); //$NON-NLS-1$
+        es1.setType(DataTypeManager.DefaultDataClasses.INTEGER);
+        List elements = Arrays.asList(es1);
+        
+        BufferManager mgr = BufferManagerFactory.getStandaloneBufferManager();
+        CommandContext context = new CommandContext("pid", "test", null, null, 1);               //$NON-NLS-1$ //$NON-NLS-2$
+        context.setOptions(new Options().queryParallelism(3));
+        ExecutorService executor = Executors.newCachedThreadPool();
+        context.setExecutor(executor);
+        
+        UnionAllNode union = new UnionAllNode(1);
+        union.setElements(elements);
+        int sources = 3;
+        int rows = 1000;
+        for (int i = 0; i < sources; i++) {
+            List[] data = new List[rows];
+            for (int j = 0; j < rows; j++) {
+                data[j] = Arrays.asList(j);
+            }
+            FakeRelationalNode child = new FakeRelationalNode(2 + i, data, 100);
+            child.setElements(elements);
+            child.initialize(context, mgr, null);
+            ExchangeNode exchange = new ExchangeNode(10 + i);
+            exchange.setElements(elements);
+            exchange.addChild(child);
+            exchange.initialize(context, mgr, null);
+            union.addChild(exchange);
+        }
+        union.initialize(context, mgr, null);
+        
+        try {
+            union.open();
+            //the request thread and two workers
+            assertFalse(context.acquireParallelWorker());
+            int count = 0;
+            long sum = 0;
+            while (true) {
+                try {
+                    TupleBatch batch = union.nextBatch();
+                    for (List<?> tuple : batch.getTuples()) {
+                        count++;
+                        sum += (Integer)tuple.get(0);
+                    }
+                    if (batch.getTerminationFlag()) {
+                        break;
+                    }
+                } catch (BlockedException e) {
+                    Thread.sleep(1);
+                }
+            }
+            union.close();
+            assertEquals(sources * rows, count);
+            assertEquals(sources * (rows - 1) * rows / 2, sum);
+            //the workers have been released
+            assertTrue(context.acquireParallelWorker());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+    
+    @Test public void testExchangeWorkerResumedByConsumer() throws Exception {
+        ElementSymbol es1 = new ElementSymbol("e1"); //$NON-NLS-1$
+        es1.setType(DataTypeManager.DefaultDataClasses.INTEGER);
+        List elements = Arrays.asList(es1);
+        
+        BufferManager mgr = BufferManagerFactory.getStandaloneBufferManager();
+        CommandContext context = new CommandContext("pid", "test", null, null, 1);               //$NON-NLS-1$ //$NON-NLS-2$
+        context.setOptions(new Options().queryParallelism(2));
+        ExecutorService executor = Executors.newCachedThreadPool();
+        context.setExecutor(executor);
+        
+        final AtomicInteger calls = new AtomicInteger();
+        final AtomicBoolean available = new AtomicBoolean();
+        TupleSource ts = new TupleSource() {
+        	int row;
+			@Override
+			public List<?> nextTuple() throws TeiidComponentException,
+					TeiidProcessingException {
+				calls.incrementAndGet();
+				if (!available.get()) {
+					throw BlockedException.INSTANCE;
+				}
+				if (row++ < 10) {
+					return Arrays.asList(row);
+				}
+				return null;
+			}
+			
+			@Override
+			public void closeSource() {
+			}
+		};
+        FakeRelationalNode child = new FakeRelationalNode(2, ts, 100);
+        child.setElements(elements);
+        child.initialize(context, mgr, null);
+        ExchangeNode exchange = new ExchangeNode(1);
+        exchange.setElements(elements);
+        exchange.addChild(child);
+        exchange.initialize(context, mgr, null);
+        
+        try {
+            exchange.open();
+            //the child is processed with its own context
+            assertNotSame(context, child.getContext());
+            assertNotSame(context.getVariableContext(), child.getContext().getVariableContext());
+            for (int i = 0; i < 500 && calls.get() == 0; i++) {
+            	Thread.sleep(1);
+            }
+            assertEquals(1, calls.get());
+            Thread.sleep(50);
+            //the worker does not poll a blocked child
+            assertEquals(1, calls.get());
+            available.set(true);
+            TupleBatch batch = null;
+            for (int i = 0; i < 500 && batch == null; i++) {
+                try {
+                    batch = exchange.nextBatch();
+                } catch (BlockedException e) {
+                    Thread.sleep(1);
+                }
+            }
+            assertNotNull(batch);
+            assertEquals(10, batch.getRowCount());
+            assertTrue(batch.getTerminationFlag());
+            exchange.close();
+            assertTrue(context.acquireParallelWorker());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+    
+    @Test public void testExchangeWorkerRequeuedOnExpiredTimeSlice() throws Exception {
+        ElementSymbol es1 = new ElementSymbol("e1"); //$NON-NLS-1$
+        es1.setType(DataTypeManager.DefaultDataClasses.INTEGER);
+        List elements = Arrays.asList(es1);
+        
+        BufferManager mgr = BufferManagerFactory.getStandaloneBufferManager();
+        CommandContext context = new CommandContext("pid", "test", null, null, 1);               //$NON-NLS-1$ //$NON-NLS-2$
+        context.setOptions(new Options().queryParallelism(2));
+        ExecutorService executor = Executors.newCachedThreadPool();
+        context.setExecutor(executor);
+        RequestWorkItem workItem = Mockito.mock(RequestWorkItem.class);
+        context.setWorkItem(workItem);
+        
+        final AtomicInteger calls = new AtomicInteger();
+        TupleSource ts = new TupleSource() {
+        	int row;
+			@Override
+			public List<?> nextTuple() throws TeiidComponentException,
+					TeiidProcessingException {
+				if (calls.getAndIncrement() == 0) {
+					throw new QueryProcessor.ExpiredTimeSliceException();
+				}
+				if (row++ < 10) {
+					return Arrays.asList(row);
+				}
+				return null;
+			}
+			
+			@Override
+			public void closeSource() {
+			}
+		};
+        FakeRelationalNode child = new FakeRelationalNode(2, ts, 100);
+        child.setElements(elements);
+        child.initialize(context, mgr, null);
+        ExchangeNode exchange = new ExchangeNode(1);
+        exchange.setElements(elements);
+        exchange.addChild(child);
+        exchange.initialize(context, mgr, null);
+        
+        try {
+            exchange.open();
+            //the expired worker must requeue the request so that it will be rescheduled
+            Mockito.verify(workItem, Mockito.timeout(1000)).moreWork();
+            assertEquals(1, calls.get());
+            TupleBatch batch = null;
+            for (int i = 0; i < 500 && batch == null; i++) {
+                try {
+                    batch = exchange.nextBatch();
+                } catch (BlockedException e) {
+                    Thread.sleep(1);
+                }
+            }
+            assertNotNull(batch);
+            assertEquals(10, batch.getRowCount());
+            assertTrue(batch.getTerminationFlag());
+            exchange.close();
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+    
 }
@@ -733,6 +733,9 @@ class CacheStatistics extends BaseCachehandler {
 		stats.setHitRatio(cache.getRequestCount() == 0?0:((double)cache.getCacheHitCount()/cache.getRequestCount())*100);
 		stats.setTotalEntries(cache.getTotalCacheEntries());
 		stats.setRequestCount(cache.getRequestCount());
+		stats.setStaleHitCount(cache.getStaleHitCount());
+		stats.setRefreshCount(cache.getRefreshCount());
+		stats.setAverageRefreshTime(cache.getAverageRefreshTime());
 		return stats;
 	}
 
@@ -1665,6 +1668,8 @@ class EngineStatistics extends TeiidOperationHandler {
 			stats.setDiskReadCount(bufferMgrSvc.getDiskReadCount());
 			stats.setCacheReadCount(bufferMgrSvc.getCacheReadCount());
 			stats.setCacheWriteCount(bufferMgrSvc.getCacheWriteCount());
+			stats.setHeapReadCount(bufferMgrSvc.getHeapReadCount());
+			stats.setMemoryBufferReadCount(bufferMgrSvc.getMemoryBufferReadCount());
 			stats.setDiskSpaceUsedInMB(bufferMgrSvc.getUsedDiskBufferSpaceMB());
 			stats.setActivePlanCount(engine.getActivePlanCount());
 			stats.setWaitPlanCount(engine.getWaitingPlanCount());
@@ -140,6 +140,10 @@ class VDBService extends AbstractVDBDeployer implements Service<RuntimeVDB> {
 			}
 			@Override
 			public void removed(String name, int version, CompositeVDB cvdb) {
+				if (!name.equals(VDBService.this.vdb.getName()) || version != VDBService.this.vdb.getVersion()) {
+					return;
+				}
+				CompositeGlobalTableStore.close(cvdb.getVDB());
 			}
 
 			@Override
@@ -22,6 +22,7 @@
 
 package org.teiid.deployers;
 
+import java.io.File;
 import java.io.Serializable;
 import java.util.List;
 import java.util.Map;
@@ -49,9 +50,24 @@ import org.teiid.runtime.RuntimePlugin;
 public class CompositeGlobalTableStore implements GlobalTableStore {
 
 	public static GlobalTableStore createInstance(CompositeVDB vdb, BufferManager bufferManager, ObjectReplicator replicator) {
+		return createInstance(vdb, bufferManager, replicator, null);
+	}
+	
+	/**
+	 * @param snapshotDirectory if not null, the base directory for materialized table snapshots
+	 */
+	public static GlobalTableStore createInstance(CompositeVDB vdb, BufferManager bufferManager, ObjectReplicator replicator, String snapshotDirectory) {
 		VDBMetaData vdbMetadata = vdb.getVDB();
 		QueryMetadataInterface metadata = vdbMetadata.getAttachment(TransformationMetadata.class);
-		GlobalTableStore gts = new GlobalTableStoreImpl(bufferManager, vdbMetadata, metadata);
+		GlobalTableStoreImpl gtsImpl = new GlobalTableStoreImpl(bufferManager, vdbMetadata, metadata);
+		if (snapshotDirectory != null) {
+			gtsImpl.setSnapshotDirectory(new File(snapshotDirectory, vdbMetadata.getName() + "_" + vdbMetadata.getVersion())); //$NON-NLS-1$
+		}
+		GlobalTableStoreImpl previous = vdbMetadata.addAttchment(GlobalTableStoreImpl.class, gtsImpl);
+		if (previous != null) {
+			previous.close();
+		}
+		GlobalTableStore gts = gtsImpl;
 		if (replicator != null) {
 			try {
 				gts = replicator.replicate(vdbMetadata.getFullName(), GlobalTableStore.class, gts, 300000);
@@ -67,6 +83,16 @@ public class CompositeGlobalTableStore implements GlobalTableStore {
 		return new CompositeGlobalTableStore(stores, gts, metadata);
 	}
 
+	/**
+	 * Close the local store created for the vdb, if any.
+	 */
+	public static void close(VDBMetaData vdbMetadata) {
+		GlobalTableStoreImpl gtsImpl = vdbMetadata.removeAttachment(GlobalTableStoreImpl.class);
+		if (gtsImpl != null) {
+			gtsImpl.close();
+		}
+	}
+
 	static void buildStoreMap(CompositeVDB vdb,
 			TreeMap<String, GlobalTableStore> stores) {
 		for (CompositeVDB cvdb : vdb.getChildren().values()) {
@@ -134,6 +160,13 @@ public class CompositeGlobalTableStore implements GlobalTableStore {
 			boolean delete) throws TeiidComponentException {
 		return getStoreForTable(matTableName).updateMatViewRow(matTableName, tuple, delete);
 	}
+	
+	@Override
+	public int updateMatViewRows(String matTableName,
+			List<? extends List<?>> tuples, boolean delete)
+			throws TeiidComponentException {
+		return getStoreForTable(matTableName).updateMatViewRows(matTableName, tuples, delete);
+	}
 
 	@Override
 	public TempTable createMatTable(String matTableName, GroupSymbol group)
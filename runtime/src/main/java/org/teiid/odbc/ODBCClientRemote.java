@@ -73,6 +73,12 @@ public interface ODBCClientRemote {
 	//	CommandComplete (B)
 	void sendResults(String sql, ResultSetImpl rs, List<PgColInfo> cols, ResultsFuture<Integer> result, int rowCount, boolean describeRows);
 	
+	//	CopyOutResponse (B)
+	//	CopyData (B)
+	//	CopyDone (B)
+	//	CommandComplete (B)
+	void sendCopyOut(String sql, ResultSetImpl rs, List<PgColInfo> cols, ResultsFuture<Integer> result);
+	
 	void sendCommandComplete(String sql, Integer count);	
 
 	//	CommandComplete (B)
@@ -103,10 +109,9 @@ public interface ODBCClientRemote {
 	
 	//	CloseComplete (B)
 
-	//	CopyData (F & B)
-	//	CopyDone (F & B)
+	//	CopyData (F)
+	//	CopyDone (F)
 	//	CopyInResponse (B)
-	//	CopyOutResponse (B)
 	
 	//	NoticeResponse (B)
 	//	NotificationResponse (B)
@@ -59,6 +59,7 @@ import org.teiid.jdbc.PreparedStatementImpl;
 import org.teiid.jdbc.ResultSetImpl;
 import org.teiid.jdbc.StatementImpl;
 import org.teiid.jdbc.TeiidDriver;
+import org.teiid.jdbc.TeiidSQLException;
 import org.teiid.logging.LogConstants;
 import org.teiid.logging.LogManager;
 import org.teiid.net.socket.AuthenticationType;
@@ -162,6 +163,9 @@ public class ODBCServerRemoteImpl implements ODBCServerRemote {
 	private static Pattern closePattern = Pattern.compile("CLOSE \"(\\w+)\"", Pattern.DOTALL|Pattern.CASE_INSENSITIVE); //$NON-NLS-1$
 	
 	private static Pattern deallocatePattern = Pattern.compile("DEALLOCATE(?:\\s+PREPARE)?\\s+(.*)", Pattern.DOTALL|Pattern.CASE_INSENSITIVE); //$NON-NLS-1$
+	private static Pattern copyPattern = Pattern.compile("COPY\\s+(.+?)\\s+TO\\s+STDOUT(?:\\s+(.*))?", Pattern.DOTALL|Pattern.CASE_INSENSITIVE); //$NON-NLS-1$
+	private static Pattern copyTablePattern = Pattern.compile("([^\\s(]+)\\s*(?:\\((.*)\\))?", Pattern.DOTALL); //$NON-NLS-1$
+	private static Pattern copyTextOptionsPattern = Pattern.compile("(?:WITH\\s*)?(?:\\(\\s*FORMAT\\s+TEXT\\s*\\))?\\s*", Pattern.DOTALL|Pattern.CASE_INSENSITIVE); //$NON-NLS-1$
 	private static Pattern releasePattern = Pattern.compile("RELEASE (\\w+\\d?_*)", Pattern.DOTALL|Pattern.CASE_INSENSITIVE); //$NON-NLS-1$
 	private static Pattern savepointPattern = Pattern.compile("SAVEPOINT (\\w+\\d?_*)", Pattern.DOTALL|Pattern.CASE_INSENSITIVE); //$NON-NLS-1$
 	private static Pattern rollbackPattern = Pattern.compile("ROLLBACK\\s*(to)*\\s*(\\w+\\d+_*)*", Pattern.DOTALL|Pattern.CASE_INSENSITIVE); //$NON-NLS-1$
@@ -458,6 +462,56 @@ public class ODBCServerRemoteImpl implements ODBCServerRemote {
 		});    	
     }	
 	
+    /**
+     * Execute a COPY ... TO STDOUT using the text format.  The source may be a
+     * parenthesized query or a table with an optional column list.
+     */
+    private void copyExecute(final String source, String options, final ResultsFuture<Integer> completion) throws SQLException {
+    	if (options != null && !copyTextOptionsPattern.matcher(options).matches()) {
+    		throw new TeiidSQLException(RuntimePlugin.Util.gs(RuntimePlugin.Event.TEIID40122, options));
+    	}
+    	String query = source.trim();
+    	if (query.startsWith("(") && query.endsWith(")")) { //$NON-NLS-1$ //$NON-NLS-2$
+    		query = query.substring(1, query.length() - 1);
+    	} else {
+    		Matcher m = copyTablePattern.matcher(query);
+    		if (!m.matches()) {
+    			throw new TeiidSQLException(RuntimePlugin.Util.gs(RuntimePlugin.Event.TEIID40122, source));
+    		}
+    		query = "SELECT " + (m.group(2) != null?m.group(2):"*") + " FROM " + m.group(1); //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
+    	}
+    	String modfiedSQL = fixSQL(query); 
+    	final StatementImpl stmt = connection.createStatement();
+        executionFuture = stmt.submitExecute(modfiedSQL, null);
+        completion.addCompletionListener(new ResultsFuture.CompletionListener<Integer>() {
+        	public void onCompletion(ResultsFuture<Integer> future) {
+        		try {
+					stmt.close();
+				} catch (SQLException e) {
+					LogManager.logDetail(LogConstants.CTX_ODBC, e, "Error closing statement"); //$NON-NLS-1$
+				}
+        	}
+        });
+        executionFuture.addCompletionListener(new ResultsFuture.CompletionListener<Boolean>() {
+    		@Override
+    		public void onCompletion(ResultsFuture<Boolean> future) {
+    			executionFuture = null;
+    			try {
+	                if (future.get()) {
+                		List<PgColInfo> cols = getPgColInfo(stmt.getResultSet().getMetaData());
+                        client.sendCopyOut("COPY", stmt.getResultSet(), cols, completion); //$NON-NLS-1$
+	                } else {
+	                	completion.getResultsReceiver().exceptionOccurred(new TeiidSQLException(RuntimePlugin.Util.gs(RuntimePlugin.Event.TEIID40122, source)));
+	                }
+    			} catch (Throwable e) {
+    				if (!completion.isDone()) {
+    					completion.getResultsReceiver().exceptionOccurred(e);
+    				}
+    			}
+    		}
+		});    	
+    }	
+	
 	@Override
 	public void prepare(String prepareName, String sql, int[] paramType) {
 		if (prepareName == null || prepareName.length() == 0) {
@@ -619,7 +673,7 @@ public class ODBCServerRemoteImpl implements ODBCServerRemote {
 
 	private void sendCursorResults(final Portal cursor, final int fetchSize) {
 		ResultsFuture<Integer> result = new ResultsFuture<Integer>();
-		this.client.sendResults(null, cursor.rs, cursor.prepared.columnMetadata, result, fetchSize, false);
+		this.client.sendResults(null, cursor.rs, cursor.columnMetadata, result, fetchSize, false);
 		result.addCompletionListener(new ResultsFuture.CompletionListener<Integer>() {
 			public void onCompletion(ResultsFuture<Integer> future) {
 				try {
@@ -816,7 +870,7 @@ public class ODBCServerRemoteImpl implements ODBCServerRemote {
 			errorOccurred(RuntimePlugin.Util.gs(RuntimePlugin.Event.TEIID40078, bindName));
 		}
 		else {
-			this.client.sendResultSetDescription(query.prepared.columnMetadata);
+			this.client.sendResultSetDescription(query.columnMetadata);
 		}
 	}
 
@@ -1027,6 +1081,9 @@ public class ODBCServerRemoteImpl implements ODBCServerRemote {
 		    				client.sendCommandComplete("DEALLOCATE", null); //$NON-NLS-1$
 		    				results.getResultsReceiver().receiveResults(1);
 		    			}
+		    			else if ((m = copyPattern.matcher(sql)).matches()) {
+		    				copyExecute(m.group(1), m.group(2), results);
+		    			}
 		    			else {
 		    				sqlExecute(sql, results);
 		    			}
@@ -1134,6 +1191,7 @@ public class ODBCServerRemoteImpl implements ODBCServerRemote {
     		this.prepared = prepared;
     		this.resultColumnFormat = resultColumnformat;
     		this.stmt = stmt;
+    		this.columnMetadata = PGUtil.applyResultFormats(prepared.columnMetadata, resultColumnformat);
     	}
         /**
          * The portal name.
@@ -1147,6 +1205,11 @@ public class ODBCServerRemoteImpl implements ODBCServerRemote {
 
         final Prepared prepared;
         
+        /**
+         * The column metadata with the result formats applied
+         */
+        final List<PgColInfo> columnMetadata;
+        
         volatile ResultSetImpl rs;
         
         /**
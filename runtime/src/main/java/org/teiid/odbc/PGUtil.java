@@ -22,6 +22,8 @@
 package org.teiid.odbc;
 
 import java.sql.Types;
+import java.util.ArrayList;
+import java.util.List;
 
 public class PGUtil {
 
@@ -58,6 +60,64 @@ public class PGUtil {
 		public int type;
 		public int precision;
 		public int mod = -1;
+		/**
+		 * 0 for text, 1 for binary
+		 */
+		public short format;
+		
+		public PgColInfo withFormat(short newFormat) {
+			PgColInfo result = new PgColInfo();
+			result.name = name;
+			result.reloid = reloid;
+			result.attnum = attnum;
+			result.type = type;
+			result.precision = precision;
+			result.mod = mod;
+			result.format = newFormat;
+			return result;
+		}
+	}
+	
+	/**
+	 * Apply the requested result column format codes.  No codes means all text,
+	 * a single code applies to all columns, otherwise there is a code per column.
+	 * Columns without a binary encoding remain text.
+	 */
+	public static List<PgColInfo> applyResultFormats(List<PgColInfo> cols, int[] formats) {
+		if (cols == null || formats == null || formats.length == 0) {
+			return cols;
+		}
+		List<PgColInfo> result = new ArrayList<PgColInfo>(cols.size());
+		for (int i = 0; i < cols.size(); i++) {
+			PgColInfo info = cols.get(i);
+			int format = formats.length == 1?formats[0]:(i < formats.length?formats[i]:0);
+			if (format == 1 && isBinaryFormatSupported(info.type)) {
+				info = info.withFormat((short)1);
+			}
+			result.add(info);
+		}
+		return result;
+	}
+	
+	public static boolean isBinaryFormatSupported(int type) {
+		switch (type) {
+		case PG_TYPE_BOOL:
+		case PG_TYPE_INT2:
+		case PG_TYPE_INT4:
+		case PG_TYPE_INT8:
+		case PG_TYPE_FLOAT4:
+		case PG_TYPE_FLOAT8:
+		case PG_TYPE_NUMERIC:
+		case PG_TYPE_DATE:
+		case PG_TYPE_TIME:
+		case PG_TYPE_TIMESTAMP_NO_TMZONE:
+		case PG_TYPE_BYTEA:
+		case PG_TYPE_VARCHAR:
+		case PG_TYPE_BPCHAR:
+		case PG_TYPE_TEXT:
+			return true;
+		}
+		return false;
 	}
 		
 	/**
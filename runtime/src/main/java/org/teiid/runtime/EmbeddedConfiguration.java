@@ -90,8 +90,10 @@ public class EmbeddedConfiguration extends DQPConfiguration {
 	private WorkManager workManager;
 	private boolean useDisk = true;
 	private String bufferDirectory;
+	private String matViewSnapshotDirectory;
 	private CacheFactory cacheFactory;
 	private int maxResultSetCacheStaleness = 60;
+	private long maxResultSetCacheSize = -1;
 	private String infinispanConfigFile = "infinispan-config.xml"; //$NON-NLS-1$
 	private String jgroupsConfigFile;
 	private List<SocketConfiguration> transports;
@@ -184,6 +186,19 @@ public class EmbeddedConfiguration extends DQPConfiguration {
 		return this.bufferDirectory;
 	}
 	
+	/**
+	 * Set the directory where snapshots of internal materialized views are kept
+	 * so that they may be restored on restart.  Should not be the buffer directory.
+	 * @param dir
+	 */
+	public void setMatViewSnapshotDirectory(String dir) {
+		this.matViewSnapshotDirectory = dir;
+	}
+	
+	public String getMatViewSnapshotDirectory() {
+		return matViewSnapshotDirectory;
+	}
+	
 	public String getInfinispanConfigFile() {
 		return infinispanConfigFile;
 	}
@@ -216,6 +231,15 @@ public class EmbeddedConfiguration extends DQPConfiguration {
 	public void setMaxResultSetCacheStaleness(int maxResultSetCacheStaleness) {
 		this.maxResultSetCacheStaleness = maxResultSetCacheStaleness;
 	}
+	/**
+	 * @return the max estimated size in bytes of the result set cache entries or -1 if unlimited
+	 */
+	public long getMaxResultSetCacheSize() {
+		return maxResultSetCacheSize;
+	}
+	public void setMaxResultSetCacheSize(long maxResultSetCacheSize) {
+		this.maxResultSetCacheSize = maxResultSetCacheSize;
+	}
 	public String getJgroupsConfigFile() {
 		return jgroupsConfigFile;
 	}
@@ -372,6 +372,7 @@ public class EmbeddedServer extends AbstractVDBDeployer implements EventDistribu
 		rs = new SessionAwareCache<CachedResults>("resultset", config.getCacheFactory(), SessionAwareCache.Type.RESULTSET, config.getMaxResultSetCacheStaleness()); //$NON-NLS-1$
 		ppc = new SessionAwareCache<PreparedPlan>("preparedplan", config.getCacheFactory(), SessionAwareCache.Type.PREPAREDPLAN, 0); //$NON-NLS-1$
 		rs.setTupleBufferCache(bs.getTupleBufferCache());
+		rs.setMaxSizeInBytes(config.getMaxResultSetCacheSize());
 		this.dqp.setResultsetCache(rs);
 
 		ppc.setTupleBufferCache(bs.getTupleBufferCache());
@@ -442,6 +443,7 @@ public class EmbeddedServer extends AbstractVDBDeployer implements EventDistribu
 				if (replicator != null) {
 					replicator.stop(vdb.getVDB().getAttachment(GlobalTableStore.class));
 				}
+				CompositeGlobalTableStore.close(vdb.getVDB());
 				rs.clearForVDB(name, 1);
 				ppc.clearForVDB(name, 1);
 				try {
@@ -461,7 +463,7 @@ public class EmbeddedServer extends AbstractVDBDeployer implements EventDistribu
 				if (!vdb.getVDB().getStatus().equals(Status.ACTIVE)) {
 					return;
 				}
-				GlobalTableStore gts = CompositeGlobalTableStore.createInstance(vdb, dqp.getBufferManager(), replicator);
+				GlobalTableStore gts = CompositeGlobalTableStore.createInstance(vdb, dqp.getBufferManager(), replicator, config.getMatViewSnapshotDirectory());
 				
 				vdb.getVDB().addAttchment(GlobalTableStore.class, gts);
 			}
@@ -133,5 +133,6 @@ public class RuntimePlugin {
     	TEIID40119,
     	TEIID40120, 
     	TEIID40121, //invalid model name
+    	TEIID40122, //unsupported copy
     }
 }
@@ -31,8 +31,10 @@ import org.teiid.common.buffer.StorageManager;
 import org.teiid.common.buffer.TupleBufferCache;
 import org.teiid.common.buffer.impl.BufferFrontedFileStoreCache;
 import org.teiid.common.buffer.impl.BufferManagerImpl;
+import org.teiid.common.buffer.impl.CompressionCodec;
 import org.teiid.common.buffer.impl.EncryptedStorageManager;
 import org.teiid.common.buffer.impl.FileStorageManager;
+import org.teiid.common.buffer.impl.MappedFileStorageManager;
 import org.teiid.common.buffer.impl.MemoryStorageManager;
 import org.teiid.common.buffer.impl.SplittableStorageManager;
 import org.teiid.core.TeiidComponentException;
@@ -66,9 +68,13 @@ public class BufferServiceImpl implements BufferService, Serializable {
     private int maxReserveKb = BufferManager.DEFAULT_RESERVE_BUFFER_KB;
     private long maxBufferSpace = FileStorageManager.DEFAULT_MAX_BUFFERSPACE>>20;
     private boolean inlineLobs = true;
+    private boolean columnarBatches;
+    private boolean adaptiveBatchSizing;
     private long memoryBufferSpace = -1;
     private int maxStorageObjectSize = BufferFrontedFileStoreCache.DEFAuLT_MAX_OBJECT_SIZE;
     private boolean memoryBufferOffHeap;
+    private boolean memoryMappedFiles;
+    private boolean compressBufferFiles;
 	private FileStorageManager fsm;
 	private BufferFrontedFileStoreCache fsc;
 	private int workingMaxReserveKb;
@@ -90,6 +96,8 @@ public class BufferServiceImpl implements BufferService, Serializable {
             this.bufferMgr.setMaxReserveKB(this.maxReserveKb);
             this.bufferMgr.setMaxProcessingKB(this.maxProcessingKb);
             this.bufferMgr.setInlineLobs(inlineLobs);
+            this.bufferMgr.setColumnarBatches(columnarBatches);
+            this.bufferMgr.setAdaptiveBatchSizing(adaptiveBatchSizing);
             this.bufferMgr.initialize();
             
             // If necessary, add disk storage manager
@@ -102,7 +110,7 @@ public class BufferServiceImpl implements BufferService, Serializable {
                 // wise FileStorageManager is smart enough to clean up after itself
                 cleanDirectory(bufferDir);
                 // Get the properties for FileStorageManager and create.
-                fsm = new FileStorageManager();
+                fsm = memoryMappedFiles?new MappedFileStorageManager():new FileStorageManager();
                 fsm.setStorageDirectory(bufferDir.getCanonicalPath());
                 fsm.setMaxOpenFiles(maxOpenFiles);
                 fsm.setMaxBufferSpace(maxBufferSpace*MB);
@@ -116,6 +124,9 @@ public class BufferServiceImpl implements BufferService, Serializable {
                 fsc.setBufferManager(this.bufferMgr);
                 fsc.setMaxStorageObjectSize(maxStorageObjectSize);
                 fsc.setDirect(memoryBufferOffHeap);
+                if (compressBufferFiles) {
+                	fsc.setCompressionCodec(CompressionCodec.DEFLATE);
+                }
                 int batchOverheadKB = (int)(this.memoryBufferSpace<0?(this.bufferMgr.getMaxReserveKB()<<8):this.memoryBufferSpace)>>20;
         		this.bufferMgr.setMaxReserveKB(Math.max(0, this.bufferMgr.getMaxReserveKB() - batchOverheadKB));
                 if (memoryBufferSpace < 0) {
@@ -132,6 +143,7 @@ public class BufferServiceImpl implements BufferService, Serializable {
                 fsc.setStorageManager(sm);
                 fsc.initialize();
                 this.bufferMgr.setCache(fsc);
+                LogManager.logDetail(LogConstants.CTX_DQP, "BufferManager heap reserve KB", this.bufferMgr.getMaxReserveKB(), "memory buffer KB", fsc.getMemoryBufferSpace()>>10, memoryBufferOffHeap?"off heap":"on heap"); //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$ //$NON-NLS-4$
                 this.workingMaxReserveKb = this.bufferMgr.getMaxReserveKB();
             } else {
             	this.bufferMgr.setCache(new MemoryStorageManager());
@@ -183,6 +195,38 @@ public class BufferServiceImpl implements BufferService, Serializable {
 		this.inlineLobs = inlineLobs;
 	}
 
+	public void setColumnarBatches(boolean columnarBatches) {
+		this.columnarBatches = columnarBatches;
+	}
+	
+	public boolean isColumnarBatches() {
+		return columnarBatches;
+	}
+	
+	public void setAdaptiveBatchSizing(boolean adaptiveBatchSizing) {
+		this.adaptiveBatchSizing = adaptiveBatchSizing;
+	}
+	
+	public boolean isAdaptiveBatchSizing() {
+		return adaptiveBatchSizing;
+	}
+	
+	public void setMemoryMappedFiles(boolean memoryMappedFiles) {
+		this.memoryMappedFiles = memoryMappedFiles;
+	}
+	
+	public boolean isMemoryMappedFiles() {
+		return memoryMappedFiles;
+	}
+	
+	public void setCompressBufferFiles(boolean compressBufferFiles) {
+		this.compressBufferFiles = compressBufferFiles;
+	}
+	
+	public boolean isCompressBufferFiles() {
+		return compressBufferFiles;
+	}
+
 	public File getBufferDirectory() {
 		return bufferDir;
 	}
@@ -276,6 +320,43 @@ public class BufferServiceImpl implements BufferService, Serializable {
     	return 0;
     }
     
+    /**
+     * @return the number of batch reads satisfied by the memory buffer, which will be off heap if {@link #isMemoryBufferOffHeap()}
+     */
+    public long getMemoryBufferReadCount() {
+    	if (fsc != null) {
+    		return fsc.getMemoryBufferReads();
+    	}
+    	return 0;
+    }
+    
+    /**
+     * @return the number of batch reads satisfied by heap memory without deserialization
+     */
+    public long getHeapReadCount() {
+    	return bufferMgr.getReadAttempts() - bufferMgr.getReadCount();
+    }
+    
+    /**
+     * @return the KB of batches moved to buffer files before compression, see {@link #isCompressBufferFiles()}
+     */
+    public long getUncompressedBufferKB() {
+    	if (fsc != null) {
+    		return fsc.getUncompressedBytes() >> 10;
+    	}
+    	return 0;
+    }
+    
+    /**
+     * @return the KB of batches moved to buffer files after compression, see {@link #isCompressBufferFiles()}
+     */
+    public long getCompressedBufferKB() {
+    	if (fsc != null) {
+    		return fsc.getCompressedBytes() >> 10;
+    	}
+    	return 0;
+    }
+    
     public long getMemoryBufferUsedKB() {
     	if (fsc != null) {
     		return fsc.getMemoryInUseBytes() >> 10;
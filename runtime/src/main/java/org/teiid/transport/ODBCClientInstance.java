@@ -62,17 +62,29 @@ public class ODBCClientInstance implements ChannelListener{
 			}
 		});
 		this.server = new ODBCServerRemoteImpl(this, driver, logonService) {
+			private boolean draining;
+			
 			@Override
 			protected synchronized void doneExecuting() {
 				super.doneExecuting();
-				while (!server.isExecuting()) {
-					PGRequest request = messageQueue.poll();
-					if (request == null) {
-						break;
+				if (draining) {
+					//a queued message completed synchronously, the loop below will continue 
+					//with the rest of the pipeline rather than recursing
+					return;
+				}
+				draining = true;
+				try {
+					while (!server.isExecuting()) {
+						PGRequest request = messageQueue.poll();
+						if (request == null) {
+							break;
+						}
+		        		if (!server.isErrorOccurred() || request.struct.methodName.equals("sync")) { //$NON-NLS-1$
+		        			processMessage(request.struct);
+		        		}
 					}
-	        		if (!server.isErrorOccurred() || request.struct.methodName.equals("sync")) { //$NON-NLS-1$
-	        			processMessage(request.struct);
-	        		}
+				} finally {
+					draining = false;
 				}
 			}
 		};
@@ -28,11 +28,15 @@ import static org.jboss.netty.channel.Channels.*;
 import java.io.BufferedInputStream;
 import java.io.InputStream;
 import java.io.ObjectInputStream;
+import java.lang.ref.SoftReference;
+import java.util.LinkedList;
 
 import org.jboss.netty.buffer.ChannelBuffer;
 import org.jboss.netty.buffer.ChannelBufferOutputStream;
 import org.jboss.netty.channel.ChannelDownstreamHandler;
 import org.jboss.netty.channel.ChannelEvent;
+import org.jboss.netty.channel.ChannelFuture;
+import org.jboss.netty.channel.ChannelFutureListener;
 import org.jboss.netty.channel.ChannelHandlerContext;
 import org.jboss.netty.channel.ChannelPipelineCoverage;
 import org.jboss.netty.channel.Channels;
@@ -60,7 +64,7 @@ import org.teiid.netty.handler.codec.serialization.ObjectDecoderInputStream;
  * @apiviz.landmark
  * @apiviz.has org.jboss.netty.handler.codec.serialization.ObjectEncoderOutputStream - - - compatible with
  */
-@ChannelPipelineCoverage("all")
+@ChannelPipelineCoverage("one")
 public class ObjectEncoder implements ChannelDownstreamHandler {
 	
 	public static class FailedWriteException extends Exception {
@@ -79,8 +83,18 @@ public class ObjectEncoder implements ChannelDownstreamHandler {
 	
     private static final byte[] LENGTH_PLACEHOLDER = new byte[4];
 	private static final int CHUNK_SIZE = (1 << 16) - 1;
+	/**
+	 * Encoded buffers up to this capacity are reused once their write completes
+	 */
+	static final int MAX_POOLED_CAPACITY = 1 << 20;
+	static final int MAX_POOLED_BUFFERS = 2;
 
     private final int estimatedLength;
+    //decaying average of the encoded length - updates may race, which is fine for an estimate
+    private volatile int averageLength;
+    //the encoder is per pipeline, so this is a per channel pool.
+    //soft references allow the buffers of an idle channel to be reclaimed
+    private final LinkedList<SoftReference<ChannelBuffer>> pool = new LinkedList<SoftReference<ChannelBuffer>>();
 
     /**
      * Creates a new encoder with the estimated length of 512 bytes.
@@ -106,6 +120,7 @@ public class ObjectEncoder implements ChannelDownstreamHandler {
                     "estimatedLength: " + estimatedLength);
         }
         this.estimatedLength = estimatedLength;
+        this.averageLength = estimatedLength;
     }
     
     public void handleDownstream(
@@ -122,9 +137,7 @@ public class ObjectEncoder implements ChannelDownstreamHandler {
             return;
         }
         
-        ChannelBufferOutputStream bout =
-            new ChannelBufferOutputStream(dynamicBuffer(
-                    estimatedLength, ctx.getChannel().getConfig().getBufferFactory()));
+        ChannelBufferOutputStream bout = new ChannelBufferOutputStream(getBuffer(ctx));
         bout.write(LENGTH_PLACEHOLDER);
         final CompactObjectOutputStream oout = new CompactObjectOutputStream(bout);
         try {
@@ -135,14 +148,68 @@ public class ObjectEncoder implements ChannelDownstreamHandler {
         } catch (Throwable t) {
         	throw new FailedWriteException(e.getMessage(), t);
         }
-        ChannelBuffer encoded = bout.buffer();
+        final ChannelBuffer encoded = bout.buffer();
         encoded.setInt(0, encoded.writerIndex() - 4);
+        int length = Math.min(encoded.writerIndex(), MAX_POOLED_CAPACITY);
+        averageLength += (length - averageLength) >> 3;
+        if (encoded.capacity() <= MAX_POOLED_CAPACITY) {
+        	e.getFuture().addListener(new ChannelFutureListener() {
+				@Override
+				public void operationComplete(ChannelFuture future) throws Exception {
+					if (future.isSuccess()) {
+						release(encoded);
+					}
+				}
+			});
+        }
         write(ctx, e.getFuture(), encoded, e.getRemoteAddress());
 		for (InputStream is : oout.getStreams()) {
 			Channels.write(ctx.getChannel(), new AnonymousChunkedStream(new BufferedInputStream(is, CHUNK_SIZE)));
 		}
     }
     
+    /**
+     * Get a pooled buffer, or a new buffer sized by the average message length to 
+     * avoid repeated expansion of large results.
+     */
+    ChannelBuffer getBuffer(ChannelHandlerContext ctx) {
+    	int maxCapacity = getMaxPooledCapacity();
+    	synchronized (pool) {
+    		SoftReference<ChannelBuffer> ref = null;
+    		while ((ref = pool.poll()) != null) {
+    			ChannelBuffer buffer = ref.get();
+    			//skip buffers that were reclaimed or are much larger than recent messages
+    			if (buffer != null && buffer.capacity() <= maxCapacity) {
+	    			buffer.clear();
+	    			return buffer;
+    			}
+    		}
+		}
+    	return dynamicBuffer(Math.max(estimatedLength, averageLength), ctx.getChannel().getConfig().getBufferFactory());
+    }
+    
+    /**
+     * Return a buffer to the pool once its write has completed.
+     */
+    void release(ChannelBuffer buffer) {
+    	if (buffer.capacity() > getMaxPooledCapacity()) {
+    		return;
+    	}
+    	synchronized (pool) {
+    		if (pool.size() < MAX_POOLED_BUFFERS) {
+    			pool.add(new SoftReference<ChannelBuffer>(buffer));
+    		}
+		}
+    }
+    
+    /**
+     * Only buffers within twice the average message length are kept, so that 
+     * an occasional large message does not stay pooled.
+     */
+    private int getMaxPooledCapacity() {
+    	return Math.min(MAX_POOLED_CAPACITY, 2 * Math.max(estimatedLength, averageLength));
+    }
+    
     static class AnonymousChunkedStream extends ChunkedStream {
 
 		public AnonymousChunkedStream(InputStream in) {
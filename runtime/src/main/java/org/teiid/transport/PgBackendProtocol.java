@@ -27,16 +27,23 @@ import java.io.OutputStreamWriter;
 import java.io.Reader;
 import java.io.StreamCorruptedException;
 import java.io.Writer;
+import java.math.BigDecimal;
+import java.math.BigInteger;
 import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
 import java.nio.charset.Charset;
 import java.security.GeneralSecurityException;
 import java.sql.Array;
 import java.sql.Blob;
+import java.sql.Date;
 import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.sql.Time;
+import java.sql.Timestamp;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Properties;
+import java.util.TimeZone;
 
 import javax.net.ssl.SSLEngine;
 
@@ -100,6 +107,7 @@ public class PgBackendProtocol implements ChannelDownstreamHandler, ODBCClientRe
 		private int rowsSent = 0;
 		private int rowsInBuffer = 0;
 		String sql;
+		boolean copy;
 
 		private ResultsWorkItem(List<PgColInfo> cols, ResultSetImpl rs, ResultsFuture<Integer> result, int rows2Send) {
 			this.cols = cols;
@@ -143,7 +151,11 @@ public class PgBackendProtocol implements ChannelDownstreamHandler, ODBCClientRe
 			boolean processNext = true;
 			try {
     			if (future.get()) {
-    				sendDataRow(rs, cols);
+    				if (copy) {
+    					sendCopyData(rs, cols);
+    				} else {
+    					sendDataRow(rs, cols);
+    				}
     				rowsSent++;
     				rowsInBuffer++;
     				boolean done = rowsSent == rows2Send;
@@ -157,6 +169,9 @@ public class PgBackendProtocol implements ChannelDownstreamHandler, ODBCClientRe
     				}
     			} else {
     				sendContents();
+    				if (copy) {
+    					sendCopyDone();
+    				}
     				if (sql != null) {
 		    			sendCommandComplete(sql, rowsSent);
 		    		}
@@ -180,11 +195,78 @@ public class PgBackendProtocol implements ChannelDownstreamHandler, ODBCClientRe
 		}
 	}
 
+	/**
+	 * Escapes the COPY text format special characters
+	 */
+	private final class CopyTextWriter extends Writer {
+		@Override
+		public void write(int c) throws IOException {
+			switch (c) {
+			case '\\':
+				writer.write("\\\\"); //$NON-NLS-1$
+				break;
+			case '\n':
+				writer.write("\\n"); //$NON-NLS-1$
+				break;
+			case '\r':
+				writer.write("\\r"); //$NON-NLS-1$
+				break;
+			case '\t':
+				writer.write("\\t"); //$NON-NLS-1$
+				break;
+			default:
+				writer.write(c);
+			}
+		}
+		
+		@Override
+		public void write(char[] cbuf, int off, int len) throws IOException {
+			for (int i = off; i < off + len; i++) {
+				write(cbuf[i]);
+			}
+		}
+		
+		@Override
+		public void write(String str, int off, int len) throws IOException {
+			for (int i = off; i < off + len; i++) {
+				write(str.charAt(i));
+			}
+		}
+		
+		@Override
+		public void flush() throws IOException {
+			writer.flush();
+		}
+		
+		@Override
+		public void close() throws IOException {
+		}
+	}
+
+	private static final long MILLIS_PER_DAY = 24 * 60 * 60 * 1000L;
+	/**
+	 * 2000-01-01 00:00:00 UTC, the epoch of the binary date/time formats 
+	 */
+	private static final long PG_EPOCH_MILLIS = 10957 * MILLIS_PER_DAY;
+	private static final int NUMERIC_POS = 0x0000;
+	private static final int NUMERIC_NEG = 0x4000;
+
+	/**
+	 * Responses that may be held until the client expects to read - on ReadyForQuery, 
+	 * Flush, or an error - so that pipelined requests are answered with fewer writes. 
+	 */
+	private static final String DEFERRABLE_MESSAGES = "123tTnCIsDdHc"; //$NON-NLS-1$
+
 	public static final String DEFAULT_ENCODING = "UTF8";
 	public static final String CLIENT_ENCODING = "client_encoding";
 
     private ChannelBuffer dataOut;
 	private OutputStreamWriter writer;
+	private Writer copyWriter = new CopyTextWriter();
+	
+	private List<ChannelBuffer> pendingOut = new ArrayList<ChannelBuffer>();
+	private List<ChannelFuture> pendingFutures = new ArrayList<ChannelFuture>();
+	private int pendingBytes;
 
     private Properties props;    
     private Charset encoding = Charset.forName("UTF-8");
@@ -267,7 +349,7 @@ public class PgBackendProtocol implements ChannelDownstreamHandler, ODBCClientRe
 		
 		sendParameterStatus("client_encoding", clientEncoding);
 		sendParameterStatus("DateStyle", this.props.getProperty("DateStyle", "ISO"));
-		sendParameterStatus("integer_datetimes", "off");
+		sendParameterStatus("integer_datetimes", "on");
 		sendParameterStatus("is_superuser", "off");
 		sendParameterStatus("server_encoding", "SQL_ASCII");
 		sendParameterStatus("server_version", "8.1.4");
@@ -360,6 +442,31 @@ public class PgBackendProtocol implements ChannelDownstreamHandler, ODBCClientRe
     	r.run();    
 	}
 
+	@Override
+	public void sendCopyOut(String sql, ResultSetImpl rs, List<PgColInfo> cols,
+			ResultsFuture<Integer> result) {
+		if (nextFuture != null) {
+			sendErrorResponse(new IllegalStateException("Pending results have not been sent")); //$NON-NLS-1$
+		}
+		startMessage('H');
+		// text
+		write(0);
+		writeShort(cols.size());
+		for (int i = 0; i < cols.size(); i++) {
+			writeShort(0);
+		}
+		sendMessage();
+		ResultsWorkItem r = new ResultsWorkItem(cols, rs, result, -1);
+		r.sql = sql;
+		r.copy = true;
+		r.run();
+	}
+	
+	private void sendCopyDone() {
+		startMessage('c');
+		sendMessage();
+	}
+
 	@Override
 	public void sendUpdateCount(String sql, int updateCount) {
 		sendCommandComplete(sql, updateCount);
@@ -375,6 +482,7 @@ public class PgBackendProtocol implements ChannelDownstreamHandler, ODBCClientRe
 	public void terminated() {
 		trace("channel being terminated");
 		// no need to send any reply; this is showing as malformed packet.
+		writePending();
 		this.ctx.getChannel().close();
 	}
 	
@@ -382,6 +490,7 @@ public class PgBackendProtocol implements ChannelDownstreamHandler, ODBCClientRe
 	public void flush() {
 		this.dataOut = null;
 		this.writer = null;
+		writePending();
 		Channels.write(this.ctx.getChannel(), null);
 	}
 
@@ -434,8 +543,13 @@ public class PgBackendProtocol implements ChannelDownstreamHandler, ODBCClientRe
 		for (int i = 0; i < cols.size(); i++) {
 			int dataBytesIndex = this.dataOut.writerIndex();
 			writeInt(-1);
-			getContent(rs, cols.get(i), i+1);
-			writer.flush();
+			PgColInfo col = cols.get(i);
+			if (col.format == 1) {
+				getBinaryContent(rs, col, i+1);
+			} else {
+				getContent(rs, col, i+1, writer);
+				writer.flush();
+			}
 			if (!rs.wasNull()) {
 				int bytes = this.dataOut.writerIndex() - dataBytesIndex - 4;
 				this.dataOut.setInt(dataBytesIndex, bytes);
@@ -444,7 +558,173 @@ public class PgBackendProtocol implements ChannelDownstreamHandler, ODBCClientRe
 		this.dataOut.setInt(lengthIndex, this.dataOut.writerIndex() - lengthIndex);
 	}
 	
-	private void getContent(ResultSet rs, PgColInfo col, int column) throws SQLException, TeiidSQLException, IOException {
+	/**
+	 * Send a row of COPY text format data - tab delimited, \N for null 
+	 */
+	private void sendCopyData(ResultSet rs, List<PgColInfo> cols) throws SQLException, IOException {
+		startMessage('d', -1);
+		int lengthIndex = this.dataOut.writerIndex() - 4;
+		for (int i = 0; i < cols.size(); i++) {
+			if (i > 0) {
+				writer.write('\t');
+			}
+			getContent(rs, cols.get(i), i+1, copyWriter);
+			if (rs.wasNull()) {
+				writer.write("\\N"); //$NON-NLS-1$
+			}
+		}
+		writer.write('\n');
+		writer.flush();
+		this.dataOut.setInt(lengthIndex, this.dataOut.writerIndex() - lengthIndex);
+	}
+	
+	/**
+	 * Write the binary format of the value.  Only the types accepted by 
+	 * {@link PGUtil#isBinaryFormatSupported(int)} are expected.
+	 */
+	private void getBinaryContent(ResultSet rs, PgColInfo col, int column) throws SQLException, IOException {
+		switch (col.type) {
+			case PG_TYPE_BOOL:
+				boolean b = rs.getBoolean(column);
+				if (!rs.wasNull()) {
+					write(b?1:0);
+				}
+				break;
+			case PG_TYPE_INT2:
+				short s = rs.getShort(column);
+				if (!rs.wasNull()) {
+					writeShort(s);
+				}
+				break;
+			case PG_TYPE_INT4:
+				int i = rs.getInt(column);
+				if (!rs.wasNull()) {
+					writeInt(i);
+				}
+				break;
+			case PG_TYPE_INT8:
+				long l = rs.getLong(column);
+				if (!rs.wasNull()) {
+					dataOut.writeLong(l);
+				}
+				break;
+			case PG_TYPE_FLOAT4:
+				float f = rs.getFloat(column);
+				if (!rs.wasNull()) {
+					writeInt(Float.floatToIntBits(f));
+				}
+				break;
+			case PG_TYPE_FLOAT8:
+				double d = rs.getDouble(column);
+				if (!rs.wasNull()) {
+					dataOut.writeLong(Double.doubleToLongBits(d));
+				}
+				break;
+			case PG_TYPE_NUMERIC:
+				BigDecimal bd = rs.getBigDecimal(column);
+				if (bd != null) {
+					writeNumeric(bd);
+				}
+				break;
+			case PG_TYPE_DATE:
+				Date date = rs.getDate(column);
+				if (date != null) {
+					writeInt((int)floorDiv(toLocalMillis(date.getTime()) - PG_EPOCH_MILLIS, MILLIS_PER_DAY));
+				}
+				break;
+			case PG_TYPE_TIME:
+				Time time = rs.getTime(column);
+				if (time != null) {
+					long millis = toLocalMillis(time.getTime());
+					dataOut.writeLong((millis - floorDiv(millis, MILLIS_PER_DAY) * MILLIS_PER_DAY) * 1000);
+				}
+				break;
+			case PG_TYPE_TIMESTAMP_NO_TMZONE:
+				Timestamp ts = rs.getTimestamp(column);
+				if (ts != null) {
+					long micros = (toLocalMillis(ts.getTime()) - PG_EPOCH_MILLIS) * 1000 + (ts.getNanos() / 1000) % 1000;
+					dataOut.writeLong(micros);
+				}
+				break;
+			case PG_TYPE_BYTEA:
+				Blob blob = rs.getBlob(column);
+		    	if (blob != null) {
+		    		try {
+		    			write(ObjectConverterUtil.convertToByteArray(blob.getBinaryStream(), this.maxLobSize));
+		    		} catch(OutOfMemoryError e) {
+		    			throw new StreamCorruptedException("data too big: " + e.getMessage()); //$NON-NLS-1$ 
+		    		}
+		    	}
+				break;
+			default:
+				//the binary form of the character types is the same as the text
+				getContent(rs, col, column, writer);
+				writer.flush();
+		}
+	}
+	
+	private static long toLocalMillis(long millis) {
+		return millis + TimeZone.getDefault().getOffset(millis);
+	}
+	
+	private static long floorDiv(long x, long y) {
+		long result = x / y;
+		if ((x % y != 0) && ((x ^ y) < 0)) {
+			result--;
+		}
+		return result;
+	}
+	
+	/**
+	 * Write the base 10000 numeric form - ndigits, weight, sign, dscale, digits
+	 */
+	private void writeNumeric(BigDecimal value) {
+		int dscale = Math.max(0, value.scale());
+		BigInteger unscaled = value.setScale(dscale).unscaledValue();
+		int sign = unscaled.signum() < 0 ? NUMERIC_NEG : NUMERIC_POS;
+		String digits = unscaled.abs().toString();
+		//pad the fractional digits to a multiple of 4
+		int fractionalPad = (4 - dscale % 4) % 4;
+		int intLength = digits.length() - dscale;
+		StringBuilder sb = new StringBuilder(digits.length() + 8);
+		if (intLength <= 0) {
+			for (int i = intLength; i < 0; i++) {
+				sb.append('0');
+			}
+			intLength = 0;
+		}
+		//pad the integral digits to a multiple of 4
+		for (int i = 0; i < (4 - intLength % 4) % 4; i++) {
+			sb.insert(0, '0');
+		}
+		int intGroups = (intLength + 3) / 4;
+		sb.append(digits);
+		for (int i = 0; i < fractionalPad; i++) {
+			sb.append('0');
+		}
+		int groups = sb.length() / 4;
+		short[] values = new short[groups];
+		for (int i = 0; i < groups; i++) {
+			values[i] = Short.parseShort(sb.substring(i * 4, i * 4 + 4));
+		}
+		int first = 0;
+		while (first < groups && values[first] == 0) {
+			first++;
+		}
+		int last = groups;
+		while (last > first && values[last - 1] == 0) {
+			last--;
+		}
+		writeShort(last - first);
+		writeShort(last == first ? 0 : intGroups - 1 - first);
+		writeShort(sign);
+		writeShort(dscale);
+		for (int i = first; i < last; i++) {
+			writeShort(values[i]);
+		}
+	}
+	
+	private void getContent(ResultSet rs, PgColInfo col, int column, Writer out) throws SQLException, TeiidSQLException, IOException {
 		switch (col.type) {
 			case PG_TYPE_BOOL:
 			case PG_TYPE_BPCHAR:
@@ -460,7 +740,7 @@ public class PgBackendProtocol implements ChannelDownstreamHandler, ODBCClientRe
 		    case PG_TYPE_VARCHAR:
 		    	String value = rs.getString(column);
 		    	if (value != null) {
-			    	writer.write(value);
+			    	out.write(value);
 		    	}
 		    	break;
 		    
@@ -468,7 +748,7 @@ public class PgBackendProtocol implements ChannelDownstreamHandler, ODBCClientRe
 		    	Reader r = rs.getCharacterStream(column);
 		    	if (r != null) {
 		    		try {
-		    			ObjectConverterUtil.write(writer, r, this.maxLobSize, false);
+		    			ObjectConverterUtil.write(out, r, this.maxLobSize, false);
 		    		} finally {
 		    			r.close();
 		    		}
@@ -480,7 +760,7 @@ public class PgBackendProtocol implements ChannelDownstreamHandler, ODBCClientRe
 		    	if (blob != null) {
 		    		try {
 			    		String blobString = PGbytea.toPGString(ObjectConverterUtil.convertToByteArray(blob.getBinaryStream(), this.maxLobSize));
-			    		writer.write(blobString);
+			    		out.write(blobString);
 		    		} catch(OutOfMemoryError e) {
 		    			throw new StreamCorruptedException("data too big: " + e.getMessage()); //$NON-NLS-1$ 
 		    		}
@@ -493,13 +773,13 @@ public class PgBackendProtocol implements ChannelDownstreamHandler, ODBCClientRe
 		    	{
 		    	Array obj = rs.getArray(column);
 		    	if (obj != null) {
-		    		writer.append("{");
+		    		out.append("{");
 			    	boolean first = true;
 			    	Object array = obj.getArray();
 					int length = java.lang.reflect.Array.getLength(array);
 			    	for (int i = 0; i < length; i++) {
 			    		if (!first) {
-			    			writer.append(",");
+			    			out.append(",");
 			    		}
 			    		else {
 			    			first = false;
@@ -507,14 +787,14 @@ public class PgBackendProtocol implements ChannelDownstreamHandler, ODBCClientRe
 			    		Object o = java.lang.reflect.Array.get(array, i);
 			    		if (o != null) {
 				    		if (col.type == PG_TYPE_TEXTARRAY) {
-				    			escapeQuote(writer, o.toString());
+				    			escapeQuote(out, o.toString());
 				    		}
 				    		else {
-				    			writer.append(o.toString());
+				    			out.append(o.toString());
 				    		}
 			    		}
 			    	}
-			    	writer.append("}");
+			    	out.append("}");
 		    	}
 		    	}
 		    	break;
@@ -526,13 +806,13 @@ public class PgBackendProtocol implements ChannelDownstreamHandler, ODBCClientRe
 			    	boolean first = true;
 			    	for (Object o:obj.getValues()) {
 			    		if (!first) {
-			    			writer.append(" ");
+			    			out.append(" ");
 			    		}
 			    		else {
 			    			first = false;
 			    		}
 			    		if (o != null) {
-			    			writer.append(o.toString());
+			    			out.append(o.toString());
 			    		}
 			    	}
 		    	}	
@@ -622,8 +902,8 @@ public class PgBackendProtocol implements ChannelDownstreamHandler, ODBCClientRe
 			writeShort(getTypeSize(info.type, info.precision));
 			// pg_attribute.atttypmod
 			writeInt(info.mod);
-			// text
-			writeShort(0);
+			// text or binary
+			writeShort(info.format);
 		}
 		sendMessage();
 	}
@@ -798,7 +1078,50 @@ public class PgBackendProtocol implements ChannelDownstreamHandler, ODBCClientRe
 		ChannelBuffer cb = this.dataOut;
 		this.dataOut = null;
 		this.writer = null;
-		Channels.write(this.ctx, this.message.getFuture(), cb, this.message.getRemoteAddress());
+		pendingOut.add(cb);
+		pendingBytes += cb.readableBytes();
+		ChannelFuture future = this.message.getFuture();
+		if (pendingFutures.isEmpty() || pendingFutures.get(pendingFutures.size() - 1) != future) {
+			pendingFutures.add(future);
+		}
+		if (pendingBytes >= maxBufferSize || DEFERRABLE_MESSAGES.indexOf(cb.getByte(cb.readerIndex())) < 0) {
+			writePending();
+		}
+	}
+	
+	/**
+	 * Write all held messages as a single buffer
+	 */
+	private void writePending() {
+		if (pendingOut.isEmpty()) {
+			return;
+		}
+		ChannelBuffer cb = null;
+		if (pendingOut.size() == 1) {
+			cb = pendingOut.get(0);
+		} else {
+			cb = ChannelBuffers.wrappedBuffer(pendingOut.toArray(new ChannelBuffer[pendingOut.size()]));
+		}
+		ChannelFuture future = this.message.getFuture();
+		for (final ChannelFuture pending : pendingFutures) {
+			if (pending == future) {
+				continue;
+			}
+			future.addListener(new ChannelFutureListener() {
+				@Override
+				public void operationComplete(ChannelFuture f) throws Exception {
+					if (f.isSuccess()) {
+						pending.setSuccess();
+					} else if (f.getCause() != null) {
+						pending.setFailure(f.getCause());
+					}
+				}
+			});
+		}
+		pendingOut.clear();
+		pendingFutures.clear();
+		pendingBytes = 0;
+		Channels.write(this.ctx, future, cb, this.message.getRemoteAddress());
 	}
 
 	private static void trace(String... msg) {
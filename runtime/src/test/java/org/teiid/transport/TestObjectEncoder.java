@@ -0,0 +1,106 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright (C) 2008 Red Hat, Inc.
+ * Licensed to Red Hat, Inc. under one or more contributor 
+ * license agreements.  See the copyright.txt file in the
+ * distribution for a full listing of individual contributors.
+ * 
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ * 
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA
+ * 02110-1301 USA.
+ */
+
+package org.teiid.transport;
+
+import static org.junit.Assert.*;
+
+import java.io.IOException;
+
+import org.jboss.netty.buffer.ChannelBuffer;
+import org.jboss.netty.buffer.HeapChannelBufferFactory;
+import org.jboss.netty.channel.Channel;
+import org.jboss.netty.channel.ChannelConfig;
+import org.jboss.netty.channel.ChannelEvent;
+import org.jboss.netty.channel.ChannelFuture;
+import org.jboss.netty.channel.ChannelHandlerContext;
+import org.jboss.netty.channel.DefaultChannelFuture;
+import org.jboss.netty.channel.DownstreamMessageEvent;
+import org.jboss.netty.channel.MessageEvent;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mockito;
+
+@SuppressWarnings("nls")
+public class TestObjectEncoder {
+	
+	private Channel channel;
+	private ChannelHandlerContext ctx;
+	private ObjectEncoder encoder;
+	private int writes;
+
+	@Before public void setUp() {
+		channel = Mockito.mock(Channel.class);
+		ChannelConfig config = Mockito.mock(ChannelConfig.class);
+		Mockito.stub(config.getBufferFactory()).toReturn(HeapChannelBufferFactory.getInstance());
+		Mockito.stub(channel.getConfig()).toReturn(config);
+		ctx = Mockito.mock(ChannelHandlerContext.class);
+		Mockito.stub(ctx.getChannel()).toReturn(channel);
+		encoder = new ObjectEncoder();
+		writes = 0;
+	}
+	
+	private ChannelBuffer write(Object message, ChannelFuture future) throws Exception {
+		encoder.handleDownstream(ctx, new DownstreamMessageEvent(channel, future, message, null));
+		ArgumentCaptor<ChannelEvent> captor = ArgumentCaptor.forClass(ChannelEvent.class);
+		Mockito.verify(ctx, Mockito.times(++writes)).sendDownstream(captor.capture());
+		return (ChannelBuffer)((MessageEvent)captor.getValue()).getMessage();
+	}
+	
+	@Test public void testPooledReuse() throws Exception {
+		ChannelFuture f1 = new DefaultChannelFuture(channel, false);
+		ChannelBuffer b1 = write("a", f1);
+		
+		//not reused before the write completes
+		ChannelFuture f2 = new DefaultChannelFuture(channel, false);
+		ChannelBuffer b2 = write("b", f2);
+		assertNotSame(b1, b2);
+		
+		f1.setSuccess();
+		ChannelBuffer b3 = write("c", new DefaultChannelFuture(channel, false));
+		assertSame(b1, b3);
+		
+		//failed writes are not reused
+		f2.setFailure(new IOException());
+		ChannelBuffer b4 = write("d", new DefaultChannelFuture(channel, false));
+		assertNotSame(b2, b4);
+		assertNotSame(b3, b4);
+	}
+	
+	@Test public void testLargeMessageNotPooled() throws Exception {
+		ChannelFuture f1 = new DefaultChannelFuture(channel, false);
+		ChannelBuffer large = write(new byte[100000], f1);
+		f1.setSuccess();
+		
+		ChannelBuffer small = write("a", new DefaultChannelFuture(channel, false));
+		assertNotSame(large, small);
+		
+		//the size of new buffers decays back toward the estimate
+		for (int i = 0; i < 50; i++) {
+			small = write("a", new DefaultChannelFuture(channel, false));
+		}
+		assertTrue(small.capacity() <= 1024);
+	}
+
+}
@@ -28,6 +28,7 @@ import java.sql.Connection;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.Statement;
+import java.sql.Timestamp;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
@@ -424,4 +425,109 @@ public class TestMatViews {
 		assertFalse(rs.next());
 	}
 
+	@Test public void testDeltaRefresh() throws Exception {
+		helpTestDeltaRefresh("");
+	}
+	
+	@Test public void testDeltaRefreshIndexed() throws Exception {
+		//the initial high water mark is read from the end of the index
+		helpTestDeltaRefresh(", INDEX(ts)");
+	}
+
+	private void helpTestDeltaRefresh(String index) throws Exception {
+		ModelMetaData mmd2 = new ModelMetaData();
+		mmd2.setName("view1");
+		mmd2.setModelType(Type.PHYSICAL);
+		mmd2.setSchemaSourceType("DDL");
+		mmd2.setSchemaText("create foreign table x (col integer, col1 string, ts integer); CREATE VIEW v1 ( col integer primary key, col1 string, ts integer" + index + " ) OPTIONS (MATERIALIZED true, \"teiid_rel:MATVIEW_DELTA_COLUMN\" 'ts') AS /*+ cache(updatable) */ select col, col1, ts from x");
+		mmd2.addSourceMapping("a", "a", null);
+		HardCodedExecutionFactory hcef = new HardCodedExecutionFactory();
+		hcef.addData("SELECT x.col, x.col1, x.ts FROM x", Arrays.asList(Arrays.asList(1, "a", 1), Arrays.asList(2, "b", 2)));
+		server.addTranslator("a", hcef);
+		server.deployVDB("comp", mmd2);
+		
+		Connection c = server.getDriver().connect("jdbc:teiid:comp", null);
+		Statement s = c.createStatement();
+		ResultSet rs = s.executeQuery("select * from v1 order by col");
+		assertRows(rs, "1 a 1", "2 b 2");
+		
+		//only the rows at or above the high water mark are reloaded, so the change to row 1 is not seen
+		hcef.addData("SELECT x.col, x.col1, x.ts FROM x", Arrays.asList(Arrays.asList(1, "a1", 1), Arrays.asList(2, "b1", 2), Arrays.asList(3, "c", 3)));
+		rs = s.executeQuery("select * from (call refreshMatView('view1.v1', false)) p");
+		assertTrue(rs.next());
+		assertEquals(2, rs.getInt(1));
+		assertFalse(rs.next());
+		rs = s.executeQuery("select * from v1 order by col");
+		assertRows(rs, "1 a 1", "2 b1 2", "3 c 3");
+		
+		//the high water mark has advanced to 3
+		hcef.addData("SELECT x.col, x.col1, x.ts FROM x", Arrays.asList(Arrays.asList(1, "a2", 1), Arrays.asList(2, "b2", 2), Arrays.asList(3, "c1", 3), Arrays.asList(4, "d", 4)));
+		rs = s.executeQuery("select * from (call refreshMatView('view1.v1', false)) p");
+		assertTrue(rs.next());
+		assertEquals(2, rs.getInt(1));
+		assertFalse(rs.next());
+		rs = s.executeQuery("select * from v1 order by col");
+		assertRows(rs, "1 a 1", "2 b1 2", "3 c1 3", "4 d 4");
+		
+		rs = s.executeQuery("select * from MatViews where name = 'v1'");
+		assertTrue(rs.next());
+		assertEquals("LOADED", rs.getString("loadstate"));
+		assertEquals(true, rs.getBoolean("valid"));
+	}
+	
+	@Test public void testDeltaRefreshOnTtl() throws Exception {
+		ModelMetaData mmd2 = new ModelMetaData();
+		mmd2.setName("view1");
+		mmd2.setModelType(Type.PHYSICAL);
+		mmd2.setSchemaSourceType("DDL");
+		mmd2.setSchemaText("create foreign table x (col integer, col1 string, ts integer); CREATE VIEW v1 ( col integer primary key, col1 string, ts integer ) OPTIONS (MATERIALIZED true, \"teiid_rel:MATVIEW_DELTA_COLUMN\" 'ts') AS /*+ cache(updatable ttl:100) */ select col, col1, ts from x");
+		mmd2.addSourceMapping("a", "a", null);
+		HardCodedExecutionFactory hcef = new HardCodedExecutionFactory();
+		hcef.addData("SELECT x.col, x.col1, x.ts FROM x", Arrays.asList(Arrays.asList(1, "a", 1), Arrays.asList(2, "b", 2)));
+		server.addTranslator("a", hcef);
+		VDBMetaData vdb = new VDBMetaData();
+		vdb.setXmlDeployment(true);
+		vdb.setName("comp");
+		vdb.addModel(mmd2);
+		//serve the expired table while it is refreshed asynchronously
+		vdb.addProperty("lazy-invalidate", "true");
+		server.deployVDB(vdb);
+		
+		Connection c = server.getDriver().connect("jdbc:teiid:comp", null);
+		Statement s = c.createStatement();
+		ResultSet rs = s.executeQuery("select * from v1 order by col");
+		assertRows(rs, "1 a 1", "2 b 2");
+		rs = s.executeQuery("select updated from MatViews where name = 'v1'");
+		assertTrue(rs.next());
+		Timestamp loaded = rs.getTimestamp(1);
+		
+		hcef.addData("SELECT x.col, x.col1, x.ts FROM x", Arrays.asList(Arrays.asList(1, "a1", 1), Arrays.asList(2, "b1", 2), Arrays.asList(3, "c", 3)));
+		Thread.sleep(150);
+		//the expired ttl triggers the refresh
+		rs = s.executeQuery("select * from v1 order by col");
+		for (int i = 0; i < 500; i++) {
+			rs = s.executeQuery("select loadstate, updated from MatViews where name = 'v1'");
+			assertTrue(rs.next());
+			if ("LOADED".equals(rs.getString(1)) && rs.getTimestamp(2).after(loaded)) {
+				break;
+			}
+			Thread.sleep(10);
+		}
+		assertEquals("LOADED", rs.getString(1));
+		//the update time has advanced with the delta
+		assertTrue(rs.getTimestamp(2).after(loaded));
+		
+		//only the delta was applied, so the change to row 1 is not seen
+		rs = s.executeQuery("select * from v1 order by col");
+		assertRows(rs, "1 a 1", "2 b1 2", "3 c 3");
+	}
+	
+	private void assertRows(ResultSet rs, String... expected) throws SQLException {
+		for (String row : expected) {
+			assertTrue(rs.next());
+			assertEquals(row, rs.getString(1) + " " + rs.getString(2) + " " + rs.getString(3));
+		}
+		assertFalse(rs.next());
+	}
+
 }
@@ -25,6 +25,8 @@ package org.teiid.transport;
 import static org.junit.Assert.*;
 
 import java.io.IOException;
+import java.io.StringWriter;
+import java.math.BigDecimal;
 import java.net.InetAddress;
 import java.net.InetSocketAddress;
 import java.net.Socket;
@@ -34,10 +36,13 @@ import java.security.NoSuchAlgorithmException;
 import java.sql.Array;
 import java.sql.Connection;
 import java.sql.DatabaseMetaData;
+import java.sql.Date;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.Statement;
+import java.sql.Time;
+import java.sql.Timestamp;
 import java.util.Properties;
 
 import javax.net.ssl.SSLContext;
@@ -51,6 +56,9 @@ import org.junit.BeforeClass;
 import org.junit.Test;
 import org.mockito.Mockito;
 import org.postgresql.Driver;
+import org.postgresql.PGStatement;
+import org.postgresql.copy.CopyManager;
+import org.postgresql.core.BaseConnection;
 import org.postgresql.core.v3.ExtendedQueryExectutorImpl;
 import org.teiid.adminapi.Model.Type;
 import org.teiid.adminapi.impl.ModelMetaData;
@@ -427,6 +435,25 @@ public static class AnonSSLSocketFactory extends SSLSocketFactory {
 		assertNull(ps.getMetaData());
 	}
 	
+	/**
+	 * The driver pipelines the batch with a single sync
+	 */
+	@Test public void testPipelinedBatch() throws Exception {
+		Statement stmt = conn.createStatement();
+		assertFalse(stmt.execute("create local temporary table x (y integer)"));
+		PreparedStatement ps = conn.prepareStatement("insert into x (y) values (?)");
+		for (int i = 0; i < 500; i++) {
+			ps.setInt(1, i);
+			ps.addBatch();
+		}
+		int[] counts = ps.executeBatch();
+		assertEquals(500, counts.length);
+		assertEquals(1, counts[499]);
+		ResultSet rs = stmt.executeQuery("select count(*) from x");
+		assertTrue(rs.next());
+		assertEquals(500, rs.getInt(1));
+	}
+	
 	@Test public void testSelectSsl() throws Exception {
 		conn.close();
 		Driver d = new Driver();
@@ -593,5 +620,37 @@ public static class AnonSSLSocketFactory extends SSLSocketFactory {
 		assertTrue(s.execute("select * from tables order by name"));
 		conn.setAutoCommit(true);
 	}
+	
+	@Test public void testBinaryTransfer() throws Exception {
+		PreparedStatement s = conn.prepareStatement("select cast(? as integer), cast(1.5 as double), cast(-123.0045 as bigdecimal), cast(0 as bigdecimal), cast(10000 as long), to_bytes('abc', 'UTF-8'), {ts '2001-02-03 04:05:06.7'}, {d '1999-12-31'}, {t '23:59:58'}, 'x'");
+		((PGStatement)s).setPrepareThreshold(1);
+		for (int i = 0; i < 3; i++) {
+			s.setInt(1, i);
+			ResultSet rs = s.executeQuery();
+			assertTrue(rs.next());
+			assertEquals(i, rs.getInt(1));
+			assertEquals(1.5, rs.getDouble(2), 0);
+			assertEquals(new BigDecimal("-123.0045"), rs.getBigDecimal(3));
+			assertEquals(0, BigDecimal.ZERO.compareTo(rs.getBigDecimal(4)));
+			assertEquals(10000, rs.getLong(5));
+			assertEquals("abc", new String(rs.getBytes(6), Charset.forName("UTF-8")));
+			assertEquals(Timestamp.valueOf("2001-02-03 04:05:06.7"), rs.getTimestamp(7));
+			assertEquals(Date.valueOf("1999-12-31"), rs.getDate(8));
+			assertEquals(Time.valueOf("23:59:58"), rs.getTime(9));
+			assertEquals("x", rs.getString(10));
+		}
+	}
+	
+	@Test public void testCopyOut() throws Exception {
+		CopyManager cm = new CopyManager((BaseConnection)conn);
+		StringWriter writer = new StringWriter();
+		assertEquals(1, cm.copyOut("COPY (select 'a' || char(9) || 'b', null, 1) TO STDOUT", writer));
+		assertEquals("a\\tb\t\\N\t1\n", writer.toString());
+	}
+	
+	@Test(expected=SQLException.class) public void testCopyOutBinary() throws Exception {
+		CopyManager cm = new CopyManager((BaseConnection)conn);
+		cm.copyOut("COPY (select 1) TO STDOUT WITH (FORMAT binary)", new StringWriter());
+	}
 
 }